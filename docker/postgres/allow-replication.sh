@@ -0,0 +1,3 @@
+#!/bin/sh
+# lets the local replica of compose.yaml stream the WAL of this instance
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
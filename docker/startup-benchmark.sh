@@ -0,0 +1,80 @@
+#!/bin/sh
+# Compares the startup time of the default image (runtime stage) with the aot-cds image.
+#
+# Usage: docker/startup-benchmark.sh [runs]   (from the project root, 5 runs per image by default)
+#
+# Both images are built, then started in turn against a throwaway Postgres container. Each run
+# reports the JVM uptime Spring Boot logs once the application is ready ("process running for"),
+# and the wall clock time from `docker run` to that log line, which includes the container start.
+set -eu
+
+RUNS=${1:-5}
+NETWORK=startup-benchmark
+DATABASE=startup-benchmark-postgres
+RESULTS=build/reports/startup/results.csv
+
+docker build -q --target runtime -t temp_mgmt_backend_image:jar . >/dev/null
+docker build -q --target aot-cds -t temp_mgmt_backend_image:aot-cds . >/dev/null
+
+cleanup() {
+    docker rm -f "$DATABASE" >/dev/null 2>&1 || true
+    docker network rm "$NETWORK" >/dev/null 2>&1 || true
+}
+trap cleanup EXIT
+
+docker network create "$NETWORK" >/dev/null
+docker run -d --name "$DATABASE" --network "$NETWORK" \
+    -e POSTGRES_DB=mydatabase -e POSTGRES_USER=myuser -e POSTGRES_PASSWORD=secret postgres:latest >/dev/null
+until docker exec "$DATABASE" pg_isready -U myuser -d mydatabase >/dev/null 2>&1; do
+    sleep 1
+done
+
+now_ms() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+# starts an image once, prints "<jvm uptime seconds> <wall clock seconds>"
+run_once() {
+    started=$(now_ms)
+    container=$(docker run -d --network "$NETWORK" \
+        -e SPRING_PROFILE=prod \
+        -e POSTGRES_HOST_LIVE="$DATABASE" -e POSTGRES_DB_LIVE=mydatabase \
+        -e POSTGRES_USER_LIVE=myuser -e POSTGRES_PASSWORD_LIVE=secret \
+        -e HIBERNATE_DDL_AUTO_LIVE=none -e SHOW_SQL_LIVE=false \
+        "$1")
+    until line=$(docker logs "$container" 2>&1 | grep -m 1 'process running for'); do
+        if [ "$(docker inspect -f '{{.State.Running}}' "$container")" != true ]; then
+            docker logs "$container" >&2
+            docker rm -f "$container" >/dev/null
+            echo "$1 exited before it was ready" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    ready=$(now_ms)
+    docker rm -f "$container" >/dev/null
+    uptime=$(echo "$line" | sed -n 's/.*process running for \([0-9.]*\).*/\1/p')
+    echo "$uptime $(echo "$started $ready" | awk '{ printf "%.3f", ($2 - $1) / 1000 }')"
+}
+
+mkdir -p "$(dirname "$RESULTS")"
+echo "image,run,jvm_seconds,wall_seconds" > "$RESULTS"
+
+for image in jar aot-cds; do
+    # the first start also runs the migrations, it is not counted
+    run_once "temp_mgmt_backend_image:$image" >/dev/null
+    run=1
+    while [ "$run" -le "$RUNS" ]; do
+        result=$(run_once "temp_mgmt_backend_image:$image")
+        set -- $result
+        echo "$image,$run,$1,$2" >> "$RESULTS"
+        run=$((run + 1))
+    done
+done
+
+echo "Startup over $RUNS runs (seconds, median of JVM uptime when ready / wall clock from docker run):"
+for image in jar aot-cds; do
+    grep "^$image," "$RESULTS" | cut -d, -f3 | sort -n | awk -v image="$image" '{ v[NR] = $1 } END { printf "  %-8s %6.3f", image, (NR % 2 ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+    grep "^$image," "$RESULTS" | cut -d, -f4 | sort -n | awk '{ v[NR] = $1 } END { printf " / %6.3f\n", (NR % 2 ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+done
+echo "Runs written to $RESULTS"
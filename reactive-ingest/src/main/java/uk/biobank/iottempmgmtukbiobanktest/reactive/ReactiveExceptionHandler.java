@@ -0,0 +1,45 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ServerWebInputException;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
+
+/**
+ * Turns the errors of the reactive endpoints into the {@link Response} bodies of the servlet
+ * application's {@code ExceptionController}.
+ */
+@Slf4j
+@ControllerAdvice
+public class ReactiveExceptionHandler {
+
+    private final GeneralService generalService;
+
+    public ReactiveExceptionHandler(GeneralService generalService) {
+        this.generalService = generalService;
+    }
+
+    @ExceptionHandler(GeneralException.class)
+    public ResponseEntity<Response> handleGeneralException(GeneralException ex) {
+        Response response = generalService.prepareFailedResponse(Integer.parseInt(ex.getMessage()) , ex.getCause().getMessage());
+        return new ResponseEntity<>(response , HttpStatusCode.valueOf(response.getResponseCode()));
+    }
+
+    /**
+     * Handles request bodies and parameters that cannot be read, e.g. malformed JSON.
+     */
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<Response> handleServerWebInput(ServerWebInputException ex) {
+        log.error("Unreadable request: {}" , ex.getMessage());
+        Response response = generalService.prepareFailedResponse(ResponseCodeAndMessage.BAD_REQUEST.responseCode ,
+                "Invalid request body. Please check your request data.");
+        return new ResponseEntity<>(response , HttpStatusCode.valueOf(response.getResponseCode()));
+    }
+
+}
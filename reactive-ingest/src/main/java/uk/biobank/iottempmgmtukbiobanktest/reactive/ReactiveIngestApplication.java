@@ -0,0 +1,20 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Entry point of the reactive ingestion application, serving the ingestion and query endpoints
+ * of the servlet application on WebFlux and R2DBC, against the same database.
+ * <p>
+ * The schema is migrated by the servlet application, see {@link ReactiveIngestConfig} for what
+ * else is shared with it.
+ */
+@SpringBootApplication
+public class ReactiveIngestApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveIngestApplication.class , args);
+    }
+
+}
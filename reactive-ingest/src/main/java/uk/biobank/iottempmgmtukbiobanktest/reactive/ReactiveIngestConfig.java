@@ -0,0 +1,15 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.ReadingValidator;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.implementation.GeneralServiceImpl;
+
+/**
+ * Reuses the validation and the response and paging helpers of the servlet application as they
+ * are, so both stacks accept, reject and answer alike.
+ */
+@Configuration
+@Import({ReadingValidator.class , GeneralServiceImpl.class})
+public class ReactiveIngestConfig {
+}
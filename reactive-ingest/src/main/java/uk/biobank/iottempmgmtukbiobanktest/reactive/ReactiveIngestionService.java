@@ -0,0 +1,71 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.BatchReports;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.ReadingValidator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates and stores a stream of readings in batches of {@code reactive.ingest.batch-size}.
+ * <p>
+ * The batches are validated and written one after the other, and the next one is only requested
+ * from the request body once the previous one is stored, so a fast gateway is slowed down by
+ * the database rather than buffered in memory. Readings are stored before the response is sent,
+ * there is no journal. The response reports rejected records and missing readings as
+ * {@code /processRecords} of the servlet application does, indexed over the whole request.
+ */
+@Service
+public class ReactiveIngestionService {
+
+    private final ReadingValidator readingValidator;
+    private final ReactiveTemperatureRecordWriter writer;
+    private final int batchSize;
+
+    private final Counter receivedRecords;
+    private final Counter acceptedRecords;
+
+    public ReactiveIngestionService(ReadingValidator readingValidator ,
+                                    ReactiveTemperatureRecordWriter writer ,
+                                    MeterRegistry meterRegistry ,
+                                    @Value("${reactive.ingest.batch-size:500}") int batchSize) {
+        this.readingValidator = readingValidator;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.receivedRecords = Counter.builder("ingestion.records.received")
+                .description("Records received on processRecords")
+                .register(meterRegistry);
+        this.acceptedRecords = Counter.builder("ingestion.records.accepted")
+                .description("Records accepted by validation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Validates and stores the readings of a request.
+     *
+     * @param records the readings, as decoded from the request body
+     * @return the rejected records and missing readings, once every accepted reading is stored
+     */
+    public Mono<Map<String, String>> processRecords(Flux<TemperatureRecordDTO> records) {
+        return records.buffer(batchSize)
+                .index()
+                .concatMap(batch -> processBatch(batch.getT1() * batchSize , batch.getT2()))
+                .reduceWith(HashMap<String, String>::new , BatchReports::merge);
+    }
+
+    private Mono<Map<String, String>> processBatch(long offset , List<TemperatureRecordDTO> batch) {
+        ReadingValidator.Result result = readingValidator.validate(batch);
+        receivedRecords.increment(batch.size());
+        acceptedRecords.increment(result.accepted().size());
+        return writer.write(result.accepted()).thenReturn(BatchReports.offset(result.report() , offset));
+    }
+
+}
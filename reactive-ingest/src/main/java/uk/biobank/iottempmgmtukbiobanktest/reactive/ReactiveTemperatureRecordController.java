@@ -0,0 +1,59 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.PageableRequestDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
+
+/**
+ * Reactive counterpart of the servlet {@code TemperatureRecordController}, on the same paths so
+ * the fleet load test can drive either.
+ * <p>
+ * {@code /processRecords} takes the body as a stream of readings and answers once they are
+ * stored. The list endpoints stream the records of the page as a JSON array, or as
+ * newline-delimited JSON when asked for {@code application/x-ndjson}, rather than wrapping
+ * them in a {@link Response}.
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/api/v1/temperatureRecord")
+public class ReactiveTemperatureRecordController {
+
+    private final GeneralService generalService;
+    private final ReactiveIngestionService reactiveIngestionService;
+    private final ReactiveTemperatureRecordReader reactiveTemperatureRecordReader;
+
+    public ReactiveTemperatureRecordController(GeneralService generalService ,
+                                               ReactiveIngestionService reactiveIngestionService ,
+                                               ReactiveTemperatureRecordReader reactiveTemperatureRecordReader) {
+        this.generalService = generalService;
+        this.reactiveIngestionService = reactiveIngestionService;
+        this.reactiveTemperatureRecordReader = reactiveTemperatureRecordReader;
+    }
+
+    // retried batches are absorbed by the unique constraint, the Idempotency-Key header is not needed
+    @PostMapping("/processRecords")
+    public Mono<Response> ingestTemperatures(@RequestBody Flux<TemperatureRecordDTO> records) {
+        return reactiveIngestionService.processRecords(records).map(generalService::prepareSuccessResponse);
+    }
+
+    @GetMapping("/average-temperature")
+    public Mono<Response> getAverageTemperature(@RequestParam String deviceName , @RequestParam String date , @RequestParam int hour) {
+        return reactiveTemperatureRecordReader.averageTemperature(deviceName , date , hour).map(generalService::prepareSuccessResponse);
+    }
+
+    @GetMapping(value = "/all", produces = {MediaType.APPLICATION_JSON_VALUE , MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<TemperatureRecordDTO> getAllTemperatures(PageableRequestDTO dto) {
+        return reactiveTemperatureRecordReader.findPage(null , generalService.getPageableObject(dto));
+    }
+
+    @GetMapping(value = "/deviceName", produces = {MediaType.APPLICATION_JSON_VALUE , MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<TemperatureRecordDTO> getAllTemperatures(@RequestParam String deviceName , PageableRequestDTO dto) {
+        return reactiveTemperatureRecordReader.findPage(deviceName , generalService.getPageableObject(dto));
+    }
+
+}
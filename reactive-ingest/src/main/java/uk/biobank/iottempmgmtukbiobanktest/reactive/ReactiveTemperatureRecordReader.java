@@ -0,0 +1,193 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Reads temperature records over R2DBC, streaming list pages row by row as they arrive.
+ * <p>
+ * The hourly average reads the same storage tiers as the servlet application: raw rows,
+ * compacted chunks, and the hourly rollup once the hour is past {@code retention.raw-days}.
+ */
+@Component
+public class ReactiveTemperatureRecordReader {
+
+    // sortBy values of PageableRequestDTO, by entity property as in the servlet application
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id" , "id" ,
+            "deviceName" , "device_name" ,
+            "location" , "location" ,
+            "temperature" , "temperature" ,
+            "time" , "time" ,
+            "createdAt" , "created_at");
+
+    private static final String SELECT_RECORDS = "SELECT device_name, location, temperature, time FROM temperature_records";
+    private static final String SELECT_HOUR_RECORDS = "SELECT time, temperature FROM temperature_records WHERE device_name = $1 AND time BETWEEN $2 AND $3";
+    private static final String SELECT_HOUR_CHUNKS = "SELECT reading_count, timestamps, temperatures FROM temperature_chunks "
+            + "WHERE device_name = $1 AND start_time <= $3 AND end_time >= $2";
+    private static final String SELECT_ROLLUP = "SELECT reading_count, temperature_sum FROM temperature_hourly_aggregates "
+            + "WHERE device_name = $1 AND bucket_start = $2";
+
+    private final DatabaseClient databaseClient;
+    private final int rawRetentionDays;
+
+    public ReactiveTemperatureRecordReader(DatabaseClient databaseClient ,
+                                           @Value("${retention.raw-days:90}") int rawRetentionDays) {
+        this.databaseClient = databaseClient;
+        this.rawRetentionDays = rawRetentionDays;
+    }
+
+    /**
+     * Streams a page of records, of every device or of one.
+     *
+     * @param deviceName the device to read, or null for all devices
+     * @param pageable   the page and its order, see {@code GeneralService.getPageableObject}
+     * @return the records of the page
+     */
+    public Flux<TemperatureRecordDTO> findPage(String deviceName , Pageable pageable) {
+        StringBuilder sql = new StringBuilder(SELECT_RECORDS);
+        if (deviceName != null) {
+            sql.append(" WHERE device_name = $1");
+        }
+        sql.append(" ORDER BY ").append(orderBy(pageable.getSort()))
+                .append(" LIMIT ").append(pageable.getPageSize())
+                .append(" OFFSET ").append(pageable.getOffset());
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        if (deviceName != null) {
+            spec = spec.bind(0 , deviceName);
+        }
+        return spec.map((row , metadata) -> {
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName(row.get("device_name" , String.class));
+            record.setLocation(row.get("location" , String.class));
+            record.setTemperature(row.get("temperature" , Double.class));
+            LocalDateTime time = row.get("time" , LocalDateTime.class);
+            record.setTime(time == null ? null : DateUtil.localDateTimeToString(time));
+            record.setActualTime(time);
+            return record;
+        }).all();
+    }
+
+    /**
+     * Averages the readings of a device within an hour, from any storage tier.
+     *
+     * @param deviceName the device to read
+     * @param date       the date in the format "yyyy-MM-dd"
+     * @param hour       the hour of the day (in 24-hour format)
+     * @return the average temperature, or Double.NaN if there are no readings
+     */
+    public Mono<Double> averageTemperature(String deviceName , String date , int hour) {
+        LocalDateTime start;
+        try {
+            start = LocalDate.parse(date).atTime(hour , 0);
+        } catch (DateTimeException e) {
+            return Mono.error(new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Date must be yyyy-MM-dd and hour 0-23"));
+        }
+        LocalDateTime end = start.plusHours(1);
+
+        Mono<List<RawReading>> rows = databaseClient.sql(SELECT_HOUR_RECORDS)
+                .bind(0 , deviceName).bind(1 , start).bind(2 , end)
+                .map((row , metadata) -> new RawReading(DateUtil.localDateTimeToEpochMilli(row.get("time" , LocalDateTime.class)) ,
+                        row.get("temperature" , Double.class)))
+                .all()
+                .collectList();
+
+        long startMillis = DateUtil.localDateTimeToEpochMilli(start);
+        long endMillis = DateUtil.localDateTimeToEpochMilli(end);
+        Mono<SortedMap<Long, Double>> compacted = databaseClient.sql(SELECT_HOUR_CHUNKS)
+                .bind(0 , deviceName).bind(1 , start).bind(2 , end)
+                .map((row , metadata) -> {
+                    int count = row.get("reading_count" , Integer.class);
+                    long[] times = TemperatureChunkCodec.decodeTimestamps(row.get("timestamps" , byte[].class) , count);
+                    double[] temperatures = TemperatureChunkCodec.decodeValues(row.get("temperatures" , byte[].class) , count);
+                    SortedMap<Long, Double> readings = new TreeMap<>();
+                    for (int i = 0; i < count; i++) {
+                        readings.put(times[i] , temperatures[i]);
+                    }
+                    return readings.subMap(startMillis , endMillis + 1);
+                })
+                .all()
+                .reduceWith(TreeMap::new , (all , chunk) -> {
+                    all.putAll(chunk);
+                    return all;
+                });
+
+        Mono<Optional<Rollup>> rollup = start.isBefore(LocalDate.now().minusDays(rawRetentionDays).atStartOfDay())
+                ? databaseClient.sql(SELECT_ROLLUP)
+                .bind(0 , deviceName).bind(1 , start)
+                .map((row , metadata) -> Optional.of(new Rollup(row.get("reading_count" , Long.class) , row.get("temperature_sum" , Double.class))))
+                .one()
+                .defaultIfEmpty(Optional.empty())
+                : Mono.just(Optional.empty());
+
+        return Mono.zip(rows , compacted , rollup).map(tiers -> average(tiers.getT1() , tiers.getT2() , tiers.getT3().orElse(null)));
+    }
+
+    /**
+     * Averages raw readings, compacted readings and an hourly rollup. A raw reading at the time
+     * of a compacted one is a retransmit not yet folded into its chunk, and is left out.
+     *
+     * @param rows      the raw readings
+     * @param compacted the compacted temperatures keyed by epoch millis
+     * @param rollup    the rollup of the hour, or null
+     * @return the average temperature, or Double.NaN if there are no readings
+     */
+    static double average(List<RawReading> rows , SortedMap<Long, Double> compacted , Rollup rollup) {
+        double sum = 0;
+        long count = 0;
+        for (double temperature : compacted.values()) {
+            sum += temperature;
+            count++;
+        }
+        for (RawReading row : rows) {
+            if (!compacted.containsKey(row.epochMillis())) {
+                sum += row.temperature();
+                count++;
+            }
+        }
+        if (rollup != null) {
+            sum += rollup.temperatureSum();
+            count += rollup.readingCount();
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    private static String orderBy(Sort sort) {
+        StringBuilder orderBy = new StringBuilder();
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Cannot sort by " + order.getProperty());
+            }
+            orderBy.append(orderBy.isEmpty() ? "" : ", ").append(column).append(order.isAscending() ? " ASC" : " DESC");
+        }
+        return orderBy.isEmpty() ? "created_at DESC" : orderBy.toString();
+    }
+
+    record RawReading(long epochMillis , double temperature) {
+    }
+
+    record Rollup(long readingCount , double temperatureSum) {
+    }
+
+}
@@ -0,0 +1,106 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes batches of validated readings with one multi-row insert each over R2DBC.
+ * <p>
+ * Readings already stored, or repeated within the batch, are skipped by the unique constraint
+ * on device name and time, so a retried batch stores nothing twice. Inserted and duplicate
+ * readings and the write latency are published under the names of the servlet application's
+ * writer, so both stacks can be compared on the same dashboards.
+ */
+@Component
+public class ReactiveTemperatureRecordWriter {
+
+    private static final String INSERT = "INSERT INTO temperature_records (device_name, location, temperature, time, created_at) VALUES ";
+    private static final String ON_CONFLICT = " ON CONFLICT (device_name, time) DO NOTHING";
+    private static final int COLUMNS = 5;
+
+    private final DatabaseClient databaseClient;
+
+    private final DistributionSummary batchSize;
+    private final Timer batchTimer;
+    private final Counter insertedReadings;
+    private final Counter duplicateReadings;
+
+    public ReactiveTemperatureRecordWriter(DatabaseClient databaseClient , MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.batchSize = DistributionSummary.builder("ingestion.writer.batch.size")
+                .description("Readings per batch written to the database")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("ingestion.writer.batch")
+                .description("Time to write a batch of readings")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.insertedReadings = Counter.builder("ingestion.writer.inserted")
+                .description("Readings inserted")
+                .register(meterRegistry);
+        this.duplicateReadings = Counter.builder("ingestion.writer.duplicates")
+                .description("Readings skipped as already stored")
+                .tag("source" , "constraint")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Inserts a batch of readings, skipping the ones already stored.
+     *
+     * @param readings the validated readings, at most 13107 (the bind parameter limit of a statement)
+     * @return the number of readings inserted, once the insert completed
+     */
+    public Mono<Long> write(List<PendingReading> readings) {
+        if (readings.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(insertSql(readings.size()));
+            LocalDateTime createdAt = LocalDateTime.now();
+            int index = 0;
+            for (PendingReading reading : readings) {
+                TemperatureRecordDTO record = reading.record();
+                spec = spec.bind(index++ , record.getDeviceName());
+                spec = record.getLocation() == null ? spec.bindNull(index++ , String.class) : spec.bind(index++ , record.getLocation());
+                spec = spec.bind(index++ , record.getTemperature());
+                spec = spec.bind(index++ , reading.time());
+                spec = spec.bind(index++ , createdAt);
+            }
+            return spec.fetch().rowsUpdated().doOnNext(inserted -> {
+                batchTimer.record(System.nanoTime() - started , TimeUnit.NANOSECONDS);
+                batchSize.record(readings.size());
+                insertedReadings.increment(inserted);
+                duplicateReadings.increment(readings.size() - inserted);
+            });
+        });
+    }
+
+    /**
+     * Builds the insert of {@code rows} readings, with {@code $n} placeholders.
+     */
+    static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + ON_CONFLICT.length() + rows * 32).append(INSERT);
+        int parameter = 1;
+        for (int row = 0; row < rows; row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < COLUMNS; column++) {
+                sql.append(column == 0 ? "$" : ", $").append(parameter++);
+            }
+            sql.append(')');
+        }
+        return sql.append(ON_CONFLICT).toString();
+    }
+
+}
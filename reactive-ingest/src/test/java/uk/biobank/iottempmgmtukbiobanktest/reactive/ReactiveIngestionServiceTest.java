@@ -0,0 +1,88 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.ReadingValidator;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ReactiveIngestionService}, verifying that a stream of readings is written
+ * in batches and reported as a single request.
+ */
+class ReactiveIngestionServiceTest {
+
+    /**
+     * Streams seven readings in batches of three, with a rejected record and missing readings of
+     * one device in different batches, and checks the batches written and the merged report.
+     */
+    @Test
+    void testProcessRecordsInBatches() {
+        List<Integer> written = new ArrayList<>();
+        ReactiveTemperatureRecordWriter writer = mock(ReactiveTemperatureRecordWriter.class);
+        when(writer.write(anyList())).thenAnswer(invocation -> {
+            List<PendingReading> batch = invocation.getArgument(0);
+            written.add(batch.size());
+            return Mono.just((long) batch.size());
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReadingValidator validator = new ReadingValidator(registry , -200 , 100 , 300 , 365);
+        ReactiveIngestionService service = new ReactiveIngestionService(validator , writer , registry , 3);
+
+        LocalDateTime time = LocalDateTime.now().withNano(0).minusHours(1);
+        List<TemperatureRecordDTO> records = List.of(
+                record("DEVICE-1" , 20.5 , time) ,
+                record("DEVICE-1" , null , time.plusMinutes(1)) ,
+                record("DEVICE-2" , 21.0 , time) ,
+                record("DEVICE-2" , 21.5 , time.plusMinutes(1)) ,
+                record("DEVICE-2" , 500.0 , time.plusMinutes(2)) ,
+                record("DEVICE-1" , null , time.plusMinutes(2)) ,
+                record("DEVICE-1" , 22.0 , time.plusMinutes(3)));
+
+        Map<String, String> report = service.processRecords(Flux.fromIterable(records)).block();
+
+        assertEquals(List.of(2 , 1 , 1) , written);
+        assertNotNull(report);
+        assertEquals(2 , report.size());
+        assertTrue(report.get("records[4]").startsWith("temperature:"));
+        assertEquals("Missing reading at " + records.get(1).getTime() + ", " + records.get(5).getTime() , report.get("DEVICE-1"));
+        assertEquals(7 , registry.get("ingestion.records.received").counter().count());
+        assertEquals(4 , registry.get("ingestion.records.accepted").counter().count());
+    }
+
+    /**
+     * Checks an empty stream is reported as empty without writing anything.
+     */
+    @Test
+    void testProcessRecordsEmpty() {
+        ReactiveTemperatureRecordWriter writer = mock(ReactiveTemperatureRecordWriter.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReactiveIngestionService service = new ReactiveIngestionService(new ReadingValidator(registry , -200 , 100 , 300 , 365) ,
+                writer , registry , 3);
+
+        assertEquals(Map.of() , service.processRecords(Flux.empty()).block());
+    }
+
+    private static TemperatureRecordDTO record(String deviceName , Double temperature , LocalDateTime time) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setLocation("FREEZER-ROOM");
+        record.setTemperature(temperature);
+        record.setTime(DateUtil.localDateTimeToString(time));
+        return record;
+    }
+
+}
@@ -0,0 +1,117 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.implementation.GeneralServiceImpl;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link ReactiveTemperatureRecordController}, using @WebFluxTest and
+ * {@link WebTestClient} with the ingestion service and the reader mocked.
+ */
+@WebFluxTest(ReactiveTemperatureRecordController.class)
+@Import({GeneralServiceImpl.class , ReactiveExceptionHandler.class})
+class ReactiveTemperatureRecordControllerTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockitoBean
+    private ReactiveIngestionService reactiveIngestionService;
+
+    @MockitoBean
+    private ReactiveTemperatureRecordReader reactiveTemperatureRecordReader;
+
+    /**
+     * Posts a JSON array and checks the report of the service is returned in a {@code Response}.
+     */
+    @Test
+    void testProcessRecords() {
+        when(reactiveIngestionService.processRecords(any())).thenAnswer(invocation -> {
+            Flux<TemperatureRecordDTO> records = invocation.getArgument(0);
+            return records.count().map(count -> Map.of("received" , String.valueOf(count)));
+        });
+
+        webTestClient.post().uri("/api/v1/temperatureRecord/processRecords")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"deviceName\":\"DEVICE-1\",\"temperature\":20.5,\"time\":\"2025-01-09T07:00:00\"},"
+                        + "{\"deviceName\":\"DEVICE-2\",\"temperature\":21.5,\"time\":\"2025-01-09T07:00:00\"}]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.responseCode").isEqualTo(200)
+                .jsonPath("$.data.received").isEqualTo("2");
+    }
+
+    /**
+     * Checks a malformed body is answered with a bad request {@code Response}.
+     */
+    @Test
+    void testProcessRecordsMalformedBody() {
+        when(reactiveIngestionService.processRecords(any())).thenAnswer(invocation -> {
+            Flux<TemperatureRecordDTO> records = invocation.getArgument(0);
+            return records.then(Mono.just(Map.of()));
+        });
+
+        webTestClient.post().uri("/api/v1/temperatureRecord/processRecords")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"deviceName\":")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.responseCode").isEqualTo(400);
+    }
+
+    /**
+     * Checks a page of records is streamed as newline-delimited JSON when asked for.
+     */
+    @Test
+    void testStreamRecordsAsNdjson() {
+        TemperatureRecordDTO first = new TemperatureRecordDTO();
+        first.setDeviceName("DEVICE-1");
+        TemperatureRecordDTO second = new TemperatureRecordDTO();
+        second.setDeviceName("DEVICE-2");
+        when(reactiveTemperatureRecordReader.findPage(isNull() , any())).thenReturn(Flux.just(first , second));
+
+        webTestClient.get().uri("/api/v1/temperatureRecord/all?page=1&size=20")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(TemperatureRecordDTO.class)
+                .isEqualTo(List.of(first , second));
+    }
+
+    /**
+     * Checks the errors of the reader are returned as a {@code Response} with their status.
+     */
+    @Test
+    void testAverageTemperatureBadDate() {
+        when(reactiveTemperatureRecordReader.averageTemperature(eq("DEVICE-1") , eq("bad") , eq(7)))
+                .thenReturn(Mono.error(new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Date must be yyyy-MM-dd and hour 0-23")));
+
+        webTestClient.get().uri("/api/v1/temperatureRecord/average-temperature?deviceName=DEVICE-1&date=bad&hour=7")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.responseMessage").isEqualTo("Date must be yyyy-MM-dd and hour 0-23");
+    }
+
+}
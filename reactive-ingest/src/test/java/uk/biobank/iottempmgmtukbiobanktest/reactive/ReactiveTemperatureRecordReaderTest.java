@@ -0,0 +1,34 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ReactiveTemperatureRecordReader}, verifying the hourly average over the
+ * storage tiers.
+ */
+class ReactiveTemperatureRecordReaderTest {
+
+    /**
+     * Checks raw rows already compacted are counted once, and the rollup is added to the readings.
+     */
+    @Test
+    void testAverageOverTiers() {
+        TreeMap<Long, Double> compacted = new TreeMap<>();
+        compacted.put(1_000L , 10.0);
+        compacted.put(2_000L , 20.0);
+        List<ReactiveTemperatureRecordReader.RawReading> rows = List.of(
+                new ReactiveTemperatureRecordReader.RawReading(2_000L , 20.0) ,
+                new ReactiveTemperatureRecordReader.RawReading(3_000L , 30.0));
+
+        assertEquals(20.0 , ReactiveTemperatureRecordReader.average(rows , compacted , null));
+        assertEquals(16.0 , ReactiveTemperatureRecordReader.average(rows , compacted ,
+                new ReactiveTemperatureRecordReader.Rollup(2 , 20.0)));
+        assertTrue(Double.isNaN(ReactiveTemperatureRecordReader.average(List.of() , new TreeMap<>() , null)));
+    }
+
+}
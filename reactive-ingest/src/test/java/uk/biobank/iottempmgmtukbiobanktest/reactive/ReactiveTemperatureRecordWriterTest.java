@@ -0,0 +1,22 @@
+package uk.biobank.iottempmgmtukbiobanktest.reactive;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ReactiveTemperatureRecordWriter}, verifying the multi-row insert.
+ */
+class ReactiveTemperatureRecordWriterTest {
+
+    /**
+     * Checks every row gets its own five placeholders, numbered across the statement.
+     */
+    @Test
+    void testInsertSql() {
+        assertEquals("INSERT INTO temperature_records (device_name, location, temperature, time, created_at) VALUES "
+                        + "($1, $2, $3, $4, $5), ($6, $7, $8, $9, $10) ON CONFLICT (device_name, time) DO NOTHING" ,
+                ReactiveTemperatureRecordWriter.insertSql(2));
+    }
+
+}
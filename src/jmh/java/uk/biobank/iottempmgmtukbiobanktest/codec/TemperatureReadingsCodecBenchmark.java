@@ -0,0 +1,104 @@
+package uk.biobank.iottempmgmtukbiobanktest.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JSON and the compact binary readings format for a gateway batch,
+ * covering serialization, deserialization (including the timestamp parse the
+ * ingestion path needs for JSON readings) and the size of each payload.
+ * <p>
+ * Payload sizes are printed once per trial, the CPU cost is the benchmark score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class TemperatureReadingsCodecBenchmark {
+
+    private static final TypeReference<List<TemperatureRecordDTO>> RECORD_LIST = new TypeReference<>() {
+    };
+
+    @Param({"100" , "1000"})
+    private int batchSize;
+
+    private ObjectMapper objectMapper;
+    private List<TemperatureRecordDTO> jsonRecords;
+    private List<TemperatureRecordDTO> binaryRecords;
+    private byte[] jsonPayload;
+    private byte[] binaryPayload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        jsonRecords = new ArrayList<>(batchSize);
+        binaryRecords = new ArrayList<>(batchSize);
+        LocalDateTime start = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        for (int i = 0; i < batchSize; i++) {
+            LocalDateTime time = start.plusMinutes(i / 20);
+
+            // gateways send the ISO time string in JSON ...
+            TemperatureRecordDTO jsonRecord = new TemperatureRecordDTO();
+            jsonRecord.setDeviceName("FREEZER-" + (i % 20));
+            jsonRecord.setLocation("BUILDING-1-ROOM-" + (i % 4));
+            jsonRecord.setTemperature(-79.8 + (i % 7) * 0.1);
+            jsonRecord.setTime(DateUtil.localDateTimeToString(time));
+            jsonRecords.add(jsonRecord);
+
+            // ... and epoch millis in the binary format
+            TemperatureRecordDTO binaryRecord = new TemperatureRecordDTO();
+            binaryRecord.setDeviceName(jsonRecord.getDeviceName());
+            binaryRecord.setLocation(jsonRecord.getLocation());
+            binaryRecord.setTemperature(jsonRecord.getTemperature());
+            binaryRecord.setActualTime(time);
+            binaryRecords.add(binaryRecord);
+        }
+
+        jsonPayload = objectMapper.writeValueAsBytes(jsonRecords);
+        binaryPayload = TemperatureReadingsCodec.encodeRecords(binaryRecords);
+        System.out.printf("%n%d readings: JSON %d bytes, binary %d bytes (%.1fx smaller)%n" ,
+                batchSize , jsonPayload.length , binaryPayload.length , (double) jsonPayload.length / binaryPayload.length);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws Exception {
+        return objectMapper.writeValueAsBytes(jsonRecords);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return TemperatureReadingsCodec.encodeRecords(binaryRecords);
+    }
+
+    @Benchmark
+    public void deserializeJson(Blackhole blackhole) throws Exception {
+        List<TemperatureRecordDTO> records = objectMapper.readValue(jsonPayload , RECORD_LIST);
+        for (TemperatureRecordDTO record : records) {
+            blackhole.consume(DateUtil.stringToLocalDateTime(record.getTime()));
+        }
+    }
+
+    @Benchmark
+    public void deserializeBinary(Blackhole blackhole) {
+        List<TemperatureRecordDTO> records = TemperatureReadingsCodec.decodeRecords(binaryPayload);
+        for (TemperatureRecordDTO record : records) {
+            blackhole.consume(record.getActualTime());
+        }
+    }
+
+}
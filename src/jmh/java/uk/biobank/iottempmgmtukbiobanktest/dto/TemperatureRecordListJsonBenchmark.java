@@ -0,0 +1,90 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON side of the record endpoints with the object mapper Spring MVC builds:
+ * serializing a page of records wrapped in a {@link Response}, as the list endpoints return it,
+ * and deserializing a {@code /processRecords} body into {@link TemperatureRecordDTO}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class TemperatureRecordListJsonBenchmark {
+
+    private static final TypeReference<List<TemperatureRecordDTO>> RECORD_LIST = new TypeReference<>() {
+    };
+
+    @Param({"10" , "100" , "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private Response page;
+    private byte[] requestBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        // a page as returned by the list endpoints, converted from stored entities
+        List<TemperatureRecordDTO> returned = new ArrayList<>(size);
+        // a batch as sent by gateways, without the actual time
+        List<TemperatureRecordDTO> submitted = new ArrayList<>(size);
+        LocalDateTime start = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        for (int i = 0; i < size; i++) {
+            TemperatureRecord entity = new TemperatureRecord();
+            entity.setDeviceName("FREEZER-" + (i % 20));
+            entity.setLocation("BUILDING-1-ROOM-" + (i % 4));
+            entity.setTemperature(-79.8 + (i % 7) * 0.1);
+            entity.setTime(start.plusSeconds(i * 3L));
+            returned.add(TemperatureRecord.getTemperatureRecordDTO(entity));
+
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName(entity.getDeviceName());
+            record.setLocation(entity.getLocation());
+            record.setTemperature(entity.getTemperature());
+            record.setTime(DateUtil.localDateTimeToString(entity.getTime()));
+            submitted.add(record);
+        }
+
+        TemperatureRecordListDTO list = new TemperatureRecordListDTO();
+        list.setTemperatureRecords(returned);
+        list.setPage(1);
+        list.setSize(size);
+        list.setTotalCount(size * 10);
+        list.setHasNextRecord(true);
+
+        page = new Response();
+        page.setResponseCode(ResponseCodeAndMessage.SUCCESSFUL.responseCode);
+        page.setResponseMessage(ResponseCodeAndMessage.SUCCESSFUL.responseMessage);
+        page.setData(list);
+
+        requestBody = objectMapper.writeValueAsBytes(submitted);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<TemperatureRecordDTO> deserializeBatch() throws Exception {
+        return objectMapper.readValue(requestBody , RECORD_LIST);
+    }
+
+}
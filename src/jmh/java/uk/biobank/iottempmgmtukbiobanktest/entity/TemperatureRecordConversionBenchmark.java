@@ -0,0 +1,67 @@
+package uk.biobank.iottempmgmtukbiobanktest.entity;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.TemperatureRecordWriter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversions every stored and every returned reading goes through: a pending reading
+ * into its insert row on the write path, and an entity into its DTO, time string included, on the read path.
+ * <p>
+ * Scores are per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class TemperatureRecordConversionBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private PendingReading[] readings;
+    private TemperatureRecord[] entities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        readings = new PendingReading[BATCH_SIZE];
+        entities = new TemperatureRecord[BATCH_SIZE];
+        LocalDateTime start = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName("FREEZER-" + (i % 20));
+            record.setLocation("BUILDING-1-ROOM-" + (i % 4));
+            record.setTemperature(-79.8 + (i % 7) * 0.1);
+            readings[i] = new PendingReading(record , start.plusSeconds(i * 3L));
+            entities[i] = new TemperatureRecord();
+            entities[i].setDeviceName(record.getDeviceName());
+            entities[i].setLocation(record.getLocation());
+            entities[i].setTemperature(record.getTemperature());
+            entities[i].setTime(readings[i].time());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void toInsertRow(Blackhole blackhole) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        for (PendingReading reading : readings) {
+            blackhole.consume(TemperatureRecordWriter.toInsertRow(reading , createdAt));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void getTemperatureRecordDTO(Blackhole blackhole) {
+        for (TemperatureRecord entity : entities) {
+            blackhole.consume(TemperatureRecord.getTemperatureRecordDTO(entity));
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.IsoTimestampParser;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many records per second the validation stage gets through for a JSON gateway
+ * batch, and the timestamp parse on its own against {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME}.
+ * <p>
+ * Scores are per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class ReadingValidatorBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private ReadingValidator validator;
+    private List<TemperatureRecordDTO> records;
+    private String[] times;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = new ReadingValidator(new SimpleMeterRegistry() , -200 , 100 , 300 , 365);
+
+        times = new String[BATCH_SIZE];
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            times[i] = DateUtil.localDateTimeToString(start.plusSeconds(i * 3L));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newBatch() {
+        // validation stores the parsed time on the record, every invocation needs fresh records
+        records = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName("FREEZER-" + (i % 20));
+            record.setLocation("BUILDING-1-ROOM-" + (i % 4));
+            record.setTemperature(-79.8 + (i % 7) * 0.1);
+            record.setTime(times[i]);
+            records.add(record);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public ReadingValidator.Result validate() {
+        return validator.validate(records);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void parseFast(Blackhole blackhole) {
+        for (String time : times) {
+            blackhole.consume(IsoTimestampParser.parse(time));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void parseFormatter(Blackhole blackhole) {
+        for (String time : times) {
+            blackhole.consume(LocalDateTime.parse(time , DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package uk.biobank.iottempmgmtukbiobanktest.lineprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the line protocol lines parsed per second on one core, reading a datagram of lines in
+ * place as {@link LineProtocolHandler} does, against splitting the same lines into strings.
+ * <p>
+ * The score is in lines per second, each invocation parsing {@value #LINES} lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+@Threads(1)
+public class LineProtocolParserBenchmark {
+
+    private static final int LINES = 1000;
+
+    @Param({"heap" , "direct"})
+    private String buffer;
+
+    private ByteBuf lines;
+    private LineProtocolParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        long time = 1_736_406_000_000_000_000L;
+        for (int i = 0; i < LINES; i++) {
+            builder.append("FREEZER-").append(i % 200)
+                    .append(",location=BUILDING-1-ROOM-").append(i % 8)
+                    .append(" temp=").append(-80 + (i % 50) * 0.1)
+                    .append(' ').append(time + (i / 200) * 60_000_000_000L)
+                    .append('\n');
+        }
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        lines = buffer.equals("direct") ? PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length).writeBytes(bytes) : Unpooled.wrappedBuffer(bytes);
+        parser = new LineProtocolParser(TimeUnit.NANOSECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lines.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseInPlace(Blackhole blackhole) {
+        ByteBuffer bytes = lines.nioBuffer();
+        int index = 0;
+        int end = lines.readableBytes();
+        while (index < end) {
+            int newline = lines.indexOf(index , end , (byte) '\n');
+            blackhole.consume(parser.parse(bytes , index , newline - index));
+            index = newline + 1;
+        }
+    }
+
+    /**
+     * The straightforward parse, decoding the datagram and splitting every line into strings.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseStrings(Blackhole blackhole) {
+        String decoded = lines.toString(StandardCharsets.UTF_8);
+        for (String line : decoded.split("\n")) {
+            String[] parts = line.split(" ");
+            String[] series = parts[0].split(",");
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName(series[0]);
+            for (int i = 1; i < series.length; i++) {
+                String[] tag = series[i].split("=");
+                if (tag[0].equals("location")) {
+                    record.setLocation(tag[1]);
+                }
+            }
+            for (String field : parts[1].split(",")) {
+                String[] pair = field.split("=");
+                if (pair[0].equals("temp")) {
+                    record.setTemperature(Double.parseDouble(pair[1]));
+                }
+            }
+            record.setActualTime(DateUtil.epochMilliToLocalDateTime(Long.parseLong(parts[2]) / 1_000_000));
+            blackhole.consume(record);
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package uk.biobank.iottempmgmtukbiobanktest.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.feed.ReadingFeed;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionLanes;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.ReadingValidator;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.TemperatureRecordWriter;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.journal.ReadingJournal;
+import uk.biobank.iottempmgmtukbiobanktest.service.implementation.TemperatureRecordServiceImpl;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code processRecords} for a JSON gateway batch, from validation to the hand-off to the
+ * ingestion lanes, with the journal disabled and a writer that stores nothing, so the score is the
+ * cost of the request thread and not of the database.
+ * <p>
+ * Scores are batches per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class ProcessRecordsBenchmark {
+
+    @Param({"100" , "1000"})
+    private int batchSize;
+
+    private IngestionLanes ingestionLanes;
+    private TemperatureRecordService temperatureRecordService;
+    private List<TemperatureRecordDTO> records;
+    private String[] times;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TemperatureRecordWriter writer = new TemperatureRecordWriter(null , null , null , meterRegistry) {
+            @Override
+            public List<PendingReading> write(List<PendingReading> batch) {
+                return batch;
+            }
+        };
+        ingestionLanes = new IngestionLanes(writer , 4 , 500 , 10000);
+        ingestionLanes.start();
+
+        ReadingJournal readingJournal = new ReadingJournal(ingestionLanes , false , "journal" , 64 , 32 , false);
+        temperatureRecordService = new TemperatureRecordServiceImpl(null , null , ingestionLanes , readingJournal , null , null , null ,
+                new ReadingValidator(meterRegistry , -200 , 100 , 300 , 365) , new ReadingFeed(ingestionLanes , meterRegistry) , meterRegistry);
+
+        times = new String[batchSize];
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < batchSize; i++) {
+            times[i] = DateUtil.localDateTimeToString(start.plusSeconds(i * 3L));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ingestionLanes.stop();
+    }
+
+    @Setup(Level.Invocation)
+    public void newBatch() {
+        // validation stores the parsed time on the record, every invocation needs fresh records
+        records = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName("FREEZER-" + (i % 20));
+            record.setLocation("BUILDING-1-ROOM-" + (i % 4));
+            record.setTemperature(-79.8 + (i % 7) * 0.1);
+            record.setTime(times[i]);
+            records.add(record);
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> processRecords() {
+        return temperatureRecordService.processRecords(records);
+    }
+
+}
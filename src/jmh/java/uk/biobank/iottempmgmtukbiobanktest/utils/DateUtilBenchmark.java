@@ -0,0 +1,74 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link DateUtil} conversions on the ingestion and query paths: parsing the time
+ * strings gateways send, formatting times for responses, and the epoch conversions of the binary format and the chunk codec.
+ * <p>
+ * Scores are per value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class DateUtilBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private String[] times;
+    private LocalDateTime[] dateTimes;
+    private long[] epochMillis;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        times = new String[BATCH_SIZE];
+        dateTimes = new LocalDateTime[BATCH_SIZE];
+        epochMillis = new long[BATCH_SIZE];
+        LocalDateTime start = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            dateTimes[i] = start.plusSeconds(i * 3L);
+            times[i] = DateUtil.localDateTimeToString(dateTimes[i]);
+            epochMillis[i] = DateUtil.localDateTimeToEpochMilli(dateTimes[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void stringToLocalDateTime(Blackhole blackhole) {
+        for (String time : times) {
+            blackhole.consume(DateUtil.stringToLocalDateTime(time));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void localDateTimeToString(Blackhole blackhole) {
+        for (LocalDateTime dateTime : dateTimes) {
+            blackhole.consume(DateUtil.localDateTimeToString(dateTime));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void localDateTimeToEpochMilli(Blackhole blackhole) {
+        for (LocalDateTime dateTime : dateTimes) {
+            blackhole.consume(DateUtil.localDateTimeToEpochMilli(dateTime));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void epochMilliToLocalDateTime(Blackhole blackhole) {
+        for (long millis : epochMillis) {
+            blackhole.consume(DateUtil.epochMilliToLocalDateTime(millis));
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Pageable;
+import org.springframework.util.ReflectionUtils;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.PageableRequestDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.implementation.GeneralServiceImpl;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request work of {@link GeneralService}: building the {@link Pageable} of every list
+ * call, with the defaults and with a size above {@code max-pull-size}, and wrapping a response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class GeneralServiceBenchmark {
+
+    private GeneralService generalService;
+    private PageableRequestDTO defaultRequest;
+    private PageableRequestDTO oversizedRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GeneralServiceImpl service = new GeneralServiceImpl();
+        Field maxPullSize = ReflectionUtils.findField(GeneralServiceImpl.class , "maxPullSize");
+        ReflectionUtils.makeAccessible(maxPullSize);
+        ReflectionUtils.setField(maxPullSize , service , 100);
+        generalService = service;
+
+        defaultRequest = new PageableRequestDTO();
+
+        oversizedRequest = new PageableRequestDTO();
+        oversizedRequest.setPage(3);
+        oversizedRequest.setSize(500);
+        oversizedRequest.setSortBy("time");
+        oversizedRequest.setSortDirection("asc");
+    }
+
+    @Benchmark
+    public Pageable getPageableObject() {
+        return generalService.getPageableObject(defaultRequest);
+    }
+
+    @Benchmark
+    public Pageable getPageableObjectOversized() {
+        return generalService.getPageableObject(oversizedRequest);
+    }
+
+    @Benchmark
+    public Response prepareSuccessResponse() {
+        return generalService.prepareSuccessResponse(defaultRequest);
+    }
+
+}
@@ -0,0 +1,292 @@
+package uk.biobank.iottempmgmtukbiobanktest.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a locally running instance with a simulated device fleet and reports what it sustained.
+ * <p>
+ * Gateways post the readings of their devices to {@code /processRecords} every batch interval, each
+ * batch with an idempotency key, while readers call the average and list endpoints at a fixed rate.
+ * After a warmup, request latencies and throughput are measured for the configured duration. The
+ * run then waits for the readings still queued in the instance to reach the database, and compares
+ * the rows gained with the distinct readings sent. The report is printed and written as JSON, and
+ * the same settings and seed replay the same fleet, so runs can be compared.
+ * <p>
+ * Simulated devices are named {@code LOADTEST-<n>}; delete them with
+ * {@code DELETE /api/v1/temperatureRecord/deviceName} or run against a scratch database.
+ */
+public final class FleetLoadTest {
+
+    private static final String API = "/api/v1/temperatureRecord";
+    private static final String COUNT_ROWS = "select (select count(*) from temperature_records where device_name like 'LOADTEST-%')"
+            + " + (select coalesce(sum(reading_count), 0) from temperature_chunks where device_name like 'LOADTEST-%')";
+
+    private final LoadTestConfig config;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+    private final AtomicLong measuredReadings = new AtomicLong();
+    private final AtomicLong retransmits = new AtomicLong();
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    private FleetLoadTest(LoadTestConfig config) {
+        this.config = config;
+        for (String endpoint : List.of("processRecords" , "average-temperature" , "all" , "deviceName")) {
+            latencies.put(endpoint , new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new FleetLoadTest(LoadTestConfig.parse(args)).run();
+    }
+
+    private void run() throws Exception {
+        Long rowsBefore = countRows();
+        long now = System.currentTimeMillis();
+
+        List<SimulatedGateway> gateways = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < Math.min(config.gateways() , config.devices()); i++) {
+            SimulatedGateway gateway = new SimulatedGateway(config , i , now);
+            gateways.add(gateway);
+            threads.add(Thread.ofVirtual().name("gateway-" + i).start(() -> runGateway(gateway)));
+        }
+        for (int i = 0; config.readRate() > 0 && i < config.readers(); i++) {
+            long seed = config.seed() + 1_000_000 + i;
+            threads.add(Thread.ofVirtual().name("reader-" + i).start(() -> runReader(new SplittableRandom(seed))));
+        }
+        System.out.printf("Simulating %d devices through %d gateways, %.1f readings/s, against %s%n" , config.devices() , gateways.size() ,
+                config.devices() * 1000.0 / config.intervalMs() , config.baseUrl());
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.warmupSeconds()));
+        measuring = true;
+        long measureStart = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.durationSeconds()));
+        measuring = false;
+        double measuredSeconds = (System.nanoTime() - measureStart) / 1e9;
+
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long expectedRows = gateways.stream().mapToLong(SimulatedGateway::getExpectedRows).sum();
+        long drainStart = System.nanoTime();
+        Long rowsAfter = awaitRows(rowsBefore , expectedRows);
+        double drainSeconds = (System.nanoTime() - drainStart) / 1e9;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config" , config.withoutPassword());
+        report.put("measuredSeconds" , LatencyRecorder.round(measuredSeconds));
+        report.put("readingsPerSecond" , LatencyRecorder.round(measuredReadings.get() / measuredSeconds));
+
+        Map<String, Object> fleet = new LinkedHashMap<>();
+        fleet.put("generated" , gateways.stream().mapToLong(SimulatedGateway::getGenerated).sum());
+        fleet.put("withoutTemperature" , gateways.stream().mapToLong(SimulatedGateway::getMissing).sum());
+        fleet.put("duplicated" , gateways.stream().mapToLong(SimulatedGateway::getDuplicated).sum());
+        fleet.put("retransmittedBatches" , retransmits.get());
+        fleet.put("expectedRows" , expectedRows);
+        report.put("fleet" , fleet);
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        latencies.forEach((endpoint , recorder) -> endpoints.put(endpoint , recorder.summary(measuredSeconds)));
+        report.put("endpoints" , endpoints);
+
+        Map<String, Object> database = new LinkedHashMap<>();
+        database.put("rowsBefore" , rowsBefore);
+        database.put("rowsAfter" , rowsAfter);
+        database.put("rowsStored" , rowsBefore == null || rowsAfter == null ? null : rowsAfter - rowsBefore);
+        database.put("drainSeconds" , LatencyRecorder.round(drainSeconds));
+        report.put("database" , database);
+
+        Path reportPath = Path.of(config.report());
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportPath.toFile() , report);
+        print(report);
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+    }
+
+    private void runGateway(SimulatedGateway gateway) {
+        long next = System.currentTimeMillis();
+        while (running) {
+            next += config.batchIntervalMs();
+            sleepUntil(next);
+
+            List<TemperatureRecordDTO> batch = gateway.collect(System.currentTimeMillis());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            byte[] body;
+            try {
+                body = objectMapper.writeValueAsBytes(batch);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            String idempotencyKey = UUID.randomUUID().toString();
+            post(body , idempotencyKey);
+            if (measuring) {
+                measuredReadings.addAndGet(batch.size());
+            }
+            if (gateway.retransmit()) {
+                retransmits.incrementAndGet();
+                post(body , idempotencyKey);
+            }
+        }
+    }
+
+    private void runReader(SplittableRandom random) {
+        long pauseNanos = (long) (TimeUnit.SECONDS.toNanos(config.readers()) / config.readRate());
+        long next = System.nanoTime();
+        int call = 0;
+        while (running) {
+            next += pauseNanos;
+            String deviceName = String.format("LOADTEST-%05d" , random.nextInt(config.devices()));
+            switch (call++ % 3) {
+                case 0 -> {
+                    LocalDateTime hour = LocalDateTime.now().minusHours(random.nextInt(2));
+                    get("average-temperature" , "/average-temperature?deviceName=" + deviceName + "&date=" + hour.toLocalDate()
+                            + "&hour=" + hour.getHour());
+                }
+                case 1 -> get("all" , "/all?page=1&size=20");
+                default -> get("deviceName" , "/deviceName?deviceName=" + URLEncoder.encode(deviceName , StandardCharsets.UTF_8) + "&page=1&size=20");
+            }
+            parkUntil(next);
+        }
+    }
+
+    private void post(byte[] body , String idempotencyKey) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(config.baseUrl() + API + "/processRecords"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type" , "application/json")
+                .header("Idempotency-Key" , idempotencyKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        send("processRecords" , request);
+    }
+
+    private void get(String endpoint , String pathAndQuery) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(config.baseUrl() + API + pathAndQuery))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        send(endpoint , request);
+    }
+
+    private void send(String endpoint , HttpRequest request) {
+        long started = System.nanoTime();
+        boolean success;
+        try {
+            HttpResponse<Void> response = httpClient.send(request , HttpResponse.BodyHandlers.discarding());
+            success = response.statusCode() < 400;
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (measuring) {
+            latencies.get(endpoint).record(System.nanoTime() - started , success);
+        }
+    }
+
+    /**
+     * Polls the row count until the expected rows arrived, or stopped arriving for the drain timeout.
+     */
+    private Long awaitRows(Long rowsBefore , long expectedRows) throws InterruptedException {
+        if (rowsBefore == null) {
+            return null;
+        }
+        Long rows = countRows();
+        long lastProgress = System.nanoTime();
+        while (rows != null && rows - rowsBefore < expectedRows
+                && System.nanoTime() - lastProgress < TimeUnit.SECONDS.toNanos(config.drainTimeoutSeconds())) {
+            Thread.sleep(1000);
+            Long previous = rows;
+            rows = countRows();
+            if (rows != null && rows > previous) {
+                lastProgress = System.nanoTime();
+            }
+        }
+        return rows;
+    }
+
+    private Long countRows() {
+        try (Connection connection = DriverManager.getConnection(config.jdbcUrl() , config.dbUser() , config.dbPassword());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(COUNT_ROWS)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            System.err.println("Row count unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void sleepUntil(long epochMillis) {
+        long delay = epochMillis - System.currentTimeMillis();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void parkUntil(long nanoTime) {
+        long delay;
+        while ((delay = nanoTime - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> report) {
+        System.out.printf("%nReadings posted: %s/s over %s s%n" , report.get("readingsPerSecond") , report.get("measuredSeconds"));
+        System.out.printf("%-20s %10s %8s %10s %9s %9s %9s %9s %9s%n" , "endpoint" , "requests" , "errors" , "req/s" , "p50 ms" , "p90 ms" ,
+                "p99 ms" , "p99.9 ms" , "max ms");
+        ((Map<String, Map<String, Object>>) report.get("endpoints")).forEach((endpoint , summary) ->
+                System.out.printf("%-20s %10s %8s %10s %9s %9s %9s %9s %9s%n" , endpoint , summary.get("requests") , summary.get("errors") ,
+                        summary.get("requestsPerSecond") , summary.get("p50Ms") , summary.get("p90Ms") , summary.get("p99Ms") ,
+                        summary.get("p999Ms") , summary.get("maxMs")));
+        System.out.println("Fleet: " + report.get("fleet"));
+        System.out.println("Database: " + report.get("database"));
+    }
+
+}
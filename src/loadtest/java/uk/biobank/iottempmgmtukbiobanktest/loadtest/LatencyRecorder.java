@@ -0,0 +1,65 @@
+package uk.biobank.iottempmgmtukbiobanktest.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the latencies and outcomes of the calls to one endpoint.
+ * Every latency is kept, so percentiles are exact, which suits the run lengths of a load test.
+ */
+final class LatencyRecorder {
+
+    private long[] nanos = new long[1024];
+    private int count;
+    private long errors;
+
+    synchronized void record(long latencyNanos , boolean success) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos , count * 2);
+        }
+        nanos[count++] = latencyNanos;
+        if (!success) {
+            errors++;
+        }
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    /**
+     * Summarizes the recorded calls.
+     *
+     * @param seconds the measured seconds, for the rate
+     * @return the count, errors, rate and latency percentiles in milliseconds
+     */
+    synchronized Map<String, Object> summary(double seconds) {
+        long[] sorted = Arrays.copyOf(nanos , count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests" , count);
+        summary.put("errors" , errors);
+        summary.put("requestsPerSecond" , round(count / seconds));
+        summary.put("p50Ms" , percentile(sorted , 0.50));
+        summary.put("p90Ms" , percentile(sorted , 0.90));
+        summary.put("p99Ms" , percentile(sorted , 0.99));
+        summary.put("p999Ms" , percentile(sorted , 0.999));
+        summary.put("maxMs" , count == 0 ? 0 : round(sorted[count - 1] / 1e6));
+        return summary;
+    }
+
+    private static double percentile(long[] sorted , double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return round(sorted[Math.max(0 , index)] / 1e6);
+    }
+
+    static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+}
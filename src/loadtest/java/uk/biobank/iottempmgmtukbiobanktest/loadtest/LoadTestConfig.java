@@ -0,0 +1,104 @@
+package uk.biobank.iottempmgmtukbiobanktest.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settings of a load test run, read from {@code key=value} arguments.
+ *
+ * @param baseUrl             the running instance, e.g. {@code http://localhost:8080}
+ * @param devices             the number of simulated devices
+ * @param gateways            the number of gateways the devices report through, one HTTP client each
+ * @param intervalMs          the sampling interval of every device
+ * @param jitterMs            the maximum deviation of a reading time from its schedule
+ * @param batchIntervalMs     how often a gateway posts the readings it has collected
+ * @param duplicateRate       the share of readings sent twice in the same batch
+ * @param retransmitRate      the share of batches sent again with the same idempotency key, as after a lost response
+ * @param nullRate            the share of readings without a temperature
+ * @param readers             the number of threads calling the read endpoints
+ * @param readRate            the read calls per second across all readers, 0 for none
+ * @param warmupSeconds       how long to run before measuring
+ * @param durationSeconds     how long to measure
+ * @param drainTimeoutSeconds how long to wait for queued readings to reach the database after the run
+ * @param seed                the random seed, the same seed replays the same fleet
+ * @param jdbcUrl             the database of the instance, for the row counts
+ * @param dbUser              the database user
+ * @param dbPassword          the database password
+ * @param report              the file the JSON report is written to
+ */
+record LoadTestConfig(String baseUrl , int devices , int gateways , long intervalMs , long jitterMs , long batchIntervalMs ,
+                      double duplicateRate , double retransmitRate , double nullRate , int readers , double readRate ,
+                      int warmupSeconds , int durationSeconds , int drainTimeoutSeconds , long seed ,
+                      String jdbcUrl , String dbUser , String dbPassword , String report) {
+
+    private static final Set<String> KEYS = Set.of("baseUrl" , "devices" , "gateways" , "intervalMs" , "jitterMs" ,
+            "batchIntervalMs" , "duplicateRate" , "retransmitRate" , "nullRate" , "readers" , "readRate" , "warmupSeconds" ,
+            "durationSeconds" , "drainTimeoutSeconds" , "seed" , "jdbcUrl" , "dbUser" , "dbPassword" , "report");
+
+    /**
+     * Parses {@code key=value} arguments, falling back to the defaults, and to the
+     * {@code POSTGRES_*} environment variables or the local compose database for the connection.
+     *
+     * @param args the arguments
+     * @return the settings
+     */
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            values.put(arg.substring(0 , separator) , arg.substring(separator + 1));
+        }
+
+        String database = env("POSTGRES_DB" , "mydatabase");
+        LoadTestConfig config = new LoadTestConfig(
+                values.getOrDefault("baseUrl" , "http://localhost:8080") ,
+                Integer.parseInt(values.getOrDefault("devices" , "1000")) ,
+                Integer.parseInt(values.getOrDefault("gateways" , "50")) ,
+                Long.parseLong(values.getOrDefault("intervalMs" , "1000")) ,
+                Long.parseLong(values.getOrDefault("jitterMs" , "100")) ,
+                Long.parseLong(values.getOrDefault("batchIntervalMs" , "1000")) ,
+                Double.parseDouble(values.getOrDefault("duplicateRate" , "0.01")) ,
+                Double.parseDouble(values.getOrDefault("retransmitRate" , "0.01")) ,
+                Double.parseDouble(values.getOrDefault("nullRate" , "0.005")) ,
+                Integer.parseInt(values.getOrDefault("readers" , "4")) ,
+                Double.parseDouble(values.getOrDefault("readRate" , "20")) ,
+                Integer.parseInt(values.getOrDefault("warmupSeconds" , "10")) ,
+                Integer.parseInt(values.getOrDefault("durationSeconds" , "60")) ,
+                Integer.parseInt(values.getOrDefault("drainTimeoutSeconds" , "120")) ,
+                Long.parseLong(values.getOrDefault("seed" , "42")) ,
+                values.getOrDefault("jdbcUrl" , "jdbc:postgresql://" + env("POSTGRES_HOST" , "localhost") + ":5432/" + database) ,
+                values.getOrDefault("dbUser" , env("POSTGRES_USER" , "myuser")) ,
+                values.getOrDefault("dbPassword" , env("POSTGRES_PASSWORD" , "secret")) ,
+                values.getOrDefault("report" , "build/reports/loadtest/results.json"));
+
+        values.keySet().removeAll(KEYS);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown settings " + values.keySet());
+        }
+        if (config.devices < 1 || config.gateways < 1 || config.intervalMs < 1 || config.batchIntervalMs < 1) {
+            throw new IllegalArgumentException("devices, gateways, intervalMs and batchIntervalMs must be positive");
+        }
+        if (config.jitterMs * 2 >= config.intervalMs) {
+            throw new IllegalArgumentException("jitterMs must be under half of intervalMs, readings of a device would swap");
+        }
+        return config;
+    }
+
+    /**
+     * Returns these settings with the database password masked, for the report.
+     */
+    LoadTestConfig withoutPassword() {
+        return new LoadTestConfig(baseUrl , devices , gateways , intervalMs , jitterMs , batchIntervalMs , duplicateRate , retransmitRate ,
+                nullRate , readers , readRate , warmupSeconds , durationSeconds , drainTimeoutSeconds , seed , jdbcUrl , dbUser , "***" , report);
+    }
+
+    private static String env(String name , String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+}
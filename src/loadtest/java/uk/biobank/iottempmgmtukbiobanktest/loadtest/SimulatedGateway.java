@@ -0,0 +1,154 @@
+package uk.biobank.iottempmgmtukbiobanktest.loadtest;
+
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A gateway collecting the readings of its share of the simulated fleet.
+ * <p>
+ * Every device samples on its own schedule, offset at random within the interval, with each reading
+ * time off its schedule by up to the configured jitter. Temperatures follow a random walk around a
+ * freezer or fridge setpoint. A share of the readings is sent without a temperature, and a share is
+ * repeated within the batch, as gateways do when a device resends.
+ * Not thread-safe, every gateway runs on its own thread.
+ */
+final class SimulatedGateway {
+
+    private final LoadTestConfig config;
+    private final SplittableRandom random;
+    private final List<Device> devices = new ArrayList<>();
+
+    private long generated;
+    private long missing;
+    private long duplicated;
+    private long expectedRows;
+
+    /**
+     * @param config the run settings
+     * @param index  the index of the gateway, devices are dealt to gateways round robin
+     * @param now    the epoch millis the schedules start from
+     */
+    SimulatedGateway(LoadTestConfig config , int index , long now) {
+        this.config = config;
+        this.random = new SplittableRandom(config.seed() + index);
+        for (int device = index; device < config.devices(); device += config.gateways()) {
+            // a fifth of the fleet are -80 freezers, the rest +4 fridges
+            double setpoint = device % 5 == 0 ? -80 : 4;
+            devices.add(new Device(String.format("LOADTEST-%05d" , device) , "BUILDING-" + (device % 7) + "-ROOM-" + (device % 31) ,
+                    setpoint , now + random.nextLong(config.intervalMs())));
+        }
+    }
+
+    /**
+     * Collects the readings due up to {@code now}.
+     *
+     * @param now the current epoch millis
+     * @return the batch to post, possibly empty
+     */
+    List<TemperatureRecordDTO> collect(long now) {
+        List<TemperatureRecordDTO> batch = new ArrayList<>();
+        for (Device device : devices) {
+            while (device.nextDue <= now) {
+                long jitter = config.jitterMs() == 0 ? 0 : random.nextLong(-config.jitterMs() , config.jitterMs() + 1);
+                TemperatureRecordDTO reading = device.read(device.nextDue + jitter);
+                device.nextDue += config.intervalMs();
+                generated++;
+
+                if (random.nextDouble() < config.nullRate()) {
+                    reading.setTemperature(null);
+                    missing++;
+                } else {
+                    expectedRows++;
+                }
+                batch.add(reading);
+
+                if (random.nextDouble() < config.duplicateRate()) {
+                    batch.add(copy(reading));
+                    duplicated++;
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns whether a posted batch should be sent again, as after a lost response.
+     */
+    boolean retransmit() {
+        return random.nextDouble() < config.retransmitRate();
+    }
+
+    String randomDeviceName() {
+        return devices.get(random.nextInt(devices.size())).name;
+    }
+
+    int deviceCount() {
+        return devices.size();
+    }
+
+    long getGenerated() {
+        return generated;
+    }
+
+    long getMissing() {
+        return missing;
+    }
+
+    long getDuplicated() {
+        return duplicated;
+    }
+
+    /**
+     * Returns the number of distinct readings with a temperature, the rows the database should gain.
+     */
+    long getExpectedRows() {
+        return expectedRows;
+    }
+
+    private static TemperatureRecordDTO copy(TemperatureRecordDTO reading) {
+        TemperatureRecordDTO copy = new TemperatureRecordDTO();
+        copy.setDeviceName(reading.getDeviceName());
+        copy.setLocation(reading.getLocation());
+        copy.setTemperature(reading.getTemperature());
+        copy.setTime(reading.getTime());
+        return copy;
+    }
+
+    private final class Device {
+
+        private final String name;
+        private final String location;
+        private final double setpoint;
+        private double temperature;
+        private long nextDue;
+
+        Device(String name , String location , double setpoint , long nextDue) {
+            this.name = name;
+            this.location = location;
+            this.setpoint = setpoint;
+            this.temperature = setpoint;
+            this.nextDue = nextDue;
+        }
+
+        TemperatureRecordDTO read(long epochMillis) {
+            // drifts at random, pulled back towards the setpoint
+            temperature += (setpoint - temperature) * 0.1 + random.nextDouble(-0.25 , 0.25);
+
+            TemperatureRecordDTO reading = new TemperatureRecordDTO();
+            reading.setDeviceName(name);
+            reading.setLocation(location);
+            reading.setTemperature(Math.round(temperature * 100) / 100.0);
+            reading.setTime(DateUtil.localDateTimeToString(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis) , ZoneId.systemDefault())));
+            return reading;
+        }
+
+    }
+
+}
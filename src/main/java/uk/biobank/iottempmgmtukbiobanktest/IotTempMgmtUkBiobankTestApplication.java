@@ -3,17 +3,20 @@ package uk.biobank.iottempmgmtukbiobanktest;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for the IoT Temperature Management UK Biobank Test Application.
  * This class serves as the entry point to the Spring Boot application.
- * It also enables caching support within the application context.
+ * It also enables caching and scheduled tasks within the application context.
  * <p>
  * Annotations:
  * - @SpringBootApplication: Marks this class as the primary configuration class and entry point for the application.
  * - @EnableCaching: Enables caching functionality for performance optimization.
+ * - @EnableScheduling: Enables scheduled background tasks such as journal checkpoints.
  */
 @EnableCaching
+@EnableScheduling
 @SpringBootApplication
 public class IotTempMgmtUkBiobankTestApplication {
 
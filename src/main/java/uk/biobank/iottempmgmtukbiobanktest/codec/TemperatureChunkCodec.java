@@ -0,0 +1,273 @@
+package uk.biobank.iottempmgmtukbiobanktest.codec;
+
+import java.util.Arrays;
+
+/**
+ * Gorilla-style column encodings used by the cold-storage chunks of a device-day.
+ * <p>
+ * Timestamps (epoch milliseconds, ascending) are written as the first value, the first delta and then
+ * the delta-of-delta of every following value in a variable-width bucket:
+ * - {@code 0} for a delta-of-delta of zero, the common case for regularly sampled devices,
+ * - {@code 10}, {@code 110} and {@code 1110} followed by 7, 9 and 12 bits for small jitter,
+ * - {@code 1111} followed by the raw 64-bit value otherwise.
+ * <p>
+ * Temperatures are written as the first value followed by the XOR of every value with its predecessor:
+ * - {@code 0} if the value did not change,
+ * - {@code 10} followed by the meaningful bits if they fit in the window of the previous XOR,
+ * - {@code 11} followed by 5 bits of leading zeros, 6 bits of meaningful bit count and the meaningful bits.
+ * <p>
+ * Neither encoding stores the number of values, callers keep it alongside the columns.
+ */
+public final class TemperatureChunkCodec {
+
+    private TemperatureChunkCodec() {
+    } // Prevent instantiation
+
+    /**
+     * Encodes ascending timestamps with delta-of-delta compression.
+     *
+     * @param epochMillis the timestamps in epoch milliseconds, ascending
+     * @return the encoded column
+     */
+    public static byte[] encodeTimestamps(long[] epochMillis) {
+        BitWriter writer = new BitWriter(16 + epochMillis.length / 4);
+        if (epochMillis.length == 0) {
+            return writer.toByteArray();
+        }
+
+        writer.write(epochMillis[0] , 64);
+        if (epochMillis.length == 1) {
+            return writer.toByteArray();
+        }
+
+        long previousDelta = epochMillis[1] - epochMillis[0];
+        writer.write(previousDelta , 64);
+        for (int i = 2; i < epochMillis.length; i++) {
+            long delta = epochMillis[i] - epochMillis[i - 1];
+            long deltaOfDelta = delta - previousDelta;
+            previousDelta = delta;
+
+            if (deltaOfDelta == 0) {
+                writer.writeBit(false);
+            } else if (fits(deltaOfDelta , 7)) {
+                writer.write(0b10 , 2);
+                writer.write(deltaOfDelta , 7);
+            } else if (fits(deltaOfDelta , 9)) {
+                writer.write(0b110 , 3);
+                writer.write(deltaOfDelta , 9);
+            } else if (fits(deltaOfDelta , 12)) {
+                writer.write(0b1110 , 4);
+                writer.write(deltaOfDelta , 12);
+            } else {
+                writer.write(0b1111 , 4);
+                writer.write(deltaOfDelta , 64);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a column produced by {@link #encodeTimestamps(long[])}.
+     *
+     * @param bytes the encoded column
+     * @param count the number of encoded timestamps
+     * @return the timestamps in epoch milliseconds
+     * @throws IllegalArgumentException if the column is shorter than expected
+     */
+    public static long[] decodeTimestamps(byte[] bytes , int count) {
+        long[] epochMillis = new long[count];
+        if (count == 0) {
+            return epochMillis;
+        }
+
+        BitReader reader = new BitReader(bytes);
+        epochMillis[0] = reader.read(64);
+        if (count == 1) {
+            return epochMillis;
+        }
+
+        long delta = reader.read(64);
+        epochMillis[1] = epochMillis[0] + delta;
+        for (int i = 2; i < count; i++) {
+            long deltaOfDelta;
+            if (!reader.readBit()) {
+                deltaOfDelta = 0;
+            } else if (!reader.readBit()) {
+                deltaOfDelta = signExtend(reader.read(7) , 7);
+            } else if (!reader.readBit()) {
+                deltaOfDelta = signExtend(reader.read(9) , 9);
+            } else if (!reader.readBit()) {
+                deltaOfDelta = signExtend(reader.read(12) , 12);
+            } else {
+                deltaOfDelta = reader.read(64);
+            }
+            delta += deltaOfDelta;
+            epochMillis[i] = epochMillis[i - 1] + delta;
+        }
+        return epochMillis;
+    }
+
+    /**
+     * Encodes values with XOR compression.
+     *
+     * @param values the values to encode
+     * @return the encoded column
+     */
+    public static byte[] encodeValues(double[] values) {
+        BitWriter writer = new BitWriter(16 + values.length);
+        if (values.length == 0) {
+            return writer.toByteArray();
+        }
+
+        long previous = Double.doubleToRawLongBits(values[0]);
+        writer.write(previous , 64);
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+
+        for (int i = 1; i < values.length; i++) {
+            long current = Double.doubleToRawLongBits(values[i]);
+            long xor = current ^ previous;
+            previous = current;
+
+            if (xor == 0) {
+                writer.writeBit(false);
+                continue;
+            }
+            writer.writeBit(true);
+
+            int leading = Math.min(Long.numberOfLeadingZeros(xor) , 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading != Integer.MAX_VALUE && leading >= previousLeading && trailing >= previousTrailing) {
+                writer.writeBit(false);
+                writer.write(xor >>> previousTrailing , 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                writer.writeBit(true);
+                writer.write(leading , 5);
+                // 64 meaningful bits are stored as 0, a XOR is never zero here
+                writer.write(meaningful & 63 , 6);
+                writer.write(xor >>> trailing , meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a column produced by {@link #encodeValues(double[])}.
+     *
+     * @param bytes the encoded column
+     * @param count the number of encoded values
+     * @return the values
+     * @throws IllegalArgumentException if the column is shorter than expected
+     */
+    public static double[] decodeValues(byte[] bytes , int count) {
+        double[] values = new double[count];
+        if (count == 0) {
+            return values;
+        }
+
+        BitReader reader = new BitReader(bytes);
+        long previous = reader.read(64);
+        values[0] = Double.longBitsToDouble(previous);
+        int leading = 0;
+        int trailing = 0;
+
+        for (int i = 1; i < count; i++) {
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.read(5);
+                    int meaningful = (int) reader.read(6);
+                    if (meaningful == 0) {
+                        meaningful = 64;
+                    }
+                    trailing = 64 - leading - meaningful;
+                }
+                long xor = reader.read(64 - leading - trailing) << trailing;
+                previous ^= xor;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+
+    private static boolean fits(long value , int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    private static long signExtend(long value , int bits) {
+        int shift = 64 - bits;
+        return (value << shift) >> shift;
+    }
+
+    private static final class BitWriter {
+
+        private byte[] buffer;
+        private long bitPosition;
+
+        BitWriter(int initialCapacity) {
+            this.buffer = new byte[Math.max(initialCapacity , 16)];
+        }
+
+        void writeBit(boolean bit) {
+            write(bit ? 1 : 0 , 1);
+        }
+
+        /**
+         * Writes the lowest {@code bits} bits of the value, most significant first.
+         */
+        void write(long value , int bits) {
+            ensureCapacity(bits);
+            for (int i = bits - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    int index = (int) (bitPosition >>> 3);
+                    buffer[index] |= (byte) (0x80 >>> (bitPosition & 7));
+                }
+                bitPosition++;
+            }
+        }
+
+        private void ensureCapacity(int bits) {
+            long required = (bitPosition + bits + 7) >>> 3;
+            if (required > buffer.length) {
+                buffer = Arrays.copyOf(buffer , (int) Math.max(buffer.length * 2L , required));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer , (int) ((bitPosition + 7) >>> 3));
+        }
+
+    }
+
+    private static final class BitReader {
+
+        private final byte[] buffer;
+        private long bitPosition;
+
+        BitReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean readBit() {
+            return read(1) != 0;
+        }
+
+        long read(int bits) {
+            if (bitPosition + bits > (long) buffer.length << 3) {
+                throw new IllegalArgumentException("Truncated chunk column");
+            }
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                int bit = (buffer[(int) (bitPosition >>> 3)] >>> (7 - (bitPosition & 7))) & 1;
+                value = (value << 1) | bit;
+                bitPosition++;
+            }
+            return value;
+        }
+
+    }
+
+}
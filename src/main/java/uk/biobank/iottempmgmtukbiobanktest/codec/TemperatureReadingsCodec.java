@@ -0,0 +1,433 @@
+package uk.biobank.iottempmgmtukbiobanktest.codec;
+
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordListDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of temperature readings, used as an alternative to JSON by
+ * gateways on constrained uplinks.
+ * <p>
+ * Every frame starts with the magic bytes {@code 'B' 'R'}, a version byte and a frame kind.
+ * A block of readings is written as a dictionary of the distinct device names and locations
+ * it references, followed by one entry per reading:
+ * - a flags byte telling which of device name, location, time and temperature are present,
+ * - the dictionary indices of the device name and location as varints,
+ * - the reading time as epoch milliseconds (UTC), zig-zag varint encoded as a delta from the previous reading,
+ * - the temperature as a 32-bit float.
+ * <p>
+ * Decoded readings carry their time in {@link TemperatureRecordDTO#getActualTime()} only, so the
+ * ingestion path never has to parse an ISO timestamp string for them. Temperatures are rounded
+ * to four decimal places on decode to hide the float widening noise.
+ */
+public final class TemperatureReadingsCodec {
+
+    private static final byte MAGIC_0 = 'B';
+    private static final byte MAGIC_1 = 'R';
+    private static final byte VERSION = 1;
+
+    private static final byte KIND_READINGS = 1;
+    private static final byte KIND_RESPONSE = 2;
+
+    private static final int HAS_DEVICE = 1;
+    private static final int HAS_LOCATION = 1 << 1;
+    private static final int HAS_TIME = 1 << 2;
+    private static final int HAS_TEMPERATURE = 1 << 3;
+
+    private static final byte PAYLOAD_NONE = 0;
+    private static final byte PAYLOAD_RECORD_PAGE = 1;
+    private static final byte PAYLOAD_STRING_MAP = 2;
+    private static final byte PAYLOAD_DOUBLE = 3;
+    private static final byte PAYLOAD_STRING = 4;
+
+    private TemperatureReadingsCodec() {
+    } // Prevent instantiation
+
+    /**
+     * Encodes a list of readings into a readings frame.
+     *
+     * @param records the readings to encode
+     * @return the encoded frame
+     */
+    public static byte[] encodeRecords(List<TemperatureRecordDTO> records) {
+        Writer writer = new Writer(16 + records.size() * 12);
+        writeHeader(writer , KIND_READINGS);
+        writeRecords(writer , records);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a readings frame produced by {@link #encodeRecords(List)}.
+     *
+     * @param bytes the encoded frame
+     * @return the decoded readings
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static List<TemperatureRecordDTO> decodeRecords(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        readHeader(reader , KIND_READINGS);
+        List<TemperatureRecordDTO> records = readRecords(reader);
+        reader.expectEnd();
+        return records;
+    }
+
+    /**
+     * Encodes a standard API {@link Response}. The payload may be empty, a page of temperature
+     * records, a map of strings (e.g. missing readings), a number or a string.
+     *
+     * @param response the response to encode
+     * @return the encoded frame
+     * @throws IllegalArgumentException if the response payload type is not supported
+     */
+    public static byte[] encodeResponse(Response response) {
+        Writer writer = new Writer(64);
+        writeHeader(writer , KIND_RESPONSE);
+        writer.writeVarInt(response.getResponseCode());
+        writer.writeNullableString(response.getResponseMessage());
+
+        Object data = response.getData();
+        if (data == null) {
+            writer.writeByte(PAYLOAD_NONE);
+        } else if (data instanceof TemperatureRecordListDTO page) {
+            writer.writeByte(PAYLOAD_RECORD_PAGE);
+            writer.writeByte(page.isHasNextRecord() ? 1 : 0);
+            writer.writeVarInt(page.getTotalCount());
+            writer.writeVarInt(page.getSize());
+            writer.writeVarInt(page.getPage());
+            writeRecords(writer , page.getTemperatureRecords() == null ? List.of() : page.getTemperatureRecords());
+        } else if (data instanceof Map<?, ?> map) {
+            writer.writeByte(PAYLOAD_STRING_MAP);
+            writer.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writer.writeNullableString(entry.getKey() == null ? null : entry.getKey().toString());
+                writer.writeNullableString(entry.getValue() == null ? null : entry.getValue().toString());
+            }
+        } else if (data instanceof Number number) {
+            writer.writeByte(PAYLOAD_DOUBLE);
+            writer.writeLong(Double.doubleToRawLongBits(number.doubleValue()));
+        } else if (data instanceof CharSequence text) {
+            writer.writeByte(PAYLOAD_STRING);
+            writer.writeNullableString(text.toString());
+        } else {
+            throw new IllegalArgumentException("Unsupported response payload " + data.getClass().getName());
+        }
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a response frame produced by {@link #encodeResponse(Response)}.
+     *
+     * @param bytes the encoded frame
+     * @return the decoded response
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static Response decodeResponse(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        readHeader(reader , KIND_RESPONSE);
+
+        Response response = new Response();
+        response.setResponseCode(reader.readVarInt());
+        response.setResponseMessage(reader.readNullableString());
+
+        byte payloadType = reader.readByte();
+        switch (payloadType) {
+            case PAYLOAD_NONE -> response.setData(null);
+            case PAYLOAD_RECORD_PAGE -> {
+                TemperatureRecordListDTO page = new TemperatureRecordListDTO();
+                page.setHasNextRecord(reader.readByte() != 0);
+                page.setTotalCount(reader.readVarInt());
+                page.setSize(reader.readVarInt());
+                page.setPage(reader.readVarInt());
+                page.setTemperatureRecords(readRecords(reader));
+                response.setData(page);
+            }
+            case PAYLOAD_STRING_MAP -> {
+                int size = reader.readCount();
+                Map<String, String> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(reader.readNullableString() , reader.readNullableString());
+                }
+                response.setData(map);
+            }
+            case PAYLOAD_DOUBLE -> response.setData(Double.longBitsToDouble(reader.readLong()));
+            case PAYLOAD_STRING -> response.setData(reader.readNullableString());
+            default -> throw new IllegalArgumentException("Unknown response payload type " + payloadType);
+        }
+
+        reader.expectEnd();
+        return response;
+    }
+
+    private static void writeHeader(Writer writer , byte kind) {
+        writer.writeByte(MAGIC_0);
+        writer.writeByte(MAGIC_1);
+        writer.writeByte(VERSION);
+        writer.writeByte(kind);
+    }
+
+    private static void readHeader(Reader reader , byte expectedKind) {
+        if (reader.readByte() != MAGIC_0 || reader.readByte() != MAGIC_1) {
+            throw new IllegalArgumentException("Not a binary readings frame");
+        }
+        byte version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary readings version " + version);
+        }
+        byte kind = reader.readByte();
+        if (kind != expectedKind) {
+            throw new IllegalArgumentException("Unexpected binary frame kind " + kind);
+        }
+    }
+
+    private static void writeRecords(Writer writer , List<TemperatureRecordDTO> records) {
+        // dictionary-code device names and locations, they repeat on almost every reading
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        for (TemperatureRecordDTO record : records) {
+            if (record.getDeviceName() != null && dictionary.putIfAbsent(record.getDeviceName() , entries.size()) == null) {
+                entries.add(record.getDeviceName());
+            }
+            if (record.getLocation() != null && dictionary.putIfAbsent(record.getLocation() , entries.size()) == null) {
+                entries.add(record.getLocation());
+            }
+        }
+
+        writer.writeVarInt(entries.size());
+        for (String entry : entries) {
+            writer.writeString(entry);
+        }
+
+        writer.writeVarInt(records.size());
+        long previousMillis = 0;
+        for (TemperatureRecordDTO record : records) {
+            LocalDateTime time = record.getActualTime() != null ? record.getActualTime() :
+                    record.getTime() != null ? DateUtil.stringToLocalDateTime(record.getTime()) : null;
+
+            int flags = 0;
+            if (record.getDeviceName() != null) flags |= HAS_DEVICE;
+            if (record.getLocation() != null) flags |= HAS_LOCATION;
+            if (time != null) flags |= HAS_TIME;
+            if (record.getTemperature() != null) flags |= HAS_TEMPERATURE;
+            writer.writeByte(flags);
+
+            if (record.getDeviceName() != null) writer.writeVarInt(dictionary.get(record.getDeviceName()));
+            if (record.getLocation() != null) writer.writeVarInt(dictionary.get(record.getLocation()));
+            if (time != null) {
+                long millis = DateUtil.localDateTimeToEpochMilli(time);
+                writer.writeVarLong(zigZag(millis - previousMillis));
+                previousMillis = millis;
+            }
+            if (record.getTemperature() != null) {
+                writer.writeInt(Float.floatToRawIntBits(record.getTemperature().floatValue()));
+            }
+        }
+    }
+
+    private static List<TemperatureRecordDTO> readRecords(Reader reader) {
+        int dictionarySize = reader.readCount();
+        String[] dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary[i] = reader.readString();
+        }
+
+        int count = reader.readCount();
+        List<TemperatureRecordDTO> records = new ArrayList<>(count);
+        long previousMillis = 0;
+        for (int i = 0; i < count; i++) {
+            int flags = reader.readByte();
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            if ((flags & HAS_DEVICE) != 0) record.setDeviceName(lookup(dictionary , reader.readVarInt()));
+            if ((flags & HAS_LOCATION) != 0) record.setLocation(lookup(dictionary , reader.readVarInt()));
+            if ((flags & HAS_TIME) != 0) {
+                previousMillis += unZigZag(reader.readVarLong());
+                record.setActualTime(DateUtil.epochMilliToLocalDateTime(previousMillis));
+            }
+            if ((flags & HAS_TEMPERATURE) != 0) {
+                float temperature = Float.intBitsToFloat(reader.readInt());
+                record.setTemperature(Math.round(temperature * 10_000d) / 10_000d);
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static String lookup(String[] dictionary , int index) {
+        if (index < 0 || index >= dictionary.length) {
+            throw new IllegalArgumentException("Dictionary index out of range " + index);
+        }
+        return dictionary[index];
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Growable big-endian byte sink.
+     */
+    private static final class Writer {
+
+        private byte[] buffer;
+        private int position;
+
+        Writer(int initialCapacity) {
+            this.buffer = new byte[Math.max(initialCapacity , 16)];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes , 0 , buffer , position , bytes.length);
+            position += bytes.length;
+        }
+
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeString(value);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer , position);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer , Math.max(buffer.length * 2 , position + extra));
+            }
+        }
+
+    }
+
+    /**
+     * Bounds-checked big-endian byte source.
+     */
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            require(1);
+            return buffer[position++];
+        }
+
+        int readInt() {
+            require(4);
+            return ((buffer[position++] & 0xFF) << 24) | ((buffer[position++] & 0xFF) << 16)
+                    | ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+        }
+
+        long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int readVarInt() {
+            long value = readVarLong();
+            if (value > 0xFFFFFFFFL) {
+                throw new IllegalArgumentException("Varint overflow");
+            }
+            return (int) value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        int readCount() {
+            int count = readVarInt();
+            // every element takes at least one byte, so a larger count can only be a corrupt frame
+            if (count < 0 || count > buffer.length - position) {
+                throw new IllegalArgumentException("Invalid element count " + count);
+            }
+            return count;
+        }
+
+        String readString() {
+            int length = readCount();
+            String value = new String(buffer , position , length , StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String readNullableString() {
+            return readByte() == 0 ? null : readString();
+        }
+
+        void expectEnd() {
+            if (position != buffer.length) {
+                throw new IllegalArgumentException("Trailing bytes after binary frame");
+            }
+        }
+
+        private void require(int bytes) {
+            if (position + bytes > buffer.length) {
+                throw new IllegalArgumentException("Truncated binary frame");
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+package uk.biobank.iottempmgmtukbiobanktest.codec;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * HTTP message converter for the compact binary readings format implemented by {@link TemperatureReadingsCodec}.
+ * <p>
+ * It reads request bodies declared as {@code List<TemperatureRecordDTO>} and writes {@link Response}
+ * objects, so clients can opt in per request with {@code Content-Type} and {@code Accept} set to
+ * {@link #MEDIA_TYPE_VALUE}. JSON stays the default for everyone else.
+ * <p>
+ * The codec only encodes some payloads, so responses are only written for the mappings listing
+ * {@link #MEDIA_TYPE_VALUE} in their {@code produces}. Asking any other endpoint for the binary format
+ * is answered with 406 Not Acceptable.
+ */
+public class TemperatureReadingsHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.biobank.readings+binary";
+    public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+
+    private static final ResolvableType RECORD_LIST_TYPE = ResolvableType.forClassWithGenerics(List.class , TemperatureRecordDTO.class);
+
+    public TemperatureReadingsHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return Response.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(@NonNull Type type , Class<?> contextClass , MediaType mediaType) {
+        return RECORD_LIST_TYPE.isAssignableFrom(ResolvableType.forType(type)) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type , @NonNull Class<?> clazz , MediaType mediaType) {
+        return Response.class.isAssignableFrom(clazz) && canWrite(mediaType) && handlerProducesBinary();
+    }
+
+    /**
+     * Whether the handler of the current request, its error responses included, declares the binary format.
+     */
+    private static boolean handlerProducesBinary() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null
+                || !(attributes.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE , RequestAttributes.SCOPE_REQUEST) instanceof HandlerMethod handler)) {
+            return false;
+        }
+        RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(handler.getMethod() , RequestMapping.class);
+        return mapping != null && Arrays.asList(mapping.produces()).contains(MEDIA_TYPE_VALUE);
+    }
+
+    @Override
+    public boolean canRead(@NonNull Class<?> clazz , MediaType mediaType) {
+        // raw class checks cannot see the element type, only the generic variant is supported
+        return false;
+    }
+
+    @Override
+    @NonNull
+    public Object read(@NonNull Type type , Class<?> contextClass , @NonNull HttpInputMessage inputMessage) throws IOException {
+        return readInternal(Object.class , inputMessage);
+    }
+
+    @Override
+    @NonNull
+    protected Object readInternal(@NonNull Class<?> clazz , @NonNull HttpInputMessage inputMessage) throws IOException {
+        byte[] body = inputMessage.getBody().readAllBytes();
+        try {
+            return TemperatureReadingsCodec.decodeRecords(body);
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Invalid binary readings payload: " + e.getMessage() , e , inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(@NonNull Object object , Type type , @NonNull HttpOutputMessage outputMessage) throws IOException {
+        byte[] body;
+        try {
+            body = TemperatureReadingsCodec.encodeResponse((Response) object);
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotWritableException("Response cannot be written as binary readings: " + e.getMessage() , e);
+        }
+        outputMessage.getHeaders().setContentLength(body.length);
+        outputMessage.getBody().write(body);
+    }
+
+}
@@ -0,0 +1,59 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.function.SingletonSupplier;
+import uk.biobank.iottempmgmtukbiobanktest.profiling.StatementRecorder;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+@Configuration
+public class DataSourceProxyConfig {
+
+    /**
+     * Wraps the data source in a datasource-proxy reporting every statement to the
+     * {@link StatementRecorder}. The recorder is looked up on first use, so the post processor
+     * does not pull the meter registry into existence before it is configured.
+     *
+     * @param statementRecorder the recorder, resolved lazily
+     * @return the post processor wrapping data sources
+     */
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor(ObjectProvider<StatementRecorder> statementRecorder) {
+        SingletonSupplier<StatementRecorder> recorder = SingletonSupplier.of(statementRecorder::getObject);
+        QueryExecutionListener listener = new QueryExecutionListener() {
+            @Override
+            public void beforeQuery(ExecutionInfo execInfo , List<QueryInfo> queryInfoList) {
+            }
+
+            @Override
+            public void afterQuery(ExecutionInfo execInfo , List<QueryInfo> queryInfoList) {
+                recorder.obtain().afterQuery(execInfo , queryInfoList);
+            }
+        };
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean , String beanName) {
+                // pools only, a delegating data source such as the replica routing one would count statements twice
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource) && !(bean instanceof DelegatingDataSource)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(listener)
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+}
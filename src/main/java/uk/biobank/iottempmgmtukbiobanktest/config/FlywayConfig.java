@@ -0,0 +1,34 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class FlywayConfig {
+
+    /**
+     * Migrates the database on startup unless {@code flyway.migrate-on-start} is false.
+     * <p>
+     * The class data sharing training run of the container image build starts the application
+     * without a database. {@code spring.flyway.enabled} cannot switch Flyway off there, as AOT
+     * processed builds fix the auto-configuration at build time, this property is read at runtime.
+     *
+     * @param migrateOnStart whether to run the pending migrations
+     * @return the migration strategy
+     */
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(@Value("${flyway.migrate-on-start:true}") boolean migrateOnStart) {
+        return flyway -> {
+            if (migrateOnStart) {
+                flyway.migrate();
+            } else {
+                log.info("Flyway migrations skipped, flyway.migrate-on-start is false");
+            }
+        };
+    }
+
+}
@@ -0,0 +1,73 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+/**
+ * Splits the data source into a primary and a replica pool when {@code datasource.replica.url} is set.
+ * Without it the single {@code spring.datasource} pool auto-configured by Spring Boot is used.
+ */
+@Configuration
+@ConditionalOnProperty("datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    /**
+     * The primary pool, configured as usual from {@code spring.datasource} and sized with
+     * {@code spring.datasource.hikari.*}.
+     *
+     * @param properties the {@code spring.datasource} settings
+     * @return the primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * The replica pool, sized with {@code datasource.replica.hikari.*}, with the primary's
+     * credentials unless the replica has its own.
+     *
+     * @return the replica pool
+     */
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${datasource.replica.url}") String url ,
+                                              @Value("${datasource.replica.username:${spring.datasource.username:}}") String username ,
+                                              @Value("${datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * The data source used by JPA, Flyway and JDBC, routing read-only transactions to the replica.
+     *
+     * @return the routing data source
+     */
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource ,
+                                               @Qualifier("replicaDataSource") DataSource replicaDataSource ,
+                                               @Value("${datasource.replica.max-lag-seconds:10}") double maxLagSeconds) {
+        return new ReplicaRoutingDataSource(primaryDataSource , replicaDataSource , maxLagSeconds);
+    }
+
+}
@@ -0,0 +1,131 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Routes read-only transactions to a replica and everything else to the primary.
+ * <p>
+ * Physical connections are only fetched at the first statement, once the transaction manager has
+ * marked the connection read-only or not, and read-only connections come from the replica pool. The
+ * replica's replay lag is checked every {@code datasource.replica.check-interval-ms}; while it is
+ * behind by more than {@code datasource.replica.max-lag-seconds}, or unreachable, read-only
+ * transactions use the primary instead, so reads never see data older than the allowed lag.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements MeterBinder {
+
+    // a replica with nothing left to replay is current, however long ago the last transaction was
+    private static final String REPLAY_LAG = "select case when not pg_is_in_recovery() or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0"
+            + " else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end";
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final double maxLagSeconds;
+
+    private volatile boolean replicaAvailable;
+    private volatile double replicaLagSeconds = -1;
+
+    public ReplicaRoutingDataSource(DataSource primary , DataSource replica , double maxLagSeconds) {
+        super(primary);
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagSeconds = maxLagSeconds;
+
+        // known defaults, so no connection is opened to look them up
+        setDefaultAutoCommit(true);
+        setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        setReadOnlyDataSource(new ReadOnlyDataSource());
+    }
+
+    /**
+     * Measures the replay lag of the replica and decides whether read-only transactions may use it.
+     */
+    @Scheduled(initialDelay = 0 , fixedDelayString = "${datasource.replica.check-interval-ms:5000}")
+    public void checkReplica() {
+        double lag;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(REPLAY_LAG)) {
+            resultSet.next();
+            lag = resultSet.getDouble(1);
+        } catch (SQLException e) {
+            replicaLagSeconds = -1;
+            markReplica(false , "unreachable: " + e.getMessage());
+            return;
+        }
+
+        replicaLagSeconds = lag;
+        if (lag > maxLagSeconds) {
+            markReplica(false , "lagging " + lag + " s behind the primary");
+        } else {
+            markReplica(true , "lagging " + lag + " s behind the primary");
+        }
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("datasource.replica.available" , this , routing -> routing.replicaAvailable ? 1 : 0)
+                .description("Whether read-only transactions are routed to the replica")
+                .register(registry);
+        Gauge.builder("datasource.replica.lag" , this , routing -> routing.replicaLagSeconds)
+                .description("Replay lag of the replica at the last check, -1 if unreachable")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private void markReplica(boolean available , String reason) {
+        if (replicaAvailable != available) {
+            if (available) {
+                log.info("Routing read-only transactions to the replica, {}" , reason);
+            } else {
+                log.warn("Routing read-only transactions to the primary, replica {}" , reason);
+            }
+        }
+        replicaAvailable = available;
+    }
+
+    /**
+     * Source of read-only connections, the replica while it is available and the primary otherwise.
+     */
+    private final class ReadOnlyDataSource extends DelegatingDataSource {
+
+        ReadOnlyDataSource() {
+            super(replica);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (replicaAvailable) {
+                try {
+                    return replica.getConnection();
+                } catch (SQLException e) {
+                    markReplica(false , "unreachable: " + e.getMessage());
+                }
+            }
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username , String password) throws SQLException {
+            return getConnection();
+        }
+
+    }
+
+}
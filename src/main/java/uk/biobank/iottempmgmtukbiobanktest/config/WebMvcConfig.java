@@ -0,0 +1,25 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureReadingsHttpMessageConverter;
+
+import java.util.List;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    /**
+     * Registers the compact binary readings converter after the default converters,
+     * so JSON stays the default representation and the binary format is only used
+     * when a client asks for it through {@code Content-Type} or {@code Accept}.
+     *
+     * @param converters the list of configured converters to extend
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new TemperatureReadingsHttpMessageConverter());
+    }
+
+}
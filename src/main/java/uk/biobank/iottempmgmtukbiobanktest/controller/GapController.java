@@ -0,0 +1,40 @@
+package uk.biobank.iottempmgmtukbiobanktest.controller;
+
+import org.springframework.web.bind.annotation.*;
+import uk.biobank.iottempmgmtukbiobanktest.storage.GapAnalyzer;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
+
+/**
+ * Controller responsible for gap analysis over stored readings
+ * and the expected sampling interval of each device.
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/api/v1/temperatureRecord/gaps")
+public class GapController {
+
+    private final GeneralService generalService;
+    private final GapAnalyzer gapAnalyzer;
+
+    public GapController(GeneralService generalService , GapAnalyzer gapAnalyzer) {
+        this.generalService = generalService;
+        this.gapAnalyzer = gapAnalyzer;
+    }
+
+    @GetMapping
+    public Response getGaps(@RequestParam(required = false) String deviceName , @RequestParam String start , @RequestParam String end) {
+        return generalService.prepareSuccessResponse(gapAnalyzer.analyze(deviceName , start , end));
+    }
+
+    @GetMapping("/intervals")
+    public Response getIntervals() {
+        return generalService.prepareSuccessResponse(gapAnalyzer.getIntervals());
+    }
+
+    @PutMapping("/intervals/{deviceName}")
+    public Response setInterval(@PathVariable String deviceName , @RequestParam int intervalSeconds) {
+        return generalService.prepareSuccessResponse(gapAnalyzer.setInterval(deviceName , intervalSeconds));
+    }
+
+}
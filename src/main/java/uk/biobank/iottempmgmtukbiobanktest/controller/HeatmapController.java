@@ -0,0 +1,30 @@
+package uk.biobank.iottempmgmtukbiobanktest.controller;
+
+import org.springframework.web.bind.annotation.*;
+import uk.biobank.iottempmgmtukbiobanktest.storage.LocationHeatmap;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
+
+/**
+ * Controller responsible for the device by hour heatmaps of a location.
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/api/v1/temperatureRecord/heatmap")
+public class HeatmapController {
+
+    private final GeneralService generalService;
+    private final LocationHeatmap locationHeatmap;
+
+    public HeatmapController(GeneralService generalService , LocationHeatmap locationHeatmap) {
+        this.generalService = generalService;
+        this.locationHeatmap = locationHeatmap;
+    }
+
+    @GetMapping
+    public Response getHeatmap(@RequestParam String location , @RequestParam String start , @RequestParam String end ,
+                               @RequestParam(defaultValue = "1") int bucketHours) {
+        return generalService.prepareSuccessResponse(locationHeatmap.build(location , start , end , bucketHours));
+    }
+
+}
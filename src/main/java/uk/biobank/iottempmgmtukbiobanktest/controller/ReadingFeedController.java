@@ -0,0 +1,34 @@
+package uk.biobank.iottempmgmtukbiobanktest.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import uk.biobank.iottempmgmtukbiobanktest.feed.OverflowPolicy;
+import uk.biobank.iottempmgmtukbiobanktest.feed.SseReadingStreams;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Controller streaming live readings and missing readings as Server-Sent Events.
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/api/v1/temperatureRecord")
+public class ReadingFeedController {
+
+    private final SseReadingStreams sseReadingStreams;
+
+    public ReadingFeedController(SseReadingStreams sseReadingStreams) {
+        this.sseReadingStreams = sseReadingStreams;
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) List<String> deviceName ,
+                             @RequestParam(required = false) List<String> location ,
+                             @RequestParam(defaultValue = "coalesce") String policy) {
+        return sseReadingStreams.open(deviceName == null ? Set.of() : Set.copyOf(deviceName) ,
+                location == null ? Set.of() : Set.copyOf(location) , OverflowPolicy.parse(policy));
+    }
+
+}
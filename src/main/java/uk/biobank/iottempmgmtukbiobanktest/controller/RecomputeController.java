@@ -0,0 +1,42 @@
+package uk.biobank.iottempmgmtukbiobanktest.controller;
+
+import org.springframework.web.bind.annotation.*;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.storage.HourlyStatisticsRecompute;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
+
+/**
+ * Controller starting, resuming and reporting the runs recomputing the hourly statistics from stored readings.
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/api/v1/temperatureRecord/recompute")
+public class RecomputeController {
+
+    private final GeneralService generalService;
+    private final HourlyStatisticsRecompute hourlyStatisticsRecompute;
+
+    public RecomputeController(GeneralService generalService , HourlyStatisticsRecompute hourlyStatisticsRecompute) {
+        this.generalService = generalService;
+        this.hourlyStatisticsRecompute = hourlyStatisticsRecompute;
+    }
+
+    @PostMapping
+    public Response startRun(@RequestParam String start , @RequestParam String end) {
+        return generalService.prepareSuccessResponse(hourlyStatisticsRecompute.start(start , end));
+    }
+
+    @GetMapping("/{runId}")
+    public Response getRun(@PathVariable String runId) {
+        return generalService.prepareSuccessResponse(hourlyStatisticsRecompute.find(runId)
+                .orElseThrow(() -> new GeneralException(ResponseCodeAndMessage.RECORD_NOT_FOUND.responseCode , "Recompute run not found")));
+    }
+
+    @PostMapping("/{runId}/resume")
+    public Response resumeRun(@PathVariable String runId) {
+        return generalService.prepareSuccessResponse(hourlyStatisticsRecompute.resume(runId));
+    }
+
+}
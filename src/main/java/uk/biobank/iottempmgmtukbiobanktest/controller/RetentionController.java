@@ -0,0 +1,29 @@
+package uk.biobank.iottempmgmtukbiobanktest.controller;
+
+import org.springframework.web.bind.annotation.*;
+import uk.biobank.iottempmgmtukbiobanktest.storage.RetentionJob;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
+
+/**
+ * Controller reporting the progress of the retention and downsampling job.
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/api/v1/temperatureRecord/retention")
+public class RetentionController {
+
+    private final GeneralService generalService;
+    private final RetentionJob retentionJob;
+
+    public RetentionController(GeneralService generalService , RetentionJob retentionJob) {
+        this.generalService = generalService;
+        this.retentionJob = retentionJob;
+    }
+
+    @GetMapping("/status")
+    public Response getRetentionStatus() {
+        return generalService.prepareSuccessResponse(retentionJob.getStatus());
+    }
+
+}
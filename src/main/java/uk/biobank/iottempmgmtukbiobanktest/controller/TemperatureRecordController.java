@@ -2,12 +2,13 @@ package uk.biobank.iottempmgmtukbiobanktest.controller;
 
 import jakarta.validation.Valid;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureReadingsHttpMessageConverter;
 import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
 import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
 import uk.biobank.iottempmgmtukbiobanktest.utils.dto.PageableRequestDTO;
 import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
-import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
 import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
 
 import java.util.List;
@@ -29,31 +30,51 @@ public class TemperatureRecordController {
         this.temperatureRecordService = temperatureRecordService;
     }
 
-    @PostMapping("/processRecords")
-    public Response ingestTemperatures(@RequestBody List<TemperatureRecordDTO> records) {
-        return generalService.prepareSuccessResponse(temperatureRecordService.processRecords(records));
+    @PostMapping(value = "/processRecords", produces = {MediaType.APPLICATION_JSON_VALUE, TemperatureReadingsHttpMessageConverter.MEDIA_TYPE_VALUE})
+    public Response ingestTemperatures(@RequestBody List<TemperatureRecordDTO> records ,
+                                       @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return generalService.prepareSuccessResponse(temperatureRecordService.processRecords(records , idempotencyKey));
     }
 
-    @GetMapping("/average-temperature")
+    @GetMapping(value = "/average-temperature", produces = {MediaType.APPLICATION_JSON_VALUE, TemperatureReadingsHttpMessageConverter.MEDIA_TYPE_VALUE})
     @Cacheable(value = "averageTemperature", key = "#deviceName + #date + #hour")
     public Response getAverageTemperature(@RequestParam String deviceName , @RequestParam String date , @RequestParam int hour) {
         return generalService.prepareSuccessResponse(temperatureRecordService.calculateAverageTemperature(deviceName , date , hour));
     }
 
-    @GetMapping("/all")
+    @GetMapping(value = "/all", produces = {MediaType.APPLICATION_JSON_VALUE, TemperatureReadingsHttpMessageConverter.MEDIA_TYPE_VALUE})
     public Response getAllTemperatures(@Valid PageableRequestDTO dto) {
         return generalService.prepareSuccessResponse(temperatureRecordService.getAllRecords(dto));
     }
 
-    @GetMapping("/deviceName")
+    @GetMapping(value = "/deviceName", produces = {MediaType.APPLICATION_JSON_VALUE, TemperatureReadingsHttpMessageConverter.MEDIA_TYPE_VALUE})
     public Response getAllTemperatures(@RequestParam String deviceName , @Valid PageableRequestDTO dto) {
         return generalService.prepareSuccessResponse(temperatureRecordService.getAllRecordsByDeviceName(deviceName , dto));
     }
 
     @DeleteMapping("/all")
     public Response deleteAllTemperatures() {
-        temperatureRecordService.deleteAllRecords();
-        return generalService.prepareSuccessResponse(ResponseCodeAndMessage.SUCCESSFUL.responseCode + " All records deleted successfully.");
+        return generalService.prepareSuccessResponse(temperatureRecordService.deleteAllRecords());
+    }
+
+    @DeleteMapping("/deviceName")
+    public Response deleteTemperaturesByDeviceName(@RequestParam String deviceName) {
+        return generalService.prepareSuccessResponse(temperatureRecordService.deleteRecordsByDeviceName(deviceName));
+    }
+
+    @DeleteMapping("/location")
+    public Response deleteTemperaturesByLocation(@RequestParam String location) {
+        return generalService.prepareSuccessResponse(temperatureRecordService.deleteRecordsByLocation(location));
+    }
+
+    @DeleteMapping("/range")
+    public Response deleteTemperaturesBetween(@RequestParam String start , @RequestParam String end) {
+        return generalService.prepareSuccessResponse(temperatureRecordService.deleteRecordsBetween(start , end));
+    }
+
+    @GetMapping("/deleteJobs/{jobId}")
+    public Response getDeleteJob(@PathVariable String jobId) {
+        return generalService.prepareSuccessResponse(temperatureRecordService.getDeleteJob(jobId));
     }
 
 }
@@ -0,0 +1,53 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import lombok.Data;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.DeleteJobStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object (DTO) reporting the progress of a background delete job.
+ * <p>
+ * The scope is one of {@code all}, {@code device}, {@code location} or {@code range}, with the
+ * matching criteria set. Counters grow after every committed batch.
+ */
+@Data
+public class DeleteJobDTO {
+
+    private String jobId;
+
+    private String scope;
+
+    private String deviceName;
+
+    private String location;
+
+    private LocalDateTime start;
+
+    private LocalDateTime end;
+
+    private DeleteJobStatus status;
+
+    private String phase;
+
+    private long readingsDeleted;
+
+    private long chunksDeleted;
+
+    private long chunksTrimmed;
+
+    private long aggregatesDeleted;
+
+    private long statisticsDeleted;
+
+    private long batches;
+
+    private LocalDateTime submittedAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    private String error;
+
+}
@@ -0,0 +1,25 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the gaps found in the readings of one device,
+ * run-length encoded as {@link GapDTO} ranges in time order.
+ */
+@Data
+public class DeviceGapsDTO {
+
+    private String deviceName;
+
+    private long intervalSeconds;
+
+    private long readings;
+
+    private long missedReadings;
+
+    private List<GapDTO> gaps = new ArrayList<>();
+
+}
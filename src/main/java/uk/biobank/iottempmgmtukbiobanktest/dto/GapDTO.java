@@ -0,0 +1,24 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object (DTO) representing a run of consecutive missing readings of a device:
+ * every expected reading from {@code from} (inclusive) to {@code to} (exclusive) is missing.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GapDTO {
+
+    private LocalDateTime from;
+
+    private LocalDateTime to;
+
+    private long missedReadings;
+
+}
@@ -0,0 +1,28 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the result of a gap analysis over a time range.
+ * <p>
+ * Only devices with at least one gap are listed, ordered by device name. The start is moved
+ * forward to the raw retention cutoff when the requested range reaches further back, since
+ * individual readings are no longer kept past it.
+ */
+@Data
+public class GapReportDTO {
+
+    private LocalDateTime start;
+
+    private LocalDateTime end;
+
+    private long devicesAnalyzed;
+
+    private long missedReadings;
+
+    private List<DeviceGapsDTO> devices;
+
+}
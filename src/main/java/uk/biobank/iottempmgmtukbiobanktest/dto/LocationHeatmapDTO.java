@@ -0,0 +1,36 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the device by time-bucket heatmap of a location, in columns.
+ * <p>
+ * The cell of the device at index {@code d} and the bucket at index {@code b} is at index
+ * {@code d * buckets.size() + b} of the flat arrays. A cell without readings has a count of zero
+ * and null average and maximum.
+ */
+@Data
+public class LocationHeatmapDTO {
+
+    private String location;
+
+    private LocalDateTime start;
+
+    private LocalDateTime end;
+
+    private int bucketHours;
+
+    private List<String> devices;
+
+    private List<LocalDateTime> buckets;
+
+    private Double[] averages;
+
+    private Double[] maxima;
+
+    private long[] readingCounts;
+
+}
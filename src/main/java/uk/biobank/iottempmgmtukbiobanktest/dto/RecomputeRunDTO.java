@@ -0,0 +1,44 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object (DTO) reporting the progress of a recompute run, read from its persisted tasks.
+ * <p>
+ * Counters cover the tasks done, each committed with its statistics. A run with pending or failed
+ * tasks left once it is no longer running can be resumed.
+ */
+@Data
+public class RecomputeRunDTO {
+
+    private String runId;
+
+    private LocalDateTime start;
+
+    private LocalDateTime end;
+
+    private boolean running;
+
+    private int parallelism;
+
+    private long tasks;
+
+    private long tasksDone;
+
+    private long tasksPending;
+
+    private long tasksFailed;
+
+    private long readings;
+
+    private long buckets;
+
+    private LocalDateTime submittedAt;
+
+    private LocalDateTime lastTaskFinishedAt;
+
+    private String lastError;
+
+}
@@ -0,0 +1,46 @@
+package uk.biobank.iottempmgmtukbiobanktest.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object (DTO) reporting the progress of the retention job.
+ * <p>
+ * Counters cover the current run while it is running, and the last run afterwards.
+ * The batch size and pause reflect the throttling applied from the observed database latency.
+ */
+@Data
+public class RetentionStatusDTO {
+
+    private boolean enabled;
+
+    private boolean running;
+
+    private String phase;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    private LocalDateTime rawCutoff;
+
+    private LocalDateTime aggregateCutoff;
+
+    private long rawReadingsRolledUp;
+
+    private long chunksRolledUp;
+
+    private long aggregatesDeleted;
+
+    private long batches;
+
+    private int batchSize;
+
+    private long lastBatchMillis;
+
+    private long throttledMillis;
+
+    private String lastError;
+
+}
@@ -0,0 +1,40 @@
+package uk.biobank.iottempmgmtukbiobanktest.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the interval a device is expected to report readings at, used by gap analysis.
+ * This entity is mapped to the "device_sampling_intervals" table in the database.
+ * <p>
+ * Devices without a row are expected at {@code gaps.default-interval-seconds}.
+ * <p>
+ * Attributes:
+ * - deviceName: The device the interval applies to.
+ * - intervalSeconds: The expected number of seconds between two readings.
+ * - updatedAt: The timestamp when the interval was last set.
+ */
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Entity
+@Table(name = "device_sampling_intervals")
+public class DeviceSamplingInterval {
+
+    @Id
+    @Column(name = "device_name")
+    private String deviceName;
+
+    @Column(nullable = false)
+    private Integer intervalSeconds;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+}
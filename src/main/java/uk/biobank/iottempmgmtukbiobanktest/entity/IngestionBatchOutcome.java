@@ -0,0 +1,44 @@
+package uk.biobank.iottempmgmtukbiobanktest.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the recorded outcome of an ingestion batch submitted with an {@code Idempotency-Key}.
+ * This entity is mapped to the "ingestion_batch_outcomes" table in the database.
+ * <p>
+ * Attributes:
+ * - idempotencyKey: The key sent by the gateway, unique per batch.
+ * - requestFingerprint: A fingerprint of the batch contents, used to detect a key reused for another batch.
+ * - outcome: The JSON-serialised missing-readings map returned for the batch.
+ * - createdAt: The timestamp when the outcome was recorded, used to expire old outcomes.
+ */
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Entity
+@Table(name = "ingestion_batch_outcomes", indexes = {
+        @Index(name = "idx_ingestionbatchoutcome_created_at", columnList = "createdAt")
+})
+public class IngestionBatchOutcome {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    @Column(name = "request_fingerprint", nullable = false)
+    private Long requestFingerprint;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String outcome;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+}
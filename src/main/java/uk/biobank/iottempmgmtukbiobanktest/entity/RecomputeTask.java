@@ -0,0 +1,74 @@
+package uk.biobank.iottempmgmtukbiobanktest.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.RecomputeTaskStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents one unit of work of a recompute run: the devices of a name range over a time range.
+ * This entity is mapped to the "recompute_tasks" table in the database.
+ * <p>
+ * Attributes:
+ * - id: Unique identifier for the task, auto-generated.
+ * - runId: The run the task belongs to.
+ * - deviceFrom, deviceTo: The first and last device names of the range, both inclusive, in database order.
+ * - rangeStart, rangeEnd: The time range, start inclusive and end exclusive, on whole days.
+ * - status: Whether the task is pending, done or failed.
+ * - readings, buckets: The readings read and hourly statistics written, once done.
+ * - createdAt, finishedAt: When the task was planned, and last finished or failed.
+ * - error: The error of the last failed attempt.
+ */
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Entity
+@Table(name = "recompute_tasks", indexes = {
+        @Index(name = "idx_recomputetask_run_id_status", columnList = "run_id, status")
+})
+public class RecomputeTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false, length = 36)
+    private String runId;
+
+    @Column(name = "device_from", nullable = false)
+    private String deviceFrom;
+
+    @Column(name = "device_to", nullable = false)
+    private String deviceTo;
+
+    @Column(name = "range_start", nullable = false)
+    private LocalDateTime rangeStart;
+
+    @Column(name = "range_end", nullable = false)
+    private LocalDateTime rangeEnd;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RecomputeTaskStatus status;
+
+    @Column(nullable = false)
+    private Long readings;
+
+    @Column(nullable = false)
+    private Long buckets;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+}
@@ -0,0 +1,76 @@
+package uk.biobank.iottempmgmtukbiobanktest.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Represents the compressed cold-storage form of all readings of one device on one day.
+ * This entity is mapped to the "temperature_chunks" table in the database.
+ * <p>
+ * The reading times and temperatures are stored column-wise in two byte arrays encoded by
+ * {@link uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec}, which take a few bits per
+ * reading for regularly sampled devices instead of a full row in "temperature_records".
+ * <p>
+ * Attributes:
+ * - id: Unique identifier for the chunk, auto-generated.
+ * - deviceName: Name of the device the readings belong to.
+ * - location: Location of the device, the same for every reading of the chunk.
+ * - chunkDate: The day the readings were taken on.
+ * - startTime, endTime: The time of the first and last reading, used to select chunks for range reads.
+ * - readingCount: The number of readings encoded in the chunk.
+ * - timestamps: The delta-of-delta encoded reading times.
+ * - temperatures: The XOR encoded temperatures.
+ * - createdAt: The timestamp when the chunk was created.
+ */
+@Getter
+@Setter
+@ToString(exclude = {"timestamps" , "temperatures"})
+@RequiredArgsConstructor
+@Entity
+@Table(name = "temperature_chunks", indexes = {
+        @Index(name = "idx_temperaturechunk_device_name_start_time", columnList = "device_name, start_time") ,
+        @Index(name = "idx_temperaturechunk_chunk_date", columnList = "chunk_date")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uc_temperaturechunk_device_name_chunk_date", columnNames = {"device_name" , "chunk_date"})
+})
+public class TemperatureChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_name", nullable = false)
+    private String deviceName;
+
+    private String location;
+
+    @Column(name = "chunk_date", nullable = false)
+    private LocalDate chunkDate;
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime endTime;
+
+    @Column(name = "reading_count", nullable = false)
+    private Integer readingCount;
+
+    @Column(nullable = false)
+    private byte[] timestamps;
+
+    @Column(nullable = false)
+    private byte[] temperatures;
+
+    @Column(nullable = false, updatable = false)
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+}
@@ -0,0 +1,60 @@
+package uk.biobank.iottempmgmtukbiobanktest.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the hourly rollup of the readings of a device, kept after the raw readings expire.
+ * This entity is mapped to the "temperature_hourly_aggregates" table in the database.
+ * <p>
+ * Attributes:
+ * - id: Unique identifier for the aggregate, auto-generated.
+ * - deviceName: Name of the device the readings belong to.
+ * - location: Location of the device during the hour.
+ * - bucketStart: The start of the hour.
+ * - readingCount: The number of readings rolled up.
+ * - temperatureSum: The sum of the rolled up temperatures, the average is the sum divided by the count.
+ * - minTemperature, maxTemperature: The extremes of the rolled up temperatures.
+ */
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Entity
+@Table(name = "temperature_hourly_aggregates", indexes = {
+        @Index(name = "idx_temperaturehourlyaggregate_bucket_start", columnList = "bucket_start")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uc_temperaturehourlyaggregate_device_name_bucket_start", columnNames = {"device_name" , "bucket_start"})
+})
+public class TemperatureHourlyAggregate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_name", nullable = false)
+    private String deviceName;
+
+    private String location;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "reading_count", nullable = false)
+    private Long readingCount;
+
+    @Column(name = "temperature_sum", nullable = false)
+    private Double temperatureSum;
+
+    @Column(name = "min_temperature", nullable = false)
+    private Double minTemperature;
+
+    @Column(name = "max_temperature", nullable = false)
+    private Double maxTemperature;
+
+}
@@ -0,0 +1,63 @@
+package uk.biobank.iottempmgmtukbiobanktest.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the hourly statistics of the stored readings of a device, derived from the raw rows
+ * and compacted chunks by a recompute run.
+ * This entity is mapped to the "temperature_hourly_statistics" table in the database.
+ * <p>
+ * Attributes:
+ * - id: Unique identifier for the statistic, auto-generated.
+ * - deviceName: Name of the device the readings belong to.
+ * - location: Location of the device during the hour.
+ * - bucketStart: The start of the hour.
+ * - readingCount: The number of readings in the hour.
+ * - temperatureSum: The sum of the temperatures, the average is the sum divided by the count.
+ * - minTemperature, maxTemperature: The extremes of the temperatures.
+ * - computedAt: When the statistic was last recomputed.
+ */
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Entity
+@Table(name = "temperature_hourly_statistics", uniqueConstraints = {
+        @UniqueConstraint(name = "uc_temperaturehourlystatistic_device_name_bucket_start", columnNames = {"device_name" , "bucket_start"})
+})
+public class TemperatureHourlyStatistic {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_name", nullable = false)
+    private String deviceName;
+
+    private String location;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "reading_count", nullable = false)
+    private Long readingCount;
+
+    @Column(name = "temperature_sum", nullable = false)
+    private Double temperatureSum;
+
+    @Column(name = "min_temperature", nullable = false)
+    private Double minTemperature;
+
+    @Column(name = "max_temperature", nullable = false)
+    private Double maxTemperature;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+
+}
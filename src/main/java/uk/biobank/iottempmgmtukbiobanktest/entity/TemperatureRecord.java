@@ -39,7 +39,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "temperature_records", indexes = {
         @Index(name = "idx_temperaturerecord_device_name", columnList = "deviceName") ,
-        @Index(name = "idx_temperaturerecord_location", columnList = "location")
+        @Index(name = "idx_temperaturerecord_location", columnList = "location") ,
+        @Index(name = "idx_temperaturerecord_time", columnList = "time")
 }, uniqueConstraints = {
         @UniqueConstraint(name = "uc_temperaturerecord_device_name_time", columnNames = {"device_name" , "time"})
 })
@@ -0,0 +1,43 @@
+package uk.biobank.iottempmgmtukbiobanktest.feed;
+
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+/**
+ * An event of the {@link ReadingFeed}: a stored reading, or a missing reading reported by a device.
+ * The record is a copy shared by every subscriber and must not be modified.
+ *
+ * @param type   {@link #READING} or {@link #MISSING}
+ * @param record the reading, as the list endpoints return it
+ */
+public record FeedEvent(String type , TemperatureRecordDTO record) {
+
+    public static final String READING = "reading";
+    public static final String MISSING = "missing";
+
+    static FeedEvent reading(PendingReading reading) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(reading.deviceName());
+        record.setLocation(reading.record().getLocation());
+        record.setTemperature(reading.record().getTemperature());
+        record.setTime(DateUtil.localDateTimeToString(reading.time()));
+        record.setActualTime(reading.time());
+        return new FeedEvent(READING , record);
+    }
+
+    static FeedEvent missing(TemperatureRecordDTO missing) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(missing.getDeviceName());
+        record.setLocation(missing.getLocation());
+        record.setTime(missing.getTime() == null && missing.getActualTime() != null
+                ? DateUtil.localDateTimeToString(missing.getActualTime()) : missing.getTime());
+        record.setActualTime(missing.getActualTime());
+        return new FeedEvent(MISSING , record);
+    }
+
+    public String deviceName() {
+        return record.getDeviceName();
+    }
+
+}
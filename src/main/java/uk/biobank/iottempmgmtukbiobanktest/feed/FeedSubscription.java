@@ -0,0 +1,127 @@
+package uk.biobank.iottempmgmtukbiobanktest.feed;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * A subscriber of the {@link ReadingFeed}, buffering the events it follows until they are taken
+ * with {@link #poll()}.
+ * <p>
+ * The buffer holds at most {@code bufferSize} events, and what it keeps of a subscriber falling
+ * behind depends on its {@link OverflowPolicy}. The feed adds events on the ingestion lane threads
+ * and calls the {@link #onAvailable(Runnable) availability callback} once per batch, which
+ * typically schedules the delivery on another thread.
+ */
+public final class FeedSubscription {
+
+    private final ReadingFeed feed;
+    private final Set<String> deviceNames;
+    private final Set<String> locations;
+    private final boolean missingReadings;
+    private final int bufferSize;
+    private final Counter droppedEvents;
+    private final Counter coalescedEvents;
+
+    private final ArrayDeque<FeedEvent> queue;
+    private final LinkedHashMap<String, FeedEvent> latest;
+    private volatile Runnable onAvailable = () -> {
+    };
+
+    FeedSubscription(ReadingFeed feed , Set<String> deviceNames , Set<String> locations , boolean missingReadings ,
+                     OverflowPolicy policy , int bufferSize , Counter droppedEvents , Counter coalescedEvents) {
+        this.feed = feed;
+        this.deviceNames = deviceNames;
+        this.locations = locations;
+        this.missingReadings = missingReadings;
+        this.bufferSize = bufferSize;
+        this.droppedEvents = droppedEvents;
+        this.coalescedEvents = coalescedEvents;
+        this.queue = policy == OverflowPolicy.DROP_OLDEST ? new ArrayDeque<>() : null;
+        this.latest = policy == OverflowPolicy.COALESCE ? new LinkedHashMap<>() : null;
+    }
+
+    /**
+     * Sets the callback run when events were added, on the thread that added them.
+     *
+     * @param onAvailable the callback, which must not block
+     */
+    public void onAvailable(Runnable onAvailable) {
+        this.onAvailable = onAvailable;
+    }
+
+    /**
+     * Takes the oldest buffered event.
+     *
+     * @return the event, or null if there is none
+     */
+    public synchronized FeedEvent poll() {
+        if (queue != null) {
+            return queue.poll();
+        }
+        Iterator<FeedEvent> events = latest.values().iterator();
+        if (!events.hasNext()) {
+            return null;
+        }
+        FeedEvent event = events.next();
+        events.remove();
+        return event;
+    }
+
+    /**
+     * Whether events are buffered.
+     *
+     * @return true if there is no event to take
+     */
+    public synchronized boolean isEmpty() {
+        return queue != null ? queue.isEmpty() : latest.isEmpty();
+    }
+
+    /**
+     * Unregisters the subscription, events of a batch completing concurrently may still be added.
+     */
+    public void close() {
+        feed.unsubscribe(this);
+    }
+
+    Set<String> deviceNames() {
+        return deviceNames;
+    }
+
+    Set<String> locations() {
+        return locations;
+    }
+
+    boolean missingReadings() {
+        return missingReadings;
+    }
+
+    synchronized void offer(FeedEvent event) {
+        if (queue != null) {
+            if (queue.size() >= bufferSize) {
+                queue.poll();
+                droppedEvents.increment();
+            }
+            queue.add(event);
+            return;
+        }
+        // the event replaces the pending one of its device, keeping its place in the buffer
+        String key = event.type() + '|' + event.deviceName();
+        if (latest.put(key , event) != null) {
+            coalescedEvents.increment();
+        } else if (latest.size() > bufferSize) {
+            Iterator<FeedEvent> events = latest.values().iterator();
+            events.next();
+            events.remove();
+            droppedEvents.increment();
+        }
+    }
+
+    void signal() {
+        onAvailable.run();
+    }
+
+}
@@ -0,0 +1,39 @@
+package uk.biobank.iottempmgmtukbiobanktest.feed;
+
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.util.Locale;
+
+/**
+ * What a {@link FeedSubscription} keeps of the events it has not delivered yet.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Every event is kept until the buffer is full, then the oldest are dropped: a subscriber that
+     * falls behind misses readings but still gets the newest ones.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Only the latest pending event of each device is kept: a subscriber that falls behind skips
+     * the intermediate readings but always ends up with the current state of every device.
+     */
+    COALESCE;
+
+    /**
+     * Parses a policy name as given in a request, e.g. {@code drop-oldest}.
+     *
+     * @param name the policy name, in any case and with dashes or underscores
+     * @return the policy
+     */
+    public static OverflowPolicy parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-' , '_'));
+        } catch (IllegalArgumentException e) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Policy must be drop-oldest or coalesce");
+        }
+    }
+
+}
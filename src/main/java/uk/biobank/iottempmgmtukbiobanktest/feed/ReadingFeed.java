@@ -0,0 +1,187 @@
+package uk.biobank.iottempmgmtukbiobanktest.feed;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionLanes;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionListener;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of the readings the ingestion lanes store, and of the missing readings devices
+ * report to processRecords, to live subscribers such as dashboards.
+ * <p>
+ * Subscriptions are indexed by the device names and locations they follow, so a reading costs one
+ * lookup per index whatever the number of subscribers, and nothing while there are none. Each
+ * matching reading is copied once into a {@link FeedEvent} shared by its subscribers, which buffer
+ * it according to their {@link OverflowPolicy}: delivering it never touches the database.
+ */
+@Slf4j
+@Component
+public class ReadingFeed implements IngestionListener {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Set<FeedSubscription>> byDeviceName = new ConcurrentHashMap<>();
+    private final Map<String, Set<FeedSubscription>> byLocation = new ConcurrentHashMap<>();
+    // subscriptions following every device
+    private final Set<FeedSubscription> unfiltered = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    public ReadingFeed(IngestionLanes ingestionLanes , MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("feed.subscribers" , subscriptions , AtomicInteger::get)
+                .description("Live subscribers of the reading feed")
+                .register(meterRegistry);
+        ingestionLanes.addListener(this);
+    }
+
+    /**
+     * Subscribes to the readings of the given devices and locations, or of every device if both are empty.
+     *
+     * @param channel         the delivery channel, e.g. sse, tagging the dropped and coalesced event counts
+     * @param deviceNames     the devices to follow
+     * @param locations       the locations to follow
+     * @param missingReadings whether missing readings are delivered too
+     * @param policy          what is kept of the events not delivered yet
+     * @param bufferSize      the number of events, or of devices when coalescing, kept for the subscriber
+     * @return the subscription, to be closed once the subscriber is gone
+     */
+    public FeedSubscription subscribe(String channel , Set<String> deviceNames , Set<String> locations ,
+                                      boolean missingReadings , OverflowPolicy policy , int bufferSize) {
+        FeedSubscription subscription = new FeedSubscription(this , Set.copyOf(deviceNames) , Set.copyOf(locations) ,
+                missingReadings , policy , bufferSize ,
+                meterRegistry.counter("feed.events.dropped" , "channel" , channel) ,
+                meterRegistry.counter("feed.events.coalesced" , "channel" , channel));
+        if (deviceNames.isEmpty() && locations.isEmpty()) {
+            unfiltered.add(subscription);
+        }
+        deviceNames.forEach(deviceName -> add(byDeviceName , deviceName , subscription));
+        locations.forEach(location -> add(byLocation , location , subscription));
+        subscriptions.incrementAndGet();
+        return subscription;
+    }
+
+    void unsubscribe(FeedSubscription subscription) {
+        boolean removed = unfiltered.remove(subscription);
+        for (String deviceName : subscription.deviceNames()) {
+            removed |= remove(byDeviceName , deviceName , subscription);
+        }
+        for (String location : subscription.locations()) {
+            removed |= remove(byLocation , location , subscription);
+        }
+        if (removed) {
+            subscriptions.decrementAndGet();
+        }
+    }
+
+    // added and removed within compute, so an emptied set is never added to after leaving the index
+    private static void add(Map<String, Set<FeedSubscription>> index , String key , FeedSubscription subscription) {
+        index.compute(key , (k , subscribers) -> {
+            Set<FeedSubscription> updated = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+            updated.add(subscription);
+            return updated;
+        });
+    }
+
+    private static boolean remove(Map<String, Set<FeedSubscription>> index , String key , FeedSubscription subscription) {
+        boolean[] removed = {false};
+        index.computeIfPresent(key , (k , subscribers) -> {
+            removed[0] = subscribers.remove(subscription);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Publishes the readings stored by a lane.
+     */
+    @Override
+    public void onBatchCompleted(List<PendingReading> batch , List<PendingReading> inserted) {
+        if (subscriptions.get() == 0) {
+            return;
+        }
+        List<FeedSubscription> matches = new ArrayList<>();
+        Set<FeedSubscription> notified = new HashSet<>();
+        for (PendingReading reading : inserted) {
+            match(reading.deviceName() , reading.record().getLocation() , false , matches);
+            if (!matches.isEmpty()) {
+                FeedEvent event = FeedEvent.reading(reading);
+                matches.forEach(subscription -> subscription.offer(event));
+                notified.addAll(matches);
+            }
+        }
+        signal(notified);
+    }
+
+    /**
+     * Publishes the missing readings reported to processRecords, to the subscribers that asked for them.
+     *
+     * @param missing the validated records without a temperature
+     */
+    public void publishMissing(List<TemperatureRecordDTO> missing) {
+        if (subscriptions.get() == 0 || missing.isEmpty()) {
+            return;
+        }
+        List<FeedSubscription> matches = new ArrayList<>();
+        Set<FeedSubscription> notified = new HashSet<>();
+        for (TemperatureRecordDTO record : missing) {
+            match(record.getDeviceName() , record.getLocation() , true , matches);
+            if (!matches.isEmpty()) {
+                FeedEvent event = FeedEvent.missing(record);
+                matches.forEach(subscription -> subscription.offer(event));
+                notified.addAll(matches);
+            }
+        }
+        signal(notified);
+    }
+
+    /**
+     * Collects the subscriptions following a device or its location, each once.
+     */
+    private void match(String deviceName , String location , boolean missingReading , List<FeedSubscription> matches) {
+        matches.clear();
+        addMatches(unfiltered , missingReading , matches);
+        Set<FeedSubscription> followingDevice = byDeviceName.get(deviceName);
+        if (followingDevice != null) {
+            addMatches(followingDevice , missingReading , matches);
+        }
+        Set<FeedSubscription> followingLocation = location == null ? null : byLocation.get(location);
+        if (followingLocation != null) {
+            for (FeedSubscription subscription : followingLocation) {
+                // following the device too, already matched
+                if (!subscription.deviceNames().contains(deviceName) && (!missingReading || subscription.missingReadings())) {
+                    matches.add(subscription);
+                }
+            }
+        }
+    }
+
+    private static void addMatches(Set<FeedSubscription> subscribers , boolean missingReading , List<FeedSubscription> matches) {
+        for (FeedSubscription subscription : subscribers) {
+            if (!missingReading || subscription.missingReadings()) {
+                matches.add(subscription);
+            }
+        }
+    }
+
+    private static void signal(Set<FeedSubscription> notified) {
+        for (FeedSubscription subscription : notified) {
+            try {
+                subscription.signal();
+            } catch (RuntimeException e) {
+                log.warn("Feed subscriber failed to schedule its delivery" , e);
+            }
+        }
+    }
+
+}
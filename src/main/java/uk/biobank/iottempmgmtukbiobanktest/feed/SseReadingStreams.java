@@ -0,0 +1,155 @@
+package uk.biobank.iottempmgmtukbiobanktest.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server-Sent Events streams of the {@link ReadingFeed}, one per connected client.
+ * <p>
+ * Each stream sends {@code reading} and {@code missing} events with the reading as JSON data. The
+ * events buffered since the last send go out in a single write, so a client that falls behind is
+ * sent fewer, larger writes rather than one per reading, and what it misses past
+ * {@code feed.sse.buffer-size} follows the {@link OverflowPolicy} it chose. A comment is sent every
+ * {@code feed.sse.heartbeat-ms} to keep idle connections open through proxies, and to find the
+ * clients that are gone.
+ */
+@Slf4j
+@Component
+public class SseReadingStreams {
+
+    // events written at once, so one stream does not hold its sender for long
+    private static final int MAX_EVENTS_PER_SEND = 256;
+
+    private final ReadingFeed readingFeed;
+    private final long timeoutMs;
+    private final int bufferSize;
+    private final Set<Stream> streams = ConcurrentHashMap.newKeySet();
+    // sends to clients off the lane threads
+    private final Executor senderExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SseReadingStreams(ReadingFeed readingFeed ,
+                             @Value("${feed.sse.timeout-ms:1800000}") long timeoutMs ,
+                             @Value("${feed.sse.buffer-size:1000}") int bufferSize) {
+        this.readingFeed = readingFeed;
+        this.timeoutMs = timeoutMs;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Opens a stream of the readings of the given devices and locations, or of every device if both are empty.
+     *
+     * @param deviceNames the devices to follow
+     * @param locations   the locations to follow
+     * @param policy      what is kept of the events not sent yet
+     * @return the emitter to return from the controller
+     */
+    public SseEmitter open(Set<String> deviceNames , Set<String> locations , OverflowPolicy policy) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        FeedSubscription subscription = readingFeed.subscribe("sse" , deviceNames , locations , true , policy , bufferSize);
+        Stream stream = new Stream(emitter , subscription);
+        emitter.onCompletion(stream::close);
+        emitter.onTimeout(stream::close);
+        emitter.onError(e -> stream.close());
+        subscription.onAvailable(stream::scheduleSend);
+        streams.add(stream);
+        // a first comment commits the response, so the client sees the stream open
+        stream.heartbeat();
+        return emitter;
+    }
+
+    /**
+     * Sends a comment to every stream.
+     */
+    @Scheduled(fixedDelayString = "${feed.sse.heartbeat-ms:15000}")
+    public void heartbeat() {
+        streams.forEach(Stream::heartbeat);
+    }
+
+    int getStreamCount() {
+        return streams.size();
+    }
+
+    /**
+     * A connected client, sending the events of its subscription on the sender executor.
+     */
+    private final class Stream {
+
+        private final SseEmitter emitter;
+        private final FeedSubscription subscription;
+        private final AtomicBoolean sendScheduled = new AtomicBoolean();
+        private volatile boolean heartbeatDue;
+
+        private Stream(SseEmitter emitter , FeedSubscription subscription) {
+            this.emitter = emitter;
+            this.subscription = subscription;
+        }
+
+        private void heartbeat() {
+            heartbeatDue = true;
+            scheduleSend();
+        }
+
+        private void scheduleSend() {
+            if (sendScheduled.compareAndSet(false , true)) {
+                senderExecutor.execute(this::send);
+            }
+        }
+
+        private void send() {
+            // the flag makes this the only sender of the stream, no monitor is held over the blocking
+            // writes, which would pin the virtual thread to its carrier
+            try {
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    emitter.send(SseEmitter.event().comment(""));
+                }
+                Set<ResponseBodyEmitter.DataWithMediaType> events = new LinkedHashSet<>();
+                FeedEvent event;
+                int count = 0;
+                while ((event = subscription.poll()) != null) {
+                    events.addAll(SseEmitter.event().name(event.type()).data(event.record() , MediaType.APPLICATION_JSON).build());
+                    if (++count == MAX_EVENTS_PER_SEND) {
+                        emitter.send(events);
+                        events.clear();
+                        count = 0;
+                    }
+                }
+                if (!events.isEmpty()) {
+                    emitter.send(events);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client is gone, or the emitter already completed
+                log.debug("Feed stream closed: {}" , e.getMessage());
+                close();
+                return;
+            } finally {
+                sendScheduled.set(false);
+            }
+            // events added while the flag was still set
+            if (!subscription.isEmpty() && streams.contains(this)) {
+                scheduleSend();
+            }
+        }
+
+        private void close() {
+            if (streams.remove(this)) {
+                subscription.close();
+            }
+        }
+
+    }
+
+}
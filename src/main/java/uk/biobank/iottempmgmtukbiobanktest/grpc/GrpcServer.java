@@ -0,0 +1,95 @@
+package uk.biobank.iottempmgmtukbiobanktest.grpc;
+
+import io.grpc.BindableService;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the gRPC services of the application on their own HTTP/2 port, {@code grpc.port} (9090),
+ * next to the servlet container, when {@code grpc.enabled} is set.
+ * <p>
+ * The server is plaintext and not covered by the web security configuration, so it listens on the
+ * loopback interface unless {@code grpc.address} binds it to an interface only the gateways reach.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "grpc.enabled", havingValue = "true")
+public class GrpcServer implements SmartLifecycle {
+
+    private final List<BindableService> services;
+    private final String address;
+    private final int port;
+    private final long shutdownGraceMs;
+
+    private volatile Server server;
+
+    public GrpcServer(List<BindableService> services ,
+                      @Value("${grpc.address:127.0.0.1}") String address ,
+                      @Value("${grpc.port:9090}") int port ,
+                      @Value("${grpc.shutdown-grace-ms:5000}") long shutdownGraceMs) {
+        this.services = services;
+        this.address = address;
+        this.port = port;
+        this.shutdownGraceMs = shutdownGraceMs;
+    }
+
+    @Override
+    public void start() {
+        NettyServerBuilder builder = NettyServerBuilder.forAddress(new InetSocketAddress(address , port));
+        services.forEach(builder::addService);
+        try {
+            server = builder.build().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start the gRPC server on " + address + ":" + port , e);
+        }
+        log.info("gRPC server started on {}:{} with {} services" , address , server.getPort() , services.size());
+    }
+
+    /**
+     * Stops accepting calls and waits up to {@code grpc.shutdown-grace-ms} for the running ones,
+     * e.g. the last batch of an ingest stream, before cancelling them.
+     */
+    @Override
+    public void stop() {
+        Server running = server;
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            if (!running.awaitTermination(shutdownGraceMs , TimeUnit.MILLISECONDS)) {
+                running.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            running.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * Returns the port the server listens on, the one chosen by the system if {@code grpc.port} is 0.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+}
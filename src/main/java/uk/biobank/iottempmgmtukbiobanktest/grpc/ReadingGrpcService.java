@@ -0,0 +1,210 @@
+package uk.biobank.iottempmgmtukbiobanktest.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.feed.FeedEvent;
+import uk.biobank.iottempmgmtukbiobanktest.feed.FeedSubscription;
+import uk.biobank.iottempmgmtukbiobanktest.feed.OverflowPolicy;
+import uk.biobank.iottempmgmtukbiobanktest.feed.ReadingFeed;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.IngestSummary;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.Reading;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.ReadingServiceGrpc;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.SubscribeRequest;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.BatchReports;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * gRPC ingestion and live feed of readings, see {@code readings.proto}.
+ * <p>
+ * {@code Ingest} feeds the stream into {@link TemperatureRecordService#processRecords} in batches of
+ * {@code grpc.ingest.batch-size}. Messages are requested from the stream one batch at a time, and
+ * the next batch only once the previous one is journaled or queued, so a gateway sending faster
+ * than the lanes store is held back by HTTP/2 flow control instead of being buffered here.
+ * <p>
+ * {@code Subscribe} streams the readings of the {@link ReadingFeed}. Each subscriber has a buffer of
+ * {@code grpc.subscribe.buffer-size} readings, sent only while its stream is ready; a subscriber
+ * too slow to keep up loses its oldest buffered readings, counted as {@code feed.events.dropped}.
+ */
+@Slf4j
+@Component
+public class ReadingGrpcService extends ReadingServiceGrpc.ReadingServiceImplBase {
+
+    private final TemperatureRecordService temperatureRecordService;
+    private final ReadingFeed readingFeed;
+    private final int batchSize;
+    private final int subscriberBufferSize;
+    // sends to subscribers off the lane threads
+    private final Executor subscriberExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ReadingGrpcService(TemperatureRecordService temperatureRecordService ,
+                              ReadingFeed readingFeed ,
+                              @Value("${grpc.ingest.batch-size:500}") int batchSize ,
+                              @Value("${grpc.subscribe.buffer-size:1000}") int subscriberBufferSize) {
+        this.temperatureRecordService = temperatureRecordService;
+        this.readingFeed = readingFeed;
+        this.batchSize = batchSize;
+        this.subscriberBufferSize = subscriberBufferSize;
+    }
+
+    @Override
+    public StreamObserver<Reading> ingest(StreamObserver<IngestSummary> responseObserver) {
+        ServerCallStreamObserver<IngestSummary> call = (ServerCallStreamObserver<IngestSummary>) responseObserver;
+        call.disableAutoRequest();
+        call.request(batchSize);
+
+        return new StreamObserver<>() {
+
+            private List<TemperatureRecordDTO> batch = new ArrayList<>(batchSize);
+            private final Map<String, String> report = new HashMap<>();
+            private long received;
+            private boolean failed;
+
+            @Override
+            public void onNext(Reading reading) {
+                if (failed) {
+                    return;
+                }
+                batch.add(toRecord(reading));
+                if (batch.size() == batchSize && flush()) {
+                    call.request(batchSize);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // batches already handed over are kept, the rest of the stream is lost
+                log.info("Ingest stream failed after {} readings: {}" , received , Status.fromThrowable(t));
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed || !flush()) {
+                    return;
+                }
+                call.onNext(IngestSummary.newBuilder()
+                        .setReceived(received)
+                        .putAllReport(report)
+                        .build());
+                call.onCompleted();
+            }
+
+            private boolean flush() {
+                if (batch.isEmpty()) {
+                    return true;
+                }
+                try {
+                    BatchReports.merge(report , BatchReports.offset(temperatureRecordService.processRecords(batch) , received));
+                } catch (GeneralException e) {
+                    failed = true;
+                    call.onError(Status.UNAVAILABLE.withDescription(e.getCause().getMessage()).asRuntimeException());
+                    return false;
+                } catch (RuntimeException e) {
+                    failed = true;
+                    log.error("Ingest stream failed after {} readings" , received , e);
+                    call.onError(Status.INTERNAL.withDescription("Readings could not be processed").asRuntimeException());
+                    return false;
+                }
+                received += batch.size();
+                batch = new ArrayList<>(batchSize);
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public void subscribe(SubscribeRequest request , StreamObserver<Reading> responseObserver) {
+        ServerCallStreamObserver<Reading> call = (ServerCallStreamObserver<Reading>) responseObserver;
+        FeedSubscription subscription = readingFeed.subscribe("grpc" , Set.copyOf(request.getDeviceNamesList()) , Set.of() ,
+                false , OverflowPolicy.DROP_OLDEST , subscriberBufferSize);
+        Subscriber subscriber = new Subscriber(call , subscription);
+        call.setOnCancelHandler(subscription::close);
+        call.setOnReadyHandler(subscriber::scheduleDrain);
+        subscription.onAvailable(subscriber::scheduleDrain);
+    }
+
+    /**
+     * Converts a reading message to the record processRecords takes, with its time already decoded.
+     */
+    static TemperatureRecordDTO toRecord(Reading reading) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(reading.getDeviceName());
+        record.setLocation(reading.getLocation());
+        record.setTemperature(reading.hasTemperature() ? reading.getTemperature() : null);
+        if (reading.getTimeEpochMillis() != 0) {
+            record.setActualTime(DateUtil.epochMilliToLocalDateTime(reading.getTimeEpochMillis()));
+        }
+        return record;
+    }
+
+    static Reading toReading(TemperatureRecordDTO record) {
+        Reading.Builder message = Reading.newBuilder()
+                .setDeviceName(record.getDeviceName())
+                .setTimeEpochMillis(DateUtil.localDateTimeToEpochMilli(record.getActualTime()));
+        if (record.getLocation() != null) {
+            message.setLocation(record.getLocation());
+        }
+        if (record.getTemperature() != null) {
+            message.setTemperature(record.getTemperature());
+        }
+        return message.build();
+    }
+
+    /**
+     * A {@code Subscribe} call, sending the readings of its subscription while its stream is ready.
+     */
+    private final class Subscriber {
+
+        private final ServerCallStreamObserver<Reading> call;
+        private final FeedSubscription subscription;
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+        private Subscriber(ServerCallStreamObserver<Reading> call , FeedSubscription subscription) {
+            this.call = call;
+            this.subscription = subscription;
+        }
+
+        private void scheduleDrain() {
+            if (drainScheduled.compareAndSet(false , true)) {
+                subscriberExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            // the flag makes this the only writer of the call, no monitor is held over onNext, which
+            // would pin the virtual thread to its carrier
+            try {
+                FeedEvent event;
+                while (call.isReady() && (event = subscription.poll()) != null) {
+                    call.onNext(toReading(event.record()));
+                }
+            } catch (RuntimeException e) {
+                // cancelled concurrently, the cancel handler closes the subscription
+                log.debug("Subscriber stream closed: {}" , e.getMessage());
+            } finally {
+                drainScheduled.set(false);
+            }
+            // readings added while the flag was still set
+            if (!subscription.isEmpty() && call.isReady() && !call.isCancelled()) {
+                scheduleDrain();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Combines the {@link ReadingValidator} reports of the batches a stream of readings is processed
+ * in into the report of the whole stream, as if it had been validated as one batch.
+ */
+public final class BatchReports {
+
+    private static final Pattern RECORD_INDEX = Pattern.compile("records\\[(\\d+)]");
+    private static final String MISSING_READING = "Missing reading at ";
+
+    private BatchReports() {
+    } // Prevent instantiation
+
+    /**
+     * Shifts the {@code records[<index>]} entries of a batch report to the index in the stream.
+     *
+     * @param report the report of the batch
+     * @param offset the index of the first record of the batch in the stream
+     * @return the report with stream indexes
+     */
+    public static Map<String, String> offset(Map<String, String> report , long offset) {
+        if (offset == 0 || report.isEmpty()) {
+            return report;
+        }
+        Map<String, String> shifted = new HashMap<>(report.size());
+        report.forEach((key , value) -> {
+            Matcher matcher = RECORD_INDEX.matcher(key);
+            shifted.put(matcher.matches() ? "records[" + (Long.parseLong(matcher.group(1)) + offset) + "]" : key , value);
+        });
+        return shifted;
+    }
+
+    /**
+     * Adds a batch report to the stream report, joining the missing readings of a device
+     * reported by several batches.
+     *
+     * @param report      the report of the stream so far, updated
+     * @param batchReport the report of the next batch, with stream indexes
+     * @return the stream report
+     */
+    public static Map<String, String> merge(Map<String, String> report , Map<String, String> batchReport) {
+        batchReport.forEach((key , value) -> report.merge(key , value ,
+                (previous , added) -> previous + ", " + added.substring(MISSING_READING.length())));
+        return report;
+    }
+
+}
@@ -0,0 +1,193 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory duplicate filter placed in front of the database probe for stored readings.
+ * <p>
+ * For every device it keeps a high-watermark of the latest reading time seen, seeded once from
+ * the database (raw rows and compacted chunks), and a bounded {@link RecentKeyBloomFilter} of recently inserted {@code (device, time)} keys.
+ * Readings newer than the watermark, or newer than the seeded watermark and absent from the Bloom filter,
+ * are treated as new and skip the database probe. Possible hits and readings older than anything this
+ * instance has seen are probed as before. Other replicas may still insert the same key, so callers keep
+ * the {@code uc_temperaturerecord_device_name_time} constraint as the final arbiter.
+ * <p>
+ * Check outcomes, the observed false-positive rate and the memory footprint are published as metrics.
+ */
+@Slf4j
+@Component
+public class DuplicateReadingFilter {
+
+    /**
+     * Outcome of a duplicate check.
+     */
+    public enum Check {
+        /**
+         * The reading is new as far as this instance knows, the database probe can be skipped.
+         */
+        NEW,
+        /**
+         * The key may have been inserted recently, e.g. a gateway retransmit, the database must be probed.
+         */
+        SEEN_RECENTLY,
+        /**
+         * The reading is older than the device's history known to this instance, the database must be probed.
+         */
+        UNKNOWN
+    }
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final RecentKeyBloomFilter bloomFilter;
+    private final Map<String, DeviceWatermark> watermarks = new ConcurrentHashMap<>();
+    private final boolean enabled;
+
+    private final Counter newChecks;
+    private final Counter seenRecentlyChecks;
+    private final Counter unknownChecks;
+    private final Counter falsePositives;
+
+    public DuplicateReadingFilter(TemperatureRecordRepository temperatureRecordRepository ,
+                                  TemperatureChunkRepository temperatureChunkRepository , MeterRegistry meterRegistry ,
+                                  @Value("${duplicate-filter.enabled:true}") boolean enabled ,
+                                  @Value("${duplicate-filter.expected-insertions:500000}") int expectedInsertions ,
+                                  @Value("${duplicate-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.enabled = enabled;
+        this.bloomFilter = new RecentKeyBloomFilter(expectedInsertions , falsePositiveProbability);
+
+        this.newChecks = checkCounter(meterRegistry , "new");
+        this.seenRecentlyChecks = checkCounter(meterRegistry , "seen_recently");
+        this.unknownChecks = checkCounter(meterRegistry , "unknown");
+        this.falsePositives = Counter.builder("ingestion.duplicate.filter.false.positives")
+                .description("Possible duplicates that the database probe found to be new")
+                .register(meterRegistry);
+
+        Gauge.builder("ingestion.duplicate.filter.false.positive.rate" , this , DuplicateReadingFilter::observedFalsePositiveRate)
+                .description("Share of possible duplicates that turned out to be new")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.duplicate.filter.expected.false.positive.rate" , bloomFilter , RecentKeyBloomFilter::expectedFalsePositiveProbability)
+                .description("False-positive probability estimated from the Bloom filter fill ratio")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.duplicate.filter.memory" , bloomFilter , RecentKeyBloomFilter::memoryBytes)
+                .description("Memory held by the Bloom filter")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.duplicate.filter.devices" , watermarks , Map::size)
+                .description("Devices with a tracked high-watermark")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Checks whether a reading may already be stored.
+     *
+     * @param deviceName the device the reading belongs to
+     * @param time       the reading time
+     * @return {@link Check#NEW} if the database probe can be skipped, otherwise why it is still needed
+     */
+    public Check check(String deviceName , LocalDateTime time) {
+        if (!enabled || deviceName == null) {
+            unknownChecks.increment();
+            return Check.UNKNOWN;
+        }
+
+        long epochMilli = DateUtil.localDateTimeToEpochMilli(time);
+        DeviceWatermark watermark = getWatermark(deviceName);
+
+        Check check;
+        if (epochMilli > watermark.latest.get()) {
+            check = Check.NEW;
+        } else if (bloomFilter.mightContain(deviceName , epochMilli)) {
+            check = Check.SEEN_RECENTLY;
+        } else if (epochMilli > watermark.seeded) {
+            check = Check.NEW;
+        } else {
+            check = Check.UNKNOWN;
+        }
+
+        (check == Check.NEW ? newChecks : check == Check.SEEN_RECENTLY ? seenRecentlyChecks : unknownChecks).increment();
+        return check;
+    }
+
+    /**
+     * Records the outcome of a database probe made because of a {@link Check#SEEN_RECENTLY} check.
+     *
+     * @param exists whether the database already held the reading
+     */
+    public void recordProbeResult(boolean exists) {
+        if (!exists) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Records a reading once its insert has committed, so retransmits of it are recognised.
+     *
+     * @param deviceName the device the reading belongs to
+     * @param time       the reading time
+     */
+    public void recordInserted(String deviceName , LocalDateTime time) {
+        if (!enabled || deviceName == null) {
+            return;
+        }
+        long epochMilli = DateUtil.localDateTimeToEpochMilli(time);
+        bloomFilter.put(deviceName , epochMilli);
+        getWatermark(deviceName).latest.accumulateAndGet(epochMilli , Math::max);
+    }
+
+    private DeviceWatermark getWatermark(String deviceName) {
+        DeviceWatermark watermark = watermarks.get(deviceName);
+        if (watermark != null) {
+            return watermark;
+        }
+
+        // seed outside computeIfAbsent, the query must not run while holding the map bin lock
+        // compacted readings count too, a device may have no raw rows left
+        long seeded = Math.max(
+                temperatureRecordRepository.findLatestTimeByDeviceName(deviceName).map(DateUtil::localDateTimeToEpochMilli).orElse(Long.MIN_VALUE) ,
+                temperatureChunkRepository.findLatestTimeByDeviceName(deviceName).map(DateUtil::localDateTimeToEpochMilli).orElse(Long.MIN_VALUE));
+        log.debug("Seeded duplicate filter watermark for device {} at {}" , deviceName , seeded);
+
+        DeviceWatermark existing = watermarks.putIfAbsent(deviceName , new DeviceWatermark(seeded));
+        return existing != null ? existing : watermarks.get(deviceName);
+    }
+
+    private double observedFalsePositiveRate() {
+        double possibleHits = seenRecentlyChecks.count();
+        return possibleHits == 0 ? 0 : falsePositives.count() / possibleHits;
+    }
+
+    private static Counter checkCounter(MeterRegistry meterRegistry , String result) {
+        return Counter.builder("ingestion.duplicate.filter.checks")
+                .description("Duplicate filter checks by outcome")
+                .tag("result" , result)
+                .register(meterRegistry);
+    }
+
+    private static final class DeviceWatermark {
+
+        private final long seeded;
+        private final AtomicLong latest;
+
+        DeviceWatermark(long seeded) {
+            this.seeded = seeded;
+            this.latest = new AtomicLong(seeded);
+        }
+
+    }
+
+}
@@ -0,0 +1,232 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.IngestionBatchOutcome;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.IngestionBatchOutcomeRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.SingleFlight;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Records the outcome of every batch submitted with an {@code Idempotency-Key}, so a gateway
+ * retrying a batch gets the original outcome back without the batch being processed again.
+ * <p>
+ * Outcomes are kept in a bounded in-memory LRU for the common case of a retry shortly after a
+ * network blip, and in the {@code ingestion_batch_outcomes} table so retries reaching another
+ * replica, or arriving after a restart, are answered as well. Concurrent retries of a batch still
+ * being processed join the original request through a {@link SingleFlight}. A key reused for a
+ * batch with different contents is rejected. Outcomes expire after
+ * {@code idempotency.retention-hours}.
+ */
+@Slf4j
+@Component
+public class IdempotentBatchStore {
+
+    private static final TypeReference<Map<String, String>> OUTCOME_TYPE = new TypeReference<>() {
+    };
+
+    private final IngestionBatchOutcomeRepository ingestionBatchOutcomeRepository;
+    private final ObjectMapper objectMapper;
+    private final SingleFlight<String, Map<String, String>> batchFlights = new SingleFlight<>();
+    private final Map<String, StoredOutcome> recentOutcomes;
+    private final Duration retention;
+    private final Duration flightTimeout;
+
+    private final Counter processed;
+    private final Counter replayed;
+
+    public IdempotentBatchStore(IngestionBatchOutcomeRepository ingestionBatchOutcomeRepository , ObjectMapper objectMapper ,
+                                MeterRegistry meterRegistry ,
+                                @Value("${idempotency.max-entries:10000}") int maxEntries ,
+                                @Value("${idempotency.retention-hours:24}") long retentionHours ,
+                                @Value("${idempotency.flight-timeout-ms:30000}") long flightTimeoutMs) {
+        this.ingestionBatchOutcomeRepository = ingestionBatchOutcomeRepository;
+        this.objectMapper = objectMapper;
+        this.retention = Duration.ofHours(retentionHours);
+        this.flightTimeout = Duration.ofMillis(flightTimeoutMs);
+        this.recentOutcomes = Collections.synchronizedMap(new LinkedHashMap<>(16 , 0.75f , true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredOutcome> eldest) {
+                return size() > maxEntries;
+            }
+        });
+
+        this.processed = requestCounter(meterRegistry , "processed");
+        this.replayed = requestCounter(meterRegistry , "replayed");
+    }
+
+    /**
+     * Processes a batch once per idempotency key, returning the recorded outcome for replays.
+     *
+     * @param idempotencyKey the key sent by the gateway
+     * @param fingerprint    the fingerprint of the batch, see {@link #fingerprint(List)}
+     * @param batch          processes the batch and returns its missing-readings map
+     * @return the outcome of the first successful processing of the batch
+     * @throws GeneralException if the key was already used for a different batch
+     */
+    public Map<String, String> execute(String idempotencyKey , long fingerprint , Supplier<Map<String, String>> batch) {
+        StoredOutcome stored = lookup(idempotencyKey);
+        if (stored != null) {
+            return replay(idempotencyKey , stored , fingerprint);
+        }
+
+        Map<String, String> outcome = batchFlights.execute(idempotencyKey , flightTimeout , () -> {
+            // re-check, the previous flight for this key may have completed since the lookup,
+            // it remembered its outcome in memory so the database need not be asked again
+            StoredOutcome completed = unexpired(recentOutcomes.get(idempotencyKey));
+            if (completed != null) {
+                return replay(idempotencyKey , completed , fingerprint);
+            }
+            Map<String, String> result = batch.get();
+            remember(idempotencyKey , fingerprint , result);
+            processed.increment();
+            return result;
+        });
+
+        // a follower that joined the flight of another batch sent with the same key
+        StoredOutcome recorded = recentOutcomes.get(idempotencyKey);
+        if (recorded != null && recorded.fingerprint() != fingerprint) {
+            throw keyReused(idempotencyKey);
+        }
+        return outcome;
+    }
+
+    /**
+     * Deletes expired outcomes from the database.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int deleted = ingestionBatchOutcomeRepository.deleteByCreatedAtBefore(LocalDateTime.now().minus(retention));
+            if (deleted > 0) {
+                log.info("Purged {} expired ingestion batch outcomes" , deleted);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to purge expired ingestion batch outcomes: {}" , e.getMessage());
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the contents of a batch, used to detect a key reused for another batch.
+     *
+     * @param records the readings of the batch
+     * @return a 64-bit fingerprint of the batch
+     */
+    public static long fingerprint(List<TemperatureRecordDTO> records) {
+        long hash = 0xcbf29ce484222325L;
+        for (TemperatureRecordDTO record : records) {
+            hash = mix(hash , Objects.hashCode(record.getDeviceName()));
+            hash = mix(hash , Objects.hashCode(record.getLocation()));
+            hash = mix(hash , Objects.hashCode(record.getTemperature()));
+            hash = mix(hash , Objects.hashCode(record.getTime()));
+            hash = mix(hash , Objects.hashCode(record.getActualTime()));
+        }
+        return hash;
+    }
+
+    private StoredOutcome lookup(String idempotencyKey) {
+        StoredOutcome stored = recentOutcomes.get(idempotencyKey);
+        if (stored == null) {
+            stored = loadOutcome(idempotencyKey);
+            if (stored != null) {
+                recentOutcomes.put(idempotencyKey , stored);
+            }
+        }
+        return unexpired(stored);
+    }
+
+    private StoredOutcome unexpired(StoredOutcome stored) {
+        return stored == null || stored.createdAt().isBefore(LocalDateTime.now().minus(retention)) ? null : stored;
+    }
+
+    private StoredOutcome loadOutcome(String idempotencyKey) {
+        Optional<IngestionBatchOutcome> entity;
+        try {
+            entity = ingestionBatchOutcomeRepository.findById(idempotencyKey);
+        } catch (DataAccessException e) {
+            log.warn("Failed to look up ingestion batch outcome for key {}: {}" , idempotencyKey , e.getMessage());
+            return null;
+        }
+        if (entity.isEmpty()) {
+            return null;
+        }
+
+        try {
+            IngestionBatchOutcome outcome = entity.get();
+            return new StoredOutcome(outcome.getRequestFingerprint() , objectMapper.readValue(outcome.getOutcome() , OUTCOME_TYPE) , outcome.getCreatedAt());
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable ingestion batch outcome for key {}, processing the batch again" , idempotencyKey);
+            return null;
+        }
+    }
+
+    private void remember(String idempotencyKey , long fingerprint , Map<String, String> result) {
+        LocalDateTime now = LocalDateTime.now();
+        recentOutcomes.put(idempotencyKey , new StoredOutcome(fingerprint , result , now));
+
+        // the batch is already accepted, failing to record its outcome must not fail the request
+        try {
+            IngestionBatchOutcome outcome = new IngestionBatchOutcome();
+            outcome.setIdempotencyKey(idempotencyKey);
+            outcome.setRequestFingerprint(fingerprint);
+            outcome.setOutcome(objectMapper.writeValueAsString(result));
+            // set explicitly, an expired outcome not purged yet is overwritten rather than inserted
+            outcome.setCreatedAt(now);
+            ingestionBatchOutcomeRepository.save(outcome);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Outcome for key {} already recorded by another instance" , idempotencyKey);
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Failed to record ingestion batch outcome for key {}: {}" , idempotencyKey , e.getMessage());
+        }
+    }
+
+    private Map<String, String> replay(String idempotencyKey , StoredOutcome stored , long fingerprint) {
+        if (stored.fingerprint() != fingerprint) {
+            throw keyReused(idempotencyKey);
+        }
+        log.debug("Replaying recorded outcome for idempotency key {}" , idempotencyKey);
+        replayed.increment();
+        return stored.missingReadings();
+    }
+
+    private static GeneralException keyReused(String idempotencyKey) {
+        return new GeneralException(ResponseCodeAndMessage.ALREADY_EXIST.responseCode ,
+                "Idempotency-Key " + idempotencyKey + " was already used for a different batch");
+    }
+
+    private static long mix(long hash , int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry , String result) {
+        return Counter.builder("ingestion.idempotency.requests")
+                .description("Batches submitted with an idempotency key by outcome")
+                .tag("result" , result)
+                .register(meterRegistry);
+    }
+
+    private record StoredOutcome(long fingerprint , Map<String, String> missingReadings , LocalDateTime createdAt) {
+    }
+
+}
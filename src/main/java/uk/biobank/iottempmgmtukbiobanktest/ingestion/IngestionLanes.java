@@ -0,0 +1,401 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Device-affine, single-writer ingestion pipeline.
+ * <p>
+ * Device names are hashed onto a fixed number of lanes. Every lane owns a lock-free queue and exactly
+ * one consumer thread, which drains whatever has accumulated into a batch for the
+ * {@link TemperatureRecordWriter}. All readings of a device therefore go through the same thread in
+ * submission order: the existence probe and the insert of one device can no longer race each other,
+ * and lanes share nothing, so throughput scales with the number of lanes.
+ * <p>
+ * Each lane holds at most {@code ingestion.lanes.capacity} readings; producers wait for room,
+ * which pushes back on callers instead of growing the heap while the database is slow.
+ * Batches failing because the database is unreachable are retried with backoff until it returns,
+ * other failures are logged and the batch is given up. {@link IngestionListener}s are told about
+ * every written and every failed batch, and {@link #whenCompleted()} waits for the readings submitted
+ * so far, failing if any of them was given up.
+ */
+@Slf4j
+@Component
+public class IngestionLanes {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long MIN_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RETRY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final TemperatureRecordWriter temperatureRecordWriter;
+    private final List<IngestionListener> listeners = new CopyOnWriteArrayList<>();
+    // guarded by itself, as are the completed and failed counts of the lanes
+    private final List<Barrier> barriers = new ArrayList<>();
+    private final Lane[] lanes;
+    private final int maxBatchSize;
+    private final int capacity;
+
+    // targets of the last barrier, guarded by barriers
+    private long[] lastTargets;
+    private volatile boolean running;
+
+    public IngestionLanes(TemperatureRecordWriter temperatureRecordWriter ,
+                          @Value("${ingestion.lanes.count:0}") int laneCount ,
+                          @Value("${ingestion.lanes.max-batch-size:500}") int maxBatchSize ,
+                          @Value("${ingestion.lanes.capacity:10000}") int capacity) {
+        this.temperatureRecordWriter = temperatureRecordWriter;
+        this.maxBatchSize = maxBatchSize;
+        this.capacity = capacity;
+
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(i);
+        }
+        this.lastTargets = new long[count];
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+        log.info("Started {} ingestion lanes, max batch size {}" , lanes.length , maxBatchSize);
+    }
+
+    /**
+     * Stops the lanes after draining the readings already queued.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Registers a listener notified on the lane threads after every completed batch.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(IngestionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener, which may still be called for a batch completing concurrently.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(IngestionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues a reading on the lane owning its device, waiting while that lane is full.
+     *
+     * @param reading the reading to persist
+     */
+    public void submit(PendingReading reading) {
+        Lane lane = laneFor(reading.deviceName());
+        while (lane.size.get() >= capacity && running) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        lane.size.incrementAndGet();
+        lane.submitted.incrementAndGet();
+        lane.queue.offer(reading);
+        if (lane.idle) {
+            LockSupport.unpark(lane.thread);
+        }
+    }
+
+    /**
+     * Returns a future completing once every reading submitted before the call has been written.
+     * It completes exceptionally with the writer's error if a batch holding any of those readings is
+     * given up on because of a non-transient error, and never completes for readings abandoned while
+     * the lanes stop.
+     * <p>
+     * A batch may also hold readings of other callers, and one failing since the previous call is
+     * counted against this one, so a failure can be reported for readings that were written.
+     *
+     * @return the future, completed on a lane thread
+     */
+    public CompletableFuture<Void> whenCompleted() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        RuntimeException failure = null;
+        synchronized (barriers) {
+            long[] targets = new long[lanes.length];
+            for (int i = 0; i < lanes.length; i++) {
+                targets[i] = lanes[i].submitted.get();
+                // a batch given up on before the call may have held readings submitted before it
+                if (lanes[i].failedThrough > lastTargets[i]) {
+                    failure = lanes[i].failure;
+                }
+            }
+            lastTargets = targets;
+            if (failure == null) {
+                barriers.add(new Barrier(targets , future));
+            }
+        }
+        if (failure != null) {
+            future.completeExceptionally(failure);
+        } else {
+            // the lanes may have caught up before the barrier was added
+            releaseBarriers();
+        }
+        return future;
+    }
+
+    /**
+     * Returns the number of readings queued and not yet picked up by a lane.
+     *
+     * @return the total queue depth across lanes
+     */
+    public int queuedCount() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.size.get();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the number of readings queued on one lane.
+     *
+     * @param lane the lane index, from 0 to {@link #laneCount()} exclusive
+     * @return the queue depth of the lane
+     */
+    public int queuedCount(int lane) {
+        return lanes[lane].size.get();
+    }
+
+    /**
+     * Returns the maximum number of readings a lane holds before producers wait.
+     *
+     * @return the lane capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lanes.
+     *
+     * @return the lane count
+     */
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    private void releaseBarriers() {
+        List<CompletableFuture<Void>> released = new ArrayList<>();
+        synchronized (barriers) {
+            removeReached(released);
+        }
+        // outside the lock, the futures may run their dependents inline
+        released.forEach(future -> future.complete(null));
+    }
+
+    private void batchCompleted(Lane lane , int size) {
+        List<CompletableFuture<Void>> released = new ArrayList<>();
+        synchronized (barriers) {
+            lane.completed += size;
+            removeReached(released);
+        }
+        released.forEach(future -> future.complete(null));
+    }
+
+    private void batchFailed(Lane lane , int size , RuntimeException failure) {
+        List<CompletableFuture<Void>> failed = new ArrayList<>();
+        List<CompletableFuture<Void>> released = new ArrayList<>();
+        synchronized (barriers) {
+            long start = lane.completed;
+            lane.completed += size;
+            lane.failedThrough = lane.completed;
+            lane.failure = failure;
+            for (Iterator<Barrier> iterator = barriers.iterator(); iterator.hasNext(); ) {
+                Barrier barrier = iterator.next();
+                if (barrier.targets()[lane.index] > start) {
+                    iterator.remove();
+                    failed.add(barrier.future());
+                }
+            }
+            removeReached(released);
+        }
+        failed.forEach(future -> future.completeExceptionally(failure));
+        released.forEach(future -> future.complete(null));
+    }
+
+    private void removeReached(List<CompletableFuture<Void>> released) {
+        for (Iterator<Barrier> iterator = barriers.iterator(); iterator.hasNext(); ) {
+            Barrier barrier = iterator.next();
+            if (reached(barrier)) {
+                iterator.remove();
+                released.add(barrier.future());
+            }
+        }
+    }
+
+    private boolean reached(Barrier barrier) {
+        for (int i = 0; i < lanes.length; i++) {
+            if (lanes[i].completed < barrier.targets()[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Lane laneFor(String deviceName) {
+        int hash = deviceName == null ? 0 : deviceName.hashCode();
+        // spread the bits so similar device names do not cluster on a lane
+        hash ^= hash >>> 16;
+        return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+    }
+
+    /**
+     * Readings submitted to each lane when {@link #whenCompleted()} was called.
+     */
+    private record Barrier(long[] targets , CompletableFuture<Void> future) {
+    }
+
+    private final class Lane implements Runnable {
+
+        private final int index;
+        private final Queue<PendingReading> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        // readings ever submitted, and handled in submission order, so a barrier can compare the two
+        private final AtomicLong submitted = new AtomicLong();
+        private long completed;
+        // readings handled up to the end of the last batch given up on, and the error it failed with
+        private long failedThrough;
+        private RuntimeException failure;
+        // set once a batch is abandoned during shutdown, the readings after it no longer count as handled
+        private boolean abandoned;
+        private final Thread thread;
+        private volatile boolean idle;
+
+        Lane(int index) {
+            this.index = index;
+            this.thread = new Thread(this , "ingestion-lane-" + index);
+        }
+
+        @Override
+        public void run() {
+            List<PendingReading> batch = new ArrayList<>(maxBatchSize);
+            while (true) {
+                PendingReading reading;
+                while (batch.size() < maxBatchSize && (reading = queue.poll()) != null) {
+                    batch.add(reading);
+                }
+
+                if (batch.isEmpty()) {
+                    if (!running) {
+                        return;
+                    }
+                    idle = true;
+                    // re-check after publishing the idle flag, a producer may have missed it
+                    if (queue.isEmpty()) {
+                        LockSupport.parkNanos(this , IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                    continue;
+                }
+
+                size.addAndGet(-batch.size());
+                List<PendingReading> inserted;
+                try {
+                    inserted = writeWithRetry(batch);
+                } catch (RuntimeException e) {
+                    log.error("Failed to persist batch of {} records on {}, giving it up" , batch.size() , thread.getName() , e);
+                    notifyFailed(batch , e);
+                    if (!abandoned) {
+                        batchFailed(this , batch.size() , e);
+                    }
+                    batch.clear();
+                    continue;
+                }
+
+                if (inserted != null) {
+                    for (IngestionListener listener : listeners) {
+                        try {
+                            listener.onBatchCompleted(batch , inserted);
+                        } catch (RuntimeException e) {
+                            log.error("Ingestion listener failed on {}" , thread.getName() , e);
+                        }
+                    }
+                    if (!abandoned) {
+                        batchCompleted(this , batch.size());
+                    }
+                } else {
+                    abandoned = true;
+                }
+                batch.clear();
+            }
+        }
+
+        private void notifyFailed(List<PendingReading> batch , RuntimeException failure) {
+            for (IngestionListener listener : listeners) {
+                try {
+                    listener.onBatchFailed(batch , failure);
+                } catch (RuntimeException e) {
+                    log.error("Ingestion listener failed on {}" , thread.getName() , e);
+                }
+            }
+        }
+
+        /**
+         * Writes a batch, retrying with backoff while the database is unreachable.
+         *
+         * @return the inserted readings, or null if the lanes stopped before the database came back
+         * @throws RuntimeException if the batch failed for a reason retrying does not fix
+         */
+        private List<PendingReading> writeWithRetry(List<PendingReading> batch) {
+            long backoff = MIN_RETRY_NANOS;
+            while (true) {
+                try {
+                    return temperatureRecordWriter.write(batch);
+                } catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                    if (!running) {
+                        log.warn("Abandoning batch of {} records on {} during shutdown, database unavailable" , batch.size() , thread.getName());
+                        return null;
+                    }
+                    log.warn("Database unavailable on {}, retrying batch of {} records in {} ms" ,
+                            thread.getName() , batch.size() , TimeUnit.NANOSECONDS.toMillis(backoff));
+                    LockSupport.parkNanos(this , backoff);
+                    backoff = Math.min(backoff * 2 , MAX_RETRY_NANOS);
+                }
+            }
+        }
+
+    }
+
+}
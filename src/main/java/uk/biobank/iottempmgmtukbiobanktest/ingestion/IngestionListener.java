@@ -0,0 +1,30 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import java.util.List;
+
+/**
+ * Callback notified by the {@link IngestionLanes} once a batch has been handled by the writer.
+ */
+public interface IngestionListener {
+
+    /**
+     * Called on the lane thread after a batch was written.
+     * The lists are reused by the lane and must not be kept after the call returns.
+     *
+     * @param batch    every reading of the batch
+     * @param inserted the readings that were inserted, duplicates and failed readings excluded
+     */
+    void onBatchCompleted(List<PendingReading> batch , List<PendingReading> inserted);
+
+    /**
+     * Called on the lane thread after a batch was given up on because of a non-transient error,
+     * none of its readings were written. The list is reused by the lane and must not be kept after
+     * the call returns.
+     *
+     * @param batch   every reading of the batch
+     * @param failure the error the writer failed with
+     */
+    default void onBatchFailed(List<PendingReading> batch , RuntimeException failure) {
+    }
+
+}
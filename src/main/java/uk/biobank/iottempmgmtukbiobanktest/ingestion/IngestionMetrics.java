@@ -0,0 +1,48 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.journal.ReadingJournal;
+
+/**
+ * Publishes the queue depths of the ingestion pipeline as gauges, sampled on every scrape.
+ * <p>
+ * A lane whose depth stays close to {@code ingestion.lanes.capacity} is making producers wait,
+ * a growing journal backlog means the lanes are not keeping up with the journal.
+ */
+@Component
+public class IngestionMetrics implements MeterBinder {
+
+    private final IngestionLanes ingestionLanes;
+    private final ReadingJournal readingJournal;
+
+    public IngestionMetrics(IngestionLanes ingestionLanes , ReadingJournal readingJournal) {
+        this.ingestionLanes = ingestionLanes;
+        this.readingJournal = readingJournal;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (int i = 0; i < ingestionLanes.laneCount(); i++) {
+            int lane = i;
+            Gauge.builder("ingestion.lanes.queue.depth" , ingestionLanes , lanes -> lanes.queuedCount(lane))
+                    .description("Readings queued on a lane")
+                    .tag("lane" , String.valueOf(lane))
+                    .register(registry);
+        }
+        Gauge.builder("ingestion.lanes.queue.capacity" , ingestionLanes , IngestionLanes::capacity)
+                .description("Readings a lane holds before producers wait")
+                .register(registry);
+
+        Gauge.builder("ingestion.journal.backlog" , readingJournal , ReadingJournal::backlogBytes)
+                .description("Journaled bytes not yet handed to the lanes")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("ingestion.journal.in.flight" , readingJournal , ReadingJournal::inFlightCount)
+                .description("Journaled readings handed to the lanes and not yet stored")
+                .register(registry);
+    }
+
+}
@@ -0,0 +1,26 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * A reading accepted for persistence, together with its already resolved time.
+ *
+ * @param record          the reading as received
+ * @param time            the parsed reading time
+ * @param journalPosition the position of the reading in the ingestion journal, or {@link #NOT_JOURNALED}
+ */
+public record PendingReading(TemperatureRecordDTO record , LocalDateTime time , long journalPosition) {
+
+    public static final long NOT_JOURNALED = -1;
+
+    public PendingReading(TemperatureRecordDTO record , LocalDateTime time) {
+        this(record , time , NOT_JOURNALED);
+    }
+
+    public String deviceName() {
+        return record.getDeviceName();
+    }
+
+}
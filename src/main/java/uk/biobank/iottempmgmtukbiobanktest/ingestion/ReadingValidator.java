@@ -0,0 +1,198 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.IsoTimestampParser;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validation and normalization stage run on every batch ahead of persistence.
+ * <p>
+ * Each record is checked in a single pass, parsing its time once with {@link IsoTimestampParser}.
+ * Device names and locations are trimmed, and the parsed time is stored on the record as its
+ * actual time so nothing downstream parses it again. Records that cannot be stored are reported
+ * under {@code records[<index>]} with the offending field, readings without a temperature keep
+ * their per-device "Missing reading" entry, listing every missing time of the device.
+ */
+@Component
+public class ReadingValidator {
+
+    // matches the VARCHAR(255) columns of temperature_records
+    static final int MAX_NAME_LENGTH = 255;
+
+    private final double minTemperature;
+    private final double maxTemperature;
+    private final long maxFutureSeconds;
+    private final int maxAgeDays;
+
+    private final Counter rejectedDeviceName;
+    private final Counter rejectedLocation;
+    private final Counter rejectedTemperature;
+    private final Counter rejectedTime;
+
+    public ReadingValidator(MeterRegistry meterRegistry ,
+                            @Value("${validation.min-temperature:-200}") double minTemperature ,
+                            @Value("${validation.max-temperature:100}") double maxTemperature ,
+                            @Value("${validation.max-future-seconds:300}") long maxFutureSeconds ,
+                            @Value("${validation.max-age-days:365}") int maxAgeDays) {
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+        this.maxFutureSeconds = maxFutureSeconds;
+        this.maxAgeDays = maxAgeDays;
+
+        this.rejectedDeviceName = rejectedCounter(meterRegistry , "deviceName");
+        this.rejectedLocation = rejectedCounter(meterRegistry , "location");
+        this.rejectedTemperature = rejectedCounter(meterRegistry , "temperature");
+        this.rejectedTime = rejectedCounter(meterRegistry , "time");
+    }
+
+    /**
+     * Validates and normalizes a batch of records.
+     *
+     * @param records the records as received
+     * @return the readings accepted for persistence, in submission order, and the report of the others
+     */
+    public Result validate(List<TemperatureRecordDTO> records) {
+        List<PendingReading> accepted = new ArrayList<>(records.size());
+        List<TemperatureRecordDTO> missing = null;
+        Map<String, String> report = null;
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime latest = now.plusSeconds(maxFutureSeconds);
+        LocalDateTime earliest = now.minusDays(maxAgeDays);
+
+        for (int i = 0; i < records.size(); i++) {
+            TemperatureRecordDTO record = records.get(i);
+            String rejection = record == null ? "empty record" : check(record , earliest , latest);
+            if (rejection == null) {
+                accepted.add(new PendingReading(record , record.getActualTime()));
+                continue;
+            }
+
+            if (report == null) {
+                report = new HashMap<>();
+            }
+            if (rejection.isEmpty()) {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(record);
+                // several missing readings of a device share its entry
+                report.merge(record.getDeviceName() , "Missing reading at " + getTimeLabel(record) ,
+                        (previous , added) -> previous + ", " + getTimeLabel(record));
+            } else {
+                report.put("records[" + i + "]" , rejection);
+            }
+        }
+
+        return new Result(accepted , missing == null ? List.of() : missing , report == null ? new HashMap<>() : report);
+    }
+
+    /**
+     * Checks and normalizes one record.
+     *
+     * @return null if the record is accepted, an empty string for a missing temperature,
+     * the rejection reason otherwise
+     */
+    private String check(TemperatureRecordDTO record , LocalDateTime earliest , LocalDateTime latest) {
+        String deviceName = normalize(record.getDeviceName());
+        if (deviceName == null) {
+            rejectedDeviceName.increment();
+            return "deviceName: missing";
+        }
+        if (deviceName.length() > MAX_NAME_LENGTH) {
+            rejectedDeviceName.increment();
+            return "deviceName: longer than " + MAX_NAME_LENGTH + " characters";
+        }
+        record.setDeviceName(deviceName);
+
+        String location = normalize(record.getLocation());
+        if (location != null && location.length() > MAX_NAME_LENGTH) {
+            rejectedLocation.increment();
+            return "location: longer than " + MAX_NAME_LENGTH + " characters";
+        }
+        record.setLocation(location);
+
+        Double temperature = record.getTemperature();
+        if (temperature == null) {
+            return "";
+        }
+        // also rejects NaN, which fails every comparison
+        if (!(temperature >= minTemperature && temperature <= maxTemperature)) {
+            rejectedTemperature.increment();
+            return "temperature: " + temperature + " outside [" + minTemperature + ", " + maxTemperature + "]";
+        }
+
+        // binary payloads already carry the time decoded
+        LocalDateTime time = record.getActualTime();
+        if (time == null) {
+            if (record.getTime() == null) {
+                rejectedTime.increment();
+                return "time: missing";
+            }
+            time = IsoTimestampParser.parse(record.getTime());
+            if (time == null) {
+                rejectedTime.increment();
+                return "time: malformed, expected yyyy-MM-dd'T'HH:mm:ss";
+            }
+            record.setActualTime(time);
+        }
+        if (time.isAfter(latest)) {
+            rejectedTime.increment();
+            return "time: in the future";
+        }
+        if (time.isBefore(earliest)) {
+            rejectedTime.increment();
+            return "time: older than " + maxAgeDays + " days";
+        }
+        return null;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String stripped = value.strip();
+        return stripped.isEmpty() ? null : stripped;
+    }
+
+    /**
+     * Returns a printable time for a reading, used in missing-reading messages.
+     *
+     * @param record the reading to describe
+     * @return the time string sent by the client, or the formatted actual time
+     */
+    private static String getTimeLabel(TemperatureRecordDTO record) {
+        if (record.getTime() == null && record.getActualTime() != null) {
+            return DateUtil.localDateTimeToString(record.getActualTime());
+        }
+        return record.getTime();
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry , String field) {
+        return Counter.builder("ingestion.validation.rejected")
+                .description("Records rejected by validation, by offending field")
+                .tag("field" , field)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Outcome of validating a batch.
+     *
+     * @param accepted the readings to persist, with their parsed times
+     * @param missing  the normalized records of the missing readings
+     * @param report   the rejected records and missing readings, the response of processRecords
+     */
+    public record Result(List<PendingReading> accepted , List<TemperatureRecordDTO> missing , Map<String, String> report) {
+    }
+
+}
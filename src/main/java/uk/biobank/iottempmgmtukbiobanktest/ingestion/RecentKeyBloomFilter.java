@@ -0,0 +1,153 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, thread-safe Bloom filter over recent {@code (device, time)} keys.
+ * <p>
+ * Keys are added to the current generation, lookups check the current and the previous one.
+ * When the current generation has taken its expected number of insertions it becomes the
+ * previous generation and a fresh one is started, so memory stays fixed and the filter
+ * always remembers at least the last {@code expectedInsertions} keys at roughly the
+ * configured false-positive probability.
+ */
+public class RecentKeyBloomFilter {
+
+    private final int expectedInsertions;
+    private final int bitCount;
+    private final int hashCount;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    public RecentKeyBloomFilter(int expectedInsertions , double falsePositiveProbability) {
+        if (expectedInsertions <= 0 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing");
+        }
+        this.expectedInsertions = expectedInsertions;
+        // optimal sizing: m = -n ln(p) / ln(2)^2 and k = m / n ln(2)
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63 , Math.max(64 , bits));
+        this.hashCount = Math.max(1 , (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.current = new Generation(bitCount);
+        this.previous = new Generation(bitCount);
+    }
+
+    /**
+     * Adds a key to the filter, rotating generations when the current one is full.
+     *
+     * @param deviceName the device the reading belongs to
+     * @param epochMilli the reading time in epoch milliseconds
+     */
+    public void put(String deviceName , long epochMilli) {
+        Generation generation = current;
+        long hash = hash(deviceName , epochMilli);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            generation.set(index(h1 + i * h2));
+        }
+        if (generation.insertions.incrementAndGet() >= expectedInsertions) {
+            rotate(generation);
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added recently.
+     *
+     * @param deviceName the device the reading belongs to
+     * @param epochMilli the reading time in epoch milliseconds
+     * @return false if the key was definitely not added within the retained generations
+     */
+    public boolean mightContain(String deviceName , long epochMilli) {
+        long hash = hash(deviceName , epochMilli);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return current.containsAll(this , h1 , h2) || previous.containsAll(this , h1 , h2);
+    }
+
+    /**
+     * Estimates the current false-positive probability from the fill ratio of both generations.
+     *
+     * @return the probability that a lookup of an absent key returns true
+     */
+    public double expectedFalsePositiveProbability() {
+        double currentRate = Math.pow(current.fillRatio(bitCount) , hashCount);
+        double previousRate = Math.pow(previous.fillRatio(bitCount) , hashCount);
+        return currentRate + previousRate - currentRate * previousRate;
+    }
+
+    /**
+     * Returns the memory held by the bit sets of both generations.
+     *
+     * @return the size of the filter in bytes
+     */
+    public long memoryBytes() {
+        return 2L * (bitCount / 64 + 1) * Long.BYTES;
+    }
+
+    private synchronized void rotate(Generation full) {
+        if (current == full) {
+            previous = full;
+            current = new Generation(bitCount);
+        }
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitCount;
+    }
+
+    private static long hash(String deviceName , long epochMilli) {
+        // 64-bit finalizer from MurmurHash3 over the device hash and the reading time
+        long h = deviceName.hashCode() * 0x9E3779B97F4A7C15L ^ epochMilli;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Generation {
+
+        private final AtomicLongArray words;
+        private final AtomicLong insertions = new AtomicLong();
+
+        Generation(int bitCount) {
+            this.words = new AtomicLongArray(bitCount / 64 + 1);
+        }
+
+        void set(int bit) {
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long value;
+            do {
+                value = words.get(word);
+                if ((value & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(word , value , value | mask));
+        }
+
+        boolean containsAll(RecentKeyBloomFilter filter , int h1 , int h2) {
+            for (int i = 0; i < filter.hashCount; i++) {
+                int bit = filter.index(h1 + i * h2);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double fillRatio(int bitCount) {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return (double) set / bitCount;
+        }
+
+    }
+
+}
@@ -0,0 +1,284 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.profiling.PipelineStage;
+import uk.biobank.iottempmgmtukbiobanktest.storage.HourlyStatisticsRecompute;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists batches of pending readings, skipping duplicates.
+ * <p>
+ * Each reading goes through the {@link DuplicateReadingFilter}; only possible duplicates are probed,
+ * all of a batch with one query over raw rows and compacted chunks, so a retransmit of a reading
+ * already compacted is not stored again as a raw row. The remaining readings are inserted with one JDBC batch in one
+ * transaction, {@code on conflict do nothing} dropping the readings the unique constraint rejects (a
+ * duplicate inserted concurrently, e.g. by another replica). A batch therefore costs at most two
+ * statements whatever its size, besides seeding the filter once per device, and two more when it
+ * holds late readings of hours already over: their recomputed statistics, see
+ * {@link HourlyStatisticsRecompute}, are deleted in the same transaction, as they no longer count
+ * every reading of the hour, after waiting for the recompute tasks of their devices to commit.
+ * <p>
+ * Batch sizes, write latency and inserted and duplicate readings are published as metrics.
+ */
+@Slf4j
+@Component
+public class TemperatureRecordWriter {
+
+    // raw rows matching a key, and the timestamps of the compacted chunks whose span holds one
+    private static final String FIND_STORED = """
+            with k as (select * from unnest(cast(? as varchar[]), cast(? as timestamp[])) as u(device_name, time))
+            select k.device_name, k.time, cast(null as integer), cast(null as bytea)
+            from k
+            where exists (select 1 from temperature_records r where r.device_name = k.device_name and r.time = k.time)
+            union all
+            select c.device_name, cast(null as timestamp), c.reading_count, c.timestamps
+            from temperature_chunks c
+            where exists (select 1 from k where k.device_name = c.device_name and k.time between c.start_time and c.end_time)
+            """;
+
+    private static final String INSERT_RECORD = """
+            insert into temperature_records (device_name, location, temperature, time, created_at)
+            values (?, ?, ?, ?, ?)
+            on conflict (device_name, time) do nothing
+            """;
+
+    // exclusive, in key order as the recompute tasks take them shared
+    private static final String LOCK_DEVICES = """
+            select count(pg_advisory_xact_lock(?, l.k))
+            from (select distinct hashtext(d) as k from unnest(cast(? as varchar[])) as u(d) order by 1) as l
+            """;
+
+    private static final String DELETE_STATISTICS = """
+            delete from temperature_hourly_statistics s
+            using unnest(cast(? as varchar[]), cast(? as timestamp[])) as k(device_name, bucket_start)
+            where s.device_name = k.device_name and s.bucket_start = k.bucket_start
+            """;
+
+    private static final int[] INSERT_TYPES = {Types.VARCHAR , Types.VARCHAR , Types.DOUBLE , Types.TIMESTAMP , Types.TIMESTAMP};
+
+    private final DuplicateReadingFilter duplicateReadingFilter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final DistributionSummary batchSize;
+    private final Timer writeTimer;
+    private final Counter insertedReadings;
+    private final Counter batchDuplicates;
+    private final Counter storedDuplicates;
+    private final Counter rejectedDuplicates;
+
+    public TemperatureRecordWriter(DuplicateReadingFilter duplicateReadingFilter , JdbcTemplate jdbcTemplate ,
+                                   TransactionTemplate transactionTemplate , MeterRegistry meterRegistry) {
+        this.duplicateReadingFilter = duplicateReadingFilter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+
+        this.batchSize = DistributionSummary.builder("ingestion.writer.batch.size")
+                .description("Readings per batch handed to the writer")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("ingestion.writer.batch")
+                .description("Time to check and persist a batch of readings")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.insertedReadings = Counter.builder("ingestion.writer.inserted")
+                .description("Readings inserted")
+                .register(meterRegistry);
+        this.batchDuplicates = duplicateCounter(meterRegistry , "batch");
+        this.storedDuplicates = duplicateCounter(meterRegistry , "stored");
+        this.rejectedDuplicates = duplicateCounter(meterRegistry , "constraint");
+    }
+
+    /**
+     * Writes a batch of readings, skipping the ones already stored.
+     *
+     * @param batch the readings to persist
+     * @return the readings that were inserted
+     */
+    public List<PendingReading> write(List<PendingReading> batch) {
+        batchSize.record(batch.size());
+        long started = System.nanoTime();
+        try (PipelineStage stage = PipelineStage.begin("write")) {
+            stage.records(batch.size());
+            List<PendingReading> inserted = writeBatch(batch);
+            insertedReadings.increment(inserted.size());
+            return inserted;
+        } finally {
+            writeTimer.record(System.nanoTime() - started , TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<PendingReading> writeBatch(List<PendingReading> batch) {
+        List<PendingReading> candidates = new ArrayList<>(batch.size());
+        List<PendingReading> suspects = new ArrayList<>();
+        List<DuplicateReadingFilter.Check> checks = new ArrayList<>();
+        Set<Key> batchKeys = new HashSet<>();
+
+        for (PendingReading reading : batch) {
+            if (!batchKeys.add(new Key(reading.deviceName() , reading.time()))) {
+                batchDuplicates.increment();
+                log.warn("Duplicate record skipped for device: {} at time: {}" , reading.deviceName() , reading.time());
+                continue;
+            }
+            candidates.add(reading);
+
+            // clearly new readings skip the probe
+            DuplicateReadingFilter.Check check = duplicateReadingFilter.check(reading.deviceName() , reading.time());
+            if (check != DuplicateReadingFilter.Check.NEW) {
+                suspects.add(reading);
+                checks.add(check);
+            }
+        }
+
+        Set<Key> stored = suspects.isEmpty() ? Set.of() : findStored(suspects);
+        for (int i = 0; i < suspects.size(); i++) {
+            if (checks.get(i) == DuplicateReadingFilter.Check.SEEN_RECENTLY) {
+                duplicateReadingFilter.recordProbeResult(stored.contains(new Key(suspects.get(i).deviceName() , suspects.get(i).time())));
+            }
+        }
+
+        List<PendingReading> toInsert = new ArrayList<>(candidates.size());
+        for (PendingReading reading : candidates) {
+            if (stored.contains(new Key(reading.deviceName() , reading.time()))) {
+                storedDuplicates.increment();
+                log.warn("Duplicate record skipped for device: {} at time: {}" , reading.deviceName() , reading.time());
+            } else {
+                toInsert.add(reading);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return toInsert;
+        }
+
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(toInsert.size());
+        for (PendingReading reading : toInsert) {
+            rows.add(toInsertRow(reading , createdAt));
+        }
+        // statistics are only recomputed for hours already over, live readings never touch them
+        LocalDateTime currentHour = createdAt.truncatedTo(ChronoUnit.HOURS);
+        int[] counts = transactionTemplate.execute(status -> {
+            int[] insertCounts = jdbcTemplate.batchUpdate(INSERT_RECORD , rows , INSERT_TYPES);
+            deleteStatistics(toInsert , insertCounts , currentHour);
+            return insertCounts;
+        });
+
+        // recorded only once committed, a rolled back batch is retried and must not be taken for its own duplicate
+        List<PendingReading> inserted = new ArrayList<>(toInsert.size());
+        for (int i = 0; i < toInsert.size(); i++) {
+            PendingReading reading = toInsert.get(i);
+            // zero when the constraint rejected the row, unknown counts are taken as inserted
+            if (counts != null && counts[i] == 0) {
+                rejectedDuplicates.increment();
+                log.warn("Duplicate record rejected by the database for device: {} at time: {}" , reading.deviceName() , reading.time());
+            } else {
+                duplicateReadingFilter.recordInserted(reading.deviceName() , reading.time());
+                inserted.add(reading);
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Returns the keys of the readings already stored, raw or compacted, with one query.
+     */
+    private Set<Key> findStored(List<PendingReading> readings) {
+        String[] deviceNames = new String[readings.size()];
+        Timestamp[] times = new Timestamp[readings.size()];
+        for (int i = 0; i < readings.size(); i++) {
+            deviceNames[i] = readings.get(i).deviceName();
+            times[i] = Timestamp.valueOf(readings.get(i).time());
+        }
+
+        Set<Key> stored = new HashSet<>();
+        jdbcTemplate.query(FIND_STORED , statement -> {
+            statement.setArray(1 , statement.getConnection().createArrayOf("varchar" , deviceNames));
+            statement.setArray(2 , statement.getConnection().createArrayOf("timestamp" , times));
+        } , (RowCallbackHandler) resultSet -> {
+            byte[] timestamps = resultSet.getBytes(4);
+            if (timestamps == null) {
+                stored.add(new Key(resultSet.getString(1) , resultSet.getTimestamp(2).toLocalDateTime()));
+                return;
+            }
+            for (long epochMilli : TemperatureChunkCodec.decodeTimestamps(timestamps , resultSet.getInt(3))) {
+                stored.add(new Key(resultSet.getString(1) , DateUtil.epochMilliToLocalDateTime(epochMilli)));
+            }
+        });
+        return stored;
+    }
+
+    /**
+     * Deletes the recomputed statistics of the hours before {@code currentHour} that readings were
+     * inserted into, if there are any, with one statement once the locks of their devices are taken
+     * with another.
+     */
+    private void deleteStatistics(List<PendingReading> readings , int[] counts , LocalDateTime currentHour) {
+        Set<Key> hours = new LinkedHashSet<>();
+        for (int i = 0; i < readings.size(); i++) {
+            PendingReading reading = readings.get(i);
+            if ((counts == null || counts[i] != 0) && reading.time().isBefore(currentHour)) {
+                hours.add(new Key(reading.deviceName() , reading.time().truncatedTo(ChronoUnit.HOURS)));
+            }
+        }
+        if (hours.isEmpty()) {
+            return;
+        }
+
+        String[] deviceNames = hours.stream().map(Key::deviceName).toArray(String[]::new);
+        Timestamp[] bucketStarts = hours.stream().map(hour -> Timestamp.valueOf(hour.time())).toArray(Timestamp[]::new);
+        // waits for the tasks recomputing the devices, whose statistics would not count these readings
+        jdbcTemplate.query(LOCK_DEVICES , statement -> {
+            statement.setInt(1 , HourlyStatisticsRecompute.DEVICE_LOCK_CLASS);
+            statement.setArray(2 , statement.getConnection().createArrayOf("varchar" , deviceNames));
+        } , (RowCallbackHandler) resultSet -> {
+        });
+        jdbcTemplate.update(DELETE_STATISTICS , statement -> {
+            statement.setArray(1 , statement.getConnection().createArrayOf("varchar" , deviceNames));
+            statement.setArray(2 , statement.getConnection().createArrayOf("timestamp" , bucketStarts));
+        });
+    }
+
+    private static Counter duplicateCounter(MeterRegistry meterRegistry , String source) {
+        return Counter.builder("ingestion.writer.duplicates")
+                .description("Duplicate readings skipped, by where they were detected")
+                .tag("source" , source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Converts a pending reading to the parameters of {@code INSERT_RECORD}.
+     *
+     * @param reading   the pending reading containing the data to be converted
+     * @param createdAt the time the batch is stored
+     * @return the device name, location, temperature, time and creation time of the row
+     */
+    public static Object[] toInsertRow(PendingReading reading , LocalDateTime createdAt) {
+        TemperatureRecordDTO record = reading.record();
+        return new Object[]{record.getDeviceName() , record.getLocation() , record.getTemperature() , reading.time() , createdAt};
+    }
+
+    private record Key(String deviceName , LocalDateTime time) {
+    }
+
+}
@@ -0,0 +1,93 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One memory-mapped, fixed-size file of the ingestion journal.
+ * <p>
+ * A segment is named after the global journal position of its first byte, so positions stay
+ * valid across restarts even if the configured segment size changes.
+ */
+final class JournalSegment {
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path path;
+    private final long basePosition;
+    private final int size;
+    private final MappedByteBuffer buffer;
+
+    private JournalSegment(Path path , long basePosition , int size , MappedByteBuffer buffer) {
+        this.path = path;
+        this.basePosition = basePosition;
+        this.size = size;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates (or reopens) the segment starting at the given position.
+     *
+     * @param directory    the journal directory
+     * @param basePosition the global position of the first byte of the segment
+     * @param size         the size of a new segment in bytes, ignored for an existing file
+     * @return the mapped segment
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static JournalSegment open(Path directory , long basePosition , int size) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s" , PREFIX , basePosition , SUFFIX));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile() , "rw")) {
+            if (file.length() == 0) {
+                file.setLength(size);
+            }
+            int mappedSize = (int) file.length();
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE , 0 , mappedSize);
+            return new JournalSegment(path , basePosition , mappedSize , buffer);
+        }
+    }
+
+    /**
+     * Parses the base position out of a segment file name.
+     *
+     * @param path the segment file
+     * @return the base position, or -1 if the file is not a journal segment
+     */
+    static long basePositionOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length() , name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    long basePosition() {
+        return basePosition;
+    }
+
+    long endPosition() {
+        return basePosition + size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+}
@@ -0,0 +1,558 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionLanes;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionListener;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, segment-rotated write-ahead journal of accepted readings, backed by memory-mapped files.
+ * <p>
+ * {@link #append(List)} encodes a batch and copies it into the current segment with one sequential
+ * write, after which the readings are acknowledged to the caller: ingest latency no longer depends on
+ * the database. A drainer thread tails the journal and feeds the {@link IngestionLanes}, which report
+ * back once a reading has been written, which {@link #whenHandled()} waits for. The position below
+ * which every reading is stored is checkpointed periodically, and segments entirely behind the
+ * checkpoint are deleted.
+ * <p>
+ * Readings of a batch the lanes give up on stay in flight, holding the checkpoint back, and are
+ * submitted again every {@code ingestion.journal.retry-interval-ms} until they are written. While they
+ * fail the journal fills up and new batches are eventually rejected rather than lost.
+ * <p>
+ * At startup everything after the last checkpoint is replayed through the same drainer. Readings
+ * written just before a crash may be replayed, the duplicate handling of the writer discards them.
+ * <p>
+ * Each entry is framed as {@code [length][crc32c][payload]}. A length of -1 marks the unused tail of a
+ * segment. With {@code ingestion.journal.fsync} disabled the journal survives process crashes and pod
+ * restarts (the page cache is flushed by the kernel), enable it to also survive a node losing power.
+ */
+@Slf4j
+@Component
+public class ReadingJournal implements IngestionListener {
+
+    private static final int ENTRY_HEADER_BYTES = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final IngestionLanes ingestionLanes;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean fsync;
+    private final long retryIntervalNanos;
+
+    private final ConcurrentSkipListMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private final NavigableSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    // in flight and given up on by the lanes, waiting to be submitted again
+    private final NavigableSet<Long> failed = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> waiters = new ConcurrentSkipListMap<>();
+    private final AtomicLong writePosition = new AtomicLong();
+    private final Object appendLock = new Object();
+
+    private JournalSegment currentSegment;
+    private volatile long readPosition;
+    private volatile long checkpoint;
+    private volatile long retryAt;
+    private volatile boolean running;
+    private Thread drainer;
+
+    public ReadingJournal(IngestionLanes ingestionLanes ,
+                          @Value("${ingestion.journal.enabled:true}") boolean enabled ,
+                          @Value("${ingestion.journal.directory:journal}") String directory ,
+                          @Value("${ingestion.journal.segment-size-mb:64}") int segmentSizeMb ,
+                          @Value("${ingestion.journal.max-segments:32}") int maxSegments ,
+                          @Value("${ingestion.journal.fsync:false}") boolean fsync ,
+                          @Value("${ingestion.journal.retry-interval-ms:30000}") long retryIntervalMs) {
+        this.ingestionLanes = ingestionLanes;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.maxSegments = maxSegments;
+        this.fsync = fsync;
+        this.retryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(retryIntervalMs);
+    }
+
+    /**
+     * Opens the journal, recovers the write position and starts replaying unflushed readings.
+     *
+     * @throws IOException if the journal directory or its segments cannot be opened
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            log.info("Ingestion journal disabled, readings are handed to the ingestion lanes directly");
+            return;
+        }
+
+        Files.createDirectories(directory);
+        checkpoint = readCheckpoint();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                long basePosition = JournalSegment.basePositionOf(file);
+                if (basePosition >= 0) {
+                    JournalSegment segment = JournalSegment.open(directory , basePosition , segmentSize);
+                    segments.put(basePosition , segment);
+                }
+            }
+        }
+        deleteSegmentsBefore(checkpoint);
+
+        long position = recoverWritePosition(checkpoint);
+        currentSegment = segmentForWriting(position);
+        // drop anything after the recovered position, it can only be a torn write
+        for (int offset = (int) (position - currentSegment.basePosition()); offset < currentSegment.size(); offset++) {
+            currentSegment.buffer().put(offset , (byte) 0);
+        }
+        for (JournalSegment segment : new ArrayList<>(segments.tailMap(currentSegment.basePosition() , false).values())) {
+            segments.remove(segment.basePosition());
+            segment.delete();
+        }
+
+        writePosition.set(position);
+        readPosition = checkpoint;
+        if (position > checkpoint) {
+            log.info("Replaying {} bytes of unflushed ingestion journal from position {}" , position - checkpoint , checkpoint);
+        }
+
+        ingestionLanes.addListener(this);
+        running = true;
+        drainer = new Thread(this::drain , "ingestion-journal-drainer");
+        drainer.start();
+        log.info("Ingestion journal opened in {}, {} segment(s)" , directory.toAbsolutePath() , segments.size());
+    }
+
+    /**
+     * Stops the drainer and writes a final checkpoint. Readings still queued in the lanes are
+     * replayed at the next start if they do not make it to the database before shutdown.
+     */
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+    }
+
+    /**
+     * Whether accepted readings go through the journal.
+     *
+     * @return true if the journal is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a batch of accepted readings with a single sequential write.
+     *
+     * @param readings the readings to journal
+     * @throws GeneralException if the journal has no room left for the batch
+     */
+    public void append(List<PendingReading> readings) {
+        if (readings.isEmpty()) {
+            return;
+        }
+
+        int[] entryOffsets = new int[readings.size() + 1];
+        ByteBuffer encoded = encode(readings , entryOffsets);
+
+        synchronized (appendLock) {
+            long position = writePosition.get();
+            ensureCapacity(position , encoded.limit());
+
+            int from = 0;
+            while (from < readings.size()) {
+                int remaining = (int) (currentSegment.endPosition() - position);
+                int to = from;
+                while (to < readings.size() && entryOffsets[to + 1] - entryOffsets[from] <= remaining) {
+                    to++;
+                }
+                if (to == from) {
+                    position = rotate(position);
+                    continue;
+                }
+
+                int offset = (int) (position - currentSegment.basePosition());
+                int length = entryOffsets[to] - entryOffsets[from];
+                currentSegment.buffer().put(offset , encoded , entryOffsets[from] , length);
+                if (fsync) {
+                    currentSegment.buffer().force(offset , length);
+                }
+                position += length;
+                from = to;
+            }
+
+            // publishing the position makes the entries visible to the drainer
+            writePosition.set(position);
+        }
+        LockSupport.unpark(drainer);
+    }
+
+    /**
+     * Marks journaled readings of a completed batch as flushed.
+     */
+    @Override
+    public void onBatchCompleted(List<PendingReading> batch , List<PendingReading> inserted) {
+        for (PendingReading reading : batch) {
+            if (reading.journalPosition() != PendingReading.NOT_JOURNALED) {
+                inFlight.remove(reading.journalPosition());
+            }
+        }
+        if (!waiters.isEmpty()) {
+            releaseWaiters();
+        }
+    }
+
+    /**
+     * Keeps the journaled readings of a failed batch in flight, so the checkpoint stays behind them,
+     * and schedules them to be submitted again. Waiters for positions past them fail.
+     */
+    @Override
+    public void onBatchFailed(List<PendingReading> batch , RuntimeException failure) {
+        long first = Long.MAX_VALUE;
+        for (PendingReading reading : batch) {
+            if (reading.journalPosition() != PendingReading.NOT_JOURNALED) {
+                failed.add(reading.journalPosition());
+                first = Math.min(first , reading.journalPosition());
+            }
+        }
+        if (first == Long.MAX_VALUE) {
+            return;
+        }
+        retryAt = System.nanoTime() + retryIntervalNanos;
+        log.warn("Batch of {} journaled readings failed, submitting them again in {} ms" ,
+                batch.size() , TimeUnit.NANOSECONDS.toMillis(retryIntervalNanos));
+
+        for (Map.Entry<Long, CompletableFuture<Void>> waiter : waiters.tailMap(first , false).entrySet()) {
+            if (waiters.remove(waiter.getKey() , waiter.getValue())) {
+                waiter.getValue().completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Returns a future completing once every reading appended before the call has been written to
+     * the database. It completes exceptionally if a batch holding any of those readings fails, the
+     * readings stay journaled and are submitted again.
+     *
+     * @return the future, completed on an ingestion lane thread
+     */
+    public CompletableFuture<Void> whenHandled() {
+        long position = writePosition.get();
+        if (handledPosition() >= position) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = waiters.computeIfAbsent(position , ignored -> new CompletableFuture<>());
+        // the last batch below the position may have completed before the waiter was added
+        releaseWaiters();
+        return future;
+    }
+
+    /**
+     * Persists the position below which every journaled reading has been handled and deletes
+     * the segments entirely behind it.
+     */
+    @Scheduled(fixedDelayString = "${ingestion.journal.checkpoint-interval-ms:1000}")
+    public void checkpoint() {
+        if (!enabled) {
+            return;
+        }
+
+        // also covers waiters released by the drainer skipping a corrupt entry
+        releaseWaiters();
+        long position = handledPosition();
+        if (position <= checkpoint) {
+            return;
+        }
+
+        try {
+            Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.write(temporary , ByteBuffer.allocate(Long.BYTES).putLong(position).array());
+            Files.move(temporary , directory.resolve(CHECKPOINT_FILE) , StandardCopyOption.REPLACE_EXISTING , StandardCopyOption.ATOMIC_MOVE);
+            checkpoint = position;
+            deleteSegmentsBefore(position);
+        } catch (IOException e) {
+            log.error("Failed to write ingestion journal checkpoint at {}" , position , e);
+        }
+    }
+
+    /**
+     * Returns the number of journaled bytes not yet handed to the ingestion lanes.
+     *
+     * @return the drain backlog in bytes
+     */
+    public long backlogBytes() {
+        return enabled ? writePosition.get() - readPosition : 0;
+    }
+
+    /**
+     * Returns the number of journaled readings handed to the lanes and not yet flushed.
+     *
+     * @return the number of in-flight readings
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Returns the position below which every journaled reading has been handled.
+     */
+    private long handledPosition() {
+        // read the drain position before the in-flight set: everything below it is in flight or handled
+        long drained = readPosition;
+        Iterator<Long> oldestInFlight = inFlight.iterator();
+        return oldestInFlight.hasNext() ? Math.min(drained , oldestInFlight.next()) : drained;
+    }
+
+    private void releaseWaiters() {
+        Map.Entry<Long, CompletableFuture<Void>> waiter;
+        while ((waiter = waiters.firstEntry()) != null && waiter.getKey() <= handledPosition()) {
+            if (waiters.remove(waiter.getKey() , waiter.getValue())) {
+                waiter.getValue().complete(null);
+            }
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            if (!failed.isEmpty() && System.nanoTime() - retryAt >= 0) {
+                retryFailed();
+            }
+
+            long position = readPosition;
+            if (position >= writePosition.get()) {
+                LockSupport.parkNanos(this , IDLE_PARK_NANOS);
+                continue;
+            }
+
+            JournalSegment segment = segments.floorEntry(position).getValue();
+            int offset = (int) (position - segment.basePosition());
+            if (segment.size() - offset < ENTRY_HEADER_BYTES || segment.buffer().getInt(offset) == END_OF_SEGMENT) {
+                readPosition = segment.endPosition();
+                continue;
+            }
+
+            int length = segment.buffer().getInt(offset);
+            byte[] payload = new byte[length];
+            segment.buffer().get(offset + ENTRY_HEADER_BYTES , payload);
+            if (crc(payload) != segment.buffer().getInt(offset + 4)) {
+                // cannot happen for entries written by this process, skip what has been written so far
+                log.error("Corrupt ingestion journal entry at {}, skipping to {}" , position , writePosition.get());
+                readPosition = writePosition.get();
+                continue;
+            }
+
+            // register as in flight before moving past the entry, see checkpoint()
+            inFlight.add(position);
+            readPosition = position + ENTRY_HEADER_BYTES + length;
+            ingestionLanes.submit(decode(payload , position));
+        }
+    }
+
+    /**
+     * Submits the failed readings again, their segments are kept as the checkpoint is behind them.
+     */
+    private void retryFailed() {
+        log.info("Submitting {} failed journaled readings again" , failed.size());
+        Long position;
+        while ((position = failed.pollFirst()) != null) {
+            JournalSegment segment = segments.floorEntry(position).getValue();
+            int offset = (int) (position - segment.basePosition());
+            byte[] payload = new byte[segment.buffer().getInt(offset)];
+            segment.buffer().get(offset + ENTRY_HEADER_BYTES , payload);
+            ingestionLanes.submit(decode(payload , position));
+        }
+    }
+
+    private long recoverWritePosition(long from) {
+        long position = from;
+        while (true) {
+            Map.Entry<Long, JournalSegment> entry = segments.floorEntry(position);
+            if (entry == null || position >= entry.getValue().endPosition()) {
+                return position;
+            }
+
+            JournalSegment segment = entry.getValue();
+            int offset = (int) (position - segment.basePosition());
+            int remaining = segment.size() - offset;
+            int length = remaining < ENTRY_HEADER_BYTES ? END_OF_SEGMENT : segment.buffer().getInt(offset);
+            if (length == END_OF_SEGMENT) {
+                if (segments.containsKey(segment.endPosition())) {
+                    position = segment.endPosition();
+                    continue;
+                }
+                return position;
+            }
+            if (length <= 0 || length > remaining - ENTRY_HEADER_BYTES) {
+                return position;
+            }
+
+            byte[] payload = new byte[length];
+            segment.buffer().get(offset + ENTRY_HEADER_BYTES , payload);
+            if (crc(payload) != segment.buffer().getInt(offset + 4)) {
+                log.warn("Torn ingestion journal entry at {}, truncating" , position);
+                return position;
+            }
+            position += ENTRY_HEADER_BYTES + length;
+        }
+    }
+
+    private JournalSegment segmentForWriting(long position) throws IOException {
+        Map.Entry<Long, JournalSegment> entry = segments.floorEntry(position);
+        if (entry != null && position < entry.getValue().endPosition()) {
+            return entry.getValue();
+        }
+        JournalSegment segment = JournalSegment.open(directory , position , segmentSize);
+        segments.put(position , segment);
+        return segment;
+    }
+
+    private long rotate(long position) {
+        int offset = (int) (position - currentSegment.basePosition());
+        if (currentSegment.size() - offset >= Integer.BYTES) {
+            currentSegment.buffer().putInt(offset , END_OF_SEGMENT);
+        }
+        try {
+            currentSegment = segmentForWriting(currentSegment.endPosition());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create ingestion journal segment" , e);
+        }
+        return currentSegment.basePosition();
+    }
+
+    private void ensureCapacity(long position , int bytes) {
+        long available = currentSegment.endPosition() - position + (long) (maxSegments - segments.size()) * segmentSize;
+        if (bytes > available) {
+            throw new GeneralException(ResponseCodeAndMessage.ERROR_PROCESSING.responseCode , "Ingestion journal is full, try again later");
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+    }
+
+    private void deleteSegmentsBefore(long position) throws IOException {
+        for (JournalSegment segment : new ArrayList<>(segments.headMap(position , false).values())) {
+            if (segment.endPosition() <= position && segment != currentSegment) {
+                segments.remove(segment.basePosition());
+                segment.delete();
+            }
+        }
+    }
+
+    private static ByteBuffer encode(List<PendingReading> readings , int[] entryOffsets) {
+        List<byte[]> payloads = new ArrayList<>(readings.size());
+        int total = 0;
+        for (PendingReading reading : readings) {
+            byte[] payload = encodePayload(reading);
+            payloads.add(payload);
+            total += ENTRY_HEADER_BYTES + payload.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (int i = 0; i < payloads.size(); i++) {
+            byte[] payload = payloads.get(i);
+            entryOffsets[i] = buffer.position();
+            buffer.putInt(payload.length).putInt(crc(payload)).put(payload);
+        }
+        entryOffsets[payloads.size()] = buffer.position();
+        return buffer.flip();
+    }
+
+    private static byte[] encodePayload(PendingReading reading) {
+        byte[] deviceName = toBytes(reading.record().getDeviceName());
+        byte[] location = toBytes(reading.record().getLocation());
+        ByteBuffer payload = ByteBuffer.allocate(2 * Integer.BYTES + length(deviceName) + length(location) + 2 * Long.BYTES);
+        putString(payload , deviceName);
+        putString(payload , location);
+        payload.putLong(DateUtil.localDateTimeToEpochMilli(reading.time()));
+        payload.putDouble(reading.record().getTemperature());
+        return payload.array();
+    }
+
+    private static PendingReading decode(byte[] bytes , long position) {
+        ByteBuffer payload = ByteBuffer.wrap(bytes);
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(getString(payload));
+        record.setLocation(getString(payload));
+        record.setActualTime(DateUtil.epochMilliToLocalDateTime(payload.getLong()));
+        record.setTemperature(payload.getDouble());
+        return new PendingReading(record , record.getActualTime() , position);
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putString(ByteBuffer buffer , byte[] value) {
+        buffer.putInt(value == null ? -1 : value.length);
+        if (value != null) {
+            buffer.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array() , buffer.position() , length , StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,141 @@
+package uk.biobank.iottempmgmtukbiobanktest.lineprotocol;
+
+import io.micrometer.core.instrument.Counter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the lines of one channel and hands the readings to processRecords in batches.
+ * <p>
+ * A TCP channel receives single lines split by a line decoder, a UDP channel datagrams of one or
+ * more lines. Both are parsed in place, through a view of the buffer they arrived in. The handler
+ * is only used from the event loop of its channel, so its batch needs no locking; a batch is
+ * processed once full, or by a timer of the channel once it has waited
+ * {@code line-protocol.batch-max-wait-ms}.
+ * Processing runs on the event loop, so while the lanes are saturated the channel is not read and
+ * TCP senders are held back.
+ */
+@Slf4j
+class LineProtocolHandler extends ChannelInboundHandlerAdapter {
+
+    private final TemperatureRecordService temperatureRecordService;
+    private final LineProtocolParser parser;
+    private final int batchSize;
+    private final long batchMaxWaitMs;
+    private final Counter receivedLines;
+    private final Counter malformedLines;
+    private final Counter failedBatches;
+
+    private List<TemperatureRecordDTO> batch;
+    private ScheduledFuture<?> flushTimer;
+
+    LineProtocolHandler(TemperatureRecordService temperatureRecordService , TimeUnit precision , int batchSize , long batchMaxWaitMs ,
+                        Counter receivedLines , Counter malformedLines , Counter failedBatches) {
+        this.temperatureRecordService = temperatureRecordService;
+        this.parser = new LineProtocolParser(precision);
+        this.batchSize = batchSize;
+        this.batchMaxWaitMs = batchMaxWaitMs;
+        this.receivedLines = receivedLines;
+        this.malformedLines = malformedLines;
+        this.failedBatches = failedBatches;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        flushTimer = ctx.executor().scheduleWithFixedDelay(() -> flush(ctx) , batchMaxWaitMs , batchMaxWaitMs , TimeUnit.MILLISECONDS);
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        flushTimer.cancel(false);
+        flush(ctx);
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx , Object msg) {
+        try {
+            if (msg instanceof DatagramPacket packet) {
+                readLines(ctx , packet.content());
+            } else if (msg instanceof ByteBuf line) {
+                readLine(ctx , line.nioBuffer() , 0 , line.readableBytes());
+            }
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx , Throwable cause) {
+        // e.g. a line longer than line-protocol.max-line-length, the connection is dropped
+        log.debug("Line protocol channel {} failed: {}" , ctx.channel().remoteAddress() , cause.getMessage());
+        ctx.close();
+    }
+
+    private void readLines(ChannelHandlerContext ctx , ByteBuf content) {
+        // a view of the datagram, indexed from its first readable byte
+        ByteBuffer bytes = content.nioBuffer();
+        int start = content.readerIndex();
+        int end = content.writerIndex();
+        int index = start;
+        while (index < end) {
+            int newline = content.indexOf(index , end , (byte) '\n');
+            int lineEnd = newline < 0 ? end : newline;
+            readLine(ctx , bytes , index - start , lineEnd - index);
+            index = lineEnd + 1;
+        }
+    }
+
+    private void readLine(ChannelHandlerContext ctx , ByteBuffer bytes , int index , int length) {
+        if (length == 0 || bytes.get(index) == '#' || length == 1 && bytes.get(index) == '\r') {
+            return;
+        }
+        receivedLines.increment();
+        TemperatureRecordDTO record = parser.parse(bytes , index , length);
+        if (record == null) {
+            malformedLines.increment();
+            return;
+        }
+        batch.add(record);
+        if (batch.size() >= batchSize) {
+            flush(ctx);
+        }
+    }
+
+    private void flush(ChannelHandlerContext ctx) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<TemperatureRecordDTO> records = batch;
+        batch = new ArrayList<>(batchSize);
+        try {
+            Map<String, String> report = temperatureRecordService.processRecords(records);
+            if (!report.isEmpty()) {
+                log.debug("Line protocol batch of {} readings reported {}" , records.size() , report);
+            }
+        } catch (RuntimeException e) {
+            // there are no acknowledgements, closing the connection tells a TCP sender to send again
+            failedBatches.increment();
+            log.warn("Line protocol batch of {} readings from {} dropped: {}" , records.size() , ctx.channel().remoteAddress() , e.getMessage());
+            if (ctx.channel().parent() != null) {
+                ctx.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,362 @@
+package uk.biobank.iottempmgmtukbiobanktest.lineprotocol;
+
+import io.netty.buffer.ByteBuf;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses readings in the InfluxDB line protocol, one line per reading:
+ * <pre>
+ * FREEZER-1,location=BUILDING-1-ROOM-2 temp=-79.8 1736406000000000000
+ * </pre>
+ * The measurement is the device name, the {@code location} tag its location and the {@code temp}
+ * (or {@code temperature}) field its temperature, other tags and fields are ignored. A line
+ * without a temperature field is a missing reading. The timestamp is in the configured precision,
+ * nanoseconds by default, and the reading takes the time it was received when it has none.
+ * Escaped characters and quoted field values are not supported.
+ * <p>
+ * Lines are read in place, through a {@link ByteBuffer} view of the {@link ByteBuf} they arrived
+ * in rather than the {@code ByteBuf} itself, whose per-byte reads check its reference count. Numbers
+ * are parsed from the bytes, and device names and locations are looked up in a table of the names
+ * already seen, so a known device costs no {@code String}. A parser is not thread-safe, each
+ * channel has its own.
+ */
+public final class LineProtocolParser {
+
+    // names kept per parser, a table filled with garbage names is emptied
+    private static final int MAX_NAMES = 1 << 16;
+    // largest mantissa parsed exactly, longer numbers go through Double.parseDouble
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0 , 1e1 , 1e2 , 1e3 , 1e4 , 1e5 , 1e6 , 1e7 , 1e8 , 1e9 , 1e10 ,
+            1e11 , 1e12 , 1e13 , 1e14 , 1e15 , 1e16 , 1e17 , 1e18 , 1e19 , 1e20 , 1e21 , 1e22};
+
+    private final TimeUnit precision;
+    private final NameTable names = new NameTable();
+
+    // end of the number read by the last parseLong
+    private int numberEnd;
+
+    /**
+     * Creates a parser for timestamps of the given precision.
+     *
+     * @param precision the unit of the line timestamps
+     */
+    public LineProtocolParser(TimeUnit precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Parses the readable bytes of a buffer as a line, without its line terminator.
+     *
+     * @param line the buffer holding the line
+     * @return the reading, or null if the line is not a valid reading
+     */
+    public TemperatureRecordDTO parse(ByteBuf line) {
+        return parse(line.nioBuffer() , 0 , line.readableBytes());
+    }
+
+    /**
+     * Parses a line, without its line terminator.
+     *
+     * @param bytes  the bytes holding the line, e.g. a view of a datagram
+     * @param index  the index of the first byte of the line
+     * @param length the length of the line
+     * @return the reading, or null if the line is not a valid reading
+     */
+    public TemperatureRecordDTO parse(ByteBuffer bytes , int index , int length) {
+        int end = index + length;
+        if (end > index && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+
+        int measurementEnd = scan(bytes , index , end , true);
+        if (measurementEnd == index || measurementEnd == end) {
+            return null;
+        }
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+
+        // tags, up to the first space
+        int position = measurementEnd;
+        while (bytes.get(position) == ',') {
+            int keyStart = position + 1;
+            int keyEnd = scanKey(bytes , keyStart , end);
+            if (keyEnd < 0) {
+                return null;
+            }
+            int valueStart = keyEnd + 1;
+            position = scan(bytes , valueStart , end , true);
+            if (position == valueStart || position == end) {
+                return null;
+            }
+            if (matches(bytes , keyStart , keyEnd , "location")) {
+                record.setLocation(names.intern(bytes , valueStart , position - valueStart));
+            }
+        }
+        if (bytes.get(position) != ' ') {
+            return null;
+        }
+
+        // fields, up to the next space or the end of the line
+        position++;
+        boolean first = true;
+        while (first || position < end && bytes.get(position) == ',') {
+            int keyStart = first ? position : position + 1;
+            first = false;
+            int keyEnd = scanKey(bytes , keyStart , end);
+            if (keyEnd < 0) {
+                return null;
+            }
+            int valueStart = keyEnd + 1;
+            position = scan(bytes , valueStart , end , false);
+            if (position == valueStart) {
+                return null;
+            }
+            if (matches(bytes , keyStart , keyEnd , "temp") || matches(bytes , keyStart , keyEnd , "temperature")) {
+                double temperature = parseDouble(bytes , valueStart , position);
+                if (Double.isNaN(temperature)) {
+                    return null;
+                }
+                record.setTemperature(temperature);
+            }
+        }
+
+        if (position == end) {
+            record.setActualTime(toLocalDateTime(System.currentTimeMillis() , TimeUnit.MILLISECONDS));
+        } else {
+            int timestampStart = position + 1;
+            long timestamp = parseLong(bytes , timestampStart , end);
+            if (numberEnd != end || numberEnd == timestampStart) {
+                return null;
+            }
+            record.setActualTime(toLocalDateTime(timestamp , precision));
+        }
+        // the name last, a malformed line does not fill the table
+        record.setDeviceName(names.intern(bytes , index , measurementEnd - index));
+        return record;
+    }
+
+    private static LocalDateTime toLocalDateTime(long timestamp , TimeUnit unit) {
+        long seconds = unit.toSeconds(timestamp);
+        long nanos = unit.toNanos(timestamp - unit.convert(seconds , TimeUnit.SECONDS));
+        if (nanos < 0) {
+            seconds--;
+            nanos += 1_000_000_000L;
+        }
+        return LocalDateTime.ofEpochSecond(seconds , (int) nanos , ZoneOffset.UTC);
+    }
+
+    /**
+     * Returns the index of the first space, comma or, within a name, equals sign from the given
+     * index, or the end.
+     */
+    private static int scan(ByteBuffer bytes , int from , int end , boolean name) {
+        for (int i = from; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b == ' ' || b == ',' || name && b == '=') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the index of the equals sign ending a non-empty key, or -1.
+     */
+    private static int scanKey(ByteBuffer bytes , int from , int end) {
+        for (int i = from; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b == '=') {
+                return i == from ? -1 : i;
+            }
+            if (b == ' ' || b == ',') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer bytes , int from , int to , String key) {
+        if (to - from != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (bytes.get(from + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a decimal number, with an optional integer suffix {@code i}, returning NaN if invalid.
+     */
+    private static double parseDouble(ByteBuffer bytes , int from , int to) {
+        if (to > from && bytes.get(to - 1) == 'i') {
+            to--;
+        }
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+            negative = bytes.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < to; i++) {
+            byte b = bytes.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (point) {
+                    scale++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return parseDoubleSlow(bytes , from , to);
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else if (b == 'e' || b == 'E') {
+                return parseDoubleSlow(bytes , from , to);
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (scale >= POWERS_OF_TEN.length) {
+            return parseDoubleSlow(bytes , from , to);
+        }
+        // both operands are exact, so the division is correctly rounded
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(ByteBuffer bytes , int from , int to) {
+        byte[] text = new byte[to - from];
+        bytes.get(from , text);
+        try {
+            double value = Double.parseDouble(new String(text , StandardCharsets.US_ASCII));
+            return Double.isFinite(value) ? value : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses an integer from the given index, leaving the index after its last digit in numberEnd.
+     */
+    private long parseLong(ByteBuffer bytes , int from , int end) {
+        int i = from;
+        boolean negative = i < end && bytes.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        int digitsStart = i;
+        long value = 0;
+        for (; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b < '0' || b > '9' || value > (Long.MAX_VALUE - 9) / 10) {
+                break;
+            }
+            value = value * 10 + (b - '0');
+        }
+        numberEnd = i == digitsStart ? from : i;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Open-addressing table of the names seen, compared byte by byte with the bytes of a line.
+     */
+    private static final class NameTable {
+
+        private String[] names = new String[1024];
+        private byte[][] bytes = new byte[1024][];
+        private int[] hashes = new int[1024];
+        private int size;
+
+        String intern(ByteBuffer line , int index , int length) {
+            int hash = 1;
+            for (int i = index; i < index + length; i++) {
+                hash = 31 * hash + line.get(i);
+            }
+            int mask = names.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                byte[] candidate = bytes[slot];
+                if (candidate == null) {
+                    return add(slot , hash , line , index , length);
+                }
+                if (hashes[slot] == hash && equal(candidate , line , index , length)) {
+                    return names[slot];
+                }
+            }
+        }
+
+        private String add(int slot , int hash , ByteBuffer line , int index , int length) {
+            byte[] value = new byte[length];
+            line.get(index , value);
+            String name = new String(value , StandardCharsets.UTF_8);
+            if (size >= MAX_NAMES) {
+                // an unbounded set of names, e.g. a misconfigured sender, is not worth keeping
+                clear(names.length);
+                return name;
+            }
+            names[slot] = name;
+            bytes[slot] = value;
+            hashes[slot] = hash;
+            if (++size * 2 > names.length) {
+                grow();
+            }
+            return name;
+        }
+
+        private void grow() {
+            String[] oldNames = names;
+            byte[][] oldBytes = bytes;
+            int[] oldHashes = hashes;
+            clear(oldNames.length * 2);
+            int mask = names.length - 1;
+            for (int i = 0; i < oldNames.length; i++) {
+                if (oldBytes[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (bytes[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    names[slot] = oldNames[i];
+                    bytes[slot] = oldBytes[i];
+                    hashes[slot] = oldHashes[i];
+                    size++;
+                }
+            }
+        }
+
+        private void clear(int capacity) {
+            names = new String[capacity];
+            bytes = new byte[capacity][];
+            hashes = new int[capacity];
+            size = 0;
+        }
+
+        private static boolean equal(byte[] candidate , ByteBuffer line , int index , int length) {
+            if (candidate.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (candidate[i] != line.get(index + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package uk.biobank.iottempmgmtukbiobanktest.lineprotocol;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives readings in the InfluxDB line protocol (see {@link LineProtocolParser}) over TCP and
+ * UDP, on {@code line-protocol.tcp-port} and {@code line-protocol.udp-port} (8094 both), for racks
+ * sending more readings than HTTP requests carry cheaply. Enabled with {@code line-protocol.enabled=true}.
+ * <p>
+ * The listeners are plaintext and unauthenticated, bind them with {@code line-protocol.address} to
+ * an interface only the racks reach. Readings are not acknowledged: a batch that cannot be
+ * processed is dropped, and counted as {@code line-protocol.batches.failed}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "line-protocol.enabled", havingValue = "true")
+public class LineProtocolServer implements SmartLifecycle {
+
+    private final TemperatureRecordService temperatureRecordService;
+    private final String address;
+    private final int tcpPort;
+    private final int udpPort;
+    private final TimeUnit precision;
+    private final int batchSize;
+    private final long batchMaxWaitMs;
+    private final int maxLineLength;
+    private final Counter receivedLines;
+    private final Counter malformedLines;
+    private final Counter failedBatches;
+
+    private volatile EventLoopGroup bossGroup;
+    private volatile EventLoopGroup workerGroup;
+    private volatile Channel tcpChannel;
+    private volatile Channel udpChannel;
+
+    public LineProtocolServer(TemperatureRecordService temperatureRecordService ,
+                              MeterRegistry meterRegistry ,
+                              @Value("${line-protocol.address:0.0.0.0}") String address ,
+                              @Value("${line-protocol.tcp-port:8094}") int tcpPort ,
+                              @Value("${line-protocol.udp-port:8094}") int udpPort ,
+                              @Value("${line-protocol.precision:ns}") String precision ,
+                              @Value("${line-protocol.batch-size:5000}") int batchSize ,
+                              @Value("${line-protocol.batch-max-wait-ms:200}") long batchMaxWaitMs ,
+                              @Value("${line-protocol.max-line-length:4096}") int maxLineLength) {
+        this.temperatureRecordService = temperatureRecordService;
+        this.address = address;
+        this.tcpPort = tcpPort;
+        this.udpPort = udpPort;
+        this.precision = toTimeUnit(precision);
+        this.batchSize = batchSize;
+        this.batchMaxWaitMs = batchMaxWaitMs;
+        this.maxLineLength = maxLineLength;
+        this.receivedLines = Counter.builder("line-protocol.lines.received")
+                .description("Line protocol lines received")
+                .register(meterRegistry);
+        this.malformedLines = Counter.builder("line-protocol.lines.malformed")
+                .description("Line protocol lines that are not readings")
+                .register(meterRegistry);
+        this.failedBatches = Counter.builder("line-protocol.batches.failed")
+                .description("Line protocol batches dropped as they could not be processed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the unit of an InfluxDB precision, {@code ns}, {@code us}, {@code ms} or {@code s}.
+     *
+     * @param precision the precision
+     * @return the unit of the timestamps
+     */
+    static TimeUnit toTimeUnit(String precision) {
+        return switch (precision) {
+            case "ns" -> TimeUnit.NANOSECONDS;
+            case "us" -> TimeUnit.MICROSECONDS;
+            case "ms" -> TimeUnit.MILLISECONDS;
+            case "s" -> TimeUnit.SECONDS;
+            default -> throw new IllegalArgumentException("Unknown line-protocol.precision: " + precision);
+        };
+    }
+
+    @Override
+    public void start() {
+        bossGroup = new NioEventLoopGroup(1);
+        workerGroup = new NioEventLoopGroup();
+        try {
+            tcpChannel = new ServerBootstrap()
+                    .group(bossGroup , workerGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel channel) {
+                            // frames are slices of the read buffer, not copies
+                            channel.pipeline().addLast(new LineBasedFrameDecoder(maxLineLength) , newHandler());
+                        }
+                    })
+                    .bind(new InetSocketAddress(address , tcpPort)).sync().channel();
+            udpChannel = new Bootstrap()
+                    .group(workerGroup)
+                    .channel(NioDatagramChannel.class)
+                    .option(ChannelOption.SO_RCVBUF , 4 * 1024 * 1024)
+                    .handler(newHandler())
+                    .bind(new InetSocketAddress(address , udpPort)).sync().channel();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            throw new IllegalStateException("Interrupted while starting the line protocol listeners" , e);
+        } catch (RuntimeException e) {
+            stop();
+            throw e;
+        }
+        log.info("Line protocol listening on {} (TCP {}, UDP {})" , address , getTcpPort() , getUdpPort());
+    }
+
+    /**
+     * Closes the listeners, the batches received so far are processed as their channels close.
+     */
+    @Override
+    public void stop() {
+        EventLoopGroup boss = bossGroup;
+        EventLoopGroup workers = workerGroup;
+        if (workers == null) {
+            return;
+        }
+        if (tcpChannel != null) {
+            tcpChannel.close().syncUninterruptibly();
+        }
+        if (udpChannel != null) {
+            udpChannel.close().syncUninterruptibly();
+        }
+        boss.shutdownGracefully(0 , 5 , TimeUnit.SECONDS).syncUninterruptibly();
+        workers.shutdownGracefully(0 , 5 , TimeUnit.SECONDS).syncUninterruptibly();
+        tcpChannel = null;
+        udpChannel = null;
+        bossGroup = null;
+        workerGroup = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return workerGroup != null;
+    }
+
+    /**
+     * Returns the TCP port listened on, the one chosen by the system if {@code line-protocol.tcp-port} is 0.
+     *
+     * @return the bound TCP port
+     */
+    public int getTcpPort() {
+        return ((InetSocketAddress) tcpChannel.localAddress()).getPort();
+    }
+
+    /**
+     * Returns the UDP port listened on, the one chosen by the system if {@code line-protocol.udp-port} is 0.
+     *
+     * @return the bound UDP port
+     */
+    public int getUdpPort() {
+        return ((InetSocketAddress) udpChannel.localAddress()).getPort();
+    }
+
+    private LineProtocolHandler newHandler() {
+        return new LineProtocolHandler(temperatureRecordService , precision , batchSize , batchMaxWaitMs ,
+                receivedLines , malformedLines , failedBatches);
+    }
+
+}
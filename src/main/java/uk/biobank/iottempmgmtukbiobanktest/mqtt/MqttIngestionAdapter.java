@@ -0,0 +1,430 @@
+package uk.biobank.iottempmgmtukbiobanktest.mqtt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+import uk.biobank.iottempmgmtukbiobanktest.utils.GeneralUtil;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Subscribes to the readings devices publish to an MQTT broker and feeds them into
+ * {@link TemperatureRecordService#processRecords} in batches, without a bridge posting them to
+ * {@code /processRecords}. Enabled by setting {@code mqtt.broker-url}.
+ * <p>
+ * A message is a JSON reading, or an array of them, in the format of {@code /processRecords}. A
+ * reading without a device name takes the last level of its topic, so devices can publish to a
+ * topic of their own under the {@code mqtt.topic} wildcard. With {@code mqtt.shared-group} set the
+ * adapter joins the shared subscription {@code $share/<group>/<topic>}, and the broker spreads the
+ * messages over the replicas instead of sending each one to all of them.
+ * <p>
+ * Messages are acknowledged, in arrival order, only once the readings of their batch have been
+ * written to the database (see {@link TemperatureRecordService#whenStored()}), so a QoS 1 or 2
+ * message is not lost if the application stops, or loses its journal, before its readings are
+ * stored. A batch that cannot be processed, or whose readings fail to be stored, is left
+ * unacknowledged with the batches after it and the session restarted, for the broker to deliver
+ * their messages again. Messages that are not readings are acknowledged with
+ * their batch and counted as {@code mqtt.messages.malformed}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "mqtt.broker-url")
+public class MqttIngestionAdapter implements SmartLifecycle, MqttCallbackExtended {
+
+    private final TemperatureRecordService temperatureRecordService;
+    private final ObjectMapper objectMapper;
+    private final String brokerUrl;
+    private final String clientId;
+    private final String username;
+    private final String password;
+    private final String topicFilter;
+    private final int qos;
+    private final int batchSize;
+    private final long reconnectDelayMs;
+    private final Counter receivedMessages;
+    private final Counter malformedMessages;
+    private final Counter failedBatches;
+
+    private final Object lock = new Object();
+    // readings and acknowledgements of the messages received since the last flush, in arrival order
+    private List<TemperatureRecordDTO> batch = new ArrayList<>();
+    private List<int[]> pendingAcks = new ArrayList<>();
+    // set after a failed batch until the session is restarted, the messages received meanwhile are redelivered
+    private boolean discarding;
+
+    // processed batches whose readings are being stored, in processing order, guarded by itself
+    private final Deque<ProcessedBatch> processedBatches = new ArrayDeque<>();
+
+    private volatile MqttAsyncClient client;
+
+    public MqttIngestionAdapter(TemperatureRecordService temperatureRecordService ,
+                                ObjectMapper objectMapper ,
+                                MeterRegistry meterRegistry ,
+                                @Value("${mqtt.broker-url}") String brokerUrl ,
+                                @Value("${mqtt.client-id:iot-ingest-${HOSTNAME:local}}") String clientId ,
+                                @Value("${mqtt.username:}") String username ,
+                                @Value("${mqtt.password:}") String password ,
+                                @Value("${mqtt.topic:biobank/readings/+}") String topic ,
+                                @Value("${mqtt.shared-group:}") String sharedGroup ,
+                                @Value("${mqtt.qos:1}") int qos ,
+                                @Value("${mqtt.batch-size:500}") int batchSize ,
+                                @Value("${mqtt.reconnect-delay-ms:5000}") long reconnectDelayMs) {
+        this.temperatureRecordService = temperatureRecordService;
+        this.objectMapper = objectMapper;
+        this.brokerUrl = brokerUrl;
+        this.clientId = clientId;
+        this.username = username;
+        this.password = password;
+        this.topicFilter = topicFilter(topic , sharedGroup);
+        this.qos = qos;
+        this.batchSize = batchSize;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.receivedMessages = Counter.builder("mqtt.messages.received")
+                .description("MQTT messages received")
+                .register(meterRegistry);
+        this.malformedMessages = Counter.builder("mqtt.messages.malformed")
+                .description("MQTT messages acknowledged without readings that could be decoded")
+                .register(meterRegistry);
+        this.failedBatches = Counter.builder("mqtt.batches.failed")
+                .description("MQTT batches left unacknowledged for redelivery")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the filter to subscribe with, the shared subscription of the group if one is given.
+     *
+     * @param topic       the topic filter, e.g. {@code biobank/readings/+}
+     * @param sharedGroup the shared subscription group, or empty
+     * @return the topic filter to subscribe with
+     */
+    static String topicFilter(String topic , String sharedGroup) {
+        return GeneralUtil.stringIsNullOrEmpty(sharedGroup) ? topic : "$share/" + sharedGroup + "/" + topic;
+    }
+
+    @Override
+    public void start() {
+        try {
+            client = new MqttAsyncClient(brokerUrl , clientId , new MemoryPersistence());
+        } catch (MqttException e) {
+            throw new IllegalStateException("Cannot create the MQTT client for " + brokerUrl , e);
+        }
+        client.setCallback(this);
+        client.setManualAcks(true);
+        connect();
+    }
+
+    /**
+     * Processes the readings received so far, waits up to {@code mqtt.reconnect-delay-ms} for them
+     * to be stored and disconnects, leaving the messages not acknowledged by then for the broker to
+     * deliver again.
+     */
+    @Override
+    public void stop() {
+        MqttAsyncClient running = client;
+        if (running == null) {
+            return;
+        }
+        flush();
+        CompletableFuture<Void> lastStored;
+        synchronized (processedBatches) {
+            lastStored = processedBatches.isEmpty() ? null : processedBatches.getLast().stored();
+        }
+        if (lastStored != null) {
+            try {
+                lastStored.get(reconnectDelayMs , TimeUnit.MILLISECONDS);
+                acknowledgeStored();
+            } catch (TimeoutException | ExecutionException e) {
+                log.warn("MQTT readings not stored before disconnecting, the broker delivers them again");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        client = null;
+        try {
+            if (running.isConnected()) {
+                running.disconnect().waitForCompletion(reconnectDelayMs);
+            }
+            running.close();
+        } catch (MqttException e) {
+            log.warn("MQTT client did not disconnect cleanly: {}" , e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return client != null;
+    }
+
+    @Override
+    public void connectComplete(boolean reconnect , String serverURI) {
+        synchronized (lock) {
+            discarding = false;
+        }
+        MqttAsyncClient connected = client;
+        if (connected == null) {
+            return;
+        }
+        try {
+            // the persistent session keeps the subscription, subscribing again is harmless
+            connected.subscribe(topicFilter , qos);
+            log.info("Subscribed to {} on {}" , topicFilter , serverURI);
+        } catch (MqttException e) {
+            log.error("Cannot subscribe to {} on {}" , topicFilter , serverURI , e);
+        }
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        log.warn("Lost connection to {}, reconnecting: {}" , brokerUrl , cause.getMessage());
+        synchronized (lock) {
+            // the broker delivers the unacknowledged messages again on the new connection
+            batch = new ArrayList<>();
+            pendingAcks = new ArrayList<>();
+        }
+        synchronized (processedBatches) {
+            processedBatches.clear();
+        }
+    }
+
+    @Override
+    public void messageArrived(String topic , MqttMessage message) {
+        receivedMessages.increment();
+        List<TemperatureRecordDTO> records = decode(topic , message.getPayload());
+        boolean full;
+        synchronized (lock) {
+            if (discarding) {
+                return;
+            }
+            if (records == null) {
+                malformedMessages.increment();
+            } else {
+                batch.addAll(records);
+            }
+            pendingAcks.add(new int[]{message.getId() , message.getQos()});
+            full = batch.size() >= batchSize;
+        }
+        // processed on the callback thread, the broker holds back further messages meanwhile
+        if (full) {
+            flush();
+        }
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // nothing is published
+    }
+
+    /**
+     * Processes the readings received so far, so readings wait at most {@code mqtt.batch-max-wait-ms}
+     * for a batch to fill. Their messages are acknowledged once the readings are stored.
+     */
+    @Scheduled(fixedDelayString = "${mqtt.batch-max-wait-ms:200}")
+    public void flush() {
+        synchronized (lock) {
+            if (pendingAcks.isEmpty()) {
+                return;
+            }
+            try {
+                if (!batch.isEmpty()) {
+                    Map<String, String> report = temperatureRecordService.processRecords(batch);
+                    if (!report.isEmpty()) {
+                        log.debug("MQTT batch of {} readings reported {}" , batch.size() , report);
+                    }
+                }
+            } catch (RuntimeException e) {
+                failedBatches.increment();
+                if (e instanceof GeneralException) {
+                    log.warn("MQTT batch of {} readings not processed, restarting the session: {}" , batch.size() , e.getMessage());
+                } else {
+                    log.error("MQTT batch of {} readings not processed, restarting the session" , batch.size() , e);
+                }
+                discardAndRestart();
+                return;
+            }
+            CompletableFuture<Void> stored = temperatureRecordService.whenStored();
+            synchronized (processedBatches) {
+                processedBatches.add(new ProcessedBatch(pendingAcks , stored));
+            }
+            // off the lane thread completing the future, which must not wait for the broker
+            stored.whenCompleteAsync((ignored , failure) -> acknowledgeStored());
+            batch = new ArrayList<>();
+            pendingAcks = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Acknowledges the messages of the oldest processed batches whose readings are stored, stopping
+     * at the first batch still being stored so acknowledgements keep the arrival order. A batch whose
+     * readings failed to be stored stays first, unacknowledged, and the session is restarted.
+     */
+    private void acknowledgeStored() {
+        Throwable failure = null;
+        synchronized (processedBatches) {
+            while (!processedBatches.isEmpty() && processedBatches.getFirst().stored().isDone()) {
+                CompletableFuture<Void> stored = processedBatches.getFirst().stored();
+                if (stored.isCompletedExceptionally()) {
+                    failure = stored.exceptionNow();
+                    break;
+                }
+                acknowledge(processedBatches.removeFirst().acks());
+            }
+        }
+        if (failure == null) {
+            return;
+        }
+        synchronized (lock) {
+            // a restart may already be under way for an earlier failure
+            if (!discarding) {
+                failedBatches.increment();
+                log.warn("MQTT readings not stored, restarting the session: {}" , failure.getMessage());
+                discardAndRestart();
+            }
+        }
+    }
+
+    /**
+     * Drops the messages received and processed so far without acknowledging them, and restarts the
+     * session for the broker to deliver them again. Called holding the lock.
+     */
+    private void discardAndRestart() {
+        discarding = true;
+        batch = new ArrayList<>();
+        pendingAcks = new ArrayList<>();
+        synchronized (processedBatches) {
+            // the restarted session delivers the earlier batches again too
+            processedBatches.clear();
+        }
+        CompletableFuture.delayedExecutor(reconnectDelayMs , TimeUnit.MILLISECONDS).execute(this::restartSession);
+    }
+
+    private void acknowledge(List<int[]> acks) {
+        MqttAsyncClient connected = client;
+        if (connected == null) {
+            return;
+        }
+        try {
+            for (int[] ack : acks) {
+                connected.messageArrivedComplete(ack[0] , ack[1]);
+            }
+        } catch (MqttException | RuntimeException e) {
+            // disconnected meanwhile, the broker delivers the messages again
+            log.warn("Cannot acknowledge MQTT messages: {}" , e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes a message into readings, the device name defaulting to the last level of the topic.
+     *
+     * @param topic   the topic the message was published to
+     * @param payload the JSON reading, or array of readings
+     * @return the readings, or null if the payload is not JSON readings
+     */
+    List<TemperatureRecordDTO> decode(String topic , byte[] payload) {
+        List<TemperatureRecordDTO> records = new ArrayList<>();
+        try {
+            JsonNode root = objectMapper.readTree(payload);
+            if (root == null || !(root.isObject() || root.isArray())) {
+                return null;
+            }
+            for (JsonNode node : root.isArray() ? root : List.of(root)) {
+                if (!node.isObject()) {
+                    return null;
+                }
+                records.add(objectMapper.treeToValue(node , TemperatureRecordDTO.class));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Malformed MQTT message on {}: {}" , topic , e.getMessage());
+            return null;
+        }
+        String topicDevice = topic.substring(topic.lastIndexOf('/') + 1);
+        for (TemperatureRecordDTO record : records) {
+            if (GeneralUtil.stringIsNullOrEmpty(record.getDeviceName())) {
+                record.setDeviceName(topicDevice);
+            }
+        }
+        return records;
+    }
+
+    private void connect() {
+        MqttAsyncClient connecting = client;
+        if (connecting == null) {
+            return;
+        }
+        MqttConnectOptions options = new MqttConnectOptions();
+        // the session keeps the subscription and the unacknowledged messages while disconnected
+        options.setCleanSession(false);
+        options.setAutomaticReconnect(true);
+        if (!GeneralUtil.stringIsNullOrEmpty(username)) {
+            options.setUserName(username);
+            options.setPassword(password.toCharArray());
+        }
+        try {
+            connecting.connect(options , null , new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                }
+
+                @Override
+                public void onFailure(IMqttToken token , Throwable e) {
+                    log.warn("Cannot connect to {}, retrying in {} ms: {}" , brokerUrl , reconnectDelayMs , e.getMessage());
+                    CompletableFuture.delayedExecutor(reconnectDelayMs , TimeUnit.MILLISECONDS).execute(MqttIngestionAdapter.this::connect);
+                }
+            });
+        } catch (MqttException e) {
+            log.warn("Cannot connect to {}: {}" , brokerUrl , e.getMessage());
+        }
+    }
+
+    /**
+     * Disconnects and connects again, for the broker to deliver the unacknowledged messages again.
+     */
+    private void restartSession() {
+        MqttAsyncClient running = client;
+        if (running == null) {
+            return;
+        }
+        try {
+            if (running.isConnected()) {
+                running.disconnect().waitForCompletion(reconnectDelayMs);
+            }
+        } catch (MqttException e) {
+            log.warn("MQTT client did not disconnect cleanly: {}" , e.getMessage());
+        }
+        connect();
+    }
+
+    /**
+     * The acknowledgements of a processed batch, sent once its readings are stored.
+     */
+    private record ProcessedBatch(List<int[]> acks , CompletableFuture<Void> stored) {
+    }
+
+}
@@ -0,0 +1,149 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.springframework.boot.actuate.endpoint.Access;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint starting, listing, downloading and stopping Flight Recorder recordings of the
+ * running instance, e.g. to profile a live pod. With the {@code default} settings a recording costs
+ * around one percent of CPU, {@code profile} samples more at a few percent.
+ * <ul>
+ *     <li>{@code GET /actuator/jfr} lists the recordings</li>
+ *     <li>{@code POST /actuator/jfr} starts one, with optional {@code settings}, {@code durationSeconds}
+ *     and {@code maxAgeSeconds}</li>
+ *     <li>{@code GET /actuator/jfr/{id}} downloads a recording, a snapshot if it is still running</li>
+ *     <li>{@code DELETE /actuator/jfr/{id}} stops and discards it</li>
+ * </ul>
+ * Recordings hold stack traces, environment variables and system properties, so access is off unless
+ * {@code management.endpoint.jfr.access} is set.
+ */
+@Component
+@Endpoint(id = "jfr" , defaultAccess = Access.NONE)
+public class FlightRecorderEndpoint {
+
+    private static final String NAME_PREFIX = "actuator-";
+
+    @ReadOperation
+    public List<Map<String, Object>> recordings() {
+        return FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .filter(recording -> recording.getName().startsWith(NAME_PREFIX))
+                .map(FlightRecorderEndpoint::describe)
+                .toList();
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> start(@Nullable String settings , @Nullable Long durationSeconds , @Nullable Long maxAgeSeconds) {
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings == null ? "default" : settings);
+        } catch (IOException | ParseException e) {
+            // unknown settings name, the JDK ships default and profile
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+
+        Recording recording = new Recording(configuration);
+        recording.setName(NAME_PREFIX + System.currentTimeMillis());
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofSeconds(maxAgeSeconds == null ? 600 : maxAgeSeconds));
+        if (durationSeconds != null) {
+            recording.setDuration(Duration.ofSeconds(durationSeconds));
+        }
+        recording.start();
+        return new WebEndpointResponse<>(describe(recording));
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> download(@Selector long id) {
+        Recording recording = find(id);
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        try {
+            Path file = Files.createTempFile("recording-" + id + "-" , ".jfr");
+            recording.dump(file);
+            return new WebEndpointResponse<>(new TemporaryFileResource(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to dump recording " + id , e);
+        }
+    }
+
+    @DeleteOperation
+    public WebEndpointResponse<Map<String, Object>> stop(@Selector long id) {
+        Recording recording = find(id);
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Map<String, Object> description = describe(recording);
+        recording.close();
+        return new WebEndpointResponse<>(description);
+    }
+
+    private static Recording find(long id) {
+        return FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .filter(recording -> recording.getId() == id && recording.getName().startsWith(NAME_PREFIX))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Map<String, Object> describe(Recording recording) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("id" , recording.getId());
+        description.put("name" , recording.getName());
+        description.put("state" , recording.getState().name());
+        description.put("startTime" , recording.getStartTime());
+        description.put("duration" , recording.getDuration());
+        description.put("maxAge" , recording.getMaxAge());
+        description.put("size" , recording.getSize());
+        return description;
+    }
+
+    /**
+     * A dumped recording, deleted once downloaded.
+     */
+    private static final class TemporaryFileResource extends FileSystemResource {
+
+        TemporaryFileResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(getFile().toPath());
+                    }
+                }
+            };
+        }
+
+    }
+
+}
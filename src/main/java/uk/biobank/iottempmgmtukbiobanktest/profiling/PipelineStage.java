@@ -0,0 +1,76 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+/**
+ * Times one stage of the request pipeline, as a {@link StageEvent} for Flight Recorder and as an
+ * entry of the request's {@code Server-Timing} header when run on a request thread.
+ * <p>
+ * Used with try-with-resources around the stage:
+ * <pre>{@code
+ * try (PipelineStage stage = PipelineStage.begin("validate")) {
+ *     ...
+ *     stage.records(records.size());
+ * }
+ * }</pre>
+ * Without a recording or a request in progress a stage costs two clock reads and a short-lived object.
+ */
+public final class PipelineStage implements AutoCloseable {
+
+    private final String name;
+    private final long startNanos;
+    private final StageEvent event;
+
+    private PipelineStage(String name , String detail) {
+        this.name = name;
+        StageEvent stageEvent = new StageEvent();
+        if (stageEvent.isEnabled()) {
+            stageEvent.stage = name;
+            stageEvent.detail = detail;
+            stageEvent.begin();
+            this.event = stageEvent;
+        } else {
+            this.event = null;
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts timing a stage.
+     *
+     * @param name the stage name, also its {@code Server-Timing} metric name
+     * @return the running stage, to be closed when the stage ends
+     */
+    public static PipelineStage begin(String name) {
+        return new PipelineStage(name , null);
+    }
+
+    /**
+     * Starts timing a stage with a detail recorded in the Flight Recorder event only.
+     *
+     * @param name   the stage name, also its {@code Server-Timing} metric name
+     * @param detail what the stage runs, e.g. the repository method
+     * @return the running stage, to be closed when the stage ends
+     */
+    public static PipelineStage begin(String name , String detail) {
+        return new PipelineStage(name , detail);
+    }
+
+    /**
+     * Records the number of records the stage handled.
+     *
+     * @param records the record count
+     */
+    public void records(int records) {
+        if (event != null) {
+            event.records = records;
+        }
+    }
+
+    @Override
+    public void close() {
+        ServerTiming.record(name , System.nanoTime() - startNanos);
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every repository call as a {@code db} {@link PipelineStage}, with the repository method as
+ * its detail, by adding an interceptor to the proxy of each Spring Data repository.
+ */
+@Component
+public class RepositoryStagePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean , String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor((proxyFactory , repositoryInformation) -> {
+                String repository = repositoryInformation.getRepositoryInterface().getSimpleName();
+                proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+                    try (PipelineStage ignored = PipelineStage.begin("db" , repository + "." + invocation.getMethod().getName())) {
+                        return invocation.proceed();
+                    }
+                });
+            }));
+        }
+        return bean;
+    }
+
+}
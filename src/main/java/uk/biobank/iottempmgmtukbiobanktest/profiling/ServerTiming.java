@@ -0,0 +1,126 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-request totals of the {@link PipelineStage}s and JDBC statements run on the request thread,
+ * rendered as a {@code Server-Timing} header. Repeated stages, such as several repository calls,
+ * are summed and counted, statements are reported as {@code sql} with their count.
+ */
+public final class ServerTiming {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, long[]> stages = new LinkedHashMap<>();
+
+    private int statementCount;
+    private long statementMillis;
+    private long slowestStatementMillis = -1;
+    private String slowestStatement;
+
+    private ServerTiming() {
+    }
+
+    /**
+     * Starts collecting the stages of the request on the current thread.
+     */
+    static void open() {
+        CURRENT.set(new ServerTiming());
+    }
+
+    /**
+     * Stops collecting on the current thread.
+     */
+    static void close() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Adds the duration of a stage to the request on the current thread, if any.
+     */
+    static void record(String stage , long nanos) {
+        ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            long[] total = timing.stages.computeIfAbsent(stage , key -> new long[2]);
+            total[0] += nanos;
+            total[1]++;
+        }
+    }
+
+    /**
+     * Adds an executed statement to the request on the current thread, if any.
+     *
+     * @param elapsedMillis the execution time of the statement
+     * @param sql           the statement, kept if it is the slowest of the request
+     */
+    static void recordStatement(long elapsedMillis , String sql) {
+        ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.statementCount++;
+            timing.statementMillis += elapsedMillis;
+            if (elapsedMillis > timing.slowestStatementMillis) {
+                timing.slowestStatementMillis = elapsedMillis;
+                timing.slowestStatement = sql;
+            }
+        }
+    }
+
+    /**
+     * Returns the statements run so far by the request on the current thread.
+     *
+     * @return the statement totals, or null outside a request
+     */
+    static Statements statements() {
+        ServerTiming timing = CURRENT.get();
+        if (timing == null) {
+            return null;
+        }
+        return new Statements(timing.statementCount , timing.statementMillis , Math.max(0 , timing.slowestStatementMillis) , timing.slowestStatement);
+    }
+
+    /**
+     * Renders the stages of the request on the current thread, followed by the time since the
+     * request started as {@code app}.
+     *
+     * @return the header value, or null outside a request
+     */
+    static String header() {
+        ServerTiming timing = CURRENT.get();
+        if (timing == null) {
+            return null;
+        }
+        StringBuilder header = new StringBuilder();
+        timing.stages.forEach((stage , total) -> {
+            header.append(stage);
+            if (total[1] > 1) {
+                header.append(";desc=\"").append(total[1]).append(" calls\"");
+            }
+            header.append(";dur=").append(millis(total[0])).append(", ");
+        });
+        if (timing.statementCount > 0) {
+            header.append("sql;desc=\"").append(timing.statementCount).append(" statements\";dur=").append(timing.statementMillis).append(", ");
+        }
+        return header.append("app;dur=").append(millis(System.nanoTime() - timing.startNanos)).toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT , "%.2f" , nanos / 1e6);
+    }
+
+    /**
+     * The JDBC statements run by a request.
+     *
+     * @param count         the number of statements, a batch counting once
+     * @param totalMillis   their total execution time
+     * @param slowestMillis the execution time of the slowest
+     * @param slowestSql    the slowest statement, null if none ran
+     */
+    record Statements(int count , long totalMillis , long slowestMillis , String slowestSql) {
+    }
+
+}
@@ -0,0 +1,84 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.lang.reflect.Type;
+
+/**
+ * Times request body binding as the {@code bind} stage and adds the {@code Server-Timing} header
+ * to every response body, covering everything up to, not including, writing the response.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements RequestBodyAdvice, ResponseBodyAdvice<Object> {
+
+    // body reads are not nested, one pending bind stage per thread is enough
+    private static final ThreadLocal<PipelineStage> BIND = new ThreadLocal<>();
+
+    @Override
+    public boolean supports(MethodParameter methodParameter , Type targetType , Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage , MethodParameter parameter , Type targetType ,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        BIND.set(PipelineStage.begin("bind"));
+        return inputMessage;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body , HttpInputMessage inputMessage , MethodParameter parameter , Type targetType ,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        endBind();
+        return body;
+    }
+
+    @Override
+    public Object handleEmptyBody(Object body , HttpInputMessage inputMessage , MethodParameter parameter , Type targetType ,
+                                  Class<? extends HttpMessageConverter<?>> converterType) {
+        endBind();
+        return body;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType , Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body , MethodParameter returnType , MediaType selectedContentType ,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType , ServerHttpRequest request ,
+                                  ServerHttpResponse response) {
+        // a body that failed to bind never reached afterBodyRead
+        endBind();
+        String header = ServerTiming.header();
+        if (header != null) {
+            response.getHeaders().set(ServerTiming.HEADER , header);
+        }
+        return body;
+    }
+
+    /**
+     * Drops a bind stage left open by a request that failed before any body was written.
+     */
+    static void clear() {
+        BIND.remove();
+    }
+
+    private static void endBind() {
+        PipelineStage stage = BIND.get();
+        if (stage != null) {
+            BIND.remove();
+            stage.close();
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Collects the pipeline stages and statements of every request for its {@code Server-Timing} header,
+ * which {@link ServerTimingAdvice} sets before the response body is written, and hands the
+ * statements to the {@link StatementRecorder} once the request completes.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    private final ObjectProvider<StatementRecorder> statementRecorder;
+
+    public ServerTimingFilter(ObjectProvider<StatementRecorder> statementRecorder) {
+        this.statementRecorder = statementRecorder;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request , HttpServletResponse response , FilterChain filterChain)
+            throws ServletException, IOException {
+        ServerTiming.open();
+        try {
+            filterChain.doFilter(request , response);
+        } finally {
+            ServerTiming.Statements statements = ServerTiming.statements();
+            statementRecorder.ifAvailable(recorder -> recorder.requestCompleted(request , statements));
+            ServerTiming.close();
+            ServerTimingAdvice.clear();
+        }
+    }
+
+}
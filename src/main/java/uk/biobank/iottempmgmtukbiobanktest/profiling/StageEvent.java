@@ -0,0 +1,32 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering one request pipeline stage or repository call.
+ * Committed by {@link PipelineStage}, only while a recording has the event enabled.
+ */
+@Name("uk.biobank.Stage")
+@Label("Pipeline Stage")
+@Category({"IoT Temperature" , "Pipeline"})
+@Description("A request pipeline stage or repository call")
+@StackTrace(false)
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Detail")
+    @Description("The repository method, for repository calls")
+    String detail;
+
+    @Label("Records")
+    @Description("The records handled by the stage, -1 if not applicable")
+    int records = -1;
+
+}
@@ -0,0 +1,107 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listens to every JDBC statement run through the proxied data source.
+ * <p>
+ * Statements on a request thread are added to the request's {@link ServerTiming}, and once the
+ * request completes its statement count and time are recorded per endpoint, as
+ * {@code http.server.requests.statements} and {@code http.server.requests.statements.time}.
+ * A request running more than {@code datasource.request-statement-warn} statements is logged with its
+ * slowest statement, so hidden per-row queries show up in the logs, and every statement slower than
+ * {@code datasource.slow-statement-ms} is logged on any thread.
+ */
+@Slf4j
+@Component
+public class StatementRecorder implements QueryExecutionListener {
+
+    private final MeterRegistry meterRegistry;
+    private final long slowStatementMillis;
+    private final int requestStatementWarn;
+
+    private final Counter executedStatements;
+    private final Counter slowStatements;
+
+    public StatementRecorder(MeterRegistry meterRegistry ,
+                             @Value("${datasource.slow-statement-ms:200}") long slowStatementMillis ,
+                             @Value("${datasource.request-statement-warn:25}") int requestStatementWarn) {
+        this.meterRegistry = meterRegistry;
+        this.slowStatementMillis = slowStatementMillis;
+        this.requestStatementWarn = requestStatementWarn;
+
+        this.executedStatements = Counter.builder("db.statements.executed")
+                .description("JDBC statements executed, a batch counting once")
+                .register(meterRegistry);
+        this.slowStatements = Counter.builder("db.statements.slow")
+                .description("JDBC statements slower than datasource.slow-statement-ms")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo , List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo , List<QueryInfo> queryInfoList) {
+        String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+        long elapsedMillis = execInfo.getElapsedTime();
+
+        executedStatements.increment();
+        ServerTiming.recordStatement(elapsedMillis , sql);
+        if (elapsedMillis >= slowStatementMillis) {
+            slowStatements.increment();
+            if (execInfo.isBatch()) {
+                log.warn("Slow statement took {} ms for a batch of {}: {}" , elapsedMillis , execInfo.getBatchSize() , sql);
+            } else {
+                log.warn("Slow statement took {} ms: {}" , elapsedMillis , sql);
+            }
+        }
+    }
+
+    /**
+     * Records the statements of a completed request against its endpoint.
+     *
+     * @param request    the completed request
+     * @param statements the statements it ran
+     */
+    public void requestCompleted(HttpServletRequest request , ServerTiming.Statements statements) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+
+        DistributionSummary.builder("http.server.requests.statements")
+                .description("JDBC statements run per request")
+                .tags("method" , request.getMethod() , "uri" , uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statements.count());
+        Timer.builder("http.server.requests.statements.time")
+                .description("Time spent in JDBC statements per request")
+                .tags("method" , request.getMethod() , "uri" , uri)
+                .register(meterRegistry)
+                .record(statements.totalMillis() , TimeUnit.MILLISECONDS);
+
+        if (statements.count() > requestStatementWarn) {
+            log.warn("{} {} ran {} statements in {} ms, slowest {} ms: {}" , request.getMethod() , uri , statements.count() ,
+                    statements.totalMillis() , statements.slowestMillis() , statements.slowestSql());
+        } else if (log.isDebugEnabled() && statements.count() > 0) {
+            log.debug("{} {} ran {} statements in {} ms, slowest {} ms: {}" , request.getMethod() , uri , statements.count() ,
+                    statements.totalMillis() , statements.slowestMillis() , statements.slowestSql());
+        }
+    }
+
+}
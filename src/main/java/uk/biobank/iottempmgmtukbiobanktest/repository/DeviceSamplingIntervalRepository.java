@@ -0,0 +1,12 @@
+package uk.biobank.iottempmgmtukbiobanktest.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import uk.biobank.iottempmgmtukbiobanktest.entity.DeviceSamplingInterval;
+
+/**
+ * Repository interface for managing DeviceSamplingInterval entities,
+ * the expected reporting interval of each device.
+ */
+public interface DeviceSamplingIntervalRepository extends JpaRepository<DeviceSamplingInterval, String> {
+
+}
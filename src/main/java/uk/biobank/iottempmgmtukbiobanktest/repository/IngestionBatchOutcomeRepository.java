@@ -0,0 +1,23 @@
+package uk.biobank.iottempmgmtukbiobanktest.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import uk.biobank.iottempmgmtukbiobanktest.entity.IngestionBatchOutcome;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository interface for managing IngestionBatchOutcome entities,
+ * the recorded outcomes of batches submitted with an idempotency key.
+ */
+public interface IngestionBatchOutcomeRepository extends JpaRepository<IngestionBatchOutcome, String> {
+
+    @Modifying
+    @Transactional
+    @Query("delete from IngestionBatchOutcome o where o.createdAt < :cutoff")
+    int deleteByCreatedAtBefore(@Param("cutoff") LocalDateTime cutoff);
+
+}
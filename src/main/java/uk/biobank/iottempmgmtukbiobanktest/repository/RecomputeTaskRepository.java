@@ -0,0 +1,49 @@
+package uk.biobank.iottempmgmtukbiobanktest.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import uk.biobank.iottempmgmtukbiobanktest.entity.RecomputeTask;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.RecomputeTaskStatus;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing RecomputeTask entities,
+ * the persisted progress of the recompute runs.
+ */
+public interface RecomputeTaskRepository extends JpaRepository<RecomputeTask, Long> {
+
+    List<RecomputeTask> findByRunIdAndStatusNotOrderById(String runId , RecomputeTaskStatus status);
+
+    Optional<RecomputeTask> findFirstByRunIdAndStatusOrderByFinishedAtDesc(String runId , RecomputeTaskStatus status);
+
+    @Query("select distinct t.runId from RecomputeTask t where t.status <> uk.biobank.iottempmgmtukbiobanktest.utils.enums.RecomputeTaskStatus.DONE")
+    List<String> findUnfinishedRunIds();
+
+    /**
+     * Summarizes the tasks of a run by status.
+     *
+     * @return rows of {@code [status, tasks, readings, buckets, range_start, range_end, created_at, finished_at]},
+     * the ranges and times being the extremes of the tasks of the status
+     */
+    @Query(value = """
+            select t.status, count(*), sum(t.readings), sum(t.buckets), min(t.range_start), max(t.range_end),
+                   min(t.created_at), max(t.finished_at)
+            from recompute_tasks t
+            where t.run_id = :runId
+            group by t.status
+            """, nativeQuery = true)
+    List<Object[]> summarizeRun(@Param("runId") String runId);
+
+    /**
+     * Takes the lock of a task for the current transaction, held by one replica at a time and
+     * released on commit, rollback or a lost connection.
+     *
+     * @return whether the lock was taken
+     */
+    @Query(value = "select pg_try_advisory_xact_lock(:lockClass, :taskId)", nativeQuery = true)
+    boolean tryLock(@Param("lockClass") int lockClass , @Param("taskId") int taskId);
+
+}
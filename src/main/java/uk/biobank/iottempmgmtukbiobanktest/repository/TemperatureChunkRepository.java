@@ -0,0 +1,130 @@
+package uk.biobank.iottempmgmtukbiobanktest.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Repository interface for managing TemperatureChunk entities,
+ * the compressed cold-storage form of the readings of a device-day.
+ */
+public interface TemperatureChunkRepository extends JpaRepository<TemperatureChunk, Long> {
+
+    Optional<TemperatureChunk> findByDeviceNameAndChunkDate(String deviceName , LocalDate chunkDate);
+
+    List<TemperatureChunk> findByChunkDateBefore(LocalDate cutoff , Limit limit);
+
+    @Query("select c from TemperatureChunk c where c.deviceName = :deviceName and c.startTime <= :end and c.endTime >= :start order by c.startTime")
+    List<TemperatureChunk> findOverlapping(@Param("deviceName") String deviceName , @Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    @Query("select max(c.endTime) from TemperatureChunk c where c.deviceName = :deviceName")
+    Optional<LocalDateTime> findLatestTimeByDeviceName(@Param("deviceName") String deviceName);
+
+    /**
+     * Finds chunks overlapping a time range across all devices, by ascending id after {@code afterId}.
+     */
+    @Query("select c from TemperatureChunk c where c.id > :afterId and c.startTime < :end and c.endTime >= :start order by c.id")
+    List<TemperatureChunk> findOverlappingAfterId(@Param("afterId") long afterId , @Param("start") LocalDateTime start ,
+                                                  @Param("end") LocalDateTime end , Limit limit);
+
+    @Query("select distinct c.deviceName from TemperatureChunk c where c.startTime < :end and c.endTime >= :start")
+    List<String> findDeviceNamesOverlapping(@Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Finds the encoded readings of the chunks taken at a location overlapping a time range, along the
+     * chunk date index, without loading the chunks as entities.
+     *
+     * @return rows of {@code [device_name, reading_count, timestamps, temperatures]}
+     */
+    @Query(value = """
+            select c.device_name, c.reading_count, c.timestamps, c.temperatures from temperature_chunks c
+            where c.location = :location and c.chunk_date >= :startDate and c.chunk_date <= :endDate
+              and c.start_time < :end and c.end_time >= :start
+            """, nativeQuery = true)
+    List<Object[]> findReadingsByLocationOverlapping(@Param("location") String location ,
+                                                     @Param("startDate") LocalDate startDate , @Param("endDate") LocalDate endDate ,
+                                                     @Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Streams the encoded readings of the chunks of a device overlapping a time range, without loading
+     * the chunks as entities. Must be consumed, and closed, inside a transaction.
+     *
+     * @return rows of {@code [location, reading_count, timestamps, temperatures]}
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query(value = """
+            select c.location, c.reading_count, c.timestamps, c.temperatures from temperature_chunks c
+            where c.device_name = :deviceName and c.start_time < :end and c.end_time >= :start
+            """, nativeQuery = true)
+    Stream<Object[]> streamReadingsByDeviceName(@Param("deviceName") String deviceName ,
+                                                @Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Streams the encoded reading times of the chunks of a device overlapping a time range, in time order,
+     * without loading the chunks as entities. Must be consumed, and closed, inside a transaction.
+     *
+     * @return rows of {@code [reading_count, timestamps]}
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @Query(value = """
+            select c.reading_count, c.timestamps from temperature_chunks c
+            where c.device_name = :deviceName and c.start_time < :end and c.end_time >= :start
+            order by c.start_time
+            """, nativeQuery = true)
+    Stream<Object[]> streamTimestampsByDeviceName(@Param("deviceName") String deviceName ,
+                                                  @Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Deletes up to {@code limit} chunks of a device, without loading them.
+     *
+     * @return the number of chunks deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_chunks
+            where id in (select id from temperature_chunks where device_name = :deviceName limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByDeviceName(@Param("deviceName") String deviceName , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} chunks taken at a location, without loading them.
+     *
+     * @return the number of chunks deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_chunks
+            where id in (select id from temperature_chunks where location = :location limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByLocation(@Param("location") String location , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} chunks whose readings all lie from {@code start} (inclusive)
+     * to {@code end} (exclusive), without loading them.
+     *
+     * @return the number of chunks deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_chunks
+            where id in (select id from temperature_chunks where start_time >= :start and end_time < :end limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchWithin(@Param("start") LocalDateTime start , @Param("end") LocalDateTime end , @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "truncate table temperature_chunks", nativeQuery = true)
+    void truncate();
+
+}
@@ -0,0 +1,93 @@
+package uk.biobank.iottempmgmtukbiobanktest.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureHourlyAggregate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing TemperatureHourlyAggregate entities,
+ * the hourly rollups kept after raw readings expire.
+ */
+public interface TemperatureHourlyAggregateRepository extends JpaRepository<TemperatureHourlyAggregate, Long> {
+
+    Optional<TemperatureHourlyAggregate> findByDeviceNameAndBucketStart(String deviceName , LocalDateTime bucketStart);
+
+    /**
+     * Adds readings to an hourly aggregate, creating it if needed.
+     */
+    @Modifying
+    @Query(value = """
+            insert into temperature_hourly_aggregates as a
+                (device_name, location, bucket_start, reading_count, temperature_sum, min_temperature, max_temperature)
+            values (:deviceName, :location, :bucketStart, :readingCount, :temperatureSum, :minTemperature, :maxTemperature)
+            on conflict (device_name, bucket_start) do update set
+                location        = coalesce(excluded.location, a.location),
+                reading_count   = a.reading_count + excluded.reading_count,
+                temperature_sum = a.temperature_sum + excluded.temperature_sum,
+                min_temperature = least(a.min_temperature, excluded.min_temperature),
+                max_temperature = greatest(a.max_temperature, excluded.max_temperature)
+            """, nativeQuery = true)
+    void addToBucket(@Param("deviceName") String deviceName , @Param("location") String location ,
+                     @Param("bucketStart") LocalDateTime bucketStart , @Param("readingCount") long readingCount ,
+                     @Param("temperatureSum") double temperatureSum , @Param("minTemperature") double minTemperature ,
+                     @Param("maxTemperature") double maxTemperature);
+
+    /**
+     * Deletes up to {@code limit} aggregates older than the cutoff.
+     *
+     * @return the number of aggregates deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_aggregates
+            where id in (select id from temperature_hourly_aggregates where bucket_start < :cutoff limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchBefore(@Param("cutoff") LocalDateTime cutoff , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} aggregates of a device.
+     *
+     * @return the number of aggregates deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_aggregates
+            where id in (select id from temperature_hourly_aggregates where device_name = :deviceName limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByDeviceName(@Param("deviceName") String deviceName , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} aggregates of readings taken at a location.
+     *
+     * @return the number of aggregates deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_aggregates
+            where id in (select id from temperature_hourly_aggregates where location = :location limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByLocation(@Param("location") String location , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} aggregates of the hours starting from {@code start} (inclusive)
+     * to {@code end} (exclusive).
+     *
+     * @return the number of aggregates deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_aggregates
+            where id in (select id from temperature_hourly_aggregates where bucket_start >= :start and bucket_start < :end limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByBucketStartRange(@Param("start") LocalDateTime start , @Param("end") LocalDateTime end , @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "truncate table temperature_hourly_aggregates", nativeQuery = true)
+    void truncate();
+
+}
@@ -0,0 +1,76 @@
+package uk.biobank.iottempmgmtukbiobanktest.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureHourlyStatistic;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing TemperatureHourlyStatistic entities,
+ * the hourly statistics rebuilt from the stored readings by the recompute runs.
+ */
+public interface TemperatureHourlyStatisticRepository extends JpaRepository<TemperatureHourlyStatistic, Long> {
+
+    Optional<TemperatureHourlyStatistic> findByDeviceNameAndBucketStart(String deviceName , LocalDateTime bucketStart);
+
+    /**
+     * Deletes the statistics of the devices of a name range, both inclusive, for the hours starting
+     * from {@code start} (inclusive) to {@code end} (exclusive).
+     *
+     * @return the number of statistics deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_statistics
+            where device_name >= :deviceFrom and device_name <= :deviceTo
+              and bucket_start >= :start and bucket_start < :end
+            """, nativeQuery = true)
+    int deleteByDeviceRangeAndBucketStartRange(@Param("deviceFrom") String deviceFrom , @Param("deviceTo") String deviceTo ,
+                                               @Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Deletes up to {@code limit} statistics of a device.
+     *
+     * @return the number of statistics deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_statistics
+            where id in (select id from temperature_hourly_statistics where device_name = :deviceName limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByDeviceName(@Param("deviceName") String deviceName , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} statistics of readings taken at a location.
+     *
+     * @return the number of statistics deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_statistics
+            where id in (select id from temperature_hourly_statistics where location = :location limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByLocation(@Param("location") String location , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} statistics of the hours starting from {@code start} (inclusive)
+     * to {@code end} (exclusive).
+     *
+     * @return the number of statistics deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_hourly_statistics
+            where id in (select id from temperature_hourly_statistics where bucket_start >= :start and bucket_start < :end limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByBucketStartRange(@Param("start") LocalDateTime start , @Param("end") LocalDateTime end , @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "truncate table temperature_hourly_statistics", nativeQuery = true)
+    void truncate();
+
+}
@@ -1,12 +1,21 @@
 package uk.biobank.iottempmgmtukbiobanktest.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing TemperatureRecord entities.
@@ -16,10 +25,171 @@ import java.util.List;
  */
 public interface TemperatureRecordRepository extends JpaRepository<TemperatureRecord, Long> {
 
-    boolean existsByDeviceNameAndTime(String deviceName , LocalDateTime time);
+    Page<TemperatureRecord> findByDeviceName(String deviceName, Pageable pageable);
 
-    List<TemperatureRecord> findByDeviceNameAndTimeBetween(String deviceName , LocalDateTime start , LocalDateTime end);
+    @Query("select max(t.time) from TemperatureRecord t where t.deviceName = :deviceName")
+    Optional<LocalDateTime> findLatestTimeByDeviceName(@Param("deviceName") String deviceName);
 
-    Page<TemperatureRecord> findByDeviceName(String deviceName, Pageable pageable);
+    List<TemperatureRecord> findByTimeBefore(LocalDateTime cutoff , Limit limit);
+
+    List<TemperatureRecord> findByDeviceNameAndTimeGreaterThanEqualAndTimeLessThanOrderByTime(String deviceName , LocalDateTime start , LocalDateTime end);
+
+    /**
+     * Finds device-days with raw readings before the cutoff that can be packed into a chunk:
+     * all readings of the day, and of the chunk already stored for it, share one location.
+     *
+     * @return rows of {@code [device_name, day]}
+     */
+    @Query(value = """
+            select t.device_name, cast(t.time as date) as day
+            from temperature_records t
+            where t.time < :cutoff and t.device_name is not null
+            group by t.device_name, cast(t.time as date)
+            having count(distinct coalesce(t.location, '')) = 1
+               and not exists (select 1 from temperature_chunks c
+                               where c.device_name = t.device_name
+                                 and c.chunk_date = cast(t.time as date)
+                                 and c.location is distinct from min(t.location))
+            order by day
+            limit :limit
+            """, nativeQuery = true)
+    List<Object[]> findCompactableDeviceDays(@Param("cutoff") LocalDateTime cutoff , @Param("limit") int limit);
+
+    @Query(value = "select distinct t.device_name from temperature_records t where t.time >= :start and t.time < :end and t.device_name is not null", nativeQuery = true)
+    List<String> findDeviceNamesBetween(@Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Aggregates the readings taken at a location from {@code start} (inclusive) to {@code end} (exclusive)
+     * per device and bucket of {@code bucketSeconds}, in one grouped query over the raw rows (along the
+     * location index) and the hourly rollups. Rollups start on the hour, so buckets of whole hours
+     * from a start on the hour hold whole rollups.
+     *
+     * @return rows of {@code [device_name, bucket, reading_count, temperature_sum, max_temperature]},
+     * the bucket being its index from the start
+     */
+    @Query(value = """
+            select r.device_name, cast(r.bucket as integer), sum(r.reading_count), sum(r.temperature_sum), max(r.max_temperature)
+            from (select t.device_name,
+                         floor(extract(epoch from (t.time - cast(:start as timestamp))) / :bucketSeconds) as bucket,
+                         count(*) as reading_count, sum(t.temperature) as temperature_sum, max(t.temperature) as max_temperature
+                  from temperature_records t
+                  where t.location = :location and t.time >= :start and t.time < :end
+                    and t.device_name is not null and t.temperature is not null
+                  group by 1, 2
+                  union all
+                  select a.device_name,
+                         floor(extract(epoch from (a.bucket_start - cast(:start as timestamp))) / :bucketSeconds),
+                         a.reading_count, a.temperature_sum, a.max_temperature
+                  from temperature_hourly_aggregates a
+                  where a.location = :location and a.bucket_start >= :start and a.bucket_start < :end) r
+            group by r.device_name, r.bucket
+            """, nativeQuery = true)
+    List<Object[]> aggregateByLocationAndBucket(@Param("location") String location , @Param("start") LocalDateTime start ,
+                                                @Param("end") LocalDateTime end , @Param("bucketSeconds") long bucketSeconds);
+
+    /**
+     * Finds the devices with raw readings or chunks whose names lie in a range, both inclusive, in database order.
+     * The raw rows are walked along the device name index one name at a time, without reading the rows of a device.
+     */
+    @Query(value = """
+            with recursive devices as (
+                select min(t.device_name) as device_name from temperature_records t where t.device_name >= :deviceFrom
+                union all
+                select (select min(t.device_name) from temperature_records t where t.device_name > d.device_name)
+                from devices d
+                where d.device_name is not null and d.device_name < :deviceTo)
+            select d.device_name from devices d where d.device_name is not null and d.device_name <= :deviceTo
+            union
+            select c.device_name from temperature_chunks c where c.device_name >= :deviceFrom and c.device_name <= :deviceTo
+            order by 1
+            """, nativeQuery = true)
+    List<String> findDeviceNamesInRange(@Param("deviceFrom") String deviceFrom , @Param("deviceTo") String deviceTo);
+
+    /**
+     * Finds every device with raw readings or chunks, in database order, walking the device name index as
+     * {@link #findDeviceNamesInRange} does.
+     */
+    @Query(value = """
+            with recursive devices as (
+                select min(t.device_name) as device_name from temperature_records t
+                union all
+                select (select min(t.device_name) from temperature_records t where t.device_name > d.device_name)
+                from devices d
+                where d.device_name is not null)
+            select d.device_name from devices d where d.device_name is not null
+            union
+            select c.device_name from temperature_chunks c
+            order by 1
+            """, nativeQuery = true)
+    List<String> findAllDeviceNames();
+
+    /**
+     * Streams the readings of a device taken from {@code start} (inclusive) to {@code end} (exclusive),
+     * in time order along the (device_name, time) unique index. Must be consumed, and closed, inside a transaction.
+     *
+     * @return rows of {@code [location, time, temperature]}
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query(value = """
+            select t.location, t.time, t.temperature from temperature_records t
+            where t.device_name = :deviceName and t.time >= :start and t.time < :end
+            order by t.time
+            """, nativeQuery = true)
+    Stream<Object[]> streamReadingsByDeviceName(@Param("deviceName") String deviceName ,
+                                                @Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Streams the times of the readings of a device taken from {@code start} (inclusive) to {@code end} (exclusive),
+     * in time order along the (device_name, time) unique index. Must be consumed, and closed, inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query(value = """
+            select t.time from temperature_records t
+            where t.device_name = :deviceName and t.time >= :start and t.time < :end
+            order by t.time
+            """, nativeQuery = true)
+    Stream<Object> streamReadingTimesByDeviceName(@Param("deviceName") String deviceName ,
+                                                    @Param("start") LocalDateTime start , @Param("end") LocalDateTime end);
+
+    /**
+     * Deletes up to {@code limit} readings of a device, without loading them.
+     *
+     * @return the number of readings deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_records
+            where id in (select id from temperature_records where device_name = :deviceName limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByDeviceName(@Param("deviceName") String deviceName , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} readings taken at a location, without loading them.
+     *
+     * @return the number of readings deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_records
+            where id in (select id from temperature_records where location = :location limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByLocation(@Param("location") String location , @Param("limit") int limit);
+
+    /**
+     * Deletes up to {@code limit} readings taken from {@code start} (inclusive) to {@code end} (exclusive),
+     * without loading them.
+     *
+     * @return the number of readings deleted
+     */
+    @Modifying
+    @Query(value = """
+            delete from temperature_records
+            where id in (select id from temperature_records where time >= :start and time < :end limit :limit)
+            """, nativeQuery = true)
+    int deleteBatchByTimeRange(@Param("start") LocalDateTime start , @Param("end") LocalDateTime end , @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "truncate table temperature_records", nativeQuery = true)
+    void truncate();
 
 }
@@ -1,11 +1,13 @@
 package uk.biobank.iottempmgmtukbiobanktest.service;
 
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeleteJobDTO;
 import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
 import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordListDTO;
 import uk.biobank.iottempmgmtukbiobanktest.utils.dto.PageableRequestDTO;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service interface for managing temperature records in the application. This service provides
@@ -16,12 +18,24 @@ public interface TemperatureRecordService {
 
     Map<String, String> processRecords(List<TemperatureRecordDTO> records);
 
+    Map<String, String> processRecords(List<TemperatureRecordDTO> records , String idempotencyKey);
+
+    CompletableFuture<Void> whenStored();
+
     Double calculateAverageTemperature(String deviceName , String date , int hour);
 
     TemperatureRecordListDTO getAllRecords(PageableRequestDTO dto);
 
     TemperatureRecordListDTO getAllRecordsByDeviceName(String deviceName , PageableRequestDTO dto);
 
-    void deleteAllRecords();
+    DeleteJobDTO deleteAllRecords();
+
+    DeleteJobDTO deleteRecordsByDeviceName(String deviceName);
+
+    DeleteJobDTO deleteRecordsByLocation(String location);
+
+    DeleteJobDTO deleteRecordsBetween(String start , String end);
+
+    DeleteJobDTO getDeleteJob(String jobId);
 
 }
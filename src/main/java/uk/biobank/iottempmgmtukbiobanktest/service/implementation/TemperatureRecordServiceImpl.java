@@ -1,25 +1,45 @@
 package uk.biobank.iottempmgmtukbiobanktest.service.implementation;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeleteJobDTO;
 import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
 import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordListDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureHourlyAggregate;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureHourlyStatistic;
 import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.feed.ReadingFeed;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IdempotentBatchStore;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionLanes;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.ReadingValidator;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.journal.ReadingJournal;
+import uk.biobank.iottempmgmtukbiobanktest.profiling.PipelineStage;
 import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
 import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+import uk.biobank.iottempmgmtukbiobanktest.storage.RecordDeletionJobs;
+import uk.biobank.iottempmgmtukbiobanktest.storage.TemperatureRangeReader;
 import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.GeneralUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.SingleFlight;
 import uk.biobank.iottempmgmtukbiobanktest.utils.dto.PageableRequestDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
 import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implementation of the TemperatureRecordService interface providing functionality
@@ -31,49 +51,128 @@ public class TemperatureRecordServiceImpl implements TemperatureRecordService {
 
     private final GeneralService generalService;
     private final TemperatureRecordRepository temperatureRecordRepository;
-    private final ExecutorService executor = Executors.newFixedThreadPool(10);
-
-    public TemperatureRecordServiceImpl(GeneralService generalService , TemperatureRecordRepository temperatureRecordRepository) {
+    private final IngestionLanes ingestionLanes;
+    private final ReadingJournal readingJournal;
+    private final IdempotentBatchStore idempotentBatchStore;
+    private final TemperatureRangeReader temperatureRangeReader;
+    private final RecordDeletionJobs recordDeletionJobs;
+    private final ReadingValidator readingValidator;
+    private final ReadingFeed readingFeed;
+
+    private final Counter receivedRecords;
+    private final Counter acceptedRecords;
+    private final DistributionSummary submittedBatchSize;
+
+    // concurrent identical reads (e.g. a dashboard refresh) share one query per distinct key
+    private final SingleFlight<String, Double> averageTemperatureFlights = new SingleFlight<>();
+    private final SingleFlight<String, TemperatureRecordListDTO> recordPageFlights = new SingleFlight<>();
+
+    @Value("${single-flight.average-temperature-timeout-ms:5000}")
+    private long averageTemperatureTimeoutMs;
+
+    @Value("${single-flight.record-page-timeout-ms:10000}")
+    private long recordPageTimeoutMs;
+
+    public TemperatureRecordServiceImpl(GeneralService generalService , TemperatureRecordRepository temperatureRecordRepository ,
+                                        IngestionLanes ingestionLanes , ReadingJournal readingJournal ,
+                                        IdempotentBatchStore idempotentBatchStore , TemperatureRangeReader temperatureRangeReader ,
+                                        RecordDeletionJobs recordDeletionJobs , ReadingValidator readingValidator ,
+                                        ReadingFeed readingFeed , MeterRegistry meterRegistry) {
         this.generalService = generalService;
         this.temperatureRecordRepository = temperatureRecordRepository;
+        this.ingestionLanes = ingestionLanes;
+        this.readingJournal = readingJournal;
+        this.idempotentBatchStore = idempotentBatchStore;
+        this.temperatureRangeReader = temperatureRangeReader;
+        this.recordDeletionJobs = recordDeletionJobs;
+        this.readingValidator = readingValidator;
+        this.readingFeed = readingFeed;
+
+        this.receivedRecords = Counter.builder("ingestion.records.received")
+                .description("Records received by processRecords")
+                .register(meterRegistry);
+        this.acceptedRecords = Counter.builder("ingestion.records.accepted")
+                .description("Records accepted for persistence by processRecords")
+                .register(meterRegistry);
+        this.submittedBatchSize = DistributionSummary.builder("ingestion.records.batch.size")
+                .description("Records per processRecords call")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     /**
      * Processes a list of temperature records,
-     * saving valid records to the repository, making sure to handle duplicates,
-     * and collecting records with missing temperature readings.
+     * validating and normalizing them in a single pass, then appending the accepted records to the
+     * ingestion journal (or, with the journal disabled, handing them straight to the device-affine
+     * ingestion lanes) for persistence, which handles duplicates.
      *
      * @param records a list of TemperatureRecordDTO objects representing temperature readings to be processed
-     * @return a map containing device names as keys and a description of the missing readings as values
+     * @return a map describing the missing readings, keyed by device name, and the rejected records,
+     * keyed by {@code records[<index>]}
      */
     @Override
     public Map<String, String> processRecords(List<TemperatureRecordDTO> records) {
-        Map<String, String> missingReadings = new ConcurrentHashMap<>();
-
-        records.parallelStream().forEach(record -> {
-            if (record.getTemperature() == null) {
-                String message = "Missing reading at " + record.getTime();
-                missingReadings.put(record.getDeviceName(), message);
-            } else {
-                executor.execute(() -> {
-                    // Check if a record already exists for this device and time
-                    boolean exists = temperatureRecordRepository
-                            .existsByDeviceNameAndTime(record.getDeviceName(), LocalDateTime.parse(record.getTime()));
-
-                    if (!exists) {
-                        temperatureRecordRepository.save(convertToTemperatureRecord(record));
-                    } else {
-                        log.warn("Duplicate record skipped for device: {} at time: {}", record.getDeviceName(), record.getTime());
-                    }
-                });
+        // sequential on purpose, submission order is the per-device write order
+        ReadingValidator.Result result;
+        try (PipelineStage stage = PipelineStage.begin("validate")) {
+            result = readingValidator.validate(records);
+            stage.records(records.size());
+        }
+        receivedRecords.increment(records.size());
+        acceptedRecords.increment(result.accepted().size());
+        submittedBatchSize.record(records.size());
+
+        // once journaled the readings survive a restart, the database write happens asynchronously
+        if (readingJournal.isEnabled()) {
+            try (PipelineStage stage = PipelineStage.begin("journal")) {
+                readingJournal.append(result.accepted());
+                stage.records(result.accepted().size());
             }
-        });
+        } else {
+            try (PipelineStage stage = PipelineStage.begin("enqueue")) {
+                result.accepted().forEach(ingestionLanes::submit);
+                stage.records(result.accepted().size());
+            }
+        }
+
+        // missing readings are not stored, live subscribers are told about them now
+        readingFeed.publishMissing(result.missing());
+
+        return result.report();
+    }
+
+    /**
+     * Processes a list of temperature records at most once per idempotency key.
+     * A retried batch gets the outcome recorded for its first submission back
+     * without any of its records being processed again.
+     *
+     * @param records        a list of TemperatureRecordDTO objects representing temperature readings to be processed
+     * @param idempotencyKey the key identifying the batch, or null to process it unconditionally
+     * @return a map containing device names as keys and a description of the missing readings as values
+     */
+    @Override
+    public Map<String, String> processRecords(List<TemperatureRecordDTO> records , String idempotencyKey) {
+        if (GeneralUtil.stringIsNullOrEmpty(idempotencyKey)) {
+            return processRecords(records);
+        }
+        return idempotentBatchStore.execute(idempotencyKey , IdempotentBatchStore.fingerprint(records) , () -> processRecords(records));
+    }
 
-        return missingReadings;
+    /**
+     * Returns a future completing once the readings accepted by processRecords before the call have
+     * been written to the database, or given up on because of a non-transient error. Readings the
+     * application stops before writing never complete it.
+     *
+     * @return the future, completed on an ingestion lane thread
+     */
+    @Override
+    public CompletableFuture<Void> whenStored() {
+        return readingJournal.isEnabled() ? readingJournal.whenHandled() : ingestionLanes.whenCompleted();
     }
 
     /**
      * Calculates the average temperature for a specific device within a given hour of a specified date.
+     * Concurrent identical calls are coalesced into a single query, run on the replica when one is configured.
      *
      * @param deviceName the name of the device for which the temperature records are required
      * @param date       the date in the format "yyyy-MM-dd" for which the temperature is to be calculated
@@ -81,7 +180,23 @@ public class TemperatureRecordServiceImpl implements TemperatureRecordService {
      * @return the average temperature as a Double for the given parameters; returns Double.NaN if no records are found
      */
     @Override
+    @Transactional(readOnly = true)
     public Double calculateAverageTemperature(String deviceName , String date , int hour) {
+        String key = deviceName + "|" + date + "|" + hour;
+        return averageTemperatureFlights.execute(key , Duration.ofMillis(averageTemperatureTimeoutMs) ,
+                () -> queryAverageTemperature(deviceName , date , hour));
+    }
+
+    /**
+     * Averages the temperatures of a device within an hour, from its recomputed statistic if it has one,
+     * otherwise from the records of any storage tier.
+     *
+     * @param deviceName the name of the device for which the temperature records are required
+     * @param date       the date in the format "yyyy-MM-dd"
+     * @param hour       the specific hour (in 24-hour format)
+     * @return the average temperature, or Double.NaN if no records are found
+     */
+    private Double queryAverageTemperature(String deviceName , String date , int hour) {
 
         LocalDateTime startDateTime = LocalDate.parse(date).atTime(hour , 0); // Combines date and hour
         LocalDateTime endDateTime = startDateTime.plusHours(1); // Adds one hour
@@ -89,73 +204,137 @@ public class TemperatureRecordServiceImpl implements TemperatureRecordService {
 
         log.info("Start => {} and end => {}" , startDateTime , endDateTime);
 
-        List<TemperatureRecord> records = temperatureRecordRepository.findByDeviceNameAndTimeBetween(deviceName , startDateTime , endDateTime);
+        // a recomputed hour is read whole, without decoding its readings
+        Optional<TemperatureHourlyStatistic> statistic = temperatureRangeReader.findRecomputedHour(deviceName , startDateTime);
+        if (statistic.isPresent()) {
+            return statistic.get().getTemperatureSum() / statistic.get().getReadingCount();
+        }
 
-        return records.stream().mapToDouble(TemperatureRecord::getTemperature).average().orElse(Double.NaN);
+        // covers raw rows and compacted chunks alike
+        List<TemperatureRecord> records = temperatureRangeReader.findByDeviceNameInRange(deviceName , startDateTime , endDateTime);
+
+        // readings past the raw retention only survive as an hourly rollup
+        Optional<TemperatureHourlyAggregate> rollup = temperatureRangeReader.findExpiredHour(deviceName , startDateTime);
+        if (rollup.isEmpty()) {
+            return records.stream().mapToDouble(TemperatureRecord::getTemperature).average().orElse(Double.NaN);
+        }
+
+        double sum = rollup.get().getTemperatureSum() + records.stream().mapToDouble(TemperatureRecord::getTemperature).sum();
+        return sum / (rollup.get().getReadingCount() + records.size());
     }
 
     /**
      * Retrieves all temperature records based on the given pageable request.
+     * Concurrent identical calls are coalesced into a single query, run on the replica when one is configured.
      *
      * @param dto the pageable request containing pagination and sorting information
      * @return a DTO containing a list of temperature records along with pagination details
      */
     @Override
+    @Transactional(readOnly = true)
     public TemperatureRecordListDTO getAllRecords(PageableRequestDTO dto) {
 
-        Pageable pageable = generalService.getPageableObject(dto);
+        return recordPageFlights.execute("all|" + dto , Duration.ofMillis(recordPageTimeoutMs) , () -> {
+            Pageable pageable = generalService.getPageableObject(dto);
 
-        Page<TemperatureRecord> temperatureRecordPage = temperatureRecordRepository.findAll(pageable);
+            Page<TemperatureRecord> temperatureRecordPage = temperatureRecordRepository.findAll(pageable);
 
-        return getTemperatureRecordListDTO(temperatureRecordPage);
+            return getTemperatureRecordListDTO(temperatureRecordPage);
+        });
     }
 
     /**
      * Retrieves all temperature records associated with a specific device name.
+     * Concurrent identical calls are coalesced into a single query, run on the replica when one is configured.
      *
      * @param deviceName the name of the device for which temperature records are to be retrieved
      * @param dto        the pageable request object containing pagination and sorting information
      * @return a DTO containing a list of temperature records and pagination details
      */
     @Override
+    @Transactional(readOnly = true)
     public TemperatureRecordListDTO getAllRecordsByDeviceName(String deviceName , PageableRequestDTO dto) {
 
-        Pageable pageable = generalService.getPageableObject(dto);
+        return recordPageFlights.execute("device|" + deviceName + "|" + dto , Duration.ofMillis(recordPageTimeoutMs) , () -> {
+            Pageable pageable = generalService.getPageableObject(dto);
 
-        Page<TemperatureRecord> temperatureRecordPage = temperatureRecordRepository.findByDeviceName(deviceName , pageable);
+            Page<TemperatureRecord> temperatureRecordPage = temperatureRecordRepository.findByDeviceName(deviceName , pageable);
 
-        return getTemperatureRecordListDTO(temperatureRecordPage);
+            return getTemperatureRecordListDTO(temperatureRecordPage);
+        });
     }
 
     /**
-     * Deletes all records from the temperature record repository.
+     * Starts a background job deleting all records, chunks and hourly aggregates.
      * <p>
-     * This method removes all entries from the underlying database or data store
-     * managed by the temperatureRecordRepository. Use this method cautiously as
+     * The tables are truncated rather than deleted row by row. Use this method cautiously as
      * it will result in the loss of all temperature record data.
+     *
+     * @return the queued delete job
      */
     @Override
-    public void deleteAllRecords() {
-        temperatureRecordRepository.deleteAll();
+    public DeleteJobDTO deleteAllRecords() {
+        return recordDeletionJobs.deleteAll();
     }
 
     /**
-     * Converts a TemperatureRecordDTO object to a TemperatureRecord object.
+     * Starts a background job deleting every record of a device, in batches.
      *
-     * @param record the TemperatureRecordDTO object containing the data to be converted
-     * @return a TemperatureRecord object populated with data from the provided DTO
+     * @param deviceName the name of the device whose records are to be deleted
+     * @return the queued delete job
      */
-    private TemperatureRecord convertToTemperatureRecord(TemperatureRecordDTO record) {
-        TemperatureRecord temperatureRecord = new TemperatureRecord();
-        temperatureRecord.setDeviceName(record.getDeviceName());
-        temperatureRecord.setLocation(record.getLocation());
-        temperatureRecord.setTemperature(record.getTemperature());
-
-        if (record.getTime() != null) {
-            temperatureRecord.setTime(DateUtil.stringToLocalDateTime(record.getTime()));
+    @Override
+    public DeleteJobDTO deleteRecordsByDeviceName(String deviceName) {
+        if (GeneralUtil.stringIsNullOrEmpty(deviceName)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Device name is required");
         }
+        return recordDeletionJobs.deleteByDeviceName(deviceName);
+    }
 
-        return temperatureRecord;
+    /**
+     * Starts a background job deleting every record taken at a location, in batches.
+     *
+     * @param location the location whose records are to be deleted
+     * @return the queued delete job
+     */
+    @Override
+    public DeleteJobDTO deleteRecordsByLocation(String location) {
+        if (GeneralUtil.stringIsNullOrEmpty(location)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Location is required");
+        }
+        return recordDeletionJobs.deleteByLocation(location);
+    }
+
+    /**
+     * Starts a background job deleting the records taken from the start (inclusive) to the end (exclusive), in batches.
+     *
+     * @param start the start of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @param end   the end of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @return the queued delete job
+     */
+    @Override
+    public DeleteJobDTO deleteRecordsBetween(String start , String end) {
+        LocalDateTime startDateTime = start == null ? null : DateUtil.stringToLocalDateTime(start);
+        LocalDateTime endDateTime = end == null ? null : DateUtil.stringToLocalDateTime(end);
+        if (startDateTime == null || endDateTime == null) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start and end must be ISO-8601 date-times");
+        }
+        if (!startDateTime.isBefore(endDateTime)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start must be before end");
+        }
+        return recordDeletionJobs.deleteBetween(startDateTime , endDateTime);
+    }
+
+    /**
+     * Retrieves the progress of a delete job.
+     *
+     * @param jobId the id of the job returned when it was started
+     * @return the delete job
+     */
+    @Override
+    public DeleteJobDTO getDeleteJob(String jobId) {
+        return recordDeletionJobs.find(jobId)
+                .orElseThrow(() -> new GeneralException(ResponseCodeAndMessage.RECORD_NOT_FOUND.responseCode , "Delete job not found"));
     }
 
     /**
@@ -0,0 +1,268 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeviceGapsDTO;
+import uk.biobank.iottempmgmtukbiobanktest.dto.GapReportDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.DeviceSamplingInterval;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.DeviceSamplingIntervalRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.GeneralUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Finds missing readings over stored history, for one device or the whole fleet.
+ * <p>
+ * The devices of the range are looked up first, then for each the raw rows (along their unique
+ * index) and compacted chunks are streamed in time order and merged into a single
+ * {@link GapDetector} pass, so a month-long fleet sweep holds one fetch batch, the device names
+ * and the gaps found in memory. The per-device order keeps the merge independent of the
+ * database collation of device names. Devices are expected every
+ * {@code gaps.default-interval-seconds} unless an interval is set for them, and devices with an
+ * interval set are reported even if silent for the whole range.
+ */
+@Slf4j
+@Component
+public class GapAnalyzer {
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final DeviceSamplingIntervalRepository deviceSamplingIntervalRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final long defaultIntervalSeconds;
+    private final double tolerance;
+    private final int maxRangeDays;
+    private final int rawRetentionDays;
+
+    public GapAnalyzer(TemperatureRecordRepository temperatureRecordRepository ,
+                       TemperatureChunkRepository temperatureChunkRepository ,
+                       DeviceSamplingIntervalRepository deviceSamplingIntervalRepository ,
+                       PlatformTransactionManager transactionManager ,
+                       @Value("${gaps.default-interval-seconds:60}") long defaultIntervalSeconds ,
+                       @Value("${gaps.tolerance:1.5}") double tolerance ,
+                       @Value("${gaps.max-range-days:31}") int maxRangeDays ,
+                       @Value("${retention.raw-days:90}") int rawRetentionDays) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.deviceSamplingIntervalRepository = deviceSamplingIntervalRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.defaultIntervalSeconds = defaultIntervalSeconds;
+        this.tolerance = tolerance;
+        this.maxRangeDays = maxRangeDays;
+        this.rawRetentionDays = rawRetentionDays;
+    }
+
+    /**
+     * Finds the gaps in the readings taken from {@code start} (inclusive) to {@code end} (exclusive).
+     *
+     * @param deviceName the device to analyze, or null for every device
+     * @param start      the start of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @param end        the end of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @return the gaps found, run-length encoded per device
+     */
+    public GapReportDTO analyze(String deviceName , String start , String end) {
+        LocalDateTime startDateTime = start == null ? null : DateUtil.stringToLocalDateTime(start);
+        LocalDateTime endDateTime = end == null ? null : DateUtil.stringToLocalDateTime(end);
+        if (startDateTime == null || endDateTime == null) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start and end must be ISO-8601 date-times");
+        }
+        if (!startDateTime.isBefore(endDateTime)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start must be before end");
+        }
+        if (Duration.between(startDateTime , endDateTime).compareTo(Duration.ofDays(maxRangeDays)) > 0) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Range must not exceed " + maxRangeDays + " days");
+        }
+
+        // rolled up hours no longer hold individual readings
+        LocalDateTime retentionCutoff = LocalDate.now().minusDays(rawRetentionDays).atStartOfDay();
+        LocalDateTime from = startDateTime.isBefore(retentionCutoff) ? retentionCutoff : startDateTime;
+
+        GapReportDTO report = new GapReportDTO();
+        report.setStart(from);
+        report.setEnd(endDateTime);
+        report.setDevices(List.of());
+        if (!from.isBefore(endDateTime)) {
+            return report;
+        }
+
+        Map<String, Long> intervals = getIntervals();
+        Set<String> devices = new TreeSet<>();
+        if (GeneralUtil.stringIsNullOrEmpty(deviceName)) {
+            devices.addAll(intervals.keySet());
+            devices.addAll(temperatureRecordRepository.findDeviceNamesBetween(from , endDateTime));
+            devices.addAll(temperatureChunkRepository.findDeviceNamesOverlapping(from , endDateTime));
+        } else {
+            devices.add(deviceName);
+        }
+
+        GapDetector detector = new GapDetector(DateUtil.localDateTimeToEpochMilli(from) , DateUtil.localDateTimeToEpochMilli(endDateTime) ,
+                tolerance , name -> intervals.getOrDefault(name , defaultIntervalSeconds) * 1000);
+
+        long started = System.nanoTime();
+        for (String device : devices) {
+            // one short read-only transaction per device, each a time-ordered index range scan
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Object> rows = temperatureRecordRepository.streamReadingTimesByDeviceName(device , from , endDateTime);
+                     Stream<Object[]> chunks = temperatureChunkRepository.streamTimestampsByDeviceName(device , from , endDateTime)) {
+                    merge(device , new RawCursor(rows.iterator()) , new ChunkCursor(chunks.iterator()) , detector);
+                }
+            });
+        }
+
+        report.setDevices(detector.finish(devices));
+        report.setDevicesAnalyzed(detector.getDevicesAnalyzed());
+        report.setMissedReadings(report.getDevices().stream().mapToLong(DeviceGapsDTO::getMissedReadings).sum());
+        log.info("Gap analysis of {} devices from {} to {} found {} missed readings in {} ms" , report.getDevicesAnalyzed() , from ,
+                endDateTime , report.getMissedReadings() , Duration.ofNanos(System.nanoTime() - started).toMillis());
+        return report;
+    }
+
+    /**
+     * Returns the expected interval of every device with one set.
+     *
+     * @return the intervals in seconds keyed by device name
+     */
+    public Map<String, Long> getIntervals() {
+        Map<String, Long> intervals = new TreeMap<>();
+        for (DeviceSamplingInterval interval : deviceSamplingIntervalRepository.findAll()) {
+            intervals.put(interval.getDeviceName() , interval.getIntervalSeconds().longValue());
+        }
+        return intervals;
+    }
+
+    /**
+     * Sets the interval a device is expected to report readings at.
+     *
+     * @param deviceName      the device
+     * @param intervalSeconds the expected seconds between two readings
+     * @return the interval set, keyed by device name
+     */
+    public Map<String, Long> setInterval(String deviceName , int intervalSeconds) {
+        if (GeneralUtil.stringIsNullOrEmpty(deviceName)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Device name is required");
+        }
+        if (intervalSeconds < 1) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Interval minimum is 1 second");
+        }
+
+        DeviceSamplingInterval interval = new DeviceSamplingInterval();
+        interval.setDeviceName(deviceName);
+        interval.setIntervalSeconds(intervalSeconds);
+        interval.setUpdatedAt(LocalDateTime.now());
+        deviceSamplingIntervalRepository.save(interval);
+        return Map.of(deviceName , (long) intervalSeconds);
+    }
+
+    /**
+     * Merges the time-ordered raw and chunk cursors of a device into the detector.
+     */
+    static void merge(String deviceName , ReadingCursor raw , ReadingCursor chunks , GapDetector detector) {
+        boolean hasRaw = raw.advance();
+        boolean hasChunk = chunks.advance();
+        while (hasRaw || hasChunk) {
+            if (hasRaw && (!hasChunk || raw.epochMillis() <= chunks.epochMillis())) {
+                detector.accept(deviceName , raw.epochMillis());
+                hasRaw = raw.advance();
+            } else {
+                detector.accept(deviceName , chunks.epochMillis());
+                hasChunk = chunks.advance();
+            }
+        }
+    }
+
+    /**
+     * A position in a stream of reading times of one device, in time order.
+     */
+    interface ReadingCursor {
+
+        boolean advance();
+
+        long epochMillis();
+
+    }
+
+    /**
+     * Cursor over raw reading times.
+     */
+    static final class RawCursor implements ReadingCursor {
+
+        private final Iterator<Object> rows;
+        private long epochMillis;
+
+        RawCursor(Iterator<Object> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean advance() {
+            if (!rows.hasNext()) {
+                return false;
+            }
+            Object time = rows.next();
+            epochMillis = DateUtil.localDateTimeToEpochMilli(time instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) time);
+            return true;
+        }
+
+        @Override
+        public long epochMillis() {
+            return epochMillis;
+        }
+
+    }
+
+    /**
+     * Cursor over the decoded times of {@code [reading_count, timestamps]} chunk rows.
+     * Times outside the range are left for the detector to ignore.
+     */
+    static final class ChunkCursor implements ReadingCursor {
+
+        private final Iterator<Object[]> rows;
+        private long[] times = new long[0];
+        private int index;
+
+        ChunkCursor(Iterator<Object[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean advance() {
+            while (++index >= times.length) {
+                if (!rows.hasNext()) {
+                    return false;
+                }
+                Object[] row = rows.next();
+                times = TemperatureChunkCodec.decodeTimestamps((byte[]) row[1] , ((Number) row[0]).intValue());
+                index = -1;
+            }
+            return true;
+        }
+
+        @Override
+        public long epochMillis() {
+            return times[index];
+        }
+
+    }
+
+}
@@ -0,0 +1,127 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeviceGapsDTO;
+import uk.biobank.iottempmgmtukbiobanktest.dto.GapDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Single-pass gap detection over reading times ordered by device and time.
+ * <p>
+ * Only the previous reading of the current device is kept, so memory grows with the number of
+ * gaps found, not with the number of readings. Two consecutive readings further apart than
+ * {@code tolerance} intervals open a gap covering the expected readings between them. The range
+ * start and end act as readings one interval before the start and at the end, so missing readings
+ * at either end, or a device silent for the whole range, are reported too.
+ */
+final class GapDetector {
+
+    private final long startMillis;
+    private final long endMillis;
+    private final double tolerance;
+    private final ToLongFunction<String> intervalMillis;
+
+    private final List<DeviceGapsDTO> devicesWithGaps = new ArrayList<>();
+    private final Set<String> seenDevices = new HashSet<>();
+    private long devicesAnalyzed;
+
+    private DeviceGapsDTO current;
+    private long currentIntervalMillis;
+    private long previousMillis;
+
+    /**
+     * @param startMillis    the start of the range, inclusive
+     * @param endMillis      the end of the range, exclusive
+     * @param tolerance      how many intervals two readings may be apart before a gap is reported
+     * @param intervalMillis the expected interval of a device
+     */
+    GapDetector(long startMillis , long endMillis , double tolerance , ToLongFunction<String> intervalMillis) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.tolerance = tolerance;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Accepts the next reading, ordered by device and then time.
+     * Repeated times and times outside the range are ignored.
+     */
+    void accept(String deviceName , long epochMillis) {
+        if (current == null || !Objects.equals(current.getDeviceName() , deviceName)) {
+            closeDevice();
+            openDevice(deviceName);
+        }
+        if (epochMillis <= previousMillis || epochMillis < startMillis || epochMillis >= endMillis) {
+            return;
+        }
+
+        current.setReadings(current.getReadings() + 1);
+        checkGap(epochMillis);
+        previousMillis = epochMillis;
+    }
+
+    /**
+     * Ends the pass, reporting devices expected in the range but without any reading.
+     *
+     * @param expectedDevices devices to report even if silent
+     * @return the devices with gaps, ordered by device name
+     */
+    List<DeviceGapsDTO> finish(Collection<String> expectedDevices) {
+        closeDevice();
+        for (String deviceName : expectedDevices) {
+            if (!seenDevices.contains(deviceName)) {
+                openDevice(deviceName);
+                closeDevice();
+            }
+        }
+        devicesWithGaps.sort(Comparator.comparing(DeviceGapsDTO::getDeviceName));
+        return devicesWithGaps;
+    }
+
+    long getDevicesAnalyzed() {
+        return devicesAnalyzed;
+    }
+
+    private void openDevice(String deviceName) {
+        seenDevices.add(deviceName);
+        devicesAnalyzed++;
+        currentIntervalMillis = Math.max(1 , intervalMillis.applyAsLong(deviceName));
+        previousMillis = startMillis - currentIntervalMillis;
+
+        current = new DeviceGapsDTO();
+        current.setDeviceName(deviceName);
+        current.setIntervalSeconds(currentIntervalMillis / 1000);
+    }
+
+    private void closeDevice() {
+        if (current == null) {
+            return;
+        }
+        checkGap(endMillis);
+        if (!current.getGaps().isEmpty()) {
+            devicesWithGaps.add(current);
+        }
+        current = null;
+    }
+
+    private void checkGap(long nextMillis) {
+        long elapsed = nextMillis - previousMillis;
+        if (elapsed <= currentIntervalMillis * tolerance) {
+            return;
+        }
+
+        long missed = Math.max(1 , Math.round((double) elapsed / currentIntervalMillis) - 1);
+        current.getGaps().add(new GapDTO(DateUtil.epochMilliToLocalDateTime(previousMillis + currentIntervalMillis) ,
+                DateUtil.epochMilliToLocalDateTime(nextMillis) , missed));
+        current.setMissedReadings(current.getMissedReadings() + missed);
+    }
+
+}
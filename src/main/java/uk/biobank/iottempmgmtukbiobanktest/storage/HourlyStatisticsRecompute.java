@@ -0,0 +1,538 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.RecomputeRunDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.RecomputeTask;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.RecomputeTaskRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyStatisticRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.RecomputeTaskStatus;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds {@code temperature_hourly_statistics} from the stored readings, raw rows and compacted
+ * chunks, e.g. after changing how the statistics are computed or fixing bad readings.
+ * <p>
+ * A run splits its time range and the devices, in database order, into tasks of
+ * {@code recompute.devices-per-task} devices by {@code recompute.days-per-task} days, persisted in
+ * {@code recompute_tasks} before anything is computed. The tasks are run by a fork/join pool, which
+ * halves the list of tasks until single tasks remain and lets idle workers steal the halves of busy
+ * ones, so devices or days much heavier than others do not hold up the run. Each task streams the
+ * readings of its devices through their own cursor, writes the statistics in JDBC batches of
+ * {@code recompute.write-batch-size} and marks itself done, all in one transaction: a task is either
+ * done with its statistics replaced or left to run again, so a run stopped by a failure or a restart
+ * resumes from its pending tasks. A task also holds a database advisory lock, so replicas resuming the
+ * same run never run a task twice at once.
+ * <p>
+ * Only hours already over are recomputed. The hourly average reads their statistics instead of the
+ * readings, so a statistic must keep counting every reading of its hour: the writer deletes the
+ * statistics of the hours late readings arrive in, and the delete jobs those of the readings they
+ * delete, until the next run over them. A task takes a shared advisory lock on each of its devices
+ * before reading them, and the writer an exclusive one before deleting, so a late reading committed
+ * while a task streams its hour waits for the task and deletes the statistic it inserted.
+ * <p>
+ * Each worker holds one connection for the length of its task, so the parallelism is capped at the
+ * connection pool size less {@code recompute.reserved-connections}, left for ingestion and reads.
+ */
+@Slf4j
+@Component
+public class HourlyStatisticsRecompute {
+
+    // namespace of the advisory locks of the tasks
+    static final int LOCK_CLASS = 0x52435054;
+
+    /**
+     * Namespace of the advisory locks of the devices, keyed by {@code hashtext(device_name)}: shared by
+     * the tasks recomputing a device, exclusive for the writer deleting the statistics of late readings.
+     */
+    public static final int DEVICE_LOCK_CLASS = 0x52435044;
+
+    // in key order, as the writer takes them, so the two never wait on each other in a cycle
+    private static final String LOCK_DEVICES = """
+            select count(pg_advisory_xact_lock_shared(?, l.k))
+            from (select distinct hashtext(d) as k from unnest(cast(? as varchar[])) as u(d) order by 1) as l
+            """;
+
+    private static final String INSERT_STATISTIC = """
+            insert into temperature_hourly_statistics
+                (device_name, location, bucket_start, reading_count, temperature_sum, min_temperature, max_temperature, computed_at)
+            values (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final TemperatureHourlyStatisticRepository temperatureHourlyStatisticRepository;
+    private final RecomputeTaskRepository recomputeTaskRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int devicesPerTask;
+    private final int daysPerTask;
+    private final int writeBatchSize;
+    private final boolean resumeOnStartup;
+    private final int parallelism;
+
+    private final ForkJoinPool pool;
+    // runs one at a time, each spread over the pool
+    private final ExecutorService coordinator;
+    private final Set<String> submittedRuns = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopping;
+
+    public HourlyStatisticsRecompute(TemperatureRecordRepository temperatureRecordRepository ,
+                                     TemperatureChunkRepository temperatureChunkRepository ,
+                                     TemperatureHourlyStatisticRepository temperatureHourlyStatisticRepository ,
+                                     RecomputeTaskRepository recomputeTaskRepository ,
+                                     JdbcTemplate jdbcTemplate ,
+                                     TransactionTemplate transactionTemplate ,
+                                     @Value("${recompute.devices-per-task:100}") int devicesPerTask ,
+                                     @Value("${recompute.days-per-task:7}") int daysPerTask ,
+                                     @Value("${recompute.write-batch-size:1000}") int writeBatchSize ,
+                                     @Value("${recompute.resume-on-startup:true}") boolean resumeOnStartup ,
+                                     @Value("${recompute.parallelism:0}") int parallelism ,
+                                     @Value("${recompute.reserved-connections:4}") int reservedConnections ,
+                                     @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.temperatureHourlyStatisticRepository = temperatureHourlyStatisticRepository;
+        this.recomputeTaskRepository = recomputeTaskRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.devicesPerTask = Math.max(1 , devicesPerTask);
+        this.daysPerTask = Math.max(1 , daysPerTask);
+        this.writeBatchSize = Math.max(1 , writeBatchSize);
+        this.resumeOnStartup = resumeOnStartup;
+        this.parallelism = parallelism(parallelism , connectionPoolSize , reservedConnections);
+
+        this.pool = new ForkJoinPool(this.parallelism , forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("recompute-" + thread.getPoolIndex());
+            return thread;
+        } , null , false);
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable , "recompute");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the workers to run, by default one per core, never more than the connections left to the job.
+     */
+    static int parallelism(int configured , int connectionPoolSize , int reservedConnections) {
+        int wanted = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        return Math.max(1 , Math.min(wanted , connectionPoolSize - reservedConnections));
+    }
+
+    /**
+     * Plans and starts a run recomputing the statistics of the hours from {@code start} to {@code end},
+     * widened to whole days.
+     *
+     * @param start the start of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @param end   the end of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @return the progress of the run
+     */
+    public RecomputeRunDTO start(String start , String end) {
+        LocalDateTime startDateTime = start == null ? null : DateUtil.stringToLocalDateTime(start);
+        LocalDateTime endDateTime = end == null ? null : DateUtil.stringToLocalDateTime(end);
+        if (startDateTime == null || endDateTime == null) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start and end must be ISO-8601 date-times");
+        }
+        if (!startDateTime.isBefore(endDateTime)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start must be before end");
+        }
+
+        LocalDateTime from = startDateTime.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime to = endDateTime.truncatedTo(ChronoUnit.DAYS);
+        if (to.isBefore(endDateTime)) {
+            to = to.plusDays(1);
+        }
+        String runId = UUID.randomUUID().toString();
+        List<RecomputeTask> tasks = plan(runId , temperatureRecordRepository.findAllDeviceNames() , from , to);
+        if (!tasks.isEmpty()) {
+            recomputeTaskRepository.saveAll(tasks);
+            submit(runId);
+        }
+        log.info("Recompute run {} from {} to {} planned as {} tasks" , runId , from , to , tasks.size());
+
+        RecomputeRunDTO run = summarize(runId , List.of());
+        run.setStart(from);
+        run.setEnd(to);
+        run.setTasks(tasks.size());
+        run.setTasksPending(tasks.size());
+        run.setSubmittedAt(tasks.isEmpty() ? LocalDateTime.now() : tasks.get(0).getCreatedAt());
+        return run;
+    }
+
+    /**
+     * Splits the devices, in the order given, and the range into tasks.
+     */
+    List<RecomputeTask> plan(String runId , List<String> deviceNames , LocalDateTime from , LocalDateTime to) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<RecomputeTask> tasks = new ArrayList<>();
+        for (int first = 0; first < deviceNames.size(); first += devicesPerTask) {
+            String deviceFrom = deviceNames.get(first);
+            String deviceTo = deviceNames.get(Math.min(first + devicesPerTask , deviceNames.size()) - 1);
+            for (LocalDateTime rangeStart = from; rangeStart.isBefore(to); rangeStart = rangeStart.plusDays(daysPerTask)) {
+                LocalDateTime rangeEnd = rangeStart.plusDays(daysPerTask);
+                RecomputeTask task = new RecomputeTask();
+                task.setRunId(runId);
+                task.setDeviceFrom(deviceFrom);
+                task.setDeviceTo(deviceTo);
+                task.setRangeStart(rangeStart);
+                task.setRangeEnd(rangeEnd.isAfter(to) ? to : rangeEnd);
+                task.setStatus(RecomputeTaskStatus.PENDING);
+                task.setReadings(0L);
+                task.setBuckets(0L);
+                task.setCreatedAt(createdAt);
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Resumes a run, running again its pending and failed tasks.
+     *
+     * @param runId the id returned when the run was started
+     * @return the progress of the run
+     */
+    public RecomputeRunDTO resume(String runId) {
+        List<Object[]> summary = recomputeTaskRepository.summarizeRun(runId);
+        if (summary.isEmpty()) {
+            throw new GeneralException(ResponseCodeAndMessage.RECORD_NOT_FOUND.responseCode , "Recompute run not found");
+        }
+        submit(runId);
+        return summarize(runId , summary);
+    }
+
+    /**
+     * Finds the progress of a run.
+     *
+     * @param runId the id returned when the run was started
+     * @return the progress of the run, empty if unknown
+     */
+    public Optional<RecomputeRunDTO> find(String runId) {
+        List<Object[]> summary = recomputeTaskRepository.summarizeRun(runId);
+        return summary.isEmpty() ? Optional.empty() : Optional.of(summarize(runId , summary));
+    }
+
+    /**
+     * Resumes the runs left unfinished by the last shutdown.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        try {
+            for (String runId : recomputeTaskRepository.findUnfinishedRunIds()) {
+                log.info("Resuming recompute run {}" , runId);
+                submit(runId);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Unfinished recompute runs not resumed: {}" , e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+        coordinator.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    private void submit(String runId) {
+        // already waiting or running, it picks up every task not done
+        if (!submittedRuns.add(runId)) {
+            return;
+        }
+        coordinator.execute(() -> {
+            try {
+                run(runId);
+            } catch (RuntimeException e) {
+                log.error("Recompute run {} stopped" , runId , e);
+            } finally {
+                submittedRuns.remove(runId);
+            }
+        });
+    }
+
+    private void run(String runId) {
+        List<RecomputeTask> tasks = recomputeTaskRepository.findByRunIdAndStatusNotOrderById(runId , RecomputeTaskStatus.DONE);
+        log.info("Recompute run {} started, {} tasks over {} workers" , runId , tasks.size() , parallelism);
+        long started = System.nanoTime();
+        pool.invoke(new TaskSplit(tasks));
+        RecomputeRunDTO run = summarize(runId , recomputeTaskRepository.summarizeRun(runId));
+        log.info("Recompute run {} finished in {} s: {} tasks done, {} pending, {} failed, {} readings into {} hourly statistics" , runId ,
+                (System.nanoTime() - started) / 1_000_000_000L , run.getTasksDone() , run.getTasksPending() , run.getTasksFailed() ,
+                run.getReadings() , run.getBuckets());
+    }
+
+    /**
+     * Runs a task, recording it as failed if it cannot complete.
+     */
+    void runTask(RecomputeTask task) {
+        if (stopping) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> recompute(task));
+        } catch (RuntimeException e) {
+            log.warn("Recompute task {} of run {} failed: {}" , task.getId() , task.getRunId() , e.getMessage());
+            try {
+                transactionTemplate.executeWithoutResult(status -> recomputeTaskRepository.findById(task.getId()).ifPresent(failed -> {
+                    failed.setStatus(RecomputeTaskStatus.FAILED);
+                    failed.setFinishedAt(LocalDateTime.now());
+                    failed.setError(e.getMessage());
+                    recomputeTaskRepository.save(failed);
+                }));
+            } catch (RuntimeException markFailed) {
+                // left pending, it runs again on the next resume all the same
+                log.warn("Recompute task {} not marked failed: {}" , task.getId() , markFailed.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replaces the statistics of the devices and hours of a task, within the caller's transaction.
+     */
+    private void recompute(RecomputeTask task) {
+        if (!recomputeTaskRepository.tryLock(LOCK_CLASS , task.getId().intValue())) {
+            log.debug("Recompute task {} is running elsewhere" , task.getId());
+            return;
+        }
+        RecomputeTask current = recomputeTaskRepository.findById(task.getId()).orElse(null);
+        if (current == null || current.getStatus() == RecomputeTaskStatus.DONE) {
+            return;
+        }
+
+        LocalDateTime start = current.getRangeStart();
+        // the current hour is still filling, the writer only deletes the statistics of hours already over
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = current.getRangeEnd().isAfter(currentHour) ? currentHour : current.getRangeEnd();
+        List<String> deviceNames = temperatureRecordRepository.findDeviceNamesInRange(current.getDeviceFrom() , current.getDeviceTo());
+        // before reading: late readings committed since are read, later ones wait to delete what the task inserts
+        lockDevices(deviceNames);
+        temperatureHourlyStatisticRepository.deleteByDeviceRangeAndBucketStartRange(current.getDeviceFrom() , current.getDeviceTo() , start , end);
+
+        StatisticBatch batch = new StatisticBatch(LocalDateTime.now());
+        long readings = 0;
+        for (String deviceName : deviceNames) {
+            Map<Long, Hour> hours = new TreeMap<>();
+            readings += readDevice(deviceName , start , end , hours);
+            batch.add(deviceName , hours);
+        }
+        batch.flush();
+
+        current.setStatus(RecomputeTaskStatus.DONE);
+        current.setReadings(readings);
+        current.setBuckets(batch.written);
+        current.setFinishedAt(LocalDateTime.now());
+        current.setError(null);
+        recomputeTaskRepository.save(current);
+    }
+
+    /**
+     * Takes the shared locks of the devices of a task until the end of its transaction, with one statement.
+     */
+    private void lockDevices(List<String> deviceNames) {
+        if (deviceNames.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query(LOCK_DEVICES , statement -> {
+            statement.setInt(1 , DEVICE_LOCK_CLASS);
+            statement.setArray(2 , statement.getConnection().createArrayOf("varchar" , deviceNames.toArray()));
+        } , (RowCallbackHandler) resultSet -> {
+        });
+    }
+
+    /**
+     * Adds the readings of a device to its hours, the compacted ones first: a raw row duplicating a
+     * compacted reading is left out, as readers do.
+     *
+     * @return the readings added
+     */
+    private long readDevice(String deviceName , LocalDateTime start , LocalDateTime end , Map<Long, Hour> hours) {
+        long startMillis = DateUtil.localDateTimeToEpochMilli(start);
+        long endMillis = DateUtil.localDateTimeToEpochMilli(end);
+        Set<Long> compacted = new HashSet<>();
+        long readings = 0;
+
+        try (Stream<Object[]> chunks = temperatureChunkRepository.streamReadingsByDeviceName(deviceName , start , end)) {
+            for (Object[] row : (Iterable<Object[]>) chunks::iterator) {
+                int count = ((Number) row[1]).intValue();
+                long[] times = TemperatureChunkCodec.decodeTimestamps((byte[]) row[2] , count);
+                double[] temperatures = TemperatureChunkCodec.decodeValues((byte[]) row[3] , count);
+                for (int i = 0; i < count; i++) {
+                    if (times[i] >= startMillis && times[i] < endMillis) {
+                        compacted.add(times[i]);
+                        add(hours , (String) row[0] , times[i] , temperatures[i]);
+                        readings++;
+                    }
+                }
+            }
+        }
+
+        try (Stream<Object[]> rows = temperatureRecordRepository.streamReadingsByDeviceName(deviceName , start , end)) {
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                long time = DateUtil.localDateTimeToEpochMilli(row[1] instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) row[1]);
+                // readings without a temperature carry nothing to aggregate
+                if (row[2] != null && !compacted.contains(time)) {
+                    add(hours , (String) row[0] , time , ((Number) row[2]).doubleValue());
+                    readings++;
+                }
+            }
+        }
+        return readings;
+    }
+
+    private static void add(Map<Long, Hour> hours , String location , long epochMillis , double temperature) {
+        Hour hour = hours.computeIfAbsent(epochMillis - Math.floorMod(epochMillis , 3_600_000L) , key -> new Hour());
+        hour.location = location != null ? location : hour.location;
+        hour.count++;
+        hour.sum += temperature;
+        hour.min = Math.min(hour.min , temperature);
+        hour.max = Math.max(hour.max , temperature);
+    }
+
+    private RecomputeRunDTO summarize(String runId , List<Object[]> summary) {
+        RecomputeRunDTO run = new RecomputeRunDTO();
+        run.setRunId(runId);
+        run.setRunning(submittedRuns.contains(runId));
+        run.setParallelism(parallelism);
+        for (Object[] row : summary) {
+            RecomputeTaskStatus status = RecomputeTaskStatus.valueOf((String) row[0]);
+            long tasks = ((Number) row[1]).longValue();
+            run.setTasks(run.getTasks() + tasks);
+            switch (status) {
+                case DONE -> {
+                    run.setTasksDone(tasks);
+                    run.setReadings(((Number) row[2]).longValue());
+                    run.setBuckets(((Number) row[3]).longValue());
+                    run.setLastTaskFinishedAt(toLocalDateTime(row[7]));
+                }
+                case PENDING -> run.setTasksPending(tasks);
+                case FAILED -> run.setTasksFailed(tasks);
+            }
+            LocalDateTime start = toLocalDateTime(row[4]);
+            LocalDateTime end = toLocalDateTime(row[5]);
+            LocalDateTime submittedAt = toLocalDateTime(row[6]);
+            run.setStart(run.getStart() == null || start.isBefore(run.getStart()) ? start : run.getStart());
+            run.setEnd(run.getEnd() == null || end.isAfter(run.getEnd()) ? end : run.getEnd());
+            run.setSubmittedAt(run.getSubmittedAt() == null || submittedAt.isBefore(run.getSubmittedAt()) ? submittedAt : run.getSubmittedAt());
+        }
+        if (run.getTasksFailed() > 0) {
+            recomputeTaskRepository.findFirstByRunIdAndStatusOrderByFinishedAtDesc(runId , RecomputeTaskStatus.FAILED)
+                    .ifPresent(failed -> run.setLastError(failed.getError()));
+        }
+        return run;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+    /**
+     * A list of tasks, run as is when it holds one and split in halves otherwise.
+     */
+    private final class TaskSplit extends RecursiveAction {
+
+        private final List<RecomputeTask> tasks;
+
+        private TaskSplit(List<RecomputeTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            if (tasks.size() <= 1) {
+                tasks.forEach(HourlyStatisticsRecompute.this::runTask);
+                return;
+            }
+            int middle = tasks.size() / 2;
+            invokeAll(new TaskSplit(tasks.subList(0 , middle)) , new TaskSplit(tasks.subList(middle , tasks.size())));
+        }
+
+    }
+
+    /**
+     * The statistics of a task waiting to be inserted, written once a batch is full.
+     */
+    private final class StatisticBatch {
+
+        private final LocalDateTime computedAt;
+        private final List<Object[]> rows = new ArrayList<>();
+        private long written;
+
+        private StatisticBatch(LocalDateTime computedAt) {
+            this.computedAt = computedAt;
+        }
+
+        private void add(String deviceName , Map<Long, Hour> hours) {
+            hours.forEach((bucketStart , hour) -> {
+                rows.add(new Object[]{deviceName , hour.location , DateUtil.epochMilliToLocalDateTime(bucketStart) , hour.count , hour.sum ,
+                        hour.min , hour.max , computedAt});
+                if (rows.size() >= writeBatchSize) {
+                    flush();
+                }
+            });
+        }
+
+        private void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(INSERT_STATISTIC , rows);
+            written += rows.size();
+            rows.clear();
+        }
+
+    }
+
+    private static final class Hour {
+
+        private String location;
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+    }
+
+}
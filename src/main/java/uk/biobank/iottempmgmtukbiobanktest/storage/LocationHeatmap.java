@@ -0,0 +1,165 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.LocationHeatmapDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.GeneralUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds the heatmap of the devices of a location over a time range: the average and maximum
+ * temperature of each device in each bucket of whole hours.
+ * <p>
+ * The raw rows and the hourly rollups are aggregated by the database in a single grouped query,
+ * and the compacted chunks of the location, which only the application can decode, are folded in
+ * from a second query, both in one snapshot. The range is widened to whole hours so that rollups
+ * fall in a single bucket. A raw row never duplicates a compacted reading, the
+ * {@code TemperatureRecordWriter} probing the chunks before inserting, so no reading is counted
+ * by both queries.
+ */
+@Component
+public class LocationHeatmap {
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final int maxRangeDays;
+
+    public LocationHeatmap(TemperatureRecordRepository temperatureRecordRepository ,
+                           TemperatureChunkRepository temperatureChunkRepository ,
+                           @Value("${heatmap.max-range-days:31}") int maxRangeDays) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.maxRangeDays = maxRangeDays;
+    }
+
+    /**
+     * Builds the heatmap of the readings taken at a location from {@code start} (inclusive) to {@code end} (exclusive).
+     *
+     * @param location    the location, e.g. a room or a building
+     * @param start       the start of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @param end         the end of the range in the format "yyyy-MM-dd'T'HH:mm:ss"
+     * @param bucketHours the hours in a bucket, from 1 to 24
+     * @return the heatmap, devices ordered by name
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public LocationHeatmapDTO build(String location , String start , String end , int bucketHours) {
+        if (GeneralUtil.stringIsNullOrEmpty(location)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Location is required");
+        }
+        LocalDateTime startDateTime = start == null ? null : DateUtil.stringToLocalDateTime(start);
+        LocalDateTime endDateTime = end == null ? null : DateUtil.stringToLocalDateTime(end);
+        if (startDateTime == null || endDateTime == null) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start and end must be ISO-8601 date-times");
+        }
+        if (!startDateTime.isBefore(endDateTime)) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Start must be before end");
+        }
+        if (Duration.between(startDateTime , endDateTime).compareTo(Duration.ofDays(maxRangeDays)) > 0) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Range must not exceed " + maxRangeDays + " days");
+        }
+        if (bucketHours < 1 || bucketHours > 24) {
+            throw new GeneralException(ResponseCodeAndMessage.BAD_REQUEST.responseCode , "Bucket hours must be between 1 and 24");
+        }
+
+        LocalDateTime from = startDateTime.truncatedTo(ChronoUnit.HOURS);
+        long bucketMillis = Duration.ofHours(bucketHours).toMillis();
+        int bucketCount = (int) ((Duration.between(from , endDateTime).toMillis() + bucketMillis - 1) / bucketMillis);
+        LocalDateTime to = from.plusHours((long) bucketCount * bucketHours);
+
+        Map<String, Cells> devices = new TreeMap<>();
+        for (Object[] row : temperatureRecordRepository.aggregateByLocationAndBucket(location , from , to , bucketMillis / 1000)) {
+            devices.computeIfAbsent((String) row[0] , name -> new Cells(bucketCount))
+                    .add(((Number) row[1]).intValue() , ((Number) row[2]).longValue() , ((Number) row[3]).doubleValue() , ((Number) row[4]).doubleValue());
+        }
+
+        long fromMillis = DateUtil.localDateTimeToEpochMilli(from);
+        long toMillis = DateUtil.localDateTimeToEpochMilli(to);
+        for (Object[] row : temperatureChunkRepository.findReadingsByLocationOverlapping(location , from.toLocalDate() , to.toLocalDate() , from , to)) {
+            int count = ((Number) row[1]).intValue();
+            long[] times = TemperatureChunkCodec.decodeTimestamps((byte[]) row[2] , count);
+            double[] temperatures = TemperatureChunkCodec.decodeValues((byte[]) row[3] , count);
+            Cells cells = devices.computeIfAbsent((String) row[0] , name -> new Cells(bucketCount));
+            for (int i = 0; i < count; i++) {
+                if (times[i] >= fromMillis && times[i] < toMillis) {
+                    cells.add((int) ((times[i] - fromMillis) / bucketMillis) , 1 , temperatures[i] , temperatures[i]);
+                }
+            }
+        }
+
+        return toHeatmap(location , from , to , bucketHours , bucketCount , devices);
+    }
+
+    private static LocationHeatmapDTO toHeatmap(String location , LocalDateTime from , LocalDateTime to , int bucketHours ,
+                                                int bucketCount , Map<String, Cells> devices) {
+        List<LocalDateTime> buckets = new ArrayList<>(bucketCount);
+        for (int b = 0; b < bucketCount; b++) {
+            buckets.add(from.plusHours((long) b * bucketHours));
+        }
+        Double[] averages = new Double[devices.size() * bucketCount];
+        Double[] maxima = new Double[averages.length];
+        long[] readingCounts = new long[averages.length];
+        int d = 0;
+        for (Cells cells : devices.values()) {
+            for (int b = 0; b < bucketCount; b++) {
+                int index = d * bucketCount + b;
+                readingCounts[index] = cells.counts[b];
+                if (cells.counts[b] > 0) {
+                    averages[index] = cells.sums[b] / cells.counts[b];
+                    maxima[index] = cells.maxima[b];
+                }
+            }
+            d++;
+        }
+
+        LocationHeatmapDTO heatmap = new LocationHeatmapDTO();
+        heatmap.setLocation(location);
+        heatmap.setStart(from);
+        heatmap.setEnd(to);
+        heatmap.setBucketHours(bucketHours);
+        heatmap.setDevices(List.copyOf(devices.keySet()));
+        heatmap.setBuckets(buckets);
+        heatmap.setAverages(averages);
+        heatmap.setMaxima(maxima);
+        heatmap.setReadingCounts(readingCounts);
+        return heatmap;
+    }
+
+    /**
+     * The running count, sum and maximum of each bucket of one device.
+     */
+    private static final class Cells {
+
+        private final long[] counts;
+        private final double[] sums;
+        private final double[] maxima;
+
+        private Cells(int bucketCount) {
+            counts = new long[bucketCount];
+            sums = new double[bucketCount];
+            maxima = new double[bucketCount];
+        }
+
+        private void add(int bucket , long count , double sum , double max) {
+            maxima[bucket] = counts[bucket] == 0 ? max : Math.max(maxima[bucket] , max);
+            counts[bucket] += count;
+            sums[bucket] += sum;
+        }
+
+    }
+
+}
@@ -0,0 +1,400 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeleteJobDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyAggregateRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyStatisticRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.DeleteJobStatus;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Background delete jobs over every storage tier: raw rows, compacted chunks and hourly aggregates,
+ * and the recomputed hourly statistics of the readings deleted, which go first so the hourly average
+ * never reads a statistic of readings no longer stored.
+ * <p>
+ * Deletes run as set-based SQL in batches of {@code deletion.batch-size} rows, each batch in its own
+ * short transaction, so no entity is loaded, locks stay short-lived and a large delete never needs
+ * one huge transaction. The only rows loaded are chunks straddling the boundary of a time range,
+ * whose readings outside the range are re-encoded. A full wipe truncates the tables instead, which
+ * reports no counts.
+ * <p>
+ * Jobs run one at a time in submission order on a single worker thread. Their progress is kept in
+ * memory for the last {@value #MAX_FINISHED_JOBS} finished jobs. Readings still on their way through
+ * the ingestion journal and lanes are written after a delete that has already passed them.
+ */
+@Slf4j
+@Component
+public class RecordDeletionJobs {
+
+    private static final int MAX_FINISHED_JOBS = 100;
+    // a chunk holds up to a day of readings, a raw batch of this size weighs about one chunk
+    private static final int READINGS_PER_CHUNK_BATCH = 100;
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final TemperatureHourlyAggregateRepository temperatureHourlyAggregateRepository;
+    private final TemperatureHourlyStatisticRepository temperatureHourlyStatisticRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private final ExecutorService executor;
+    // in submission order, the oldest finished jobs are forgotten first
+    private final Map<String, DeleteJobDTO> jobs = new LinkedHashMap<>();
+    private volatile boolean stopping;
+
+    public RecordDeletionJobs(TemperatureRecordRepository temperatureRecordRepository ,
+                              TemperatureChunkRepository temperatureChunkRepository ,
+                              TemperatureHourlyAggregateRepository temperatureHourlyAggregateRepository ,
+                              TemperatureHourlyStatisticRepository temperatureHourlyStatisticRepository ,
+                              TransactionTemplate transactionTemplate ,
+                              @Value("${deletion.batch-size:5000}") int batchSize ,
+                              @Value("${deletion.pause-ms:10}") long pauseMillis) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.temperatureHourlyAggregateRepository = temperatureHourlyAggregateRepository;
+        this.temperatureHourlyStatisticRepository = temperatureHourlyStatisticRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1 , batchSize);
+        this.pauseMillis = pauseMillis;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable , "record-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a job deleting every reading and aggregate.
+     *
+     * @return the queued job
+     */
+    public DeleteJobDTO deleteAll() {
+        DeleteJobDTO job = newJob("all");
+        return submit(job , () -> {
+            phase(job , "truncate");
+            // all in one transaction, a reader never sees aggregates or statistics without their readings
+            transactionTemplate.executeWithoutResult(status -> {
+                temperatureRecordRepository.truncate();
+                temperatureChunkRepository.truncate();
+                temperatureHourlyAggregateRepository.truncate();
+                temperatureHourlyStatisticRepository.truncate();
+            });
+        });
+    }
+
+    /**
+     * Starts a job deleting the readings and aggregates of a device.
+     *
+     * @param deviceName the device to delete
+     * @return the queued job
+     */
+    public DeleteJobDTO deleteByDeviceName(String deviceName) {
+        DeleteJobDTO job = newJob("device");
+        job.setDeviceName(deviceName);
+        return submit(job , () -> {
+            phase(job , "statistics");
+            runBatches(job , () -> temperatureHourlyStatisticRepository.deleteBatchByDeviceName(deviceName , batchSize) ,
+                    deleted -> job.setStatisticsDeleted(job.getStatisticsDeleted() + deleted));
+
+            phase(job , "readings");
+            runBatches(job , () -> temperatureRecordRepository.deleteBatchByDeviceName(deviceName , batchSize) ,
+                    deleted -> job.setReadingsDeleted(job.getReadingsDeleted() + deleted));
+
+            phase(job , "chunks");
+            runBatches(job , () -> temperatureChunkRepository.deleteBatchByDeviceName(deviceName , chunkBatchSize()) ,
+                    deleted -> job.setChunksDeleted(job.getChunksDeleted() + deleted));
+
+            phase(job , "aggregates");
+            runBatches(job , () -> temperatureHourlyAggregateRepository.deleteBatchByDeviceName(deviceName , batchSize) ,
+                    deleted -> job.setAggregatesDeleted(job.getAggregatesDeleted() + deleted));
+        });
+    }
+
+    /**
+     * Starts a job deleting the readings and aggregates of a location.
+     *
+     * @param location the location to delete
+     * @return the queued job
+     */
+    public DeleteJobDTO deleteByLocation(String location) {
+        DeleteJobDTO job = newJob("location");
+        job.setLocation(location);
+        return submit(job , () -> {
+            phase(job , "statistics");
+            runBatches(job , () -> temperatureHourlyStatisticRepository.deleteBatchByLocation(location , batchSize) ,
+                    deleted -> job.setStatisticsDeleted(job.getStatisticsDeleted() + deleted));
+
+            phase(job , "readings");
+            runBatches(job , () -> temperatureRecordRepository.deleteBatchByLocation(location , batchSize) ,
+                    deleted -> job.setReadingsDeleted(job.getReadingsDeleted() + deleted));
+
+            phase(job , "chunks");
+            runBatches(job , () -> temperatureChunkRepository.deleteBatchByLocation(location , chunkBatchSize()) ,
+                    deleted -> job.setChunksDeleted(job.getChunksDeleted() + deleted));
+
+            phase(job , "aggregates");
+            runBatches(job , () -> temperatureHourlyAggregateRepository.deleteBatchByLocation(location , batchSize) ,
+                    deleted -> job.setAggregatesDeleted(job.getAggregatesDeleted() + deleted));
+        });
+    }
+
+    /**
+     * Starts a job deleting the readings taken from {@code start} (inclusive) to {@code end} (exclusive),
+     * with the aggregates of the hours lying entirely within the range.
+     *
+     * @param start the start of the range
+     * @param end   the end of the range, after the start
+     * @return the queued job
+     */
+    public DeleteJobDTO deleteBetween(LocalDateTime start , LocalDateTime end) {
+        DeleteJobDTO job = newJob("range");
+        job.setStart(start);
+        job.setEnd(end);
+        return submit(job , () -> {
+            // unlike an aggregate, the statistic of a partial hour no longer counts the hour's readings either
+            LocalDateTime firstHour = start.truncatedTo(ChronoUnit.HOURS);
+            phase(job , "statistics");
+            runBatches(job , () -> temperatureHourlyStatisticRepository.deleteBatchByBucketStartRange(firstHour , end , batchSize) ,
+                    deleted -> job.setStatisticsDeleted(job.getStatisticsDeleted() + deleted));
+
+            phase(job , "readings");
+            runBatches(job , () -> temperatureRecordRepository.deleteBatchByTimeRange(start , end , batchSize) ,
+                    deleted -> job.setReadingsDeleted(job.getReadingsDeleted() + deleted));
+
+            phase(job , "chunks");
+            runBatches(job , () -> temperatureChunkRepository.deleteBatchWithin(start , end , chunkBatchSize()) ,
+                    deleted -> job.setChunksDeleted(job.getChunksDeleted() + deleted));
+            trimChunks(job , start , end);
+
+            // an aggregate cannot be split, the partial hours at both ends are kept
+            LocalDateTime firstFullHour = firstHour.isBefore(start) ? firstHour.plusHours(1) : firstHour;
+            LocalDateTime endHour = end.truncatedTo(ChronoUnit.HOURS);
+            if (firstFullHour.isBefore(endHour)) {
+                phase(job , "aggregates");
+                runBatches(job , () -> temperatureHourlyAggregateRepository.deleteBatchByBucketStartRange(firstFullHour , endHour , batchSize) ,
+                        deleted -> job.setAggregatesDeleted(job.getAggregatesDeleted() + deleted));
+            }
+        });
+    }
+
+    /**
+     * Finds a job submitted since the application started.
+     *
+     * @param jobId the id returned when the job was submitted
+     * @return a snapshot of the job, empty if unknown or long forgotten
+     */
+    public Optional<DeleteJobDTO> find(String jobId) {
+        synchronized (jobs) {
+            DeleteJobDTO job = jobs.get(jobId);
+            return job == null ? Optional.empty() : Optional.of(snapshot(job));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Cuts the readings within the range out of the chunks straddling its boundaries,
+     * deleting chunks left empty.
+     */
+    private void trimChunks(DeleteJobDTO job , LocalDateTime start , LocalDateTime end) {
+        phase(job , "chunk boundaries");
+        long startMillis = DateUtil.localDateTimeToEpochMilli(start);
+        long endMillis = DateUtil.localDateTimeToEpochMilli(end);
+        long[] afterId = {0L};
+
+        runBatches(job , () -> {
+            List<TemperatureChunk> chunks = temperatureChunkRepository.findOverlappingAfterId(
+                    afterId[0] , start , end , Limit.of(chunkBatchSize()));
+            int changed = 0;
+            for (TemperatureChunk chunk : chunks) {
+                afterId[0] = chunk.getId();
+                SortedMap<Long, Double> readings = TemperatureChunks.decode(chunk);
+                SortedMap<Long, Double> inRange = readings.subMap(startMillis , endMillis);
+                if (inRange.isEmpty()) {
+                    continue;
+                }
+                inRange.clear();
+                if (readings.isEmpty()) {
+                    temperatureChunkRepository.delete(chunk);
+                } else {
+                    TemperatureChunks.encode(chunk , readings);
+                    temperatureChunkRepository.save(chunk);
+                }
+                changed++;
+            }
+            synchronized (job) {
+                job.setChunksTrimmed(job.getChunksTrimmed() + changed);
+            }
+            return chunks.size();
+        } , scanned -> {
+        });
+    }
+
+    /**
+     * Runs batches, each in its own transaction, until one deletes nothing, pausing between them.
+     */
+    private void runBatches(DeleteJobDTO job , IntSupplier batch , LongConsumer progress) {
+        while (true) {
+            if (stopping) {
+                throw new JobCancelledException();
+            }
+            // the repositories' modifying queries need the caller's transaction
+            Integer result = transactionTemplate.execute(status -> batch.getAsInt());
+            int deleted = result == null ? 0 : result;
+            synchronized (job) {
+                job.setBatches(job.getBatches() + 1);
+                progress.accept(deleted);
+            }
+            if (deleted == 0) {
+                return;
+            }
+
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JobCancelledException();
+            }
+        }
+    }
+
+    private int chunkBatchSize() {
+        return Math.max(1 , batchSize / READINGS_PER_CHUNK_BATCH);
+    }
+
+    private DeleteJobDTO newJob(String scope) {
+        DeleteJobDTO job = new DeleteJobDTO();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setScope(scope);
+        job.setStatus(DeleteJobStatus.QUEUED);
+        job.setSubmittedAt(LocalDateTime.now());
+        return job;
+    }
+
+    private DeleteJobDTO submit(DeleteJobDTO job , Runnable body) {
+        synchronized (jobs) {
+            jobs.put(job.getJobId() , job);
+            forgetFinishedJobs();
+        }
+
+        executor.execute(() -> {
+            synchronized (job) {
+                if (stopping) {
+                    job.setStatus(DeleteJobStatus.CANCELLED);
+                    job.setFinishedAt(LocalDateTime.now());
+                    return;
+                }
+                job.setStatus(DeleteJobStatus.RUNNING);
+                job.setStartedAt(LocalDateTime.now());
+            }
+            log.info("Delete job {} started, scope {}" , job.getJobId() , job.getScope());
+
+            DeleteJobStatus outcome = DeleteJobStatus.COMPLETED;
+            String error = null;
+            try {
+                body.run();
+            } catch (JobCancelledException e) {
+                outcome = DeleteJobStatus.CANCELLED;
+            } catch (RuntimeException e) {
+                log.error("Delete job {} failed" , job.getJobId() , e);
+                outcome = DeleteJobStatus.FAILED;
+                error = e.getMessage();
+            }
+
+            synchronized (job) {
+                job.setStatus(outcome);
+                job.setError(error);
+                job.setPhase(null);
+                job.setFinishedAt(LocalDateTime.now());
+            }
+            log.info("Delete job {} {}: {} readings, {} chunks, {} aggregates, {} statistics deleted in {} batches" , job.getJobId() , outcome ,
+                    job.getReadingsDeleted() , job.getChunksDeleted() , job.getAggregatesDeleted() , job.getStatisticsDeleted() , job.getBatches());
+        });
+
+        synchronized (job) {
+            return snapshot(job);
+        }
+    }
+
+    private void forgetFinishedJobs() {
+        long finished = jobs.values().stream().filter(RecordDeletionJobs::isFinished).count();
+        Iterator<DeleteJobDTO> iterator = jobs.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (isFinished(iterator.next())) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    private static boolean isFinished(DeleteJobDTO job) {
+        synchronized (job) {
+            return job.getStatus() != DeleteJobStatus.QUEUED && job.getStatus() != DeleteJobStatus.RUNNING;
+        }
+    }
+
+    private static void phase(DeleteJobDTO job , String phase) {
+        synchronized (job) {
+            job.setPhase(phase);
+        }
+    }
+
+    private static DeleteJobDTO snapshot(DeleteJobDTO job) {
+        synchronized (job) {
+            DeleteJobDTO snapshot = new DeleteJobDTO();
+            snapshot.setJobId(job.getJobId());
+            snapshot.setScope(job.getScope());
+            snapshot.setDeviceName(job.getDeviceName());
+            snapshot.setLocation(job.getLocation());
+            snapshot.setStart(job.getStart());
+            snapshot.setEnd(job.getEnd());
+            snapshot.setStatus(job.getStatus());
+            snapshot.setPhase(job.getPhase());
+            snapshot.setReadingsDeleted(job.getReadingsDeleted());
+            snapshot.setChunksDeleted(job.getChunksDeleted());
+            snapshot.setChunksTrimmed(job.getChunksTrimmed());
+            snapshot.setAggregatesDeleted(job.getAggregatesDeleted());
+            snapshot.setStatisticsDeleted(job.getStatisticsDeleted());
+            snapshot.setBatches(job.getBatches());
+            snapshot.setSubmittedAt(job.getSubmittedAt());
+            snapshot.setStartedAt(job.getStartedAt());
+            snapshot.setFinishedAt(job.getFinishedAt());
+            snapshot.setError(job.getError());
+            return snapshot;
+        }
+    }
+
+    /**
+     * Unwinds a job interrupted by an application shutdown.
+     */
+    private static final class JobCancelledException extends RuntimeException {
+    }
+
+}
@@ -0,0 +1,329 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.dto.RetentionStatusDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyAggregateRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/**
+ * Retention policy engine: raw readings are kept for {@code retention.raw-days}, hourly
+ * aggregates for {@code retention.aggregate-days} (0 keeps them forever).
+ * <p>
+ * Expired raw rows and compacted chunks are rolled up into {@code temperature_hourly_aggregates}
+ * and deleted in small batches, each in its own transaction, so the rollup of a batch and its
+ * deletion either both happen or neither does and re-runs never count a reading twice. Short
+ * transactions keep row locks and WAL bursts small.
+ * <p>
+ * The job throttles itself from the latency of its own batches: a batch slower than
+ * {@code retention.target-batch-ms} halves the batch size and pauses for twice its duration,
+ * fast batches grow the batch size again. Progress is exposed through {@link #getStatus()}.
+ */
+@Slf4j
+@Component
+public class RetentionJob {
+
+    private static final int MIN_BATCH_SIZE = 50;
+    // a chunk holds up to a day of readings, a raw batch of this size weighs about one chunk
+    private static final int READINGS_PER_CHUNK_BATCH = 100;
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final TemperatureHourlyAggregateRepository temperatureHourlyAggregateRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int rawDays;
+    private final int aggregateDays;
+    private final int maxBatchSize;
+    private final long targetBatchMillis;
+    private final long pauseMillis;
+    private final long maxPauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final RetentionStatusDTO status = new RetentionStatusDTO();
+    private volatile boolean stopping;
+    private int batchSize;
+
+    public RetentionJob(TemperatureRecordRepository temperatureRecordRepository ,
+                        TemperatureChunkRepository temperatureChunkRepository ,
+                        TemperatureHourlyAggregateRepository temperatureHourlyAggregateRepository ,
+                        TransactionTemplate transactionTemplate ,
+                        @Value("${retention.enabled:true}") boolean enabled ,
+                        @Value("${retention.raw-days:90}") int rawDays ,
+                        @Value("${retention.aggregate-days:0}") int aggregateDays ,
+                        @Value("${retention.batch-size:1000}") int maxBatchSize ,
+                        @Value("${retention.target-batch-ms:250}") long targetBatchMillis ,
+                        @Value("${retention.pause-ms:50}") long pauseMillis ,
+                        @Value("${retention.max-pause-ms:5000}") long maxPauseMillis) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.temperatureHourlyAggregateRepository = temperatureHourlyAggregateRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.rawDays = rawDays;
+        this.aggregateDays = aggregateDays;
+        this.maxBatchSize = Math.max(maxBatchSize , MIN_BATCH_SIZE);
+        this.targetBatchMillis = targetBatchMillis;
+        this.pauseMillis = pauseMillis;
+        this.maxPauseMillis = maxPauseMillis;
+        this.batchSize = this.maxBatchSize;
+
+        status.setEnabled(enabled);
+        status.setPhase("idle");
+        status.setBatchSize(batchSize);
+    }
+
+    /**
+     * Applies the retention policies, skipped if a run is already in progress.
+     */
+    @Scheduled(initialDelayString = "${retention.initial-delay-ms:120000}", fixedDelayString = "${retention.interval-ms:3600000}")
+    public void run() {
+        if (!enabled || !running.compareAndSet(false , true)) {
+            return;
+        }
+
+        LocalDateTime rawCutoff = LocalDate.now().minusDays(rawDays).atStartOfDay();
+        LocalDateTime aggregateCutoff = aggregateDays > 0 ? LocalDate.now().minusDays(aggregateDays).atStartOfDay() : null;
+        synchronized (status) {
+            status.setRunning(true);
+            status.setStartedAt(LocalDateTime.now());
+            status.setFinishedAt(null);
+            status.setRawCutoff(rawCutoff);
+            status.setAggregateCutoff(aggregateCutoff);
+            status.setRawReadingsRolledUp(0);
+            status.setChunksRolledUp(0);
+            status.setAggregatesDeleted(0);
+            status.setBatches(0);
+            status.setThrottledMillis(0);
+            status.setLastError(null);
+        }
+
+        try {
+            phase("raw");
+            runBatches(() -> rollUpRawBatch(rawCutoff , batchSize));
+
+            phase("chunks");
+            runBatches(() -> rollUpChunkBatch(rawCutoff.toLocalDate() , Math.max(1 , batchSize / READINGS_PER_CHUNK_BATCH)));
+
+            if (aggregateCutoff != null) {
+                phase("aggregates");
+                runBatches(() -> deleteAggregateBatch(aggregateCutoff , batchSize));
+            }
+
+            RetentionStatusDTO finished = getStatus();
+            log.info("Retention run finished: {} raw readings and {} chunks rolled up, {} aggregates deleted in {} batches" ,
+                    finished.getRawReadingsRolledUp() , finished.getChunksRolledUp() , finished.getAggregatesDeleted() , finished.getBatches());
+        } catch (DataAccessException e) {
+            log.warn("Retention run failed, resuming on the next run: {}" , e.getMessage());
+            synchronized (status) {
+                status.setLastError(e.getMessage());
+            }
+        } finally {
+            synchronized (status) {
+                status.setRunning(false);
+                status.setPhase("idle");
+                status.setFinishedAt(LocalDateTime.now());
+            }
+            running.set(false);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the progress of the current or last run.
+     *
+     * @return the retention status
+     */
+    public RetentionStatusDTO getStatus() {
+        RetentionStatusDTO snapshot = new RetentionStatusDTO();
+        synchronized (status) {
+            snapshot.setEnabled(status.isEnabled());
+            snapshot.setRunning(status.isRunning());
+            snapshot.setPhase(status.getPhase());
+            snapshot.setStartedAt(status.getStartedAt());
+            snapshot.setFinishedAt(status.getFinishedAt());
+            snapshot.setRawCutoff(status.getRawCutoff());
+            snapshot.setAggregateCutoff(status.getAggregateCutoff());
+            snapshot.setRawReadingsRolledUp(status.getRawReadingsRolledUp());
+            snapshot.setChunksRolledUp(status.getChunksRolledUp());
+            snapshot.setAggregatesDeleted(status.getAggregatesDeleted());
+            snapshot.setBatches(status.getBatches());
+            snapshot.setBatchSize(status.getBatchSize());
+            snapshot.setLastBatchMillis(status.getLastBatchMillis());
+            snapshot.setThrottledMillis(status.getThrottledMillis());
+            snapshot.setLastError(status.getLastError());
+        }
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    private void runBatches(IntSupplier batch) {
+        while (!stopping) {
+            long started = System.nanoTime();
+            int processed = batch.getAsInt();
+            if (processed == 0) {
+                return;
+            }
+            throttle(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    private int rollUpRawBatch(LocalDateTime cutoff , int limit) {
+        Integer processed = transactionTemplate.execute(transaction -> {
+            List<TemperatureRecord> records = temperatureRecordRepository.findByTimeBefore(cutoff , Limit.of(limit));
+            if (records.isEmpty()) {
+                return 0;
+            }
+
+            HourlyRollup rollup = new HourlyRollup();
+            for (TemperatureRecord record : records) {
+                rollup.add(record.getDeviceName() , record.getLocation() , record.getTime() , record.getTemperature());
+            }
+            rollup.writeTo(temperatureHourlyAggregateRepository);
+            temperatureRecordRepository.deleteAllByIdInBatch(records.stream().map(TemperatureRecord::getId).toList());
+            return records.size();
+        });
+
+        synchronized (status) {
+            status.setRawReadingsRolledUp(status.getRawReadingsRolledUp() + processed);
+        }
+        return processed;
+    }
+
+    private int rollUpChunkBatch(LocalDate cutoff , int limit) {
+        Integer processed = transactionTemplate.execute(transaction -> {
+            List<TemperatureChunk> chunks = temperatureChunkRepository.findByChunkDateBefore(cutoff , Limit.of(limit));
+            if (chunks.isEmpty()) {
+                return 0;
+            }
+
+            HourlyRollup rollup = new HourlyRollup();
+            for (TemperatureChunk chunk : chunks) {
+                for (Map.Entry<Long, Double> reading : TemperatureChunks.decode(chunk).entrySet()) {
+                    rollup.add(chunk.getDeviceName() , chunk.getLocation() , DateUtil.epochMilliToLocalDateTime(reading.getKey()) , reading.getValue());
+                }
+            }
+            rollup.writeTo(temperatureHourlyAggregateRepository);
+            temperatureChunkRepository.deleteAllInBatch(chunks);
+            return chunks.size();
+        });
+
+        synchronized (status) {
+            status.setChunksRolledUp(status.getChunksRolledUp() + processed);
+        }
+        return processed;
+    }
+
+    private int deleteAggregateBatch(LocalDateTime cutoff , int limit) {
+        Integer deleted = transactionTemplate.execute(transaction -> temperatureHourlyAggregateRepository.deleteBatchBefore(cutoff , limit));
+
+        synchronized (status) {
+            status.setAggregatesDeleted(status.getAggregatesDeleted() + deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Adapts the batch size to the latency of the last batch and pauses before the next one.
+     */
+    void throttle(long batchMillis) {
+        long pause;
+        if (batchMillis > targetBatchMillis) {
+            batchSize = Math.max(MIN_BATCH_SIZE , batchSize / 2);
+            // give the database room to catch up with replication and vacuum
+            pause = Math.min(maxPauseMillis , Math.max(pauseMillis , batchMillis * 2));
+        } else {
+            if (batchMillis < targetBatchMillis / 2) {
+                batchSize = Math.min(maxBatchSize , batchSize + batchSize / 4);
+            }
+            pause = pauseMillis;
+        }
+
+        synchronized (status) {
+            status.setBatches(status.getBatches() + 1);
+            status.setBatchSize(batchSize);
+            status.setLastBatchMillis(batchMillis);
+            status.setThrottledMillis(status.getThrottledMillis() + pause);
+        }
+
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopping = true;
+        }
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    private void phase(String phase) {
+        synchronized (status) {
+            status.setPhase(phase);
+        }
+    }
+
+    /**
+     * Accumulates readings into per-device hourly buckets.
+     */
+    private static final class HourlyRollup {
+
+        private final Map<String, Map<LocalDateTime, Bucket>> buckets = new HashMap<>();
+
+        void add(String deviceName , String location , LocalDateTime time , Double temperature) {
+            // readings without a device or temperature carry nothing to aggregate
+            if (deviceName == null || time == null || temperature == null) {
+                return;
+            }
+            Bucket bucket = buckets.computeIfAbsent(deviceName , key -> new HashMap<>())
+                    .computeIfAbsent(time.truncatedTo(ChronoUnit.HOURS) , key -> new Bucket());
+            bucket.location = location != null ? location : bucket.location;
+            bucket.count++;
+            bucket.sum += temperature;
+            bucket.min = Math.min(bucket.min , temperature);
+            bucket.max = Math.max(bucket.max , temperature);
+        }
+
+        void writeTo(TemperatureHourlyAggregateRepository repository) {
+            buckets.forEach((deviceName , hours) -> hours.forEach((bucketStart , bucket) ->
+                    repository.addToBucket(deviceName , bucket.location , bucketStart , bucket.count , bucket.sum , bucket.min , bucket.max)));
+        }
+
+    }
+
+    private static final class Bucket {
+
+        private String location;
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+    }
+
+}
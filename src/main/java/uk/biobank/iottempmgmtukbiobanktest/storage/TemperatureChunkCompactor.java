@@ -0,0 +1,156 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Background job moving raw readings older than {@code cold-storage.compact-after-days} into
+ * compressed {@link TemperatureChunk}s, one per device-day.
+ * <p>
+ * Each device-day is packed in its own transaction: the raw rows are read, merged with the chunk
+ * already stored for the day (readings arriving late are folded in on the next run), encoded and
+ * deleted by id, so rows inserted concurrently are never lost. A reading already present in the
+ * chunk wins over a raw duplicate. Device-days whose readings do not share one location stay raw.
+ * <p>
+ * Off unless {@code cold-storage.enabled} is set: the list endpoints page raw rows only, so compacted
+ * readings no longer appear in them.
+ */
+@Slf4j
+@Component
+public class TemperatureChunkCompactor {
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int compactAfterDays;
+    private final int maxDeviceDaysPerRun;
+
+    private final Counter compactedChunks;
+    private final Counter compactedReadings;
+
+    public TemperatureChunkCompactor(TemperatureRecordRepository temperatureRecordRepository ,
+                                     TemperatureChunkRepository temperatureChunkRepository ,
+                                     TransactionTemplate transactionTemplate , MeterRegistry meterRegistry ,
+                                     @Value("${cold-storage.enabled:false}") boolean enabled ,
+                                     @Value("${cold-storage.compact-after-days:7}") int compactAfterDays ,
+                                     @Value("${cold-storage.max-device-days-per-run:500}") int maxDeviceDaysPerRun) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.compactAfterDays = compactAfterDays;
+        this.maxDeviceDaysPerRun = maxDeviceDaysPerRun;
+
+        this.compactedChunks = Counter.builder("storage.compaction.chunks")
+                .description("Device-day chunks written by the compactor")
+                .register(meterRegistry);
+        this.compactedReadings = Counter.builder("storage.compaction.readings")
+                .description("Raw readings moved into chunks by the compactor")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Compacts up to {@code cold-storage.max-device-days-per-run} device-days older than the cutoff.
+     */
+    @Scheduled(initialDelayString = "${cold-storage.initial-delay-ms:60000}", fixedDelayString = "${cold-storage.compaction-interval-ms:3600000}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDate.now().minusDays(compactAfterDays).atStartOfDay();
+        List<Object[]> deviceDays;
+        try {
+            deviceDays = temperatureRecordRepository.findCompactableDeviceDays(cutoff , maxDeviceDaysPerRun);
+        } catch (DataAccessException e) {
+            log.warn("Failed to look up device-days to compact: {}" , e.getMessage());
+            return;
+        }
+
+        int readings = 0;
+        for (Object[] deviceDay : deviceDays) {
+            String deviceName = (String) deviceDay[0];
+            LocalDate day = toLocalDate(deviceDay[1]);
+            try {
+                Integer compacted = transactionTemplate.execute(status -> compactDeviceDay(deviceName , day));
+                readings += compacted == null ? 0 : compacted;
+            } catch (DataAccessException e) {
+                log.warn("Failed to compact readings of device {} on {}: {}" , deviceName , day , e.getMessage());
+            }
+        }
+
+        if (!deviceDays.isEmpty()) {
+            log.info("Compacted {} raw readings of {} device-days before {}" , readings , deviceDays.size() , cutoff);
+        }
+    }
+
+    /**
+     * Packs the raw readings of one device-day into its chunk, deleting the raw rows.
+     * Must run inside a transaction.
+     *
+     * @param deviceName the device to compact
+     * @param day        the day to compact
+     * @return the number of raw readings removed
+     */
+    int compactDeviceDay(String deviceName , LocalDate day) {
+        List<TemperatureRecord> records = temperatureRecordRepository.findByDeviceNameAndTimeGreaterThanEqualAndTimeLessThanOrderByTime(
+                deviceName , day.atStartOfDay() , day.plusDays(1).atStartOfDay());
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        TemperatureChunk chunk = temperatureChunkRepository.findByDeviceNameAndChunkDate(deviceName , day).orElse(null);
+        TreeMap<Long, Double> readings = new TreeMap<>();
+        if (chunk != null) {
+            readings.putAll(TemperatureChunks.decode(chunk));
+        } else {
+            chunk = new TemperatureChunk();
+            chunk.setDeviceName(deviceName);
+            chunk.setLocation(records.get(0).getLocation());
+            chunk.setChunkDate(day);
+        }
+
+        for (TemperatureRecord record : records) {
+            if (record.getTemperature() != null) {
+                readings.putIfAbsent(DateUtil.localDateTimeToEpochMilli(record.getTime()) , record.getTemperature());
+            }
+        }
+        if (readings.isEmpty()) {
+            // ingestion never stores a reading without a temperature
+            return 0;
+        }
+
+        TemperatureChunks.encode(chunk , readings);
+        temperatureChunkRepository.save(chunk);
+
+        // delete by id, rows inserted for the day since they were read stay for the next run
+        temperatureRecordRepository.deleteAllByIdInBatch(records.stream().map(TemperatureRecord::getId).toList());
+
+        compactedChunks.increment();
+        compactedReadings.increment(records.size());
+        return records.size();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof Date date ? date.toLocalDate() : (LocalDate) value;
+    }
+
+}
@@ -0,0 +1,59 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Helpers shared by the chunk compactor and readers.
+ */
+final class TemperatureChunks {
+
+    private TemperatureChunks() {
+    } // Prevent instantiation
+
+    /**
+     * Decodes the readings of a chunk.
+     *
+     * @param chunk the chunk to decode
+     * @return the temperatures keyed by reading time in epoch milliseconds, ascending
+     */
+    static SortedMap<Long, Double> decode(TemperatureChunk chunk) {
+        long[] epochMillis = TemperatureChunkCodec.decodeTimestamps(chunk.getTimestamps() , chunk.getReadingCount());
+        double[] temperatures = TemperatureChunkCodec.decodeValues(chunk.getTemperatures() , chunk.getReadingCount());
+
+        SortedMap<Long, Double> readings = new TreeMap<>();
+        for (int i = 0; i < epochMillis.length; i++) {
+            readings.put(epochMillis[i] , temperatures[i]);
+        }
+        return readings;
+    }
+
+    /**
+     * Encodes readings into a chunk, replacing its readings and time span.
+     *
+     * @param chunk    the chunk to write
+     * @param readings the temperatures keyed by reading time in epoch milliseconds, at least one
+     */
+    static void encode(TemperatureChunk chunk , SortedMap<Long, Double> readings) {
+        long[] epochMillis = new long[readings.size()];
+        double[] temperatures = new double[readings.size()];
+        int i = 0;
+        for (Map.Entry<Long, Double> reading : readings.entrySet()) {
+            epochMillis[i] = reading.getKey();
+            temperatures[i] = reading.getValue();
+            i++;
+        }
+
+        chunk.setStartTime(DateUtil.epochMilliToLocalDateTime(epochMillis[0]));
+        chunk.setEndTime(DateUtil.epochMilliToLocalDateTime(epochMillis[epochMillis.length - 1]));
+        chunk.setReadingCount(epochMillis.length);
+        chunk.setTimestamps(TemperatureChunkCodec.encodeTimestamps(epochMillis));
+        chunk.setTemperatures(TemperatureChunkCodec.encodeValues(temperatures));
+    }
+
+}
@@ -0,0 +1,127 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureHourlyAggregate;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureHourlyStatistic;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyAggregateRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyStatisticRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Time-range reads over the storage tiers: raw rows in {@code temperature_records},
+ * compacted chunks in {@code temperature_chunks} and, for hours past the raw retention,
+ * rollups in {@code temperature_hourly_aggregates}. Hours recomputed into
+ * {@code temperature_hourly_statistics} can be read whole from there.
+ * <p>
+ * Readings decoded from chunks are returned as detached {@link TemperatureRecord}s without an id.
+ * A raw row duplicating a reading already compacted (a retransmit arriving after compaction)
+ * is left out until the next compaction folds it in.
+ */
+@Component
+public class TemperatureRangeReader {
+
+    private final TemperatureRecordRepository temperatureRecordRepository;
+    private final TemperatureChunkRepository temperatureChunkRepository;
+    private final TemperatureHourlyAggregateRepository temperatureHourlyAggregateRepository;
+    private final TemperatureHourlyStatisticRepository temperatureHourlyStatisticRepository;
+    private final int rawRetentionDays;
+
+    public TemperatureRangeReader(TemperatureRecordRepository temperatureRecordRepository ,
+                                  TemperatureChunkRepository temperatureChunkRepository ,
+                                  TemperatureHourlyAggregateRepository temperatureHourlyAggregateRepository ,
+                                  TemperatureHourlyStatisticRepository temperatureHourlyStatisticRepository ,
+                                  @Value("${retention.raw-days:90}") int rawRetentionDays) {
+        this.temperatureRecordRepository = temperatureRecordRepository;
+        this.temperatureChunkRepository = temperatureChunkRepository;
+        this.temperatureHourlyAggregateRepository = temperatureHourlyAggregateRepository;
+        this.temperatureHourlyStatisticRepository = temperatureHourlyStatisticRepository;
+        this.rawRetentionDays = rawRetentionDays;
+    }
+
+    /**
+     * Finds the recomputed statistic of the readings of a device in an hour. A statistic counts every
+     * reading of its hour, whatever tier holds it: the writer deletes it when a late reading arrives
+     * and the delete jobs along with the readings, until the next recompute.
+     *
+     * @param deviceName the device to read
+     * @param hourStart  the start of the hour
+     * @return the statistic, empty if the hour was not recomputed or changed since
+     */
+    public Optional<TemperatureHourlyStatistic> findRecomputedHour(String deviceName , LocalDateTime hourStart) {
+        return temperatureHourlyStatisticRepository.findByDeviceNameAndBucketStart(deviceName , hourStart);
+    }
+
+    /**
+     * Finds the rollup of the readings of a device in an hour past the raw retention.
+     * Readings rolled up are deleted in the same transaction, so the rollup and the readings
+     * still stored for the hour never overlap.
+     *
+     * @param deviceName the device to read
+     * @param hourStart  the start of the hour
+     * @return the rollup, empty if the hour is still within the raw retention or has no rollup
+     */
+    public Optional<TemperatureHourlyAggregate> findExpiredHour(String deviceName , LocalDateTime hourStart) {
+        if (!hourStart.isBefore(LocalDate.now().minusDays(rawRetentionDays).atStartOfDay())) {
+            return Optional.empty();
+        }
+        return temperatureHourlyAggregateRepository.findByDeviceNameAndBucketStart(deviceName , hourStart);
+    }
+
+    /**
+     * Finds the readings of a device from {@code start} (inclusive) to {@code end} (exclusive), the
+     * bounds of an hour's statistic, so a reading on the hour falls in the hour it starts.
+     *
+     * @param deviceName the device to read
+     * @param start      the start of the range, inclusive
+     * @param end        the end of the range, exclusive
+     * @return the readings of both tiers ordered by time
+     */
+    public List<TemperatureRecord> findByDeviceNameInRange(String deviceName , LocalDateTime start , LocalDateTime end) {
+        List<TemperatureRecord> records = temperatureRecordRepository.findByDeviceNameAndTimeGreaterThanEqualAndTimeLessThanOrderByTime(deviceName , start , end);
+        List<TemperatureChunk> chunks = temperatureChunkRepository.findOverlapping(deviceName , start , end);
+        if (chunks.isEmpty()) {
+            return records;
+        }
+
+        long startMillis = DateUtil.localDateTimeToEpochMilli(start);
+        long endMillis = DateUtil.localDateTimeToEpochMilli(end);
+        List<TemperatureRecord> merged = new ArrayList<>(records.size());
+        Set<Long> compactedTimes = new HashSet<>();
+
+        for (TemperatureChunk chunk : chunks) {
+            for (Map.Entry<Long, Double> reading : TemperatureChunks.decode(chunk).subMap(startMillis , endMillis).entrySet()) {
+                TemperatureRecord record = new TemperatureRecord();
+                record.setDeviceName(chunk.getDeviceName());
+                record.setLocation(chunk.getLocation());
+                record.setTemperature(reading.getValue());
+                record.setTime(DateUtil.epochMilliToLocalDateTime(reading.getKey()));
+                merged.add(record);
+                compactedTimes.add(reading.getKey());
+            }
+        }
+        for (TemperatureRecord record : records) {
+            if (!compactedTimes.contains(DateUtil.localDateTimeToEpochMilli(record.getTime()))) {
+                merged.add(record);
+            }
+        }
+
+        merged.sort(Comparator.comparing(TemperatureRecord::getTime));
+        return merged;
+    }
+
+}
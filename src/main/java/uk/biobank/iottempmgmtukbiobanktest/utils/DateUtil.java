@@ -3,7 +3,9 @@ package uk.biobank.iottempmgmtukbiobanktest.utils;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Date;
@@ -47,11 +49,17 @@ public class DateUtil {
      * The method expects the input string to be in the format "yyyy-MM-dd'T'HH:mm:ss".
      * If the input string is not in the correct format, the method will handle the
      * exception and return null.
+     * <p>
+     * Four-digit years take the allocation-free {@link IsoTimestampParser} path.
      *
      * @param dateTimeStr the ISO-8601 formatted date-time string to be converted, must not be null
      * @return the corresponding {@link LocalDateTime} object, or null if the input format is invalid
      */
     public static LocalDateTime stringToLocalDateTime(String dateTimeStr) {
+        LocalDateTime parsed = IsoTimestampParser.parse(dateTimeStr);
+        if (parsed != null) {
+            return parsed;
+        }
         try {
             // ISO_LOCAL_DATE_TIME handles "yyyy-MM-dd'T'HH:mm:ss"
             DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
@@ -62,4 +70,24 @@ public class DateUtil {
         }
     }
 
+    /**
+     * Converts a {@link LocalDateTime} into milliseconds since the epoch, interpreting it as UTC.
+     *
+     * @param localDateTime the LocalDateTime instance to be converted, must not be null
+     * @return the number of milliseconds since 1970-01-01T00:00:00Z
+     */
+    public static long localDateTimeToEpochMilli(LocalDateTime localDateTime) {
+        return localDateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Converts milliseconds since the epoch into a {@link LocalDateTime}, interpreting it as UTC.
+     *
+     * @param epochMilli the number of milliseconds since 1970-01-01T00:00:00Z
+     * @return the corresponding LocalDateTime instance
+     */
+    public static LocalDateTime epochMilliToLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli) , ZoneOffset.UTC);
+    }
+
 }
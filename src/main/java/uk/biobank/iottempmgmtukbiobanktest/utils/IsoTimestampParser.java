@@ -0,0 +1,94 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils;
+
+import java.time.LocalDateTime;
+
+/**
+ * Allocation-free parser for the ISO-8601 local date-times gateways send, {@code yyyy-MM-dd'T'HH:mm},
+ * optionally followed by {@code :ss} and a fraction of one to nine digits.
+ * <p>
+ * Accepts what {@link java.time.format.DateTimeFormatter#ISO_LOCAL_DATE_TIME} accepts for four-digit
+ * years, but reads the digits at fixed offsets instead of running the formatter's parse machinery,
+ * and signals malformed input with {@code null} instead of an exception.
+ */
+public final class IsoTimestampParser {
+
+    private static final int MINIMUM_LENGTH = 16; // yyyy-MM-ddTHH:mm
+
+    private IsoTimestampParser() {
+    } // Prevent instantiation
+
+    /**
+     * Parses an ISO-8601 local date-time.
+     *
+     * @param text the text to parse, may be null
+     * @return the date-time, or null if the text is null, malformed or out of range
+     */
+    public static LocalDateTime parse(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        if (length < MINIMUM_LENGTH || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || text.charAt(10) != 'T' || text.charAt(13) != ':') {
+            return null;
+        }
+
+        int year = digits(text , 0 , 4);
+        int month = digits(text , 5 , 2);
+        int day = digits(text , 8 , 2);
+        int hour = digits(text , 11 , 2);
+        int minute = digits(text , 14 , 2);
+        int second = 0;
+        int nano = 0;
+
+        if (length > MINIMUM_LENGTH) {
+            if (length < 19 || text.charAt(16) != ':') {
+                return null;
+            }
+            second = digits(text , 17 , 2);
+            if (length > 19) {
+                int fractionDigits = length - 20;
+                if (text.charAt(19) != '.' || fractionDigits < 1 || fractionDigits > 9) {
+                    return null;
+                }
+                nano = digits(text , 20 , fractionDigits);
+                for (int i = fractionDigits; i < 9 && nano >= 0; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+
+        if ((year | month | day | hour | minute | second | nano) < 0
+                || month < 1 || month > 12 || day < 1 || day > daysInMonth(year , month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        return LocalDateTime.of(year , month , day , hour , minute , second , nano);
+    }
+
+    /**
+     * Reads a run of decimal digits.
+     *
+     * @return the value, or -1 if a character is not a digit
+     */
+    private static int digits(CharSequence text , int offset , int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year , int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4 , 6 , 9 , 11 -> 30;
+            default -> 31;
+        };
+    }
+
+}
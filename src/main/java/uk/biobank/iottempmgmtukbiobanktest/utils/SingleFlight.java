@@ -0,0 +1,84 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical computations ("single-flight").
+ * <p>
+ * The first caller for a key becomes the leader and runs the computation on its own thread,
+ * every caller arriving for the same key while it is in flight waits on the leader's future
+ * instead of running the computation again. Once the leader finishes the key is released,
+ * so results are never cached beyond the lifetime of the computation itself.
+ *
+ * @param <K> the type of the keys identifying identical computations
+ * @param <V> the type of the computed values
+ */
+@Slf4j
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the computation for the given key, or joins the one already in flight for it.
+     *
+     * @param key      the key identifying identical computations
+     * @param timeout  how long a follower waits for the leader's result
+     * @param supplier the computation to run when no identical one is in flight
+     * @return the computed value, shared by all callers that joined the same flight
+     * @throws GeneralException if a follower times out or is interrupted while waiting, or the leader failed
+     *                          with an error rather than a runtime exception
+     */
+    public V execute(K key , Duration timeout , Supplier<V> supplier) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key , flight);
+
+        if (existing == null) {
+            try {
+                V value = supplier.get();
+                flight.complete(value);
+                return value;
+            } catch (Throwable e) {
+                // errors too, or the followers would wait out their timeout on a flight never completed
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key , flight);
+            }
+        }
+
+        log.debug("Joining in-flight computation for key {}" , key);
+        try {
+            return existing.get(timeout.toMillis() , TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new GeneralException(ResponseCodeAndMessage.TIMEOUT_ERROR.responseCode , "Timed out waiting for an identical request to complete");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException(ResponseCodeAndMessage.ERROR_PROCESSING.responseCode , "Interrupted while waiting for an identical request to complete");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new GeneralException(ResponseCodeAndMessage.ERROR_PROCESSING.responseCode , e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of computations currently in flight.
+     *
+     * @return the number of distinct keys being computed
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+}
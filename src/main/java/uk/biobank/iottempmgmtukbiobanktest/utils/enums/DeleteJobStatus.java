@@ -0,0 +1,21 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils.enums;
+
+/**
+ * Lifecycle of a background delete job.
+ * <p>
+ * Enum Constants:
+ * - QUEUED: Accepted, waiting for the jobs submitted before it.
+ * - RUNNING: Deleting, counters are updated after every batch.
+ * - COMPLETED: Every matching reading has been deleted.
+ * - FAILED: Stopped by a database error, the batches already committed stay deleted.
+ * - CANCELLED: Stopped by an application shutdown, the batches already committed stay deleted.
+ */
+public enum DeleteJobStatus {
+
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+
+}
@@ -0,0 +1,17 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils.enums;
+
+/**
+ * Lifecycle of a task of a recompute run.
+ * <p>
+ * Enum Constants:
+ * - PENDING: Planned, or left unfinished by a shutdown, to be run on the next resume.
+ * - DONE: Its statistics were rewritten, in the same transaction that marked it done.
+ * - FAILED: Stopped by an error, rolled back and run again on the next resume.
+ */
+public enum RecomputeTaskStatus {
+
+    PENDING,
+    DONE,
+    FAILED
+
+}
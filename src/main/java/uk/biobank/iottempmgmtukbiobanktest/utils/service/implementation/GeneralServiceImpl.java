@@ -107,7 +107,7 @@ public class GeneralServiceImpl implements GeneralService {
     /**
      * Prepares a standardized success response object containing the provided data.
      * It sets predefined response code and message for a successful operation
-     * and logs the response details.
+     * and logs the response details at debug level.
      *
      * @param data the data to be included in the success response
      * @return a Response object containing the success response code, message, and the provided data
@@ -120,7 +120,8 @@ public class GeneralServiceImpl implements GeneralService {
         response.setResponseMessage(ResponseCodeAndMessage.SUCCESSFUL.responseMessage);
         response.setData(data);
 
-        log.info("Successful ResponseCode => {}" , data);
+        // payloads can hold a whole page of records, keep them out of the INFO log
+        log.debug("Successful ResponseCode => {}" , data);
 
         return response;
     }
@@ -0,0 +1,19 @@
+CREATE TABLE temperature_hourly_aggregates
+(
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    device_name     VARCHAR(255)                            NOT NULL,
+    location        VARCHAR(255),
+    bucket_start    TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    reading_count   BIGINT                                  NOT NULL,
+    temperature_sum DOUBLE PRECISION                        NOT NULL,
+    min_temperature DOUBLE PRECISION                        NOT NULL,
+    max_temperature DOUBLE PRECISION                        NOT NULL,
+    CONSTRAINT pk_temperature_hourly_aggregates PRIMARY KEY (id),
+    CONSTRAINT uc_temperaturehourlyaggregate_device_name_bucket_start UNIQUE (device_name, bucket_start)
+);
+
+CREATE INDEX idx_temperaturehourlyaggregate_bucket_start ON temperature_hourly_aggregates (bucket_start);
+
+CREATE INDEX idx_temperaturerecord_time ON temperature_records (time);
+
+CREATE INDEX idx_temperaturechunk_chunk_date ON temperature_chunks (chunk_date);
@@ -0,0 +1,7 @@
+CREATE TABLE device_sampling_intervals
+(
+    device_name      VARCHAR(255)                NOT NULL,
+    interval_seconds INTEGER                     NOT NULL,
+    updated_at       TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_device_sampling_intervals PRIMARY KEY (device_name)
+);
@@ -0,0 +1,33 @@
+CREATE TABLE temperature_hourly_statistics
+(
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    device_name     VARCHAR(255)                            NOT NULL,
+    location        VARCHAR(255),
+    bucket_start    TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    reading_count   BIGINT                                  NOT NULL,
+    temperature_sum DOUBLE PRECISION                        NOT NULL,
+    min_temperature DOUBLE PRECISION                        NOT NULL,
+    max_temperature DOUBLE PRECISION                        NOT NULL,
+    computed_at     TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    CONSTRAINT pk_temperature_hourly_statistics PRIMARY KEY (id),
+    CONSTRAINT uc_temperaturehourlystatistic_device_name_bucket_start UNIQUE (device_name, bucket_start)
+);
+
+CREATE TABLE recompute_tasks
+(
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    run_id      VARCHAR(36)                             NOT NULL,
+    device_from VARCHAR(255)                            NOT NULL,
+    device_to   VARCHAR(255)                            NOT NULL,
+    range_start TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    range_end   TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    status      VARCHAR(20)                             NOT NULL,
+    readings    BIGINT                                  NOT NULL,
+    buckets     BIGINT                                  NOT NULL,
+    created_at  TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    finished_at TIMESTAMP WITHOUT TIME ZONE,
+    error       TEXT,
+    CONSTRAINT pk_recompute_tasks PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_recomputetask_run_id_status ON recompute_tasks (run_id, status);
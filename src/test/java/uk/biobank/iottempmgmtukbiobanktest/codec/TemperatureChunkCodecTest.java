@@ -0,0 +1,71 @@
+package uk.biobank.iottempmgmtukbiobanktest.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TemperatureChunkCodec}, covering round trips of regular and irregular
+ * series, the compression of regularly sampled data and the rejection of truncated columns.
+ */
+class TemperatureChunkCodecTest {
+
+    private static final long START = 1_736_406_000_000L; // 2025-01-09T07:00:00Z
+
+    /**
+     * Encodes a day of per-minute freezer readings and checks the round trip and that both
+     * columns take a small fraction of the 16 raw bytes per reading.
+     */
+    @Test
+    void testRegularSeriesRoundTrip() {
+        Random random = new Random(42);
+        long[] epochMillis = new long[1440];
+        double[] temperatures = new double[1440];
+        for (int i = 0; i < epochMillis.length; i++) {
+            epochMillis[i] = START + i * 60_000L + (i % 10 == 0 ? random.nextInt(200) : 0);
+            temperatures[i] = i % 30 == 0 ? -80.0 + random.nextInt(5) * 0.25 : -80.0;
+        }
+
+        byte[] timestamps = TemperatureChunkCodec.encodeTimestamps(epochMillis);
+        byte[] values = TemperatureChunkCodec.encodeValues(temperatures);
+
+        assertArrayEquals(epochMillis , TemperatureChunkCodec.decodeTimestamps(timestamps , epochMillis.length));
+        assertArrayEquals(temperatures , TemperatureChunkCodec.decodeValues(values , temperatures.length));
+        assertTrue(timestamps.length + values.length < epochMillis.length * 16 / 10 ,
+                "expected at least 10x compression, got " + (timestamps.length + values.length) + " bytes");
+    }
+
+    /**
+     * Checks irregular gaps, out-of-bucket jumps and arbitrary doubles survive the round trip.
+     */
+    @Test
+    void testIrregularSeriesRoundTrip() {
+        long[] epochMillis = {START , START + 1 , START + 60_000 , START + 60_500 , START + 3_600_000 , START + 86_399_999 , Long.MAX_VALUE / 2};
+        double[] temperatures = {4.0 , -196.0 , 21.337 , Double.NaN , 0.0 , -0.0 , Double.MAX_VALUE};
+
+        assertArrayEquals(epochMillis , TemperatureChunkCodec.decodeTimestamps(TemperatureChunkCodec.encodeTimestamps(epochMillis) , epochMillis.length));
+        assertArrayEquals(temperatures , TemperatureChunkCodec.decodeValues(TemperatureChunkCodec.encodeValues(temperatures) , temperatures.length));
+    }
+
+    /**
+     * Checks empty and single-value columns.
+     */
+    @Test
+    void testShortColumns() {
+        assertEquals(0 , TemperatureChunkCodec.decodeTimestamps(TemperatureChunkCodec.encodeTimestamps(new long[0]) , 0).length);
+        assertArrayEquals(new long[]{START} , TemperatureChunkCodec.decodeTimestamps(TemperatureChunkCodec.encodeTimestamps(new long[]{START}) , 1));
+        assertArrayEquals(new double[]{-80.5} , TemperatureChunkCodec.decodeValues(TemperatureChunkCodec.encodeValues(new double[]{-80.5}) , 1));
+    }
+
+    /**
+     * Checks decoding more values than a column holds is rejected.
+     */
+    @Test
+    void testTruncatedColumn() {
+        byte[] timestamps = TemperatureChunkCodec.encodeTimestamps(new long[]{START , START + 60_000});
+        assertThrows(IllegalArgumentException.class , () -> TemperatureChunkCodec.decodeTimestamps(timestamps , 100));
+    }
+
+}
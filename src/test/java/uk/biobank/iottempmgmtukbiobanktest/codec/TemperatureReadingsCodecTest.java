@@ -0,0 +1,126 @@
+package uk.biobank.iottempmgmtukbiobanktest.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordListDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TemperatureReadingsCodec}, covering round trips of readings and
+ * responses, the size advantage over JSON and the rejection of malformed frames.
+ */
+class TemperatureReadingsCodecTest {
+
+    /**
+     * Encodes readings with and without temperature and time, then checks every field
+     * survives the round trip and times are exposed through the actual time.
+     */
+    @Test
+    void testRecordsRoundTrip() {
+        TemperatureRecordDTO complete = new TemperatureRecordDTO();
+        complete.setDeviceName("AB123");
+        complete.setLocation("A1");
+        complete.setTemperature(-79.8);
+        complete.setTime("2025-01-09T07:01:00");
+
+        TemperatureRecordDTO missingTemperature = new TemperatureRecordDTO();
+        missingTemperature.setDeviceName("AB123");
+        missingTemperature.setActualTime(LocalDateTime.of(2025 , 1 , 9 , 7 , 0));
+
+        List<TemperatureRecordDTO> decoded = TemperatureReadingsCodec.decodeRecords(
+                TemperatureReadingsCodec.encodeRecords(List.of(complete , missingTemperature)));
+
+        assertEquals(2 , decoded.size());
+        assertEquals("AB123" , decoded.get(0).getDeviceName());
+        assertEquals("A1" , decoded.get(0).getLocation());
+        assertEquals(-79.8 , decoded.get(0).getTemperature());
+        assertEquals(LocalDateTime.of(2025 , 1 , 9 , 7 , 1) , decoded.get(0).getActualTime());
+        assertNull(decoded.get(0).getTime());
+
+        assertNull(decoded.get(1).getLocation());
+        assertNull(decoded.get(1).getTemperature());
+        assertEquals(LocalDateTime.of(2025 , 1 , 9 , 7 , 0) , decoded.get(1).getActualTime());
+    }
+
+    /**
+     * Checks a page of records and a missing-readings map survive a response round trip.
+     */
+    @Test
+    void testResponseRoundTrip() {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName("AB123");
+        record.setTemperature(12.3);
+        record.setActualTime(LocalDateTime.of(2025 , 1 , 9 , 7 , 0));
+
+        TemperatureRecordListDTO page = new TemperatureRecordListDTO();
+        page.setHasNextRecord(true);
+        page.setTotalCount(11);
+        page.setSize(1);
+        page.setPage(1);
+        page.setTemperatureRecords(List.of(record));
+
+        Response response = new Response();
+        response.setResponseCode(200);
+        response.setResponseMessage("OK");
+        response.setData(page);
+
+        Response decoded = TemperatureReadingsCodec.decodeResponse(TemperatureReadingsCodec.encodeResponse(response));
+        TemperatureRecordListDTO decodedPage = (TemperatureRecordListDTO) decoded.getData();
+        assertEquals(200 , decoded.getResponseCode());
+        assertEquals("OK" , decoded.getResponseMessage());
+        assertTrue(decodedPage.isHasNextRecord());
+        assertEquals(11 , decodedPage.getTotalCount());
+        assertEquals(12.3 , decodedPage.getTemperatureRecords().get(0).getTemperature());
+
+        response.setData(Map.of("AB123" , "Missing reading at 2025-01-09T07:00:00"));
+        decoded = TemperatureReadingsCodec.decodeResponse(TemperatureReadingsCodec.encodeResponse(response));
+        assertEquals(Map.of("AB123" , "Missing reading at 2025-01-09T07:00:00") , decoded.getData());
+    }
+
+    /**
+     * Checks a typical gateway batch is several times smaller than its JSON form.
+     */
+    @Test
+    void testBinaryIsSmallerThanJson() throws Exception {
+        List<TemperatureRecordDTO> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName("FREEZER-" + (i % 10));
+            record.setLocation("ROOM-" + (i % 2));
+            record.setTemperature(-80.0 + (i % 5) * 0.1);
+            record.setTime(LocalDateTime.of(2025 , 1 , 9 , 7 , 0).plusMinutes(i / 10).toString() + ":00");
+            records.add(record);
+        }
+
+        int jsonSize = new ObjectMapper().writeValueAsBytes(records).length;
+        int binarySize = TemperatureReadingsCodec.encodeRecords(records).length;
+
+        assertTrue(binarySize * 5 < jsonSize , "binary " + binarySize + " bytes vs JSON " + jsonSize + " bytes");
+    }
+
+    /**
+     * Checks truncated frames and foreign payloads are rejected.
+     */
+    @Test
+    void testMalformedFrameIsRejected() {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName("AB123");
+        record.setTemperature(1.0);
+        byte[] encoded = TemperatureReadingsCodec.encodeRecords(List.of(record));
+
+        assertThrows(IllegalArgumentException.class ,
+                () -> TemperatureReadingsCodec.decodeRecords(Arrays.copyOf(encoded , encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class ,
+                () -> TemperatureReadingsCodec.decodeRecords("[{\"deviceName\":\"AB123\"}]".getBytes()));
+    }
+
+}
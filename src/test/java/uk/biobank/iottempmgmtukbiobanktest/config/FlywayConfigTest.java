@@ -0,0 +1,28 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link FlywayConfig}, verifying that {@code flyway.migrate-on-start} decides
+ * whether the migrations run.
+ */
+class FlywayConfigTest {
+
+    /**
+     * Checks the migrations run by default and are skipped when switched off.
+     */
+    @Test
+    void testMigrateOnStart() {
+        Flyway flyway = mock(Flyway.class);
+        new FlywayConfig().flywayMigrationStrategy(true).migrate(flyway);
+        verify(flyway).migrate();
+
+        Flyway skipped = mock(Flyway.class);
+        new FlywayConfig().flywayMigrationStrategy(false).migrate(skipped);
+        verifyNoInteractions(skipped);
+    }
+
+}
@@ -0,0 +1,32 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Runs the tests importing it against a throwaway Postgres container, migrated by Flyway on startup
+ * and wired as the application's data source.
+ * <pre>{@code
+ * @SpringBootTest(properties = PostgresTestConfig.PROFILE)
+ * @Import(PostgresTestConfig.class)
+ * @Testcontainers(disabledWithoutDocker = true)
+ * }</pre>
+ * The container is shared by every test class with the same context. Without Docker the tests are
+ * skipped, CI runs them.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class PostgresTestConfig {
+
+    // application.yml reads the profile from SPRING_PROFILE, the container replaces the profile's data source
+    public static final String PROFILE = "spring.profiles.active=test";
+
+    @Bean
+    @ServiceConnection
+    PostgreSQLContainer<?> postgresContainer() {
+        return new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+    }
+
+}
@@ -0,0 +1,109 @@
+package uk.biobank.iottempmgmtukbiobanktest.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ReplicaRoutingDataSource}, verifying that read-only connections use the
+ * replica while it is current and fall back to the primary when it lags or is down.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    /**
+     * Checks read-only work goes to a current replica and writes to the primary.
+     */
+    @Test
+    void testReadOnlyConnectionsUseCurrentReplica() throws Exception {
+        DataSource primary = dataSource(connectionWithLag(0));
+        DataSource replica = dataSource(connectionWithLag(0.5));
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary , replica , 10);
+
+        routing.checkReplica();
+        assertTrue(routing.isReplicaAvailable());
+        clearInvocations(primary , replica);
+
+        runStatement(routing , true);
+        verify(replica).getConnection();
+        verify(primary , never()).getConnection();
+
+        runStatement(routing , false);
+        verify(primary).getConnection();
+    }
+
+    /**
+     * Checks read-only work moves to the primary while the replica lags too far behind,
+     * and back once it caught up.
+     */
+    @Test
+    void testLaggingReplicaFallsBackToPrimary() throws Exception {
+        Connection replicaConnection = connectionWithLag(30);
+        DataSource primary = dataSource(connectionWithLag(0));
+        DataSource replica = dataSource(replicaConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary , replica , 10);
+
+        routing.checkReplica();
+        assertFalse(routing.isReplicaAvailable());
+        clearInvocations(primary , replica);
+
+        runStatement(routing , true);
+        verify(primary).getConnection();
+        verify(replica , never()).getConnection();
+
+        ResultSet caughtUp = replicaConnection.createStatement().executeQuery("");
+        when(caughtUp.getDouble(1)).thenReturn(2.0);
+        routing.checkReplica();
+        assertTrue(routing.isReplicaAvailable());
+    }
+
+    /**
+     * Checks a replica failing to hand out a connection is skipped at once, without failing the read.
+     */
+    @Test
+    void testUnreachableReplicaFallsBackToPrimary() throws Exception {
+        DataSource primary = dataSource(connectionWithLag(0));
+        DataSource replica = dataSource(connectionWithLag(0));
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary , replica , 10);
+        routing.checkReplica();
+        clearInvocations(primary);
+
+        when(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        runStatement(routing , true);
+
+        verify(primary).getConnection();
+        assertFalse(routing.isReplicaAvailable());
+    }
+
+    private static void runStatement(DataSource dataSource , boolean readOnly) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(readOnly);
+            connection.createStatement().executeQuery("select 1");
+        }
+    }
+
+    private static DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private static Connection connectionWithLag(double lagSeconds) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lagSeconds);
+        Statement statement = mock(Statement.class);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        return connection;
+    }
+
+}
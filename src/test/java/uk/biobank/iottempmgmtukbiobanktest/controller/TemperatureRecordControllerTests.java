@@ -9,21 +9,33 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureReadingsCodec;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureReadingsHttpMessageConverter;
 import uk.biobank.iottempmgmtukbiobanktest.config.WebSecurityConfig;
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeleteJobDTO;
 import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
 import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
 import uk.biobank.iottempmgmtukbiobanktest.utils.dto.Response;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.DeleteJobStatus;
 import uk.biobank.iottempmgmtukbiobanktest.utils.service.GeneralService;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -98,6 +110,27 @@ public class TemperatureRecordControllerTests {
                 .andExpect(jsonPath("$.data.AB123").value("Missing reading at 2025-01-09T07:00:00"));
     }
 
+    /**
+     * Tests that responses carry a Server-Timing header summarizing the request stages,
+     * including the binding of the request body.
+     *
+     * @throws Exception if an error occurs during the test execution
+     */
+    @Test
+    public void testProcessBatch_ServerTimingHeader() throws Exception {
+        Response expectedResponse = new Response();
+        expectedResponse.setResponseCode(200);
+        expectedResponse.setResponseMessage("OK");
+
+        when(generalService.prepareSuccessResponse(any())).thenReturn(expectedResponse);
+
+        mockMvc.perform(post("/api/v1/temperatureRecord/processRecords")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(getTemperatureRecordDTOS())))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing" , matchesPattern("bind;dur=\\d+\\.\\d{2}, app;dur=\\d+\\.\\d{2}")));
+    }
+
     /**
      * Generates a list of pre-defined TemperatureRecordDTO objects used for testing.
      * Each record contains data about a specific device's temperature reading,
@@ -360,4 +393,122 @@ public class TemperatureRecordControllerTests {
         assertEquals(0 , result.size()); // Should process without missing data
     }
 
+    /**
+     * Tests content negotiation of the compact binary readings format on the processRecords endpoint.
+     * The request body is sent in the binary format and the response is requested in it as well,
+     * verifying the readings reach the service decoded and the response comes back binary-encoded.
+     *
+     * @throws Exception if an error occurs during the test execution
+     */
+    @Test
+    public void testProcessBatch_BinaryFormat() throws Exception {
+        Response expectedResponse = new Response();
+        expectedResponse.setResponseCode(200);
+        expectedResponse.setResponseMessage("OK");
+        expectedResponse.setData(Map.of("AB123" , "Missing reading at 2025-01-09T07:00:00"));
+
+        when(temperatureRecordService.processRecords(argThat(records -> records.size() == 2
+                && records.get(0).getActualTime() != null) , isNull())).thenReturn(Map.of());
+        when(generalService.prepareSuccessResponse(any())).thenReturn(expectedResponse);
+
+        byte[] responseBody = mockMvc.perform(post("/api/v1/temperatureRecord/processRecords")
+                        .contentType(TemperatureReadingsHttpMessageConverter.MEDIA_TYPE)
+                        .accept(TemperatureReadingsHttpMessageConverter.MEDIA_TYPE)
+                        .content(TemperatureReadingsCodec.encodeRecords(getTemperatureRecordDTOS())))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(TemperatureReadingsHttpMessageConverter.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Response response = TemperatureReadingsCodec.decodeResponse(responseBody);
+        assertEquals(200 , response.getResponseCode());
+        assertEquals(expectedResponse.getData() , response.getData());
+    }
+
+    /**
+     * Tests that the Idempotency-Key header of a processRecords request is handed to the service,
+     * which uses it to answer retried batches with their recorded outcome.
+     *
+     * @throws Exception if an error occurs during the test execution
+     */
+    @Test
+    public void testProcessBatch_IdempotencyKey() throws Exception {
+        List<TemperatureRecordDTO> records = getTemperatureRecordDTOS();
+
+        Response expectedResponse = new Response();
+        expectedResponse.setResponseCode(200);
+        expectedResponse.setResponseMessage("OK");
+        expectedResponse.setData(Map.of());
+
+        when(temperatureRecordService.processRecords(any() , eq("gateway-7-batch-42"))).thenReturn(Map.of());
+        when(generalService.prepareSuccessResponse(any())).thenReturn(expectedResponse);
+
+        mockMvc.perform(post("/api/v1/temperatureRecord/processRecords")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key" , "gateway-7-batch-42")
+                        .content(new ObjectMapper().writeValueAsString(records)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.responseCode").value(200));
+
+        verify(temperatureRecordService).processRecords(argThat(batch -> batch.size() == records.size()) , eq("gateway-7-batch-42"));
+    }
+
+    /**
+     * Tests that deleting the records of a device starts a background delete job
+     * and answers with the queued job rather than waiting for the delete.
+     *
+     * @throws Exception if an error occurs during the test execution
+     */
+    @Test
+    public void testDeleteByDeviceName_StartsJob() throws Exception {
+        DeleteJobDTO job = new DeleteJobDTO();
+        job.setJobId("job-1");
+        job.setScope("device");
+        job.setDeviceName("AB123");
+        job.setStatus(DeleteJobStatus.QUEUED);
+
+        Response expectedResponse = new Response();
+        expectedResponse.setResponseCode(200);
+        expectedResponse.setResponseMessage("OK");
+        expectedResponse.setData(job);
+
+        when(temperatureRecordService.deleteRecordsByDeviceName("AB123")).thenReturn(job);
+        when(generalService.prepareSuccessResponse(job)).thenReturn(expectedResponse);
+
+        mockMvc.perform(delete("/api/v1/temperatureRecord/deviceName").param("deviceName" , "AB123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.jobId").value("job-1"))
+                .andExpect(jsonPath("$.data.status").value("QUEUED"));
+
+        verify(temperatureRecordService).deleteRecordsByDeviceName("AB123");
+    }
+
+    /**
+     * Tests that an endpoint whose payload the binary codec cannot encode answers a request for the
+     * binary format with 406 Not Acceptable, rather than failing to write the response.
+     *
+     * @throws Exception if an error occurs during the test execution
+     */
+    @Test
+    public void testGetDeleteJob_BinaryFormatNotAcceptable() throws Exception {
+        DeleteJobDTO job = new DeleteJobDTO();
+        job.setJobId("job-1");
+        job.setStatus(DeleteJobStatus.RUNNING);
+
+        Response expectedResponse = new Response();
+        expectedResponse.setResponseCode(200);
+        expectedResponse.setResponseMessage("OK");
+        expectedResponse.setData(job);
+
+        when(temperatureRecordService.getDeleteJob("job-1")).thenReturn(job);
+        when(generalService.prepareSuccessResponse(job)).thenReturn(expectedResponse);
+
+        mockMvc.perform(get("/api/v1/temperatureRecord/deleteJobs/job-1")
+                        .accept(TemperatureReadingsHttpMessageConverter.MEDIA_TYPE))
+                .andExpect(status().isNotAcceptable());
+
+        mockMvc.perform(get("/api/v1/temperatureRecord/deleteJobs/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.jobId").value("job-1"));
+    }
+
 }
@@ -0,0 +1,154 @@
+package uk.biobank.iottempmgmtukbiobanktest.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import uk.biobank.iottempmgmtukbiobanktest.config.PostgresTestConfig;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.TemperatureRecordWriter;
+import uk.biobank.iottempmgmtukbiobanktest.profiling.StatementCount;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statement budgets of the temperature record endpoints and of the writer behind them, run against
+ * a Postgres container, see {@link PostgresTestConfig}.
+ * <p>
+ * Each endpoint and each written batch may run a fixed number of statements whatever the size of its
+ * input or output, so a hidden count, per-row query or N+1 fails the build.
+ */
+@SpringBootTest(properties = PostgresTestConfig.PROFILE)
+@AutoConfigureMockMvc
+@Import(PostgresTestConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+public class TemperatureRecordStatementBudgetTests {
+
+    private static final String API = "/api/v1/temperatureRecord";
+    private static final int WRITER_DEVICES = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TemperatureRecordWriter temperatureRecordWriter;
+
+    /**
+     * A page of records costs the page query and its count.
+     */
+    @Test
+    public void testListEndpoints() throws Exception {
+        mockMvc.perform(get(API + "/all").param("page" , "1").param("size" , "100"))
+                .andExpect(status().isOk())
+                .andExpect(StatementCount.atMost(2));
+
+        mockMvc.perform(get(API + "/deviceName").param("deviceName" , "BUDGET-1").param("page" , "1").param("size" , "100"))
+                .andExpect(status().isOk())
+                .andExpect(StatementCount.atMost(2));
+    }
+
+    /**
+     * The average reads raw rows, chunks and, for expired hours, the hourly rollup.
+     */
+    @Test
+    public void testAverageTemperature() throws Exception {
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        mockMvc.perform(get(API + "/average-temperature").param("deviceName" , "BUDGET-1")
+                        .param("date" , hour.toLocalDate().toString()).param("hour" , String.valueOf(hour.getHour())))
+                .andExpect(status().isOk())
+                .andExpect(StatementCount.atMost(3));
+    }
+
+    /**
+     * Ingestion only journals on the request thread, an idempotency key adds its outcome lookup and insert.
+     */
+    @Test
+    public void testProcessRecords() throws Exception {
+        byte[] batch = new ObjectMapper().writeValueAsBytes(batch(500));
+
+        mockMvc.perform(post(API + "/processRecords").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(status().isOk())
+                .andExpect(StatementCount.atMost(0));
+
+        mockMvc.perform(post(API + "/processRecords").contentType(MediaType.APPLICATION_JSON).content(batch)
+                        .header("Idempotency-Key" , UUID.randomUUID().toString()))
+                .andExpect(status().isOk())
+                .andExpect(StatementCount.atMost(3));
+    }
+
+    /**
+     * Deletes run as background jobs, the request itself touches no rows.
+     */
+    @Test
+    public void testDeleteByDeviceName() throws Exception {
+        mockMvc.perform(delete(API + "/deviceName").param("deviceName" , "BUDGET-DELETED"))
+                .andExpect(status().isOk())
+                .andExpect(StatementCount.atMost(0));
+    }
+
+    /**
+     * A batch costs one probe of its possible duplicates and one insert, whatever its size and its
+     * duplicates, besides seeding the duplicate filter once per device. Its readings are from hours
+     * already over, so two more statements lock their devices and delete the statistics of those hours.
+     */
+    @Test
+    public void testWriter() {
+        String devicePrefix = "BUDGET-WRITER-" + UUID.randomUUID() + "-";
+        LocalDateTime start = LocalDateTime.now().minusHours(2).truncatedTo(ChronoUnit.SECONDS);
+        List<PendingReading> first = readings(devicePrefix , start , 500);
+        // retransmits within the batch
+        first.addAll(first.subList(0 , 20));
+
+        List<PendingReading> inserted = StatementCount.assertAtMost(2 * WRITER_DEVICES + 4 , () -> temperatureRecordWriter.write(first));
+        assertEquals(500 , inserted.size());
+
+        // a gateway retransmitting half of the batch along with new readings
+        List<PendingReading> second = readings(devicePrefix , start.plusSeconds(250) , 500);
+        inserted = StatementCount.assertAtMost(4 , () -> temperatureRecordWriter.write(second));
+        assertEquals(250 , inserted.size());
+    }
+
+    private static List<PendingReading> readings(String devicePrefix , LocalDateTime start , int size) {
+        List<PendingReading> readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName(devicePrefix + (i % WRITER_DEVICES));
+            record.setLocation("BUILDING-1");
+            record.setTemperature(4.0);
+            readings.add(new PendingReading(record , start.plusSeconds(i)));
+        }
+        return readings;
+    }
+
+    private static List<TemperatureRecordDTO> batch(int size) {
+        List<TemperatureRecordDTO> records = new ArrayList<>(size);
+        LocalDateTime start = LocalDateTime.now().minusHours(1).truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < size; i++) {
+            TemperatureRecordDTO record = new TemperatureRecordDTO();
+            record.setDeviceName("BUDGET-" + (i % 10));
+            record.setLocation("BUILDING-1");
+            record.setTemperature(4.0);
+            record.setTime(DateUtil.localDateTimeToString(start.plusSeconds(i)));
+            records.add(record);
+        }
+        return records;
+    }
+
+}
@@ -0,0 +1,164 @@
+package uk.biobank.iottempmgmtukbiobanktest.feed;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionLanes;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests of {@link ReadingFeed}, publishing lane batches and missing readings to subscriptions
+ * of devices and locations, and the buffering of each {@link OverflowPolicy}.
+ */
+class ReadingFeedTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+
+    private final IngestionLanes ingestionLanes = mock(IngestionLanes.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReadingFeed feed = new ReadingFeed(ingestionLanes , meterRegistry);
+
+    @Test
+    void testRegistersWithLanes() {
+        verify(ingestionLanes).addListener(feed);
+    }
+
+    /**
+     * Checks a subscription of a device and of its location gets each reading once, and is
+     * signalled once per batch.
+     */
+    @Test
+    void testDeviceAndLocationMatchedOnce() {
+        FeedSubscription subscription = feed.subscribe("test" , Set.of("DEVICE-1") , Set.of("ROOM-1") , false , OverflowPolicy.DROP_OLDEST , 10);
+        AtomicInteger signals = new AtomicInteger();
+        subscription.onAvailable(signals::incrementAndGet);
+
+        publish(pending("DEVICE-1" , "ROOM-1" , 20.5 , 0) , pending("DEVICE-2" , "ROOM-1" , 18.0 , 0) , pending("DEVICE-3" , "ROOM-2" , 4.0 , 0));
+
+        List<FeedEvent> events = drain(subscription);
+        assertEquals(List.of("DEVICE-1" , "DEVICE-2") , events.stream().map(FeedEvent::deviceName).toList());
+        assertEquals(FeedEvent.READING , events.get(0).type());
+        assertEquals(20.5 , events.get(0).record().getTemperature());
+        assertEquals(TIME , events.get(0).record().getActualTime());
+        assertEquals(1 , signals.get());
+    }
+
+    @Test
+    void testUnfilteredFollowsEveryDevice() {
+        FeedSubscription subscription = feed.subscribe("test" , Set.of() , Set.of() , false , OverflowPolicy.DROP_OLDEST , 10);
+
+        publish(pending("DEVICE-1" , "ROOM-1" , 20.5 , 0) , pending("DEVICE-2" , null , 18.0 , 0));
+
+        assertEquals(2 , drain(subscription).size());
+    }
+
+    /**
+     * Checks missing readings only reach the subscriptions that asked for them.
+     */
+    @Test
+    void testMissingReadingsOnRequest() {
+        FeedSubscription withMissing = feed.subscribe("test" , Set.of() , Set.of("ROOM-1") , true , OverflowPolicy.DROP_OLDEST , 10);
+        FeedSubscription withoutMissing = feed.subscribe("test" , Set.of("DEVICE-1") , Set.of() , false , OverflowPolicy.DROP_OLDEST , 10);
+
+        TemperatureRecordDTO missing = new TemperatureRecordDTO();
+        missing.setDeviceName("DEVICE-1");
+        missing.setLocation("ROOM-1");
+        missing.setActualTime(TIME);
+        feed.publishMissing(List.of(missing));
+
+        List<FeedEvent> events = drain(withMissing);
+        assertEquals(1 , events.size());
+        assertEquals(FeedEvent.MISSING , events.get(0).type());
+        assertNull(events.get(0).record().getTemperature());
+        assertNotNull(events.get(0).record().getTime());
+        assertTrue(withoutMissing.isEmpty());
+    }
+
+    /**
+     * Overflows a drop-oldest buffer and checks the newest readings are kept and the others counted.
+     */
+    @Test
+    void testDropOldest() {
+        FeedSubscription subscription = feed.subscribe("test" , Set.of("DEVICE-1") , Set.of() , false , OverflowPolicy.DROP_OLDEST , 2);
+
+        publish(pending("DEVICE-1" , null , 1.0 , 0) , pending("DEVICE-1" , null , 2.0 , 1) , pending("DEVICE-1" , null , 3.0 , 2));
+
+        assertEquals(List.of(2.0 , 3.0) , drain(subscription).stream().map(event -> event.record().getTemperature()).toList());
+        assertEquals(1 , meterRegistry.get("feed.events.dropped").tag("channel" , "test").counter().count());
+    }
+
+    /**
+     * Checks coalescing keeps the latest reading of each device, in the order devices first arrived,
+     * and drops the oldest device beyond the buffer size.
+     */
+    @Test
+    void testCoalesce() {
+        FeedSubscription subscription = feed.subscribe("test" , Set.of() , Set.of() , false , OverflowPolicy.COALESCE , 2);
+
+        publish(pending("DEVICE-1" , null , 1.0 , 0) , pending("DEVICE-2" , null , 2.0 , 0) , pending("DEVICE-1" , null , 1.5 , 1));
+
+        List<FeedEvent> events = drain(subscription);
+        assertEquals(List.of("DEVICE-1" , "DEVICE-2") , events.stream().map(FeedEvent::deviceName).toList());
+        assertEquals(1.5 , events.get(0).record().getTemperature());
+        assertEquals(1 , meterRegistry.get("feed.events.coalesced").tag("channel" , "test").counter().count());
+
+        publish(pending("DEVICE-1" , null , 1.0 , 2) , pending("DEVICE-2" , null , 2.0 , 2) , pending("DEVICE-3" , null , 3.0 , 2));
+
+        assertEquals(List.of("DEVICE-2" , "DEVICE-3") , drain(subscription).stream().map(FeedEvent::deviceName).toList());
+        assertEquals(1 , meterRegistry.get("feed.events.dropped").tag("channel" , "test").counter().count());
+    }
+
+    @Test
+    void testClose() {
+        FeedSubscription subscription = feed.subscribe("test" , Set.of("DEVICE-1") , Set.of("ROOM-1") , false , OverflowPolicy.DROP_OLDEST , 10);
+        assertEquals(1 , meterRegistry.get("feed.subscribers").gauge().value());
+
+        subscription.close();
+        subscription.close();
+        publish(pending("DEVICE-1" , "ROOM-1" , 20.5 , 0));
+
+        assertTrue(subscription.isEmpty());
+        assertEquals(0 , meterRegistry.get("feed.subscribers").gauge().value());
+    }
+
+    @Test
+    void testParsePolicy() {
+        assertEquals(OverflowPolicy.DROP_OLDEST , OverflowPolicy.parse("drop-oldest"));
+        assertEquals(OverflowPolicy.COALESCE , OverflowPolicy.parse("COALESCE"));
+        assertThrows(GeneralException.class , () -> OverflowPolicy.parse("latest"));
+    }
+
+    private void publish(PendingReading... readings) {
+        List<PendingReading> inserted = List.of(readings);
+        feed.onBatchCompleted(inserted , inserted);
+    }
+
+    private static List<FeedEvent> drain(FeedSubscription subscription) {
+        List<FeedEvent> events = new ArrayList<>();
+        FeedEvent event;
+        while ((event = subscription.poll()) != null) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static PendingReading pending(String deviceName , String location , double temperature , int minute) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setLocation(location);
+        record.setTemperature(temperature);
+        return new PendingReading(record , TIME.plusMinutes(minute));
+    }
+
+}
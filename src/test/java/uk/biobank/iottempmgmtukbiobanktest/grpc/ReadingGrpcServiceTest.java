@@ -0,0 +1,162 @@
+package uk.biobank.iottempmgmtukbiobanktest.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.feed.ReadingFeed;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.IngestSummary;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.Reading;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.ReadingServiceGrpc;
+import uk.biobank.iottempmgmtukbiobanktest.grpc.proto.SubscribeRequest;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionLanes;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests of {@link ReadingGrpcService} served by a {@link GrpcServer} on localhost, verifying that
+ * ingest streams reach processRecords in batches and that subscribers get the stored readings
+ * of the devices they follow.
+ */
+class ReadingGrpcServiceTest {
+
+    private final TemperatureRecordService temperatureRecordService = mock(TemperatureRecordService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReadingFeed readingFeed = new ReadingFeed(mock(IngestionLanes.class) , meterRegistry);
+
+    private GrpcServer server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void startServer() {
+        ReadingGrpcService service = new ReadingGrpcService(temperatureRecordService , readingFeed , 3 , 100);
+        server = new GrpcServer(List.of(service) , "localhost" , 0 , 1000);
+        server.start();
+        channel = NettyChannelBuilder.forAddress("localhost" , server.getPort()).usePlaintext().build();
+    }
+
+    @AfterEach
+    void stopServer() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5 , TimeUnit.SECONDS);
+        server.stop();
+    }
+
+    /**
+     * Streams seven readings and checks they are processed in batches of three, with the report
+     * indexed over the whole stream.
+     */
+    @Test
+    void testIngestInBatches() throws Exception {
+        List<Integer> batches = new ArrayList<>();
+        when(temperatureRecordService.processRecords(anyList())).thenAnswer(invocation -> {
+            List<TemperatureRecordDTO> batch = invocation.getArgument(0);
+            batches.add(batch.size());
+            // the second reading of each batch is rejected
+            return Map.of("records[1]" , "temperature: outside");
+        });
+
+        CompletableFuture<IngestSummary> summary = new CompletableFuture<>();
+        StreamObserver<Reading> stream = ReadingServiceGrpc.newStub(channel).ingest(new StreamObserver<>() {
+            @Override
+            public void onNext(IngestSummary value) {
+                summary.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                summary.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        long time = DateUtil.localDateTimeToEpochMilli(LocalDateTime.of(2025 , 1 , 9 , 7 , 0));
+        for (int i = 0; i < 7; i++) {
+            stream.onNext(Reading.newBuilder().setDeviceName("DEVICE-1").setTemperature(20 + i).setTimeEpochMillis(time + i * 60_000L).build());
+        }
+        stream.onCompleted();
+
+        IngestSummary result = summary.get(10 , TimeUnit.SECONDS);
+        assertEquals(7 , result.getReceived());
+        assertEquals(List.of(3 , 3 , 1) , batches);
+        assertEquals(Map.of("records[1]" , "temperature: outside" , "records[4]" , "temperature: outside" , "records[7]" , "temperature: outside") ,
+                result.getReportMap());
+    }
+
+    /**
+     * Checks readings are converted with their time decoded, and a missing temperature stays missing.
+     */
+    @Test
+    void testToRecord() {
+        LocalDateTime time = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        TemperatureRecordDTO record = ReadingGrpcService.toRecord(Reading.newBuilder()
+                .setDeviceName("DEVICE-1")
+                .setTimeEpochMillis(DateUtil.localDateTimeToEpochMilli(time))
+                .build());
+
+        assertEquals("DEVICE-1" , record.getDeviceName());
+        assertNull(record.getTemperature());
+        assertEquals(time , record.getActualTime());
+    }
+
+    /**
+     * Subscribes to one device and checks only its stored readings are streamed, and the
+     * subscriber is unregistered once the call is cancelled.
+     */
+    @Test
+    void testSubscribeFollowsDevices() throws InterruptedException {
+        Iterator<Reading> readings = ReadingServiceGrpc.newBlockingStub(channel)
+                .withDeadlineAfter(10 , TimeUnit.SECONDS)
+                .subscribe(SubscribeRequest.newBuilder().addDeviceNames("DEVICE-1").build());
+        // the call starts on the first read, register the reading before it
+        CompletableFuture<Reading> first = CompletableFuture.supplyAsync(readings::next);
+
+        awaitSubscribers(1);
+
+        LocalDateTime time = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        List<PendingReading> inserted = List.of(pending("DEVICE-2" , 18.0 , time) , pending("DEVICE-1" , 20.5 , time));
+        readingFeed.onBatchCompleted(inserted , inserted);
+
+        Reading reading = first.join();
+        assertEquals("DEVICE-1" , reading.getDeviceName());
+        assertEquals(20.5 , reading.getTemperature());
+        assertEquals(DateUtil.localDateTimeToEpochMilli(time) , reading.getTimeEpochMillis());
+
+        channel.shutdownNow();
+        awaitSubscribers(0);
+    }
+
+    private void awaitSubscribers(int subscribers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("feed.subscribers").gauge().value() != subscribers) {
+            assertTrue(System.nanoTime() < deadline , "subscribers never reached " + subscribers);
+            Thread.sleep(10);
+        }
+    }
+
+    private static PendingReading pending(String deviceName , double temperature , LocalDateTime time) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setTemperature(temperature);
+        return new PendingReading(record , time);
+    }
+
+}
@@ -0,0 +1,36 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BatchReports}, verifying that batch reports combine into the report of
+ * the whole stream.
+ */
+class BatchReportsTest {
+
+    /**
+     * Shifts the record indexes of a second batch and joins the missing readings of a device
+     * reported by both batches.
+     */
+    @Test
+    void testOffsetAndMerge() {
+        Map<String, String> report = new HashMap<>();
+        BatchReports.merge(report , BatchReports.offset(Map.of(
+                "records[1]" , "time: missing" ,
+                "DEVICE-1" , "Missing reading at 2025-01-09T07:00:00") , 0));
+        BatchReports.merge(report , BatchReports.offset(Map.of(
+                "records[0]" , "deviceName: missing" ,
+                "DEVICE-1" , "Missing reading at 2025-01-09T07:01:00, 2025-01-09T07:02:00") , 500));
+
+        assertEquals(Map.of(
+                "records[1]" , "time: missing" ,
+                "records[500]" , "deviceName: missing" ,
+                "DEVICE-1" , "Missing reading at 2025-01-09T07:00:00, 2025-01-09T07:01:00, 2025-01-09T07:02:00") , report);
+    }
+
+}
@@ -0,0 +1,94 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link DuplicateReadingFilter}, verifying which readings may skip the
+ * database existence probe and that the filter metrics are published.
+ */
+class DuplicateReadingFilterTest {
+
+    private static final LocalDateTime SEEDED = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+
+    /**
+     * Checks readings after the stored history are new, retransmits of inserted readings are
+     * possible hits and readings within the stored history still need the probe.
+     */
+    @Test
+    void testCheckOutcomes() {
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        when(repository.findLatestTimeByDeviceName("AB123")).thenReturn(Optional.of(SEEDED));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , mock(TemperatureChunkRepository.class) , meterRegistry , true , 1000 , 0.01);
+
+        assertEquals(DuplicateReadingFilter.Check.NEW , filter.check("AB123" , SEEDED.plusMinutes(1)));
+        filter.recordInserted("AB123" , SEEDED.plusMinutes(1));
+        filter.recordInserted("AB123" , SEEDED.plusMinutes(3));
+
+        // gateway retransmit of an inserted reading
+        assertEquals(DuplicateReadingFilter.Check.SEEN_RECENTLY , filter.check("AB123" , SEEDED.plusMinutes(1)));
+        // late reading below the watermark but never seen, newer than the stored history
+        assertEquals(DuplicateReadingFilter.Check.NEW , filter.check("AB123" , SEEDED.plusMinutes(2)));
+        // reading within the history stored before this instance started
+        assertEquals(DuplicateReadingFilter.Check.UNKNOWN , filter.check("AB123" , SEEDED.minusMinutes(1)));
+
+        // the watermark is seeded once per device
+        verify(repository , times(1)).findLatestTimeByDeviceName("AB123");
+
+        filter.recordProbeResult(false);
+        assertEquals(1.0 , meterRegistry.get("ingestion.duplicate.filter.false.positive.rate").gauge().value());
+        assertTrue(meterRegistry.get("ingestion.duplicate.filter.memory").gauge().value() > 0);
+    }
+
+    /**
+     * Checks a device without stored history treats all unseen readings as new.
+     */
+    @Test
+    void testDeviceWithoutHistory() {
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        when(repository.findLatestTimeByDeviceName("XY999")).thenReturn(Optional.empty());
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , mock(TemperatureChunkRepository.class) , new SimpleMeterRegistry() , true , 1000 , 0.01);
+
+        filter.recordInserted("XY999" , SEEDED);
+        assertEquals(DuplicateReadingFilter.Check.NEW , filter.check("XY999" , SEEDED.minusDays(1)));
+        assertEquals(DuplicateReadingFilter.Check.SEEN_RECENTLY , filter.check("XY999" , SEEDED));
+    }
+
+    /**
+     * Checks the watermark of a device whose raw readings were all compacted is seeded from its chunks.
+     */
+    @Test
+    void testCompactedDeviceHistory() {
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        when(repository.findLatestTimeByDeviceName("AB123")).thenReturn(Optional.empty());
+        TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+        when(chunkRepository.findLatestTimeByDeviceName("AB123")).thenReturn(Optional.of(SEEDED));
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , chunkRepository , new SimpleMeterRegistry() , true , 1000 , 0.01);
+
+        assertEquals(DuplicateReadingFilter.Check.UNKNOWN , filter.check("AB123" , SEEDED.minusMinutes(1)));
+        assertEquals(DuplicateReadingFilter.Check.NEW , filter.check("AB123" , SEEDED.plusMinutes(1)));
+    }
+
+    /**
+     * Checks a disabled filter sends every reading to the database probe.
+     */
+    @Test
+    void testDisabledFilter() {
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , mock(TemperatureChunkRepository.class) , new SimpleMeterRegistry() , false , 1000 , 0.01);
+
+        assertEquals(DuplicateReadingFilter.Check.UNKNOWN , filter.check("AB123" , SEEDED));
+        verifyNoInteractions(repository);
+    }
+
+}
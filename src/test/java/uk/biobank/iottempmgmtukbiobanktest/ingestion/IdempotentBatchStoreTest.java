@@ -0,0 +1,104 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.IngestionBatchOutcome;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.IngestionBatchOutcomeRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link IdempotentBatchStore}, verifying that a batch is processed once per key,
+ * replays are answered from memory or the database, and a reused key is rejected.
+ */
+class IdempotentBatchStoreTest {
+
+    /**
+     * Submits the same batch twice and checks the second submission gets the recorded outcome
+     * without the batch being processed again.
+     */
+    @Test
+    void testReplayIsAnsweredFromMemory() {
+        IngestionBatchOutcomeRepository repository = mock(IngestionBatchOutcomeRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotentBatchStore store = new IdempotentBatchStore(repository , new ObjectMapper() , meterRegistry , 100 , 24 , 1000);
+
+        long fingerprint = IdempotentBatchStore.fingerprint(batch(12.5));
+        AtomicInteger processed = new AtomicInteger();
+        Map<String, String> first = store.execute("batch-1" , fingerprint , () -> {
+            processed.incrementAndGet();
+            return Map.of("AB123" , "Missing reading at 2025-01-09T07:00:00");
+        });
+        Map<String, String> replay = store.execute("batch-1" , fingerprint , () -> {
+            processed.incrementAndGet();
+            return Map.of();
+        });
+
+        assertEquals(1 , processed.get());
+        assertEquals(first , replay);
+        verify(repository , times(1)).save(any());
+        // a new key is looked up once, the re-check within its flight stays in memory
+        verify(repository , times(1)).findById(any());
+        assertEquals(1.0 , meterRegistry.get("ingestion.idempotency.requests").tag("result" , "replayed").counter().count());
+    }
+
+    /**
+     * Checks an outcome recorded by another instance is loaded from the database.
+     */
+    @Test
+    void testReplayIsAnsweredFromDatabase() {
+        long fingerprint = IdempotentBatchStore.fingerprint(batch(12.5));
+        IngestionBatchOutcome outcome = new IngestionBatchOutcome();
+        outcome.setIdempotencyKey("batch-1");
+        outcome.setRequestFingerprint(fingerprint);
+        outcome.setOutcome("{\"AB123\":\"Missing reading at 2025-01-09T07:00:00\"}");
+        outcome.setCreatedAt(LocalDateTime.now().minusMinutes(5));
+
+        IngestionBatchOutcomeRepository repository = mock(IngestionBatchOutcomeRepository.class);
+        when(repository.findById("batch-1")).thenReturn(Optional.of(outcome));
+        IdempotentBatchStore store = new IdempotentBatchStore(repository , new ObjectMapper() , new SimpleMeterRegistry() , 100 , 24 , 1000);
+
+        Map<String, String> replay = store.execute("batch-1" , fingerprint , () -> fail("the batch must not be processed again"));
+
+        assertEquals(Map.of("AB123" , "Missing reading at 2025-01-09T07:00:00") , replay);
+        verify(repository , never()).save(any());
+    }
+
+    /**
+     * Checks a key reused for a batch with different readings is rejected.
+     */
+    @Test
+    void testReusedKeyIsRejected() {
+        IngestionBatchOutcomeRepository repository = mock(IngestionBatchOutcomeRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+        IdempotentBatchStore store = new IdempotentBatchStore(repository , new ObjectMapper() , new SimpleMeterRegistry() , 100 , 24 , 1000);
+
+        store.execute("batch-1" , IdempotentBatchStore.fingerprint(batch(12.5)) , Map::of);
+
+        assertNotEquals(IdempotentBatchStore.fingerprint(batch(12.5)) , IdempotentBatchStore.fingerprint(batch(13.5)));
+        assertThrows(GeneralException.class ,
+                () -> store.execute("batch-1" , IdempotentBatchStore.fingerprint(batch(13.5)) , Map::of));
+    }
+
+    private static List<TemperatureRecordDTO> batch(double temperature) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName("AB123");
+        record.setLocation("Freezer 1");
+        record.setTemperature(temperature);
+        record.setTime("2025-01-09T07:00:00");
+        return List.of(record);
+    }
+
+}
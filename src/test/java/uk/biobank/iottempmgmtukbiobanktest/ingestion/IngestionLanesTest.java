@@ -0,0 +1,206 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.BadSqlGrammarException;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link IngestionLanes}, verifying that every device is written by a single
+ * lane thread in submission order, that queued readings are drained on stop and that
+ * {@link IngestionLanes#whenCompleted()} waits for the readings submitted before it, failing
+ * when a batch holding them is given up on.
+ */
+class IngestionLanesTest {
+
+    /**
+     * Submits interleaved readings for several devices and checks each device was written
+     * by exactly one thread, in the order its readings were submitted.
+     */
+    @Test
+    void testDeviceAffinityAndOrdering() {
+        Map<String, List<LocalDateTime>> writtenTimes = new ConcurrentHashMap<>();
+        Map<String, List<String>> writerThreads = new ConcurrentHashMap<>();
+
+        TemperatureRecordWriter writer = mock(TemperatureRecordWriter.class);
+        doAnswer(invocation -> {
+            List<PendingReading> batch = invocation.getArgument(0);
+            for (PendingReading reading : batch) {
+                writtenTimes.computeIfAbsent(reading.deviceName() , key -> new CopyOnWriteArrayList<>()).add(reading.time());
+                writerThreads.computeIfAbsent(reading.deviceName() , key -> new CopyOnWriteArrayList<>()).add(Thread.currentThread().getName());
+            }
+            return batch;
+        }).when(writer).write(anyList());
+
+        IngestionLanes lanes = new IngestionLanes(writer , 4 , 16 , 64);
+        lanes.start();
+
+        LocalDateTime start = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        for (int minute = 0; minute < 200; minute++) {
+            for (int device = 0; device < 10; device++) {
+                lanes.submit(reading("DEVICE-" + device , start.plusMinutes(minute)));
+            }
+        }
+        lanes.stop();
+
+        assertEquals(0 , lanes.queuedCount());
+        assertEquals(10 , writtenTimes.size());
+        for (int device = 0; device < 10; device++) {
+            List<LocalDateTime> times = writtenTimes.get("DEVICE-" + device);
+            List<LocalDateTime> sorted = new ArrayList<>(times);
+            sorted.sort(null);
+            assertEquals(200 , times.size());
+            assertEquals(sorted , times , "readings of a device must be written in submission order");
+            assertEquals(1 , writerThreads.get("DEVICE-" + device).stream().distinct().count() ,
+                    "a device must always be written by the same lane");
+        }
+    }
+
+    /**
+     * Checks a failing batch does not stop the lane from writing later batches.
+     */
+    @Test
+    void testLaneSurvivesWriterFailure() throws Exception {
+        List<PendingReading> written = new CopyOnWriteArrayList<>();
+        TemperatureRecordWriter writer = mock(TemperatureRecordWriter.class);
+        doAnswer(invocation -> {
+            List<PendingReading> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(reading -> reading.record().getTemperature() < 0)) {
+                throw new IllegalStateException("database unavailable");
+            }
+            written.addAll(batch);
+            return batch;
+        }).when(writer).write(anyList());
+
+        IngestionLanes lanes = new IngestionLanes(writer , 1 , 1 , 10);
+        lanes.start();
+
+        PendingReading failing = reading("AB123" , LocalDateTime.of(2025 , 1 , 9 , 7 , 0));
+        failing.record().setTemperature(-1.0);
+        lanes.submit(failing);
+        lanes.submit(reading("AB123" , LocalDateTime.of(2025 , 1 , 9 , 7 , 1)));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        lanes.stop();
+
+        assertEquals(1 , written.size());
+        assertTrue(written.get(0).record().getTemperature() > 0);
+    }
+
+    /**
+     * Holds the writer of one lane and checks the future waits for it, but not for readings
+     * submitted after it was taken.
+     */
+    @Test
+    void testWhenCompletedWaitsForSubmittedReadings() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TemperatureRecordWriter writer = mock(TemperatureRecordWriter.class);
+        doAnswer(invocation -> {
+            List<PendingReading> batch = invocation.getArgument(0);
+            if (batch.get(0).deviceName().equals("AB123")) {
+                release.await();
+            }
+            return batch;
+        }).when(writer).write(anyList());
+
+        IngestionLanes lanes = new IngestionLanes(writer , 2 , 16 , 64);
+        lanes.start();
+        assertTrue(lanes.whenCompleted().isDone() , "nothing submitted yet");
+
+        lanes.submit(reading("AB123" , LocalDateTime.of(2025 , 1 , 9 , 7 , 0)));
+        CompletableFuture<Void> completed = lanes.whenCompleted();
+        lanes.submit(reading("AB123" , LocalDateTime.of(2025 , 1 , 9 , 7 , 1)));
+        Thread.sleep(200);
+        assertFalse(completed.isDone());
+
+        release.countDown();
+        completed.get(5 , TimeUnit.SECONDS);
+        lanes.whenCompleted().get(5 , TimeUnit.SECONDS);
+        lanes.stop();
+    }
+
+    /**
+     * Fails a batch with a non-transient error and checks it is reported as failed rather than
+     * completed: the listeners are told so and the futures covering its readings fail, the one taken
+     * after the failure included, while later readings complete normally.
+     */
+    @Test
+    void testWhenCompletedFailsForFailedBatch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TemperatureRecordWriter writer = mock(TemperatureRecordWriter.class);
+        doAnswer(invocation -> {
+            List<PendingReading> batch = invocation.getArgument(0);
+            if (batch.get(0).record().getTemperature() < 0) {
+                release.await();
+                throw new BadSqlGrammarException("insert" , "insert into temperature_records" , new SQLException("permission denied"));
+            }
+            return batch;
+        }).when(writer).write(anyList());
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        IngestionLanes lanes = new IngestionLanes(writer , 1 , 16 , 64);
+        lanes.addListener(new IngestionListener() {
+            @Override
+            public void onBatchCompleted(List<PendingReading> batch , List<PendingReading> inserted) {
+                events.add("completed " + batch.size());
+            }
+
+            @Override
+            public void onBatchFailed(List<PendingReading> batch , RuntimeException failure) {
+                events.add("failed " + batch.size());
+            }
+        });
+        lanes.start();
+
+        PendingReading failing = reading("AB123" , LocalDateTime.of(2025 , 1 , 9 , 7 , 0));
+        failing.record().setTemperature(-1.0);
+        lanes.submit(failing);
+        CompletableFuture<Void> pending = lanes.whenCompleted();
+        release.countDown();
+
+        ExecutionException failure = assertThrows(ExecutionException.class , () -> pending.get(5 , TimeUnit.SECONDS));
+        assertInstanceOf(BadSqlGrammarException.class , failure.getCause());
+        assertEquals(List.of("failed 1") , events);
+
+        lanes.submit(failing);
+        // let the batch fail before the future is taken
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (events.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<Void> late = lanes.whenCompleted();
+        assertTrue(late.isCompletedExceptionally());
+
+        lanes.submit(reading("AB123" , LocalDateTime.of(2025 , 1 , 9 , 7 , 1)));
+        lanes.whenCompleted().get(5 , TimeUnit.SECONDS);
+        lanes.stop();
+        assertEquals(List.of("failed 1" , "failed 1" , "completed 1") , events);
+    }
+
+    private static PendingReading reading(String deviceName , LocalDateTime time) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setTemperature(12.3);
+        return new PendingReading(record , time);
+    }
+
+}
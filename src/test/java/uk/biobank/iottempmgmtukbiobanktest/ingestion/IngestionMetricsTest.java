@@ -0,0 +1,55 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.journal.ReadingJournal;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link IngestionMetrics}, verifying that the gauges follow the lane queues
+ * and the journal backlog.
+ */
+class IngestionMetricsTest {
+
+    /**
+     * Queues readings on lanes that are not started and checks the per-lane depths add up,
+     * and that the journal gauges report what the journal does.
+     */
+    @Test
+    void testGaugesFollowQueues() {
+        IngestionLanes lanes = new IngestionLanes(mock(TemperatureRecordWriter.class) , 2 , 16 , 64);
+        ReadingJournal journal = mock(ReadingJournal.class);
+        when(journal.backlogBytes()).thenReturn(4096L);
+        when(journal.inFlightCount()).thenReturn(7);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new IngestionMetrics(lanes , journal).bindTo(registry);
+
+        LocalDateTime time = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+        for (int device = 0; device < 5; device++) {
+            lanes.submit(reading("DEVICE-" + device , time));
+        }
+
+        double depth = registry.find("ingestion.lanes.queue.depth").gauges().stream().mapToDouble(Gauge::value).sum();
+        assertEquals(2 , registry.find("ingestion.lanes.queue.depth").gauges().size());
+        assertEquals(5 , depth);
+        assertEquals(64 , registry.get("ingestion.lanes.queue.capacity").gauge().value());
+        assertEquals(4096 , registry.get("ingestion.journal.backlog").gauge().value());
+        assertEquals(7 , registry.get("ingestion.journal.in.flight").gauge().value());
+    }
+
+    private static PendingReading reading(String deviceName , LocalDateTime time) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setTemperature(12.3);
+        return new PendingReading(record , time);
+    }
+
+}
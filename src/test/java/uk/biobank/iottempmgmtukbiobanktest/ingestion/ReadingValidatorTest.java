@@ -0,0 +1,99 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ReadingValidator}, verifying records are normalized, parsed once and
+ * rejected with a per-record reason.
+ */
+class ReadingValidatorTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReadingValidator validator = new ReadingValidator(meterRegistry , -200 , 100 , 300 , 365);
+
+    /**
+     * Checks a valid record is accepted with trimmed names and its parsed time.
+     */
+    @Test
+    void testNormalizesAcceptedRecords() {
+        TemperatureRecordDTO record = record("  AB123 " , -80.0 , DateUtil.localDateTimeToString(NOW));
+        record.setLocation(" Freezer 1 ");
+
+        ReadingValidator.Result result = validator.validate(List.of(record));
+
+        assertTrue(result.report().isEmpty());
+        assertEquals(1 , result.accepted().size());
+        assertEquals(NOW , result.accepted().get(0).time());
+        assertEquals(NOW , record.getActualTime());
+        assertEquals("AB123" , record.getDeviceName());
+        assertEquals("Freezer 1" , record.getLocation());
+    }
+
+    /**
+     * Checks each kind of invalid record is reported under its index, and valid records around it are kept.
+     */
+    @Test
+    void testReportsRejectedRecords() {
+        List<TemperatureRecordDTO> records = new ArrayList<>();
+        records.add(record("AB123" , -80.0 , DateUtil.localDateTimeToString(NOW)));
+        records.add(record(" " , -80.0 , DateUtil.localDateTimeToString(NOW)));
+        records.add(record("AB123" , Double.NaN , DateUtil.localDateTimeToString(NOW)));
+        records.add(record("AB123" , -250.0 , DateUtil.localDateTimeToString(NOW)));
+        records.add(record("AB123" , -80.0 , "2025-13-01T00:00:00"));
+        records.add(record("AB123" , -80.0 , DateUtil.localDateTimeToString(NOW.plusHours(1))));
+        records.add(record("AB123" , -80.0 , DateUtil.localDateTimeToString(NOW.minusDays(400))));
+        records.add(record("CD456" , null , "2025-01-09T07:00:00"));
+        records.add(null);
+        records.add(record("CD456" , null , "2025-01-09T07:01:00"));
+
+        ReadingValidator.Result result = validator.validate(records);
+
+        assertEquals(1 , result.accepted().size());
+        assertEquals(Map.of(
+                "records[1]" , "deviceName: missing" ,
+                "records[2]" , "temperature: NaN outside [-200.0, 100.0]" ,
+                "records[3]" , "temperature: -250.0 outside [-200.0, 100.0]" ,
+                "records[4]" , "time: malformed, expected yyyy-MM-dd'T'HH:mm:ss" ,
+                "records[5]" , "time: in the future" ,
+                "records[6]" , "time: older than 365 days" ,
+                "CD456" , "Missing reading at 2025-01-09T07:00:00, 2025-01-09T07:01:00" ,
+                "records[8]" , "empty record") , result.report());
+        assertEquals(List.of(records.get(7) , records.get(9)) , result.missing());
+        assertEquals(3 , meterRegistry.get("ingestion.validation.rejected").tag("field" , "time").counter().count());
+    }
+
+    /**
+     * Checks a time already decoded by the binary format is used without a string to parse.
+     */
+    @Test
+    void testUsesDecodedTime() {
+        TemperatureRecordDTO record = record("AB123" , -80.0 , null);
+        record.setActualTime(NOW);
+
+        ReadingValidator.Result result = validator.validate(List.of(record));
+
+        assertEquals(NOW , result.accepted().get(0).time());
+    }
+
+    private static TemperatureRecordDTO record(String deviceName , Double temperature , String time) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setTemperature(temperature);
+        record.setTime(time);
+        return record;
+    }
+
+}
@@ -0,0 +1,81 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.config.PostgresTestConfig;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the {@link TemperatureRecordWriter} against a Postgres container, see {@link PostgresTestConfig},
+ * so the duplicate probe runs over real raw rows and compacted chunks.
+ */
+@SpringBootTest(properties = PostgresTestConfig.PROFILE)
+@Import(PostgresTestConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+public class TemperatureRecordWriterPostgresTests {
+
+    // far from the readings of the other tests
+    private static final LocalDate DAY = LocalDate.of(2020 , 5 , 1);
+
+    @Autowired
+    private TemperatureRecordWriter temperatureRecordWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Retransmits a compacted reading and a raw one next to a new reading of the same span:
+     * only the new reading is inserted.
+     */
+    @Test
+    public void testStoredReadingsNotInsertedAgain() {
+        String deviceName = "WRITER-" + UUID.randomUUID();
+        insertChunk(deviceName , DAY.atTime(7 , 0) , DAY.atTime(7 , 10));
+        jdbcTemplate.update("insert into temperature_records (device_name, location, temperature, time, created_at) values (?, ?, ?, ?, ?)" ,
+                deviceName , "ROOM-1" , -80.0 , DAY.atTime(8 , 0) , LocalDateTime.now());
+
+        List<PendingReading> inserted = temperatureRecordWriter.write(List.of(
+                reading(deviceName , DAY.atTime(7 , 0)) , reading(deviceName , DAY.atTime(7 , 5)) , reading(deviceName , DAY.atTime(8 , 0))));
+
+        assertEquals(List.of(DAY.atTime(7 , 5)) , inserted.stream().map(PendingReading::time).toList());
+        assertEquals(List.of(DAY.atTime(7 , 5) , DAY.atTime(8 , 0)) , jdbcTemplate.queryForList(
+                "select time from temperature_records where device_name = ? order by time" , LocalDateTime.class , deviceName));
+    }
+
+    private void insertChunk(String deviceName , LocalDateTime... times) {
+        long[] epochMillis = new long[times.length];
+        double[] temperatures = new double[times.length];
+        for (int i = 0; i < times.length; i++) {
+            epochMillis[i] = DateUtil.localDateTimeToEpochMilli(times[i]);
+            temperatures[i] = -80.0;
+        }
+        jdbcTemplate.update("""
+                        insert into temperature_chunks
+                            (device_name, location, chunk_date, start_time, end_time, reading_count, timestamps, temperatures, created_at)
+                        values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        """ , deviceName , "ROOM-1" , times[0].toLocalDate() , times[0] , times[times.length - 1] , times.length ,
+                TemperatureChunkCodec.encodeTimestamps(epochMillis) , TemperatureChunkCodec.encodeValues(temperatures) , LocalDateTime.now());
+    }
+
+    private static PendingReading reading(String deviceName , LocalDateTime time) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setLocation("ROOM-1");
+        record.setTemperature(-80.0);
+        return new PendingReading(record , time);
+    }
+
+}
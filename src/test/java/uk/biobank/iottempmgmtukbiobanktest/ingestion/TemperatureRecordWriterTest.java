@@ -0,0 +1,160 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TemperatureRecordWriter}, verifying the duplicate filter only learns the
+ * readings that were committed, compacted readings are not stored again and late readings delete the
+ * statistics of their hours.
+ */
+class TemperatureRecordWriterTest {
+
+    private static final LocalDateTime SEEDED = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+
+    /**
+     * Fails the insert of a batch, then retries it: only the committed retry makes its readings
+     * possible duplicates.
+     */
+    @Test
+    void testRolledBackBatchNotRecorded() {
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        when(repository.findLatestTimeByDeviceName("AB123")).thenReturn(Optional.of(SEEDED));
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , mock(TemperatureChunkRepository.class) ,
+                new SimpleMeterRegistry() , true , 1000 , 0.01);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        TemperatureRecordWriter writer = new TemperatureRecordWriter(filter , jdbcTemplate ,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)) , new SimpleMeterRegistry());
+        List<PendingReading> batch = List.of(reading(SEEDED.plusMinutes(1)) , reading(SEEDED.plusMinutes(2)));
+
+        when(jdbcTemplate.batchUpdate(anyString() , anyList() , any(int[].class)))
+                .thenThrow(new TransientDataAccessResourceException("connection reset"))
+                .thenReturn(new int[]{1 , 1});
+        assertThrows(TransientDataAccessResourceException.class , () -> writer.write(batch));
+        assertEquals(DuplicateReadingFilter.Check.NEW , filter.check("AB123" , SEEDED.plusMinutes(1)));
+
+        assertEquals(batch , writer.write(batch));
+        assertEquals(DuplicateReadingFilter.Check.SEEN_RECENTLY , filter.check("AB123" , SEEDED.plusMinutes(1)));
+        verify(jdbcTemplate).query(startsWith("select count(pg_advisory_xact_lock(") , any(PreparedStatementSetter.class) , any(RowCallbackHandler.class));
+        verify(jdbcTemplate).update(anyString() , any(PreparedStatementSetter.class));
+        // clearly new readings are never probed
+        verifyNoMoreInteractions(ignoreStubs(jdbcTemplate));
+    }
+
+    /**
+     * Checks a reading the unique constraint rejected is neither returned nor recorded.
+     */
+    @Test
+    void testConstraintRejectionNotRecorded() {
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        when(repository.findLatestTimeByDeviceName("AB123")).thenReturn(Optional.of(SEEDED));
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , mock(TemperatureChunkRepository.class) ,
+                new SimpleMeterRegistry() , true , 1000 , 0.01);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TemperatureRecordWriter writer = new TemperatureRecordWriter(filter , jdbcTemplate ,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)) , meterRegistry);
+        when(jdbcTemplate.batchUpdate(anyString() , anyList() , any(int[].class))).thenReturn(new int[]{1 , 0});
+
+        List<PendingReading> inserted = writer.write(List.of(reading(SEEDED.plusMinutes(1)) , reading(SEEDED.plusMinutes(2))));
+
+        assertEquals(List.of(reading(SEEDED.plusMinutes(1))) , inserted);
+        assertEquals(DuplicateReadingFilter.Check.NEW , filter.check("AB123" , SEEDED.plusMinutes(2)));
+        assertEquals(1.0 , meterRegistry.get("ingestion.writer.duplicates").tag("source" , "constraint").counter().count());
+    }
+
+    /**
+     * Checks readings of an hour not over yet are inserted alone, and a batch with readings of an
+     * hour already over locks their devices and deletes the statistics of their hours with two more statements.
+     */
+    @Test
+    void testLateReadingsDeleteStatistics() {
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        when(repository.findLatestTimeByDeviceName("AB123")).thenReturn(Optional.of(currentHour.minusHours(2)));
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , mock(TemperatureChunkRepository.class) ,
+                new SimpleMeterRegistry() , true , 1000 , 0.01);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        TemperatureRecordWriter writer = new TemperatureRecordWriter(filter , jdbcTemplate ,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)) , new SimpleMeterRegistry());
+        when(jdbcTemplate.batchUpdate(anyString() , anyList() , any(int[].class))).thenReturn(new int[]{1});
+
+        // the next hour, so the test cannot cross into it meanwhile
+        writer.write(List.of(reading(currentHour.plusHours(1))));
+        verify(jdbcTemplate , never()).update(anyString() , any(PreparedStatementSetter.class));
+        verify(jdbcTemplate , never()).query(anyString() , any(PreparedStatementSetter.class) , any(RowCallbackHandler.class));
+
+        when(jdbcTemplate.batchUpdate(anyString() , anyList() , any(int[].class))).thenReturn(new int[]{1 , 1});
+        writer.write(List.of(reading(currentHour.minusMinutes(30)) , reading(currentHour.minusMinutes(20))));
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).query(startsWith("select count(pg_advisory_xact_lock(") , any(PreparedStatementSetter.class) , any(RowCallbackHandler.class));
+        inOrder.verify(jdbcTemplate).update(startsWith("delete from temperature_hourly_statistics") , any(PreparedStatementSetter.class));
+    }
+
+    /**
+     * Checks a retransmit of a reading already compacted into a chunk is skipped, while a reading of
+     * the same span missing from the chunk is inserted.
+     */
+    @Test
+    void testCompactedReadingNotStoredAgain() throws Exception {
+        LocalDateTime compacted = SEEDED.minusDays(10);
+        TemperatureRecordRepository repository = mock(TemperatureRecordRepository.class);
+        when(repository.findLatestTimeByDeviceName("AB123")).thenReturn(Optional.of(SEEDED));
+        DuplicateReadingFilter filter = new DuplicateReadingFilter(repository , mock(TemperatureChunkRepository.class) ,
+                new SimpleMeterRegistry() , true , 1000 , 0.01);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        TemperatureRecordWriter writer = new TemperatureRecordWriter(filter , jdbcTemplate ,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)) , new SimpleMeterRegistry());
+
+        ResultSet chunk = mock(ResultSet.class);
+        when(chunk.getString(1)).thenReturn("AB123");
+        when(chunk.getInt(3)).thenReturn(2);
+        when(chunk.getBytes(4)).thenReturn(TemperatureChunkCodec.encodeTimestamps(new long[]{
+                DateUtil.localDateTimeToEpochMilli(compacted) , DateUtil.localDateTimeToEpochMilli(compacted.plusMinutes(2))}));
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(2).processRow(chunk);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("with k as") , any(PreparedStatementSetter.class) , any(RowCallbackHandler.class));
+        when(jdbcTemplate.batchUpdate(anyString() , anyList() , any(int[].class))).thenReturn(new int[]{1});
+
+        List<PendingReading> inserted = writer.write(List.of(reading(compacted) , reading(compacted.plusMinutes(1))));
+
+        assertEquals(List.of(reading(compacted.plusMinutes(1))) , inserted);
+        verify(jdbcTemplate).batchUpdate(anyString() , argThat((List<Object[]> rows) -> rows.size() == 1) , any(int[].class));
+    }
+
+    private static PendingReading reading(LocalDateTime time) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName("AB123");
+        record.setLocation("ROOM-1");
+        record.setTemperature(-80.0);
+        return new PendingReading(record , time);
+    }
+
+}
@@ -0,0 +1,228 @@
+package uk.biobank.iottempmgmtukbiobanktest.ingestion.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.IngestionLanes;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link ReadingJournal}, verifying that journaled readings reach the ingestion lanes,
+ * are replayed after a restart until acknowledged, that readings of failed batches are kept and
+ * submitted again, and that acknowledged segments are reclaimed.
+ */
+class ReadingJournalTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025 , 1 , 9 , 7 , 0);
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Appends readings, restarts without acknowledging them and checks they are replayed intact.
+     */
+    @Test
+    void testUnacknowledgedReadingsAreReplayed() throws Exception {
+        List<PendingReading> firstRun = new CopyOnWriteArrayList<>();
+        ReadingJournal journal = open(firstRun , 1 , 8);
+        journal.append(List.of(reading("AB123" , "Freezer 1" , START , 12.5) , reading("CD456" , null , START.plusMinutes(1) , -80.25)));
+        awaitSize(firstRun , 2);
+        journal.stop();
+
+        List<PendingReading> replayed = new CopyOnWriteArrayList<>();
+        ReadingJournal reopened = open(replayed , 1 , 8);
+        awaitSize(replayed , 2);
+        reopened.stop();
+
+        assertEquals("AB123" , replayed.get(0).deviceName());
+        assertEquals("Freezer 1" , replayed.get(0).record().getLocation());
+        assertEquals(START , replayed.get(0).time());
+        assertEquals(12.5 , replayed.get(0).record().getTemperature());
+        assertNull(replayed.get(1).record().getLocation());
+        assertEquals(-80.25 , replayed.get(1).record().getTemperature());
+        assertEquals(firstRun.get(1).journalPosition() , replayed.get(1).journalPosition());
+    }
+
+    /**
+     * Acknowledges every reading across several segments and checks nothing is replayed
+     * and the drained segments are deleted.
+     */
+    @Test
+    void testAcknowledgedReadingsAreCheckpointed() throws Exception {
+        List<PendingReading> drained = new CopyOnWriteArrayList<>();
+        ReadingJournal journal = open(drained , 1 , 8);
+
+        int count = 60_000;
+        for (int batch = 0; batch < count / 1000; batch++) {
+            List<PendingReading> readings = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                readings.add(reading("DEVICE-" + (i % 10) , "Lab" , START.plusSeconds(batch * 1000L + i) , 4.0));
+            }
+            journal.append(readings);
+        }
+        awaitSize(drained , count);
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(START.plusSeconds(i) , drained.get(i).time() , "readings must be drained in append order");
+        }
+        assertTrue(segmentCount() > 1 , "the readings must span several segments");
+
+        journal.onBatchCompleted(drained , drained);
+        journal.checkpoint();
+        assertEquals(1 , segmentCount());
+        journal.stop();
+
+        List<PendingReading> replayed = new CopyOnWriteArrayList<>();
+        ReadingJournal reopened = open(replayed , 1 , 8);
+        reopened.append(List.of(reading("AB123" , "Lab" , START.plusDays(1) , 4.0)));
+        awaitSize(replayed , 1);
+        reopened.stop();
+
+        assertEquals(1 , replayed.size());
+        assertEquals("AB123" , replayed.get(0).deviceName());
+    }
+
+    /**
+     * Checks the future of {@link ReadingJournal#whenHandled()} completes only once every reading
+     * appended before it has been acknowledged by the lanes.
+     */
+    @Test
+    void testWhenHandledWaitsForAcknowledgement() throws Exception {
+        List<PendingReading> drained = new CopyOnWriteArrayList<>();
+        ReadingJournal journal = open(drained , 1 , 8);
+        assertTrue(journal.whenHandled().isDone() , "nothing appended yet");
+
+        journal.append(List.of(reading("AB123" , "Lab" , START , 4.0)));
+        journal.append(List.of(reading("CD456" , "Lab" , START , 4.0)));
+        CompletableFuture<Void> handled = journal.whenHandled();
+        awaitSize(drained , 2);
+
+        journal.onBatchCompleted(drained.subList(0 , 1) , List.of());
+        assertFalse(handled.isDone());
+        journal.onBatchCompleted(drained.subList(1 , 2) , drained.subList(1 , 2));
+        assertTrue(handled.isDone());
+        journal.stop();
+    }
+
+    /**
+     * Fails the batch of one reading and checks its waiter fails, the checkpoint stays behind it
+     * although a later reading was written, and a restart replays it.
+     */
+    @Test
+    void testFailedReadingsAreNotCheckpointed() throws Exception {
+        List<PendingReading> drained = new CopyOnWriteArrayList<>();
+        ReadingJournal journal = open(drained , 1 , 8);
+        journal.append(List.of(reading("AB123" , "Lab" , START , 4.0)));
+        journal.append(List.of(reading("CD456" , "Lab" , START , 4.0)));
+        CompletableFuture<Void> handled = journal.whenHandled();
+        awaitSize(drained , 2);
+
+        journal.onBatchFailed(drained.subList(0 , 1) , new IllegalStateException("permission denied"));
+        assertTrue(handled.isCompletedExceptionally());
+        journal.onBatchCompleted(drained.subList(1 , 2) , drained.subList(1 , 2));
+        assertEquals(1 , journal.inFlightCount());
+        journal.checkpoint();
+        journal.stop();
+
+        List<PendingReading> replayed = new CopyOnWriteArrayList<>();
+        ReadingJournal reopened = open(replayed , 1 , 8);
+        awaitSize(replayed , 2);
+        reopened.stop();
+
+        assertEquals("AB123" , replayed.get(0).deviceName());
+    }
+
+    /**
+     * Checks the readings of a failed batch are submitted again and handled once written.
+     */
+    @Test
+    void testFailedReadingsAreSubmittedAgain() throws Exception {
+        List<PendingReading> drained = new CopyOnWriteArrayList<>();
+        ReadingJournal journal = open(drained , 1 , 8 , 50);
+        journal.append(List.of(reading("AB123" , "Lab" , START , 4.0)));
+        awaitSize(drained , 1);
+
+        journal.onBatchFailed(drained , new IllegalStateException("permission denied"));
+        awaitSize(drained , 2);
+        assertEquals(drained.get(0).journalPosition() , drained.get(1).journalPosition());
+        assertEquals("AB123" , drained.get(1).deviceName());
+
+        CompletableFuture<Void> handled = journal.whenHandled();
+        assertFalse(handled.isDone());
+        journal.onBatchCompleted(drained.subList(1 , 2) , drained.subList(1 , 2));
+        assertTrue(handled.isDone());
+        assertFalse(handled.isCompletedExceptionally());
+        assertEquals(0 , journal.inFlightCount());
+        journal.stop();
+    }
+
+    /**
+     * Checks a batch is rejected as a whole when the journal has no room left.
+     */
+    @Test
+    void testFullJournalRejectsBatch() throws Exception {
+        List<PendingReading> drained = new CopyOnWriteArrayList<>();
+        ReadingJournal journal = open(drained , 1 , 1);
+
+        List<PendingReading> readings = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            readings.add(reading("DEVICE-1" , "Lab" , START.plusSeconds(i) , 4.0));
+        }
+        assertThrows(GeneralException.class , () -> journal.append(readings));
+        journal.stop();
+
+        assertTrue(drained.isEmpty());
+    }
+
+    private ReadingJournal open(List<PendingReading> submitted , int segmentSizeMb , int maxSegments) throws Exception {
+        return open(submitted , segmentSizeMb , maxSegments , 60_000);
+    }
+
+    private ReadingJournal open(List<PendingReading> submitted , int segmentSizeMb , int maxSegments , long retryIntervalMs) throws Exception {
+        IngestionLanes lanes = mock(IngestionLanes.class);
+        doAnswer(invocation -> submitted.add(invocation.getArgument(0))).when(lanes).submit(any());
+
+        ReadingJournal journal = new ReadingJournal(lanes , true , directory.toString() , segmentSizeMb , maxSegments , false , retryIntervalMs);
+        journal.start();
+        return journal;
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> JournalSegment.basePositionOf(file) >= 0).count();
+        }
+    }
+
+    private static void awaitSize(List<PendingReading> readings , int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (readings.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size , readings.size());
+    }
+
+    private static PendingReading reading(String deviceName , String location , LocalDateTime time , double temperature) {
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setLocation(location);
+        record.setTemperature(temperature);
+        return new PendingReading(record , time);
+    }
+
+}
@@ -0,0 +1,120 @@
+package uk.biobank.iottempmgmtukbiobanktest.lineprotocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LineProtocolParser}, verifying readings are parsed from line protocol
+ * lines and invalid lines are rejected.
+ */
+class LineProtocolParserTest {
+
+    private final LineProtocolParser parser = new LineProtocolParser(TimeUnit.NANOSECONDS);
+
+    /**
+     * Parses a full line, with a nanosecond timestamp, and checks a second line of the same device
+     * reuses its name.
+     */
+    @Test
+    void testParseLine() {
+        TemperatureRecordDTO record = parse("FREEZER-1,location=BUILDING-1-ROOM-2 temp=-79.8 1736406000123456789");
+
+        assertEquals("FREEZER-1" , record.getDeviceName());
+        assertEquals("BUILDING-1-ROOM-2" , record.getLocation());
+        assertEquals(-79.8 , record.getTemperature());
+        assertEquals(LocalDateTime.of(2025 , 1 , 9 , 7 , 0 , 0 , 123456789) , record.getActualTime());
+        assertSame(record.getDeviceName() , parse("FREEZER-1 temp=-80 1736406000000000000").getDeviceName());
+    }
+
+    /**
+     * Checks other tags and fields are skipped, an integer temperature is accepted and the
+     * temperature field may be named temperature.
+     */
+    @Test
+    void testParseOtherTagsAndFields() {
+        TemperatureRecordDTO record = parse("FREEZER-1,rack=4,location=ROOM-2,zone=A humidity=0.4,temperature=-80i,door=1i 1736406000000000000\r");
+
+        assertEquals("ROOM-2" , record.getLocation());
+        assertEquals(-80.0 , record.getTemperature());
+    }
+
+    /**
+     * Checks a line without a temperature is a missing reading, and one without a timestamp takes the current time.
+     */
+    @Test
+    void testParseMissingTemperatureAndTimestamp() {
+        assertNull(parse("FREEZER-1 humidity=0.4 1736406000000000000").getTemperature());
+
+        LocalDateTime before = LocalDateTime.now(ZoneOffset.UTC).minusSeconds(1);
+        TemperatureRecordDTO record = parse("FREEZER-1 temp=-79.8");
+        assertTrue(record.getActualTime().isAfter(before));
+        assertNull(record.getLocation());
+    }
+
+    /**
+     * Checks numbers beyond the exact fast path, e.g. exponents, are parsed like Double.parseDouble.
+     */
+    @Test
+    void testParseLongNumbers() {
+        assertEquals(-7.98e1 , parse("FREEZER-1 temp=-7.98e1 0").getTemperature());
+        assertEquals(Double.parseDouble("-79.80000000000000000001") , parse("FREEZER-1 temp=-79.80000000000000000001 0").getTemperature());
+        assertEquals(LocalDateTime.of(1970 , 1 , 1 , 0 , 0) , parse("FREEZER-1 temp=1 0").getActualTime());
+    }
+
+    /**
+     * Checks the timestamp precision is applied.
+     */
+    @Test
+    void testParseSecondsPrecision() {
+        TemperatureRecordDTO record = new LineProtocolParser(TimeUnit.SECONDS).parse(buffer("FREEZER-1 temp=1 1736406000"));
+
+        assertEquals(LocalDateTime.of(2025 , 1 , 9 , 7 , 0) , record.getActualTime());
+    }
+
+    @Test
+    void testRejectInvalidLines() {
+        assertNull(parse("FREEZER-1"));
+        assertNull(parse("FREEZER-1 "));
+        assertNull(parse(" temp=1"));
+        assertNull(parse("FREEZER-1,location temp=1"));
+        assertNull(parse("FREEZER-1,location= temp=1"));
+        assertNull(parse("FREEZER-1=2 temp=1"));
+        assertNull(parse("FREEZER-1 temp=abc"));
+        assertNull(parse("FREEZER-1 temp="));
+        assertNull(parse("FREEZER-1 temp=1 12x"));
+        assertNull(parse("FREEZER-1 temp=1 1736406000000000000 extra"));
+        assertNull(parse("FREEZER-1 temp=1 99999999999999999999"));
+    }
+
+    /**
+     * Parses a line in the middle of a view of a larger buffer, as it is read from a datagram.
+     */
+    @Test
+    void testParseSlice() {
+        String lines = "FREEZER-1 temp=1 0\nFREEZER-2,location=ROOM-1 temp=2 0\n";
+        int start = lines.indexOf('\n') + 1;
+
+        TemperatureRecordDTO record = parser.parse(buffer(lines).nioBuffer() , start , lines.length() - 1 - start);
+
+        assertEquals("FREEZER-2" , record.getDeviceName());
+        assertEquals(2.0 , record.getTemperature());
+    }
+
+    private TemperatureRecordDTO parse(String line) {
+        return parser.parse(buffer(line));
+    }
+
+    private static ByteBuf buffer(String text) {
+        return Unpooled.wrappedBuffer(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
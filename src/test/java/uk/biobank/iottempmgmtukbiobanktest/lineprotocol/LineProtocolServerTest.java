@@ -0,0 +1,99 @@
+package uk.biobank.iottempmgmtukbiobanktest.lineprotocol;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests of {@link LineProtocolServer} on localhost, verifying that lines sent over TCP and UDP
+ * reach processRecords in batches.
+ */
+class LineProtocolServerTest {
+
+    private final TemperatureRecordService temperatureRecordService = mock(TemperatureRecordService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LineProtocolServer server;
+
+    @BeforeEach
+    void startServer() {
+        when(temperatureRecordService.processRecords(anyList())).thenReturn(Map.of());
+        server = new LineProtocolServer(temperatureRecordService , meterRegistry , "127.0.0.1" , 0 , 0 , "ms" , 3 , 200 , 1024);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Sends five lines over a connection and checks a full batch of three is processed, then the
+     * rest once the batch has waited long enough, with the malformed line counted.
+     */
+    @Test
+    void testTcpLinesInBatches() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress() , server.getTcpPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("FREEZER-1 temp=-79.8 1736406000000\r\n"
+                    + "FREEZER-2 temp=-80.1 1736406000000\n"
+                    + "# comment\n"
+                    + "not a reading\n"
+                    + "FREEZER-3 temp=-79.5 1736406000000\n"
+                    + "FREEZER-4 temp=-79.6 1736406000000\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            ArgumentCaptor<List<TemperatureRecordDTO>> batches = ArgumentCaptor.captor();
+            verify(temperatureRecordService , timeout(5000).times(2)).processRecords(batches.capture());
+            assertEquals(List.of("FREEZER-1" , "FREEZER-2" , "FREEZER-3") ,
+                    batches.getAllValues().get(0).stream().map(TemperatureRecordDTO::getDeviceName).toList());
+            assertEquals(List.of("FREEZER-4") ,
+                    batches.getAllValues().get(1).stream().map(TemperatureRecordDTO::getDeviceName).toList());
+        }
+        assertEquals(1.0 , meterRegistry.counter("line-protocol.lines.malformed").count());
+        assertEquals(5.0 , meterRegistry.counter("line-protocol.lines.received").count());
+    }
+
+    /**
+     * Sends a datagram of three lines and checks they are processed as one batch.
+     */
+    @Test
+    void testUdpDatagram() throws Exception {
+        byte[] payload = ("FREEZER-1,location=ROOM-1 temp=-79.8 1736406000000\n"
+                + "FREEZER-2,location=ROOM-1 temp=-80.1 1736406000000\n"
+                + "FREEZER-3,location=ROOM-2 temp=-79.5 1736406000000").getBytes(StandardCharsets.UTF_8);
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(new DatagramPacket(payload , payload.length , InetAddress.getLoopbackAddress() , server.getUdpPort()));
+        }
+
+        ArgumentCaptor<List<TemperatureRecordDTO>> batch = ArgumentCaptor.captor();
+        verify(temperatureRecordService , timeout(5000)).processRecords(batch.capture());
+        assertEquals(List.of("ROOM-1" , "ROOM-1" , "ROOM-2") ,
+                batch.getValue().stream().map(TemperatureRecordDTO::getLocation).toList());
+    }
+
+    @Test
+    void testToTimeUnit() {
+        assertEquals(TimeUnit.MICROSECONDS , LineProtocolServer.toTimeUnit("us"));
+        assertThrows(IllegalArgumentException.class , () -> LineProtocolServer.toTimeUnit("h"));
+    }
+
+}
@@ -0,0 +1,214 @@
+package uk.biobank.iottempmgmtukbiobanktest.mqtt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests of {@link MqttIngestionAdapter} against an embedded broker, verifying that published
+ * readings reach processRecords in batches and that the messages of a batch that cannot be
+ * processed, or was not stored, are delivered again.
+ */
+class MqttIngestionAdapterTest {
+
+    private final TemperatureRecordService temperatureRecordService = mock(TemperatureRecordService.class);
+
+    private Server broker;
+    private String brokerUrl;
+    private MqttIngestionAdapter adapter;
+    private MqttClient publisher;
+
+    @BeforeEach
+    void startBroker() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Properties properties = new Properties();
+        properties.setProperty("host" , "127.0.0.1");
+        properties.setProperty("port" , String.valueOf(port));
+        properties.setProperty("allow_anonymous" , "true");
+        properties.setProperty("persistence_enabled" , "false");
+        broker = new Server();
+        broker.startServer(new MemoryConfig(properties));
+
+        brokerUrl = "tcp://127.0.0.1:" + port;
+        adapter = newAdapter();
+        when(temperatureRecordService.whenStored()).thenReturn(CompletableFuture.completedFuture(null));
+        publisher = new MqttClient(brokerUrl , "publisher-test" , new MemoryPersistence());
+        publisher.connect();
+    }
+
+    @AfterEach
+    void stopBroker() throws Exception {
+        adapter.stop();
+        publisher.disconnect();
+        publisher.close();
+        broker.stopServer();
+    }
+
+    /**
+     * Publishes a single reading and an array of two, and checks they are processed as one batch of
+     * three, the reading without a device name taking it from its topic.
+     */
+    @Test
+    void testReadingsProcessedInBatches() throws Exception {
+        when(temperatureRecordService.processRecords(anyList())).thenReturn(Map.of());
+        startAdapter();
+
+        publish("biobank/readings/DEVICE-1" , "{\"temperature\":20.5,\"time\":\"2025-01-09T07:00:00\"}");
+        publish("biobank/readings/gateway-1" , "[{\"deviceName\":\"DEVICE-2\",\"temperature\":18.0,\"time\":\"2025-01-09T07:00:00\"},"
+                + "{\"deviceName\":\"DEVICE-3\",\"temperature\":19.0,\"time\":\"2025-01-09T07:00:00\"}]");
+
+        ArgumentCaptor<List<TemperatureRecordDTO>> batch = ArgumentCaptor.captor();
+        verify(temperatureRecordService , timeout(5000)).processRecords(batch.capture());
+        assertEquals(List.of("DEVICE-1" , "DEVICE-2" , "DEVICE-3") ,
+                batch.getValue().stream().map(TemperatureRecordDTO::getDeviceName).toList());
+        assertEquals(20.5 , batch.getValue().get(0).getTemperature());
+    }
+
+    /**
+     * Fails the first batch as a full journal would, and checks its messages are delivered again
+     * and processed once the session is restarted.
+     */
+    @Test
+    void testFailedBatchDeliveredAgain() throws Exception {
+        when(temperatureRecordService.processRecords(anyList()))
+                .thenThrow(new GeneralException(ResponseCodeAndMessage.ERROR_PROCESSING.responseCode , "Journal full"))
+                .thenReturn(Map.of());
+        startAdapter();
+
+        for (int i = 0; i < 3; i++) {
+            publish("biobank/readings/DEVICE-1" , "{\"temperature\":2" + i + ".0,\"time\":\"2025-01-09T07:0" + i + ":00\"}");
+        }
+
+        ArgumentCaptor<List<TemperatureRecordDTO>> batches = ArgumentCaptor.captor();
+        verify(temperatureRecordService , timeout(10000).times(2)).processRecords(batches.capture());
+        assertEquals(List.of(20.0 , 21.0 , 22.0) , batches.getAllValues().get(1).stream().map(TemperatureRecordDTO::getTemperature).toList());
+    }
+
+    /**
+     * Processes a batch whose readings are never stored, and checks its messages are delivered
+     * again to the next session.
+     */
+    @Test
+    void testUnstoredBatchDeliveredAgain() throws Exception {
+        when(temperatureRecordService.processRecords(anyList())).thenReturn(Map.of());
+        when(temperatureRecordService.whenStored()).thenReturn(new CompletableFuture<>());
+        startAdapter();
+
+        for (int i = 0; i < 3; i++) {
+            publish("biobank/readings/DEVICE-1" , "{\"temperature\":2" + i + ".0,\"time\":\"2025-01-09T07:0" + i + ":00\"}");
+        }
+        verify(temperatureRecordService , timeout(5000)).processRecords(anyList());
+        adapter.stop();
+
+        when(temperatureRecordService.whenStored()).thenReturn(CompletableFuture.completedFuture(null));
+        adapter = newAdapter();
+        startAdapter();
+
+        ArgumentCaptor<List<TemperatureRecordDTO>> batches = ArgumentCaptor.captor();
+        verify(temperatureRecordService , timeout(10000).times(2)).processRecords(batches.capture());
+        assertEquals(List.of(20.0 , 21.0 , 22.0) , batches.getAllValues().get(1).stream().map(TemperatureRecordDTO::getTemperature).toList());
+    }
+
+    /**
+     * Processes a batch whose readings then fail to be stored, followed by a batch stored, and checks
+     * the messages of the first are not acknowledged with the second but delivered again.
+     */
+    @Test
+    void testFailedStoreDeliveredAgain() throws Exception {
+        when(temperatureRecordService.processRecords(anyList())).thenReturn(Map.of());
+        when(temperatureRecordService.whenStored())
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("permission denied")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        startAdapter();
+
+        for (int i = 0; i < 3; i++) {
+            publish("biobank/readings/DEVICE-1" , "{\"temperature\":2" + i + ".0,\"time\":\"2025-01-09T07:0" + i + ":00\"}");
+        }
+        verify(temperatureRecordService , timeout(5000)).processRecords(anyList());
+        for (int i = 0; i < 3; i++) {
+            publish("biobank/readings/DEVICE-1" , "{\"temperature\":3" + i + ".0,\"time\":\"2025-01-09T07:1" + i + ":00\"}");
+        }
+
+        verify(temperatureRecordService , timeout(10000).times(2)).processRecords(argThat(records ->
+                records.stream().anyMatch(record -> record.getTemperature() == 20.0)));
+    }
+
+    /**
+     * Checks a partial batch is processed by the periodic flush.
+     */
+    @Test
+    void testFlushPartialBatch() throws Exception {
+        when(temperatureRecordService.processRecords(anyList())).thenReturn(Map.of());
+        startAdapter();
+
+        publish("biobank/readings/DEVICE-1" , "{\"temperature\":20.5,\"time\":\"2025-01-09T07:00:00\"}");
+        verify(temperatureRecordService , after(500).never()).processRecords(anyList());
+
+        adapter.flush();
+        verify(temperatureRecordService).processRecords(argThat(records -> records.size() == 1));
+    }
+
+    /**
+     * Checks payloads that are not JSON readings are rejected.
+     */
+    @Test
+    void testDecodeMalformed() {
+        assertNull(adapter.decode("biobank/readings/DEVICE-1" , "not json".getBytes(StandardCharsets.UTF_8)));
+        assertNull(adapter.decode("biobank/readings/DEVICE-1" , "20.5".getBytes(StandardCharsets.UTF_8)));
+        assertNull(adapter.decode("biobank/readings/DEVICE-1" , "[{\"temperature\":20.5}, 3]".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testSharedSubscriptionTopicFilter() {
+        assertEquals("biobank/readings/+" , MqttIngestionAdapter.topicFilter("biobank/readings/+" , ""));
+        assertEquals("$share/ingest/biobank/readings/+" , MqttIngestionAdapter.topicFilter("biobank/readings/+" , "ingest"));
+    }
+
+    private MqttIngestionAdapter newAdapter() {
+        return new MqttIngestionAdapter(temperatureRecordService , new ObjectMapper() , new SimpleMeterRegistry() ,
+                brokerUrl , "ingest-test" , "" , "" , "biobank/readings/+" , "" , 1 , 3 , 100);
+    }
+
+    private void startAdapter() throws InterruptedException {
+        adapter.start();
+        // the subscription is made once connected
+        long deadline = System.currentTimeMillis() + 5000;
+        while (broker.listConnectedClients().stream().noneMatch(c -> c.getClientID().equals("ingest-test"))) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Adapter did not connect");
+            }
+            Thread.sleep(20);
+        }
+        Thread.sleep(200);
+    }
+
+    private void publish(String topic , String payload) throws Exception {
+        publisher.publish(topic , payload.getBytes(StandardCharsets.UTF_8) , 1 , false);
+    }
+
+}
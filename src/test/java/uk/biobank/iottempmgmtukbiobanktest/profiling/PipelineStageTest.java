@@ -0,0 +1,74 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PipelineStage}, verifying that stages add up in the {@code Server-Timing}
+ * header of the current request and are committed as Flight Recorder events while recording.
+ */
+class PipelineStageTest {
+
+    /**
+     * Runs stages inside a request and checks repeated stages are summed and counted,
+     * and that nothing is collected once the request is closed.
+     */
+    @Test
+    void testStagesAddUpInServerTimingHeader() {
+        ServerTiming.open();
+        try {
+            try (PipelineStage ignored = PipelineStage.begin("validate")) {
+                assertNotNull(ignored);
+            }
+            for (int i = 0; i < 3; i++) {
+                try (PipelineStage ignored = PipelineStage.begin("db" , "TemperatureRecordRepository.findAll")) {
+                    assertNotNull(ignored);
+                }
+            }
+
+            String header = ServerTiming.header();
+            assertTrue(header.matches("validate;dur=\\d+\\.\\d{2}, db;desc=\"3 calls\";dur=\\d+\\.\\d{2}, app;dur=\\d+\\.\\d{2}") , header);
+        } finally {
+            ServerTiming.close();
+        }
+
+        try (PipelineStage ignored = PipelineStage.begin("validate")) {
+            assertNotNull(ignored);
+        }
+        assertNull(ServerTiming.header());
+    }
+
+    /**
+     * Records a stage with the event enabled and reads it back from the dumped recording.
+     */
+    @Test
+    void testStageCommittedAsFlightRecorderEvent(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("stages.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("uk.biobank.Stage");
+            recording.start();
+            try (PipelineStage stage = PipelineStage.begin("db" , "TemperatureRecordRepository.saveAll")) {
+                stage.records(500);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("uk.biobank.Stage"))
+                .toList();
+        assertEquals(1 , events.size());
+        assertEquals("db" , events.get(0).getString("stage"));
+        assertEquals("TemperatureRecordRepository.saveAll" , events.get(0).getString("detail"));
+        assertEquals(500 , events.get(0).getInt("records"));
+    }
+
+}
@@ -0,0 +1,78 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Assertions bounding the JDBC statements a piece of code runs, so a per-row query or N+1 added to
+ * an endpoint fails the build. Counts come from the proxied data source, through {@link ServerTiming}.
+ * <pre>{@code
+ * mockMvc.perform(get("/api/v1/temperatureRecord/all"))
+ *         .andExpect(StatementCount.atMost(2));
+ *
+ * StatementCount.assertAtMost(1 , () -> temperatureRecordWriter.write(batch));
+ * }</pre>
+ */
+public final class StatementCount {
+
+    private static final Pattern SQL_ENTRY = Pattern.compile("(?:^|, )sql;desc=\"(\\d+) statements\"");
+
+    private StatementCount() {
+    } // Prevent instantiation
+
+    /**
+     * Matches a response whose request ran at most {@code max} statements, read from its
+     * {@code Server-Timing} header.
+     *
+     * @param max the statement budget of the endpoint
+     * @return the matcher
+     */
+    public static ResultMatcher atMost(int max) {
+        return result -> {
+            String header = result.getResponse().getHeader(ServerTiming.HEADER);
+            assertNotNull(header , "Response has no " + ServerTiming.HEADER + " header");
+            Matcher matcher = SQL_ENTRY.matcher(header);
+            int count = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+            assertTrue(count <= max , () -> "Expected at most " + max + " statements but the request ran " + count + ": " + header);
+        };
+    }
+
+    /**
+     * Runs an action outside a request and fails if it ran more than {@code max} statements.
+     *
+     * @param max    the statement budget of the action
+     * @param action the action
+     * @return the result of the action
+     */
+    public static <T> T assertAtMost(int max , Supplier<T> action) {
+        ServerTiming.open();
+        try {
+            T result = action.get();
+            ServerTiming.Statements statements = ServerTiming.statements();
+            assertTrue(statements.count() <= max , () -> "Expected at most " + max + " statements but ran " + statements.count()
+                    + ", slowest " + statements.slowestMillis() + " ms: " + statements.slowestSql());
+            return result;
+        } finally {
+            ServerTiming.close();
+        }
+    }
+
+    /**
+     * Runs an action outside a request and fails if it ran more than {@code max} statements.
+     *
+     * @param max    the statement budget of the action
+     * @param action the action
+     */
+    public static void assertAtMost(int max , Runnable action) {
+        assertAtMost(max , () -> {
+            action.run();
+            return null;
+        });
+    }
+
+}
@@ -0,0 +1,98 @@
+package uk.biobank.iottempmgmtukbiobanktest.profiling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+import uk.biobank.iottempmgmtukbiobanktest.config.DataSourceProxyConfig;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link StatementRecorder} behind the proxied data source, verifying that the
+ * statements of a request are counted, reported per endpoint and bounded by {@link StatementCount}.
+ */
+class StatementRecorderTest {
+
+    /**
+     * Runs statements through a proxied mock data source inside a request and checks the
+     * Server-Timing header, the per-endpoint summary and the global counter.
+     */
+    @Test
+    void testStatementsCountedPerRequest() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StatementRecorder recorder = new StatementRecorder(registry , 200 , 25);
+        DataSource dataSource = proxiedDataSource(recorder);
+
+        ServerTiming.open();
+        try {
+            for (int i = 0; i < 3; i++) {
+                execute(dataSource , "select count(*) from temperature_records");
+            }
+            assertTrue(ServerTiming.header().contains("sql;desc=\"3 statements\"") , ServerTiming.header());
+
+            MockHttpServletRequest request = new MockHttpServletRequest("GET" , "/api/v1/temperatureRecord/all");
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE , "/api/v1/temperatureRecord/all");
+            recorder.requestCompleted(request , ServerTiming.statements());
+        } finally {
+            ServerTiming.close();
+        }
+
+        assertEquals(3 , registry.get("db.statements.executed").counter().count());
+        assertEquals(3 , registry.get("http.server.requests.statements").tag("uri" , "/api/v1/temperatureRecord/all").summary().totalAmount());
+    }
+
+    /**
+     * Checks that exceeding a statement budget fails with the offending statement,
+     * and that statements outside a request are counted globally only.
+     */
+    @Test
+    void testStatementBudgetExceeded() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DataSource dataSource = proxiedDataSource(new StatementRecorder(registry , 200 , 25));
+
+        StatementCount.assertAtMost(1 , () -> execute(dataSource , "select 1"));
+        AssertionError error = assertThrows(AssertionError.class , () -> StatementCount.assertAtMost(1 , () -> {
+            execute(dataSource , "select 1");
+            execute(dataSource , "insert into temperature_records values (?)");
+        }));
+        assertTrue(error.getMessage().contains("ran 2") , error.getMessage());
+
+        execute(dataSource , "select 1");
+        assertNull(ServerTiming.statements());
+        assertEquals(4 , registry.get("db.statements.executed").counter().count());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataSource proxiedDataSource(StatementRecorder recorder) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+
+        ObjectProvider<StatementRecorder> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(recorder);
+        BeanPostProcessor postProcessor = DataSourceProxyConfig.dataSourceProxyPostProcessor(provider);
+        return (DataSource) postProcessor.postProcessAfterInitialization(dataSource , "dataSource");
+    }
+
+    private static void execute(DataSource dataSource , String sql) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.execute();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeviceGapsDTO;
+import uk.biobank.iottempmgmtukbiobanktest.dto.GapDTO;
+import uk.biobank.iottempmgmtukbiobanktest.dto.GapReportDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.DeviceSamplingInterval;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.DeviceSamplingIntervalRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link GapAnalyzer}, verifying raw rows and chunks are merged into one pass and
+ * missing readings are reported as run-length encoded ranges per device.
+ */
+class GapAnalyzerTest {
+
+    private static final LocalDateTime START = LocalDate.now().minusDays(2).atStartOfDay();
+    private static final LocalDateTime END = START.plusMinutes(10);
+
+    private final TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+    private final TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+    private final DeviceSamplingIntervalRepository intervalRepository = mock(DeviceSamplingIntervalRepository.class);
+    private final GapAnalyzer gapAnalyzer = new GapAnalyzer(recordRepository , chunkRepository , intervalRepository ,
+            mock(PlatformTransactionManager.class) , 60 , 1.5 , 31 , 90);
+
+    /**
+     * Analyzes a fleet of three devices: one with a raw run and a chunk interleaved around two gaps,
+     * one reporting every minute, and one with an interval set but silent for the whole range.
+     */
+    @Test
+    void testFindsGapsAcrossTiers() {
+        DeviceSamplingInterval interval = new DeviceSamplingInterval();
+        interval.setDeviceName("EF789");
+        interval.setIntervalSeconds(120);
+        when(intervalRepository.findAll()).thenReturn(List.of(interval));
+        when(recordRepository.findDeviceNamesBetween(START , END)).thenReturn(List.of("AB123" , "CD456"));
+        when(chunkRepository.findDeviceNamesOverlapping(START , END)).thenReturn(List.of("AB123"));
+
+        // AB123: minutes 0, 1 and 2 compacted (with 0 retransmitted raw), 6 and 7 raw, nothing from 8
+        when(recordRepository.streamReadingTimesByDeviceName(eq("AB123") , any() , any()))
+                .thenAnswer(invocation -> Stream.of(START , START.plusMinutes(6) , START.plusMinutes(7)));
+        when(chunkRepository.streamTimestampsByDeviceName(eq("AB123") , any() , any()))
+                .thenAnswer(invocation -> Stream.<Object[]>of(chunk(START.minusMinutes(1) , START , START.plusMinutes(1) , START.plusMinutes(2))));
+        when(recordRepository.streamReadingTimesByDeviceName(eq("CD456") , any() , any()))
+                .thenAnswer(invocation -> Stream.iterate(START , time -> time.isBefore(END) , time -> time.plusMinutes(1)).map(Object.class::cast));
+        when(chunkRepository.streamTimestampsByDeviceName(eq("CD456") , any() , any())).thenAnswer(invocation -> Stream.empty());
+        when(recordRepository.streamReadingTimesByDeviceName(eq("EF789") , any() , any())).thenAnswer(invocation -> Stream.empty());
+        when(chunkRepository.streamTimestampsByDeviceName(eq("EF789") , any() , any())).thenAnswer(invocation -> Stream.empty());
+
+        GapReportDTO report = gapAnalyzer.analyze(null , DateUtil.localDateTimeToString(START) , DateUtil.localDateTimeToString(END));
+
+        assertEquals(3 , report.getDevicesAnalyzed());
+        assertEquals(List.of("AB123" , "EF789") , report.getDevices().stream().map(DeviceGapsDTO::getDeviceName).toList());
+
+        DeviceGapsDTO ab123 = report.getDevices().get(0);
+        assertEquals(5 , ab123.getReadings());
+        assertEquals(List.of(new GapDTO(START.plusMinutes(3) , START.plusMinutes(6) , 3) ,
+                new GapDTO(START.plusMinutes(8) , END , 2)) , ab123.getGaps());
+
+        DeviceGapsDTO ef789 = report.getDevices().get(1);
+        assertEquals(120 , ef789.getIntervalSeconds());
+        assertEquals(List.of(new GapDTO(START , END , 5)) , ef789.getGaps());
+        assertEquals(10 , report.getMissedReadings());
+    }
+
+    /**
+     * Checks invalid ranges are rejected and ranges past the raw retention are clamped to it.
+     */
+    @Test
+    void testRangeValidation() {
+        assertThrows(GeneralException.class , () -> gapAnalyzer.analyze("AB123" , "yesterday" , "2025-01-09T07:00:00"));
+        assertThrows(GeneralException.class , () -> gapAnalyzer.analyze("AB123" , "2025-01-09T08:00:00" , "2025-01-09T07:00:00"));
+        assertThrows(GeneralException.class , () -> gapAnalyzer.analyze("AB123" , "2025-01-01T00:00:00" , "2025-03-01T00:00:00"));
+
+        LocalDateTime expired = LocalDate.now().minusDays(200).atStartOfDay();
+        GapReportDTO report = gapAnalyzer.analyze("AB123" , DateUtil.localDateTimeToString(expired) ,
+                DateUtil.localDateTimeToString(expired.plusDays(1)));
+        assertEquals(LocalDate.now().minusDays(90).atStartOfDay() , report.getStart());
+        assertTrue(report.getDevices().isEmpty());
+        verifyNoInteractions(recordRepository , chunkRepository);
+    }
+
+    private static Object[] chunk(LocalDateTime... times) {
+        long[] epochMillis = new long[times.length];
+        for (int i = 0; i < times.length; i++) {
+            epochMillis[i] = DateUtil.localDateTimeToEpochMilli(times[i]);
+        }
+        return new Object[]{times.length , TemperatureChunkCodec.encodeTimestamps(epochMillis)};
+    }
+
+}
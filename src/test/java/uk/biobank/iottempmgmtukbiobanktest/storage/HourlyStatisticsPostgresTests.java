@@ -0,0 +1,165 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import uk.biobank.iottempmgmtukbiobanktest.config.PostgresTestConfig;
+import uk.biobank.iottempmgmtukbiobanktest.dto.RecomputeRunDTO;
+import uk.biobank.iottempmgmtukbiobanktest.dto.TemperatureRecordDTO;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.PendingReading;
+import uk.biobank.iottempmgmtukbiobanktest.ingestion.TemperatureRecordWriter;
+import uk.biobank.iottempmgmtukbiobanktest.service.TemperatureRecordService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the hourly average against a Postgres container, see {@link PostgresTestConfig}, checking it
+ * reads a recomputed hour from its statistic until a late reading arrives in the hour, even while
+ * the hour is being recomputed.
+ */
+@SpringBootTest(properties = PostgresTestConfig.PROFILE)
+@Import(PostgresTestConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+public class HourlyStatisticsPostgresTests {
+
+    // far from the readings of the other tests
+    private static final LocalDate DAY = LocalDate.of(2020 , 4 , 1);
+
+    @Autowired
+    private TemperatureRecordService temperatureRecordService;
+
+    @Autowired
+    private HourlyStatisticsRecompute hourlyStatisticsRecompute;
+
+    @Autowired
+    private TemperatureRecordWriter temperatureRecordWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Recomputes an hour, changes its readings behind the statistic's back to tell which one the
+     * average reads, then writes a late reading into the hour.
+     */
+    @Test
+    public void testAverageReadsRecomputedHour() throws InterruptedException {
+        String deviceName = "STATISTICS-" + UUID.randomUUID();
+        insertReading(deviceName , DAY.atTime(7 , 10) , -80.0);
+        insertReading(deviceName , DAY.atTime(7 , 20) , -70.0);
+        awaitFinished(hourlyStatisticsRecompute.start(DAY.atStartOfDay().toString() , DAY.plusDays(1).atStartOfDay().toString()).getRunId());
+
+        jdbcTemplate.update("update temperature_records set temperature = 0 where device_name = ?" , deviceName);
+        assertEquals(-75.0 , temperatureRecordService.calculateAverageTemperature(deviceName , DAY.toString() , 7));
+
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setLocation("ROOM-1");
+        record.setTemperature(-60.0);
+        assertEquals(1 , temperatureRecordWriter.write(List.of(new PendingReading(record , DAY.atTime(7 , 30)))).size());
+
+        assertEquals(0 , jdbcTemplate.queryForObject(
+                "select count(*) from temperature_hourly_statistics where device_name = ?" , Integer.class , deviceName));
+        assertEquals(-20.0 , temperatureRecordService.calculateAverageTemperature(deviceName , DAY.toString() , 7));
+    }
+
+    /**
+     * Averages an hour with a reading on the next hour, before and after recomputing it, checking
+     * both reads leave the reading to the next hour.
+     */
+    @Test
+    public void testAverageExcludesNextHour() throws InterruptedException {
+        String deviceName = "STATISTICS-" + UUID.randomUUID();
+        insertReading(deviceName , DAY.atTime(9 , 0) , -80.0);
+        insertReading(deviceName , DAY.atTime(10 , 0) , -60.0);
+        assertEquals(-80.0 , temperatureRecordService.calculateAverageTemperature(deviceName , DAY.toString() , 9));
+
+        awaitFinished(hourlyStatisticsRecompute.start(DAY.atStartOfDay().toString() , DAY.plusDays(1).atStartOfDay().toString()).getRunId());
+        assertEquals(-80.0 , temperatureRecordService.calculateAverageTemperature(deviceName , DAY.toString() , 9));
+        assertEquals(-60.0 , temperatureRecordService.calculateAverageTemperature(deviceName , DAY.toString() , 10));
+    }
+
+    /**
+     * Holds the device lock of a recompute task while it inserts the statistic of an hour, and writes a
+     * late reading into the hour meanwhile: the writer waits for the task to commit, then deletes the
+     * statistic, which does not count the reading.
+     */
+    @Test
+    public void testLateReadingWaitsForRecompute() throws Exception {
+        String deviceName = "STATISTICS-" + UUID.randomUUID();
+        TemperatureRecordDTO record = new TemperatureRecordDTO();
+        record.setDeviceName(deviceName);
+        record.setLocation("ROOM-1");
+        record.setTemperature(-60.0);
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> task = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForObject("select count(pg_advisory_xact_lock_shared(?, hashtext(?)))" , Long.class ,
+                        HourlyStatisticsRecompute.DEVICE_LOCK_CLASS , deviceName);
+                jdbcTemplate.update("""
+                                insert into temperature_hourly_statistics
+                                    (device_name, location, bucket_start, reading_count, temperature_sum, min_temperature, max_temperature, computed_at)
+                                values (?, ?, ?, 1, -80, -80, -80, ?)
+                                """ , deviceName , "ROOM-1" , DAY.atTime(11 , 0) , LocalDateTime.now());
+                inserted.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(inserted.await(10 , TimeUnit.SECONDS));
+
+            Future<List<PendingReading>> write = executor.submit(() -> temperatureRecordWriter.write(List.of(new PendingReading(record , DAY.atTime(11 , 30)))));
+            Thread.sleep(500);
+            assertFalse(write.isDone());
+
+            commit.countDown();
+            task.get(10 , TimeUnit.SECONDS);
+            assertEquals(1 , write.get(10 , TimeUnit.SECONDS).size());
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+
+        assertEquals(0 , jdbcTemplate.queryForObject(
+                "select count(*) from temperature_hourly_statistics where device_name = ?" , Integer.class , deviceName));
+        assertEquals(-60.0 , temperatureRecordService.calculateAverageTemperature(deviceName , DAY.toString() , 11));
+    }
+
+    private void insertReading(String deviceName , LocalDateTime time , double temperature) {
+        jdbcTemplate.update("insert into temperature_records (device_name, location, temperature, time, created_at) values (?, ?, ?, ?, ?)" ,
+                deviceName , "ROOM-1" , temperature , time , LocalDateTime.now());
+    }
+
+    private void awaitFinished(String runId) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            RecomputeRunDTO run = hourlyStatisticsRecompute.find(runId).orElseThrow();
+            if (!run.isRunning() && run.getTasksPending() == 0) {
+                assertEquals(0 , run.getTasksFailed() , run.getLastError());
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Recompute run " + runId + " did not finish");
+    }
+
+}
@@ -0,0 +1,227 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.RecomputeRunDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.RecomputeTask;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.RecomputeTaskRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyStatisticRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.RecomputeTaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link HourlyStatisticsRecompute}, verifying runs are planned as device range by
+ * time range tasks, and that a task replaces the statistics of its devices from both storage tiers
+ * and records its outcome.
+ */
+class HourlyStatisticsRecomputeTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025 , 1 , 9 , 0 , 0);
+
+    private final TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+    private final TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+    private final TemperatureHourlyStatisticRepository statisticRepository = mock(TemperatureHourlyStatisticRepository.class);
+    private final RecomputeTaskRepository taskRepository = mock(RecomputeTaskRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<Object[]> inserted = new ArrayList<>();
+    private final HourlyStatisticsRecompute recompute = new HourlyStatisticsRecompute(recordRepository , chunkRepository , statisticRepository ,
+            taskRepository , jdbcTemplate , new TransactionTemplate(mock(PlatformTransactionManager.class)) , 100 , 7 , 1 , false , 4 , 4 , 10);
+
+    @AfterEach
+    void tearDown() {
+        recompute.stop();
+    }
+
+    /**
+     * Plans 250 devices over ten days as three device ranges by two time ranges, the last ones shorter.
+     */
+    @Test
+    void testPlan() {
+        List<String> devices = IntStream.range(0 , 250).mapToObj(i -> String.format("DEVICE-%03d" , i)).toList();
+
+        List<RecomputeTask> tasks = recompute.plan("run" , devices , DAY , DAY.plusDays(10));
+
+        assertEquals(6 , tasks.size());
+        assertEquals(List.of("DEVICE-000" , "DEVICE-000" , "DEVICE-100" , "DEVICE-100" , "DEVICE-200" , "DEVICE-200") ,
+                tasks.stream().map(RecomputeTask::getDeviceFrom).toList());
+        assertEquals("DEVICE-249" , tasks.get(5).getDeviceTo());
+        assertEquals(DAY.plusDays(7) , tasks.get(0).getRangeEnd());
+        assertEquals(DAY.plusDays(7) , tasks.get(1).getRangeStart());
+        assertEquals(DAY.plusDays(10) , tasks.get(1).getRangeEnd());
+        assertTrue(tasks.stream().allMatch(task -> task.getStatus() == RecomputeTaskStatus.PENDING && task.getRunId().equals("run")));
+    }
+
+    @Test
+    void testParallelismCappedByConnectionPool() {
+        assertEquals(4 , recompute.getParallelism());
+        assertEquals(6 , HourlyStatisticsRecompute.parallelism(16 , 10 , 4));
+        assertEquals(1 , HourlyStatisticsRecompute.parallelism(8 , 3 , 4));
+        assertEquals(Math.min(Runtime.getRuntime().availableProcessors() , 96) , HourlyStatisticsRecompute.parallelism(0 , 100 , 4));
+    }
+
+    /**
+     * Recomputes a device with readings compacted at 07:00, 07:30 and 08:10 (and one the day before),
+     * and raw rows duplicating 07:30, at 08:20 and without a temperature: two hours are written in
+     * batches of one, and the task is marked done with its counts.
+     */
+    @Test
+    void testTaskReplacesStatistics() {
+        RecomputeTask task = task(1L);
+        stubTask(task);
+        recordInserts();
+        when(recordRepository.findDeviceNamesInRange("AB123" , "AB123")).thenReturn(List.of("AB123"));
+        when(chunkRepository.streamReadingsByDeviceName("AB123" , DAY , DAY.plusDays(1))).thenAnswer(invocation -> Stream.<Object[]>of(
+                chunk("ROOM-1" , new LocalDateTime[]{DAY.minusHours(1) , DAY.plusHours(7) , DAY.plusHours(7).plusMinutes(30) , DAY.plusHours(8).plusMinutes(10)} ,
+                        new double[]{-50.0 , -80.0 , -78.0 , -79.0})));
+        when(recordRepository.streamReadingsByDeviceName("AB123" , DAY , DAY.plusDays(1))).thenAnswer(invocation -> Stream.of(
+                new Object[]{"ROOM-1" , DAY.plusHours(7).plusMinutes(30) , -10.0} ,
+                new Object[]{"ROOM-2" , DAY.plusHours(8).plusMinutes(20) , -81.0} ,
+                new Object[]{"ROOM-2" , DAY.plusHours(8).plusMinutes(30) , null}));
+
+        recompute.runTask(task);
+
+        verify(statisticRepository).deleteByDeviceRangeAndBucketStartRange("AB123" , "AB123" , DAY , DAY.plusDays(1));
+        verify(jdbcTemplate , times(2)).batchUpdate(anyString() , anyList());
+        assertEquals(2 , inserted.size());
+        assertArrayEquals(new Object[]{"AB123" , "ROOM-1" , DAY.plusHours(7) , 2L , -158.0 , -80.0 , -78.0} , head(inserted.get(0)));
+        assertArrayEquals(new Object[]{"AB123" , "ROOM-2" , DAY.plusHours(8) , 2L , -160.0 , -81.0 , -79.0} , head(inserted.get(1)));
+
+        assertEquals(RecomputeTaskStatus.DONE , task.getStatus());
+        assertEquals(4 , task.getReadings());
+        assertEquals(2 , task.getBuckets());
+        assertNotNull(task.getFinishedAt());
+        verify(taskRepository).save(task);
+    }
+
+    @Test
+    void testTaskLockedElsewhereSkipped() {
+        RecomputeTask task = task(1L);
+        when(taskRepository.tryLock(HourlyStatisticsRecompute.LOCK_CLASS , 1)).thenReturn(false);
+
+        recompute.runTask(task);
+
+        verifyNoInteractions(statisticRepository , jdbcTemplate);
+        assertEquals(RecomputeTaskStatus.PENDING , task.getStatus());
+    }
+
+    @Test
+    void testFailedTaskRecorded() {
+        RecomputeTask task = task(1L);
+        stubTask(task);
+        when(recordRepository.findDeviceNamesInRange("AB123" , "AB123")).thenThrow(new QueryTimeoutException("statement timeout"));
+
+        recompute.runTask(task);
+
+        assertEquals(RecomputeTaskStatus.FAILED , task.getStatus());
+        assertEquals("statement timeout" , task.getError());
+        verify(taskRepository).save(task);
+    }
+
+    /**
+     * Starts a run over two devices and two days, planned as four tasks, and checks each is run once.
+     */
+    @Test
+    void testStartRunsEveryTask() {
+        when(recordRepository.findAllDeviceNames()).thenReturn(List.of("AB123" , "CD456"));
+        HourlyStatisticsRecompute dailyTasks = new HourlyStatisticsRecompute(recordRepository , chunkRepository , statisticRepository ,
+                taskRepository , jdbcTemplate , new TransactionTemplate(mock(PlatformTransactionManager.class)) , 1 , 1 , 1000 , false , 4 , 4 , 10);
+        List<RecomputeTask> saved = new ArrayList<>();
+        when(taskRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<RecomputeTask> tasks = invocation.getArgument(0);
+            for (RecomputeTask task : tasks) {
+                task.setId((long) saved.size() + 1);
+                saved.add(task);
+            }
+            return tasks;
+        });
+        when(taskRepository.findByRunIdAndStatusNotOrderById(anyString() , eq(RecomputeTaskStatus.DONE))).thenAnswer(invocation -> List.copyOf(saved));
+        when(taskRepository.tryLock(anyInt() , anyInt())).thenReturn(true);
+        when(taskRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(saved.get(((Long) invocation.getArgument(0)).intValue() - 1)));
+        when(recordRepository.findDeviceNamesInRange(anyString() , anyString())).thenReturn(List.of());
+
+        try {
+            RecomputeRunDTO run = dailyTasks.start("2025-01-09T06:00:00" , "2025-01-10T01:00:00");
+
+            assertEquals(4 , run.getTasks());
+            assertEquals(DAY , run.getStart());
+            assertEquals(DAY.plusDays(2) , run.getEnd());
+            ArgumentCaptor<LocalDateTime> starts = ArgumentCaptor.forClass(LocalDateTime.class);
+            verify(statisticRepository , timeout(5000).times(4)).deleteByDeviceRangeAndBucketStartRange(anyString() , anyString() , starts.capture() , any());
+            assertEquals(2 , starts.getAllValues().stream().filter(DAY::equals).count());
+            verify(taskRepository , timeout(5000).times(4)).save(any());
+            assertTrue(saved.stream().allMatch(task -> task.getStatus() == RecomputeTaskStatus.DONE));
+        } finally {
+            dailyTasks.stop();
+        }
+    }
+
+    @Test
+    void testValidation() {
+        assertThrows(GeneralException.class , () -> recompute.start("yesterday" , "2025-01-09T07:00:00"));
+        assertThrows(GeneralException.class , () -> recompute.start("2025-01-09T08:00:00" , "2025-01-09T07:00:00"));
+        when(taskRepository.summarizeRun("unknown")).thenReturn(List.of());
+        assertThrows(GeneralException.class , () -> recompute.resume("unknown"));
+        verifyNoInteractions(recordRepository);
+    }
+
+    private RecomputeTask task(long id) {
+        RecomputeTask task = recompute.plan("run" , List.of("AB123") , DAY , DAY.plusDays(1)).get(0);
+        task.setId(id);
+        return task;
+    }
+
+    private void stubTask(RecomputeTask task) {
+        when(taskRepository.tryLock(HourlyStatisticsRecompute.LOCK_CLASS , task.getId().intValue())).thenReturn(true);
+        when(taskRepository.findById(task.getId())).thenReturn(Optional.of(task));
+    }
+
+    // the batch is cleared once written, keep a copy of its rows
+    private void recordInserts() {
+        when(jdbcTemplate.batchUpdate(anyString() , anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            inserted.addAll(rows);
+            return new int[rows.size()];
+        });
+    }
+
+    // the statistic without its computation time
+    private static Object[] head(Object[] row) {
+        return Arrays.copyOf(row , 7);
+    }
+
+    private static Object[] chunk(String location , LocalDateTime[] times , double[] temperatures) {
+        long[] epochMillis = new long[times.length];
+        for (int i = 0; i < times.length; i++) {
+            epochMillis[i] = DateUtil.localDateTimeToEpochMilli(times[i]);
+        }
+        return new Object[]{location , times.length , TemperatureChunkCodec.encodeTimestamps(epochMillis) ,
+                TemperatureChunkCodec.encodeValues(temperatures)};
+    }
+
+}
@@ -0,0 +1,87 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.LocationHeatmapDTO;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link LocationHeatmap}, verifying the grouped rows and the compacted chunks of a
+ * location are laid out as one device by bucket matrix.
+ */
+class LocationHeatmapTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025 , 1 , 9 , 6 , 0);
+
+    private final TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+    private final TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+    private final LocationHeatmap locationHeatmap = new LocationHeatmap(recordRepository , chunkRepository , 31);
+
+    /**
+     * Builds a three-hour heatmap of two devices: FREEZER-2 from grouped rows, FREEZER-1 from a
+     * chunk with a reading before the range and a grouped row for the bucket it shares.
+     */
+    @Test
+    void testBuildsMatrixAcrossTiers() {
+        LocalDateTime end = START.plusHours(3);
+        when(recordRepository.aggregateByLocationAndBucket("ROOM-1" , START , end , 3600)).thenReturn(List.of(
+                new Object[]{"FREEZER-2" , 0 , 2L , -160.0 , -79.5} ,
+                new Object[]{"FREEZER-2" , 2 , 1L , -81.0 , -81.0} ,
+                new Object[]{"FREEZER-1" , 1 , 1L , -70.0 , -70.0}));
+        when(chunkRepository.findReadingsByLocationOverlapping("ROOM-1" , START.toLocalDate() , end.toLocalDate() , START , end))
+                .thenReturn(List.<Object[]>of(chunk("FREEZER-1" , new LocalDateTime[]{START.minusMinutes(1) , START.plusMinutes(10) , START.plusMinutes(70)} ,
+                        new double[]{-50.0 , -80.0 , -76.0})));
+
+        LocationHeatmapDTO heatmap = locationHeatmap.build("ROOM-1" , "2025-01-09T06:00:00" , "2025-01-09T09:00:00" , 1);
+
+        assertEquals(List.of("FREEZER-1" , "FREEZER-2") , heatmap.getDevices());
+        assertEquals(List.of(START , START.plusHours(1) , START.plusHours(2)) , heatmap.getBuckets());
+        assertArrayEquals(new Double[]{-80.0 , -73.0 , null , -80.0 , null , -81.0} , heatmap.getAverages());
+        assertArrayEquals(new Double[]{-80.0 , -70.0 , null , -79.5 , null , -81.0} , heatmap.getMaxima());
+        assertArrayEquals(new long[]{1 , 2 , 0 , 2 , 0 , 1} , heatmap.getReadingCounts());
+    }
+
+    /**
+     * Checks a range starting within an hour is widened to whole buckets.
+     */
+    @Test
+    void testRangeWidenedToWholeBuckets() {
+        LocationHeatmapDTO heatmap = locationHeatmap.build("ROOM-1" , "2025-01-09T06:30:00" , "2025-01-09T11:00:00" , 4);
+
+        assertEquals(START , heatmap.getStart());
+        assertEquals(START.plusHours(8) , heatmap.getEnd());
+        assertEquals(List.of(START , START.plusHours(4)) , heatmap.getBuckets());
+        assertTrue(heatmap.getDevices().isEmpty());
+        assertEquals(0 , heatmap.getAverages().length);
+        verify(recordRepository).aggregateByLocationAndBucket("ROOM-1" , START , START.plusHours(8) , 4 * 3600);
+    }
+
+    @Test
+    void testValidation() {
+        assertThrows(GeneralException.class , () -> locationHeatmap.build("" , "2025-01-09T06:00:00" , "2025-01-09T07:00:00" , 1));
+        assertThrows(GeneralException.class , () -> locationHeatmap.build("ROOM-1" , "today" , "2025-01-09T07:00:00" , 1));
+        assertThrows(GeneralException.class , () -> locationHeatmap.build("ROOM-1" , "2025-01-09T08:00:00" , "2025-01-09T07:00:00" , 1));
+        assertThrows(GeneralException.class , () -> locationHeatmap.build("ROOM-1" , "2025-01-01T00:00:00" , "2025-03-01T00:00:00" , 1));
+        assertThrows(GeneralException.class , () -> locationHeatmap.build("ROOM-1" , "2025-01-09T06:00:00" , "2025-01-09T07:00:00" , 25));
+        verifyNoInteractions(recordRepository , chunkRepository);
+    }
+
+    private static Object[] chunk(String deviceName , LocalDateTime[] times , double[] temperatures) {
+        long[] epochMillis = new long[times.length];
+        for (int i = 0; i < times.length; i++) {
+            epochMillis[i] = DateUtil.localDateTimeToEpochMilli(times[i]);
+        }
+        return new Object[]{deviceName , times.length , TemperatureChunkCodec.encodeTimestamps(epochMillis) ,
+                TemperatureChunkCodec.encodeValues(temperatures)};
+    }
+
+}
@@ -0,0 +1,147 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import uk.biobank.iottempmgmtukbiobanktest.config.PostgresTestConfig;
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeleteJobDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.DeleteJobStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link RecordDeletionJobs} against a Postgres container, see {@link PostgresTestConfig}, so the
+ * batches run the real modifying queries within their transactions.
+ */
+@SpringBootTest(properties = PostgresTestConfig.PROFILE)
+@Import(PostgresTestConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+public class RecordDeletionJobsPostgresTests {
+
+    // far from the readings of the other tests, a range delete spans every device
+    private static final LocalDate DAY = LocalDate.of(2020 , 3 , 1);
+
+    @Autowired
+    private RecordDeletionJobs recordDeletionJobs;
+
+    @Autowired
+    private TemperatureChunkRepository temperatureChunkRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Deletes a device with readings in every tier.
+     */
+    @Test
+    public void testDeleteByDeviceName() throws InterruptedException {
+        String deviceName = "DELETED-" + UUID.randomUUID();
+        insertReading(deviceName , DAY.atTime(7 , 40));
+        insertReading(deviceName , DAY.atTime(9 , 0));
+        insertChunk(deviceName , DAY.minusDays(1).atTime(7 , 0) , DAY.minusDays(1).atTime(7 , 15));
+        insertAggregate(deviceName , DAY.minusDays(2).atTime(8 , 0));
+        insertStatistic(deviceName , DAY.atTime(7 , 0));
+
+        DeleteJobDTO job = awaitFinished(recordDeletionJobs.deleteByDeviceName(deviceName).getJobId());
+
+        assertEquals(DeleteJobStatus.COMPLETED , job.getStatus() , job.getError());
+        assertEquals(2 , job.getReadingsDeleted());
+        assertEquals(1 , job.getChunksDeleted());
+        assertEquals(1 , job.getAggregatesDeleted());
+        assertEquals(1 , job.getStatisticsDeleted());
+        assertEquals(0 , countRows(deviceName));
+    }
+
+    /**
+     * Deletes a time range, trimming the chunk straddling its start and keeping the partial hours.
+     */
+    @Test
+    public void testDeleteBetween() throws InterruptedException {
+        String deviceName = "DELETED-" + UUID.randomUUID();
+        insertReading(deviceName , DAY.atTime(7 , 40));
+        insertReading(deviceName , DAY.atTime(9 , 45));
+        insertChunk(deviceName , DAY.atTime(7 , 0) , DAY.atTime(7 , 15) , DAY.atTime(7 , 45));
+        insertAggregate(deviceName , DAY.atTime(7 , 0));
+        insertAggregate(deviceName , DAY.atTime(8 , 0));
+
+        DeleteJobDTO job = awaitFinished(recordDeletionJobs.deleteBetween(DAY.atTime(7 , 30) , DAY.atTime(9 , 30)).getJobId());
+
+        assertEquals(DeleteJobStatus.COMPLETED , job.getStatus() , job.getError());
+        assertEquals(List.of(DAY.atTime(9 , 45)) , jdbcTemplate.queryForList(
+                "select time from temperature_records where device_name = ?" , LocalDateTime.class , deviceName));
+        TemperatureChunk chunk = temperatureChunkRepository.findAll().stream()
+                .filter(stored -> stored.getDeviceName().equals(deviceName)).findFirst().orElseThrow();
+        assertEquals(2 , chunk.getReadingCount());
+        assertEquals(DAY.atTime(7 , 15) , chunk.getEndTime());
+        assertEquals(List.of(DAY.atTime(7 , 0)) , jdbcTemplate.queryForList(
+                "select bucket_start from temperature_hourly_aggregates where device_name = ?" , LocalDateTime.class , deviceName));
+    }
+
+    private void insertReading(String deviceName , LocalDateTime time) {
+        jdbcTemplate.update("insert into temperature_records (device_name, location, temperature, time, created_at) values (?, ?, ?, ?, ?)" ,
+                deviceName , "ROOM-1" , -80.0 , time , LocalDateTime.now());
+    }
+
+    private void insertChunk(String deviceName , LocalDateTime... times) {
+        TreeMap<Long, Double> readings = new TreeMap<>();
+        for (LocalDateTime time : times) {
+            readings.put(DateUtil.localDateTimeToEpochMilli(time) , -80.0);
+        }
+        TemperatureChunk chunk = new TemperatureChunk();
+        chunk.setDeviceName(deviceName);
+        chunk.setLocation("ROOM-1");
+        chunk.setChunkDate(times[0].toLocalDate());
+        TemperatureChunks.encode(chunk , readings);
+        temperatureChunkRepository.save(chunk);
+    }
+
+    private void insertAggregate(String deviceName , LocalDateTime bucketStart) {
+        jdbcTemplate.update("""
+                insert into temperature_hourly_aggregates
+                    (device_name, location, bucket_start, reading_count, temperature_sum, min_temperature, max_temperature)
+                values (?, ?, ?, 1, -80, -80, -80)
+                """ , deviceName , "ROOM-1" , bucketStart);
+    }
+
+    private void insertStatistic(String deviceName , LocalDateTime bucketStart) {
+        jdbcTemplate.update("""
+                insert into temperature_hourly_statistics
+                    (device_name, location, bucket_start, reading_count, temperature_sum, min_temperature, max_temperature, computed_at)
+                values (?, ?, ?, 1, -80, -80, -80, ?)
+                """ , deviceName , "ROOM-1" , bucketStart , LocalDateTime.now());
+    }
+
+    private int countRows(String deviceName) {
+        Integer rows = jdbcTemplate.queryForObject("""
+                select (select count(*) from temperature_records where device_name = ?)
+                     + (select count(*) from temperature_chunks where device_name = ?)
+                     + (select count(*) from temperature_hourly_aggregates where device_name = ?)
+                     + (select count(*) from temperature_hourly_statistics where device_name = ?)
+                """ , Integer.class , deviceName , deviceName , deviceName , deviceName);
+        return rows == null ? 0 : rows;
+    }
+
+    private DeleteJobDTO awaitFinished(String jobId) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            DeleteJobDTO job = recordDeletionJobs.find(jobId).orElseThrow();
+            if (job.getStatus() != DeleteJobStatus.QUEUED && job.getStatus() != DeleteJobStatus.RUNNING) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Delete job " + jobId + " did not finish");
+    }
+
+}
@@ -0,0 +1,149 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.DeleteJobDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyAggregateRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyStatisticRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.DeleteJobStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link RecordDeletionJobs}, verifying deletes run as batches over every storage
+ * tier until nothing is left, and report their progress.
+ */
+class RecordDeletionJobsTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025 , 1 , 9);
+
+    private final TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+    private final TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+    private final TemperatureHourlyAggregateRepository aggregateRepository = mock(TemperatureHourlyAggregateRepository.class);
+    private final TemperatureHourlyStatisticRepository statisticRepository = mock(TemperatureHourlyStatisticRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final RecordDeletionJobs deletionJobs = new RecordDeletionJobs(recordRepository , chunkRepository , aggregateRepository ,
+            statisticRepository , new TransactionTemplate(transactionManager) , 500 , 0);
+
+    @AfterEach
+    void tearDown() {
+        deletionJobs.stop();
+    }
+
+    /**
+     * Deletes a device, checking every tier is deleted in batches, each in its own transaction, until
+     * a batch deletes nothing.
+     */
+    @Test
+    void testDeleteByDeviceName() throws InterruptedException {
+        when(recordRepository.deleteBatchByDeviceName("AB123" , 500)).thenReturn(500 , 500 , 120 , 0);
+        when(chunkRepository.deleteBatchByDeviceName("AB123" , 5)).thenReturn(3 , 0);
+        when(aggregateRepository.deleteBatchByDeviceName("AB123" , 500)).thenReturn(0);
+        when(statisticRepository.deleteBatchByDeviceName("AB123" , 500)).thenReturn(24 , 0);
+
+        DeleteJobDTO submitted = deletionJobs.deleteByDeviceName("AB123");
+        DeleteJobDTO job = awaitFinished(submitted.getJobId());
+
+        assertEquals(DeleteJobStatus.COMPLETED , job.getStatus());
+        assertEquals("device" , job.getScope());
+        assertEquals(1120 , job.getReadingsDeleted());
+        assertEquals(3 , job.getChunksDeleted());
+        assertEquals(0 , job.getAggregatesDeleted());
+        assertEquals(24 , job.getStatisticsDeleted());
+        assertEquals(9 , job.getBatches());
+        assertNotNull(job.getFinishedAt());
+        verify(transactionManager , times(9)).getTransaction(any());
+        verify(transactionManager , times(9)).commit(any());
+        verify(recordRepository , never()).findAll();
+    }
+
+    /**
+     * Deletes a time range, checking a chunk straddling its start is trimmed rather than deleted
+     * and only the aggregates of whole hours within the range are deleted, but the statistics of
+     * every hour it overlaps.
+     */
+    @Test
+    void testDeleteBetweenTrimsBoundaryChunks() throws InterruptedException {
+        LocalDateTime start = DAY.atTime(7 , 30);
+        LocalDateTime end = DAY.plusDays(1).atStartOfDay();
+
+        TemperatureChunk chunk = new TemperatureChunk();
+        chunk.setId(7L);
+        chunk.setDeviceName("AB123");
+        chunk.setReadingCount(3);
+        chunk.setTimestamps(TemperatureChunkCodec.encodeTimestamps(new long[]{
+                millis(DAY.atTime(7 , 0)) , millis(DAY.atTime(7 , 15)) , millis(DAY.atTime(7 , 45))}));
+        chunk.setTemperatures(TemperatureChunkCodec.encodeValues(new double[]{-80.0 , -79.0 , -78.0}));
+        when(chunkRepository.findOverlappingAfterId(eq(0L) , eq(start) , eq(end) , any(Limit.class))).thenReturn(List.of(chunk));
+        when(chunkRepository.findOverlappingAfterId(eq(7L) , any() , any() , any(Limit.class))).thenReturn(List.of());
+
+        DeleteJobDTO job = awaitFinished(deletionJobs.deleteBetween(start , end).getJobId());
+
+        assertEquals(DeleteJobStatus.COMPLETED , job.getStatus());
+        assertEquals(1 , job.getChunksTrimmed());
+        assertEquals(2 , chunk.getReadingCount());
+        assertEquals(DAY.atTime(7 , 15) , chunk.getEndTime());
+        assertEquals(List.of(millis(DAY.atTime(7 , 0)) , millis(DAY.atTime(7 , 15))) ,
+                List.copyOf(TemperatureChunks.decode(chunk).keySet()));
+        verify(chunkRepository).save(chunk);
+        verify(recordRepository).deleteBatchByTimeRange(start , end , 500);
+        verify(aggregateRepository).deleteBatchByBucketStartRange(DAY.atTime(8 , 0) , end , 500);
+        verify(statisticRepository).deleteBatchByBucketStartRange(DAY.atTime(7 , 0) , end , 500);
+    }
+
+    /**
+     * Checks a full wipe truncates the tables, and a failing job reports its error.
+     */
+    @Test
+    void testDeleteAllAndFailure() throws InterruptedException {
+        DeleteJobDTO wiped = awaitFinished(deletionJobs.deleteAll().getJobId());
+        assertEquals(DeleteJobStatus.COMPLETED , wiped.getStatus());
+        verify(recordRepository).truncate();
+        verify(chunkRepository).truncate();
+        verify(aggregateRepository).truncate();
+        verify(statisticRepository).truncate();
+
+        when(recordRepository.deleteBatchByLocation(any() , anyInt())).thenThrow(new QueryTimeoutException("statement timeout"));
+        DeleteJobDTO failed = awaitFinished(deletionJobs.deleteByLocation("Freezer 1").getJobId());
+        assertEquals(DeleteJobStatus.FAILED , failed.getStatus());
+        assertEquals("statement timeout" , failed.getError());
+        verify(chunkRepository , never()).deleteBatchByLocation(any() , anyInt());
+
+        assertTrue(deletionJobs.find("unknown").isEmpty());
+        verify(chunkRepository , never()).findOverlappingAfterId(anyLong() , any() , any() , any(Limit.class));
+    }
+
+    private DeleteJobDTO awaitFinished(String jobId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            DeleteJobDTO job = deletionJobs.find(jobId).orElseThrow();
+            if (job.getStatus() != DeleteJobStatus.QUEUED && job.getStatus() != DeleteJobStatus.RUNNING) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Delete job " + jobId + " did not finish");
+    }
+
+    private static long millis(LocalDateTime time) {
+        return DateUtil.localDateTimeToEpochMilli(time);
+    }
+
+}
@@ -0,0 +1,127 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.dto.RetentionStatusDTO;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyAggregateRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link RetentionJob}, verifying expired readings are rolled up into hourly
+ * aggregates before they are deleted, and that the batch size follows the database latency.
+ */
+class RetentionJobTest {
+
+    private static final LocalDateTime HOUR = LocalDate.now().minusDays(200).atTime(7 , 0);
+
+    /**
+     * Runs the job over expired raw rows and a chunk, checking every hour is rolled up once
+     * and the rolled up rows and chunk are deleted.
+     */
+    @Test
+    void testRollsUpBeforeDeleting() {
+        TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+        TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+        TemperatureHourlyAggregateRepository aggregateRepository = mock(TemperatureHourlyAggregateRepository.class);
+
+        when(recordRepository.findByTimeBefore(any() , any(Limit.class)))
+                .thenReturn(List.of(record(1L , HOUR , -80.0) , record(2L , HOUR.plusMinutes(30) , -79.0) , record(3L , HOUR.plusHours(1) , -78.0)))
+                .thenReturn(List.of());
+
+        TemperatureChunk chunk = new TemperatureChunk();
+        chunk.setDeviceName("CD456");
+        chunk.setLocation("Freezer 2");
+        chunk.setReadingCount(2);
+        chunk.setTimestamps(TemperatureChunkCodec.encodeTimestamps(new long[]{
+                DateUtil.localDateTimeToEpochMilli(HOUR) , DateUtil.localDateTimeToEpochMilli(HOUR.plusMinutes(1))}));
+        chunk.setTemperatures(TemperatureChunkCodec.encodeValues(new double[]{4.0 , 6.0}));
+        when(chunkRepository.findByChunkDateBefore(any() , any(Limit.class))).thenReturn(List.of(chunk)).thenReturn(List.of());
+
+        RetentionJob job = job(recordRepository , chunkRepository , aggregateRepository , 0);
+        job.run();
+
+        verify(aggregateRepository).addToBucket("AB123" , "Freezer 1" , HOUR , 2 , -159.0 , -80.0 , -79.0);
+        verify(aggregateRepository).addToBucket("AB123" , "Freezer 1" , HOUR.plusHours(1) , 1 , -78.0 , -78.0 , -78.0);
+        verify(aggregateRepository).addToBucket("CD456" , "Freezer 2" , HOUR , 2 , 10.0 , 4.0 , 6.0);
+        verify(recordRepository).deleteAllByIdInBatch(List.of(1L , 2L , 3L));
+        verify(chunkRepository).deleteAllInBatch(List.of(chunk));
+        verify(aggregateRepository , never()).deleteBatchBefore(any() , anyInt());
+
+        RetentionStatusDTO status = job.getStatus();
+        assertFalse(status.isRunning());
+        assertEquals(3 , status.getRawReadingsRolledUp());
+        assertEquals(1 , status.getChunksRolledUp());
+        assertEquals(2 , status.getBatches());
+        assertNull(status.getLastError());
+    }
+
+    /**
+     * Checks slow batches shrink the batch size and fast batches grow it back, within bounds.
+     */
+    @Test
+    void testThrottleFollowsLatency() {
+        RetentionJob job = job(mock(TemperatureRecordRepository.class) , mock(TemperatureChunkRepository.class) ,
+                mock(TemperatureHourlyAggregateRepository.class) , 0);
+
+        assertEquals(1000 , job.getBatchSize());
+        job.throttle(300);
+        assertEquals(500 , job.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            job.throttle(300);
+        }
+        assertEquals(50 , job.getBatchSize());
+        for (int i = 0; i < 30; i++) {
+            job.throttle(10);
+        }
+        assertEquals(1000 , job.getBatchSize());
+    }
+
+    /**
+     * Checks expired aggregates are deleted when an aggregate retention is configured.
+     */
+    @Test
+    void testAggregateRetention() {
+        TemperatureHourlyAggregateRepository aggregateRepository = mock(TemperatureHourlyAggregateRepository.class);
+        when(aggregateRepository.deleteBatchBefore(any() , anyInt())).thenReturn(1000 , 10 , 0);
+
+        RetentionJob job = job(mock(TemperatureRecordRepository.class) , mock(TemperatureChunkRepository.class) , aggregateRepository , 365);
+        job.run();
+
+        assertEquals(1010 , job.getStatus().getAggregatesDeleted());
+        assertEquals(LocalDate.now().minusDays(365).atStartOfDay() , job.getStatus().getAggregateCutoff());
+    }
+
+    private static RetentionJob job(TemperatureRecordRepository recordRepository , TemperatureChunkRepository chunkRepository ,
+                                    TemperatureHourlyAggregateRepository aggregateRepository , int aggregateDays) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        return new RetentionJob(recordRepository , chunkRepository , aggregateRepository , transactionTemplate ,
+                true , 90 , aggregateDays , 1000 , 250 , 0 , 0);
+    }
+
+    private static TemperatureRecord record(long id , LocalDateTime time , double temperature) {
+        TemperatureRecord record = new TemperatureRecord();
+        record.setId(id);
+        record.setDeviceName("AB123");
+        record.setLocation("Freezer 1");
+        record.setTemperature(temperature);
+        record.setTime(time);
+        return record;
+    }
+
+}
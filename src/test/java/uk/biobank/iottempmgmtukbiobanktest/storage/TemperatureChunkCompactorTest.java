@@ -0,0 +1,109 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TemperatureChunkCompactor}, verifying raw readings are packed into
+ * device-day chunks, merged with late arrivals and deleted by id.
+ */
+class TemperatureChunkCompactorTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025 , 1 , 9);
+
+    /**
+     * Compacts a device-day without a chunk and checks the chunk holds every reading.
+     */
+    @Test
+    void testCompactNewDeviceDay() {
+        TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+        TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+        when(recordRepository.findCompactableDeviceDays(any() , anyInt())).thenReturn(List.<Object[]>of(new Object[]{"AB123" , java.sql.Date.valueOf(DAY)}));
+        when(recordRepository.findByDeviceNameAndTimeGreaterThanEqualAndTimeLessThanOrderByTime("AB123" , DAY.atStartOfDay() , DAY.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of(record(1L , DAY.atTime(7 , 0) , -80.0) , record(2L , DAY.atTime(7 , 1) , -80.25)));
+        when(chunkRepository.findByDeviceNameAndChunkDate("AB123" , DAY)).thenReturn(Optional.empty());
+
+        compactor(recordRepository , chunkRepository).compact();
+
+        TemperatureChunk chunk = savedChunk(chunkRepository);
+        assertEquals("AB123" , chunk.getDeviceName());
+        assertEquals("Freezer 1" , chunk.getLocation());
+        assertEquals(DAY , chunk.getChunkDate());
+        assertEquals(DAY.atTime(7 , 0) , chunk.getStartTime());
+        assertEquals(DAY.atTime(7 , 1) , chunk.getEndTime());
+        assertEquals(2 , chunk.getReadingCount());
+        assertEquals(-80.25 , TemperatureChunks.decode(chunk).get(DateUtil.localDateTimeToEpochMilli(DAY.atTime(7 , 1))));
+        verify(recordRepository).deleteAllByIdInBatch(List.of(1L , 2L));
+    }
+
+    /**
+     * Compacts late readings into an existing chunk and checks a stored reading wins over a raw duplicate.
+     */
+    @Test
+    void testMergeIntoExistingChunk() {
+        TemperatureChunk existing = new TemperatureChunk();
+        existing.setDeviceName("AB123");
+        existing.setLocation("Freezer 1");
+        existing.setChunkDate(DAY);
+        existing.setReadingCount(2);
+        existing.setTimestamps(TemperatureChunkCodec.encodeTimestamps(new long[]{
+                DateUtil.localDateTimeToEpochMilli(DAY.atTime(7 , 0)) , DateUtil.localDateTimeToEpochMilli(DAY.atTime(7 , 2))}));
+        existing.setTemperatures(TemperatureChunkCodec.encodeValues(new double[]{-80.0 , -80.0}));
+
+        TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+        TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+        when(recordRepository.findByDeviceNameAndTimeGreaterThanEqualAndTimeLessThanOrderByTime(any() , any() , any()))
+                .thenReturn(List.of(record(3L , DAY.atTime(7 , 1) , -79.5) , record(4L , DAY.atTime(7 , 2) , 20.0)));
+        when(chunkRepository.findByDeviceNameAndChunkDate("AB123" , DAY)).thenReturn(Optional.of(existing));
+
+        assertEquals(2 , compactor(recordRepository , chunkRepository).compactDeviceDay("AB123" , DAY));
+
+        SortedMap<Long, Double> readings = TemperatureChunks.decode(savedChunk(chunkRepository));
+        assertEquals(3 , readings.size());
+        assertEquals(-79.5 , readings.get(DateUtil.localDateTimeToEpochMilli(DAY.atTime(7 , 1))));
+        assertEquals(-80.0 , readings.get(DateUtil.localDateTimeToEpochMilli(DAY.atTime(7 , 2))));
+        verify(recordRepository).deleteAllByIdInBatch(List.of(3L , 4L));
+    }
+
+    private static TemperatureChunkCompactor compactor(TemperatureRecordRepository recordRepository , TemperatureChunkRepository chunkRepository) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        return new TemperatureChunkCompactor(recordRepository , chunkRepository , transactionTemplate , new SimpleMeterRegistry() , true , 7 , 100);
+    }
+
+    private static TemperatureChunk savedChunk(TemperatureChunkRepository chunkRepository) {
+        ArgumentCaptor<TemperatureChunk> captor = ArgumentCaptor.forClass(TemperatureChunk.class);
+        verify(chunkRepository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static TemperatureRecord record(long id , LocalDateTime time , double temperature) {
+        TemperatureRecord record = new TemperatureRecord();
+        record.setId(id);
+        record.setDeviceName("AB123");
+        record.setLocation("Freezer 1");
+        record.setTemperature(temperature);
+        record.setTime(time);
+        return record;
+    }
+
+}
@@ -0,0 +1,115 @@
+package uk.biobank.iottempmgmtukbiobanktest.storage;
+
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.codec.TemperatureChunkCodec;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureChunk;
+import uk.biobank.iottempmgmtukbiobanktest.entity.TemperatureRecord;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureChunkRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyAggregateRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureHourlyStatisticRepository;
+import uk.biobank.iottempmgmtukbiobanktest.repository.TemperatureRecordRepository;
+import uk.biobank.iottempmgmtukbiobanktest.utils.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TemperatureRangeReader}, verifying range reads merge raw rows with
+ * readings decoded from chunks.
+ */
+class TemperatureRangeReaderTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025 , 1 , 9);
+
+    /**
+     * Reads an hour covered by a chunk and a raw retransmit, checking only readings within the
+     * range are returned, once each and ordered by time.
+     */
+    @Test
+    void testMergesChunksAndRawRows() {
+        LocalDateTime start = DAY.atTime(7 , 0);
+        LocalDateTime end = DAY.atTime(8 , 0);
+
+        TemperatureChunk chunk = new TemperatureChunk();
+        chunk.setDeviceName("AB123");
+        chunk.setLocation("Freezer 1");
+        chunk.setReadingCount(3);
+        chunk.setTimestamps(TemperatureChunkCodec.encodeTimestamps(new long[]{
+                millis(DAY.atTime(6 , 59)) , millis(DAY.atTime(7 , 0)) , millis(DAY.atTime(7 , 30))}));
+        chunk.setTemperatures(TemperatureChunkCodec.encodeValues(new double[]{-81.0 , -80.0 , -80.5}));
+
+        TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+        TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+        when(recordRepository.findByDeviceNameAndTimeGreaterThanEqualAndTimeLessThanOrderByTime("AB123" , start , end))
+                .thenReturn(List.of(record(DAY.atTime(7 , 30) , 99.0) , record(DAY.atTime(7 , 15) , -79.0)));
+        when(chunkRepository.findOverlapping("AB123" , start , end)).thenReturn(List.of(chunk));
+
+        List<TemperatureRecord> records = new TemperatureRangeReader(recordRepository , chunkRepository , mock(TemperatureHourlyAggregateRepository.class) ,
+                mock(TemperatureHourlyStatisticRepository.class) , 90)
+                .findByDeviceNameInRange("AB123" , start , end);
+
+        assertEquals(List.of(DAY.atTime(7 , 0) , DAY.atTime(7 , 15) , DAY.atTime(7 , 30)) ,
+                records.stream().map(TemperatureRecord::getTime).toList());
+        assertEquals(List.of(-80.0 , -79.0 , -80.5) , records.stream().map(TemperatureRecord::getTemperature).toList());
+        assertEquals("Freezer 1" , records.get(0).getLocation());
+    }
+
+    /**
+     * Reads an hour from a chunk holding a reading on the next hour, checking the reading is left to
+     * the next hour as the hourly statistics do.
+     */
+    @Test
+    void testEndExcluded() {
+        LocalDateTime start = DAY.atTime(7 , 0);
+        LocalDateTime end = DAY.atTime(8 , 0);
+
+        TemperatureChunk chunk = new TemperatureChunk();
+        chunk.setDeviceName("AB123");
+        chunk.setLocation("Freezer 1");
+        chunk.setReadingCount(2);
+        chunk.setTimestamps(TemperatureChunkCodec.encodeTimestamps(new long[]{millis(DAY.atTime(7 , 0)) , millis(DAY.atTime(8 , 0))}));
+        chunk.setTemperatures(TemperatureChunkCodec.encodeValues(new double[]{-80.0 , -70.0}));
+
+        TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+        TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+        when(chunkRepository.findOverlapping("AB123" , start , end)).thenReturn(List.of(chunk));
+
+        List<TemperatureRecord> records = new TemperatureRangeReader(recordRepository , chunkRepository , mock(TemperatureHourlyAggregateRepository.class) ,
+                mock(TemperatureHourlyStatisticRepository.class) , 90)
+                .findByDeviceNameInRange("AB123" , start , end);
+
+        assertEquals(List.of(DAY.atTime(7 , 0)) , records.stream().map(TemperatureRecord::getTime).toList());
+    }
+
+    /**
+     * Checks a range without chunks returns the raw rows as they are.
+     */
+    @Test
+    void testRawRowsOnly() {
+        TemperatureRecordRepository recordRepository = mock(TemperatureRecordRepository.class);
+        TemperatureChunkRepository chunkRepository = mock(TemperatureChunkRepository.class);
+        List<TemperatureRecord> raw = List.of(record(DAY.atTime(7 , 15) , -79.0));
+        when(recordRepository.findByDeviceNameAndTimeGreaterThanEqualAndTimeLessThanOrderByTime(any() , any() , any())).thenReturn(raw);
+
+        assertSame(raw , new TemperatureRangeReader(recordRepository , chunkRepository , mock(TemperatureHourlyAggregateRepository.class) ,
+                mock(TemperatureHourlyStatisticRepository.class) , 90)
+                .findByDeviceNameInRange("AB123" , DAY.atTime(7 , 0) , DAY.atTime(8 , 0)));
+    }
+
+    private static long millis(LocalDateTime time) {
+        return DateUtil.localDateTimeToEpochMilli(time);
+    }
+
+    private static TemperatureRecord record(LocalDateTime time , double temperature) {
+        TemperatureRecord record = new TemperatureRecord();
+        record.setDeviceName("AB123");
+        record.setTemperature(temperature);
+        record.setTime(time);
+        return record;
+    }
+
+}
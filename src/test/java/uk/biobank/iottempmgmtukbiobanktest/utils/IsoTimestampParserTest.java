@@ -0,0 +1,39 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link IsoTimestampParser}, verifying it agrees with
+ * {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME} on valid and malformed input.
+ */
+class IsoTimestampParserTest {
+
+    /**
+     * Checks the accepted forms parse to the same date-time as the ISO formatter.
+     */
+    @Test
+    void testParsesIsoLocalDateTimes() {
+        for (String text : new String[]{"2025-01-09T07:00:00" , "2025-01-09T07:00" , "2024-02-29T23:59:59" ,
+                "2025-01-09T07:00:00.5" , "2025-01-09T07:00:00.123456789"}) {
+            assertEquals(LocalDateTime.parse(text , DateTimeFormatter.ISO_LOCAL_DATE_TIME) , IsoTimestampParser.parse(text) , text);
+        }
+    }
+
+    /**
+     * Checks malformed and out-of-range input returns null instead of throwing.
+     */
+    @Test
+    void testRejectsMalformedInput() {
+        for (String text : new String[]{null , "" , "2025-01-09" , "2025-01-09 07:00:00" , "2025-13-09T07:00:00" ,
+                "2025-02-29T07:00:00" , "2025-01-09T24:00:00" , "2025-01-09T07:60:00" , "2025-01-09T07:00:0x" ,
+                "2025-01-09T07:00:00." , "2025-01-09T07:00:00.1234567890" , "2025-01-09T07:00:00Z" , "+2025-01-09T07:00"}) {
+            assertNull(IsoTimestampParser.parse(text) , text);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package uk.biobank.iottempmgmtukbiobanktest.utils;
+
+import org.junit.jupiter.api.Test;
+import uk.biobank.iottempmgmtukbiobanktest.exceptions.GeneralException;
+import uk.biobank.iottempmgmtukbiobanktest.utils.enums.ResponseCodeAndMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SingleFlight}, verifying that concurrent identical computations
+ * are coalesced, that followers time out independently, and that keys are released
+ * once a computation completes.
+ */
+class SingleFlightTest {
+
+    /**
+     * Starts many concurrent callers for the same key while the leader is blocked and
+     * checks that the computation ran once and every caller received its result.
+     */
+    @Test
+    void testConcurrentIdenticalCallsShareOneComputation() throws Exception {
+        SingleFlight<String, Double> singleFlight = new SingleFlight<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            results.add(callers.submit(() -> singleFlight.execute("AB123" , Duration.ofSeconds(5) , () -> {
+                computations.incrementAndGet();
+                leaderStarted.countDown();
+                await(releaseLeader);
+                return 12.3;
+            })));
+            assertTrue(leaderStarted.await(5 , TimeUnit.SECONDS));
+
+            for (int i = 0; i < 7; i++) {
+                results.add(callers.submit(() -> singleFlight.execute("AB123" , Duration.ofSeconds(5) , () -> {
+                    computations.incrementAndGet();
+                    return -1.0;
+                })));
+            }
+
+            // give the followers time to join the flight before the leader completes
+            Thread.sleep(200);
+            releaseLeader.countDown();
+
+            for (Future<Double> result : results) {
+                assertEquals(12.3 , result.get(5 , TimeUnit.SECONDS));
+            }
+            assertEquals(1 , computations.get());
+            assertEquals(0 , singleFlight.inFlightCount());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks a follower gives up after its own timeout while the leader keeps running.
+     */
+    @Test
+    void testFollowerTimesOut() throws Exception {
+        SingleFlight<String, Double> singleFlight = new SingleFlight<>();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+
+        ExecutorService leader = Executors.newSingleThreadExecutor();
+        try {
+            Future<Double> leaderResult = leader.submit(() -> singleFlight.execute("AB123" , Duration.ofSeconds(5) , () -> {
+                leaderStarted.countDown();
+                await(releaseLeader);
+                return 12.3;
+            }));
+            assertTrue(leaderStarted.await(5 , TimeUnit.SECONDS));
+
+            assertThrows(GeneralException.class ,
+                    () -> singleFlight.execute("AB123" , Duration.ofMillis(50) , () -> -1.0));
+
+            releaseLeader.countDown();
+            assertEquals(12.3 , leaderResult.get(5 , TimeUnit.SECONDS));
+        } finally {
+            leader.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks sequential calls are not cached and a failing computation releases its key.
+     */
+    @Test
+    void testKeyIsReleasedAfterCompletion() {
+        SingleFlight<String, Double> singleFlight = new SingleFlight<>();
+
+        assertThrows(IllegalStateException.class , () -> singleFlight.execute("AB123" , Duration.ofSeconds(1) , () -> {
+            throw new IllegalStateException("query failed");
+        }));
+        assertEquals(1.0 , singleFlight.execute("AB123" , Duration.ofSeconds(1) , () -> 1.0));
+        assertEquals(2.0 , singleFlight.execute("AB123" , Duration.ofSeconds(1) , () -> 2.0));
+    }
+
+    /**
+     * Checks followers fail as soon as the leader fails with an error, rather than waiting out their timeout.
+     */
+    @Test
+    void testFollowersFailWhenLeaderThrowsError() throws Exception {
+        SingleFlight<String, Double> singleFlight = new SingleFlight<>();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Double> leaderResult = callers.submit(() -> singleFlight.execute("AB123" , Duration.ofSeconds(30) , () -> {
+                leaderStarted.countDown();
+                await(releaseLeader);
+                throw new StackOverflowError();
+            }));
+            assertTrue(leaderStarted.await(5 , TimeUnit.SECONDS));
+            Future<Double> followerResult = callers.submit(() -> singleFlight.execute("AB123" , Duration.ofSeconds(30) , () -> -1.0));
+
+            // give the follower time to join the flight before the leader fails
+            Thread.sleep(200);
+            releaseLeader.countDown();
+
+            ExecutionException leaderFailure = assertThrows(ExecutionException.class , () -> leaderResult.get(5 , TimeUnit.SECONDS));
+            assertInstanceOf(StackOverflowError.class , leaderFailure.getCause());
+            ExecutionException followerFailure = assertThrows(ExecutionException.class , () -> followerResult.get(5 , TimeUnit.SECONDS));
+            assertEquals(String.valueOf(ResponseCodeAndMessage.ERROR_PROCESSING.responseCode) , followerFailure.getCause().getMessage());
+            assertEquals(0 , singleFlight.inFlightCount());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5 , TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
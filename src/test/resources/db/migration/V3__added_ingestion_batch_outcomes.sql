@@ -0,0 +1,10 @@
+CREATE TABLE ingestion_batch_outcomes
+(
+    idempotency_key     VARCHAR(255)                NOT NULL,
+    request_fingerprint BIGINT                      NOT NULL,
+    outcome             TEXT                        NOT NULL,
+    created_at          TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_ingestion_batch_outcomes PRIMARY KEY (idempotency_key)
+);
+
+CREATE INDEX idx_ingestionbatchoutcome_created_at ON ingestion_batch_outcomes (created_at);
@@ -0,0 +1,17 @@
+CREATE TABLE temperature_chunks
+(
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    device_name     VARCHAR(255)                            NOT NULL,
+    location        VARCHAR(255),
+    chunk_date      DATE                                    NOT NULL,
+    start_time      TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    end_time        TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    reading_count   INTEGER                                 NOT NULL,
+    timestamps      BYTEA                                   NOT NULL,
+    temperatures    BYTEA                                   NOT NULL,
+    created_at      TIMESTAMP WITHOUT TIME ZONE             NOT NULL,
+    CONSTRAINT pk_temperature_chunks PRIMARY KEY (id),
+    CONSTRAINT uc_temperaturechunk_device_name_chunk_date UNIQUE (device_name, chunk_date)
+);
+
+CREATE INDEX idx_temperaturechunk_device_name_start_time ON temperature_chunks (device_name, start_time);